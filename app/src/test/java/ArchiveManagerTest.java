@@ -0,0 +1,145 @@
+// ArchiveManagerTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты упаковки и распаковки архивов ({@code pack}, {@code unpack}).
+ */
+class ArchiveManagerTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Недоступная директория не попадает в архив и учитывается как ошибка упаковки.
+     */
+    @Test
+    void unreadableDirectoryIsCountedAsFailure() throws IOException {
+        Path source = Files.createDirectories(temp.resolve("src"));
+        Path locked = Files.createDirectories(source.resolve("locked"));
+        Files.writeString(locked.resolve("f.txt"), "data");
+        Files.writeString(source.resolve("other.txt"), "other");
+
+        Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("---------"));
+        try {
+            // Под root права доступа не действуют, и директорию не сделать недоступной
+            assumeFalse(Files.isReadable(locked), "директория остаётся доступной (запуск под root)");
+            ArchiveManager.Result result = new ArchiveManager().pack(source, temp.resolve("out.tar.gz"),
+                    ArchiveManager.Format.TAR_GZ, 2, 6);
+
+            assertEquals(1, result.getFailures());
+        } finally {
+            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    /**
+     * Ссылка, путь к которой проходит через другую ссылку из архива, ведущую наружу, не создаётся
+     * вне целевой директории.
+     */
+    @Test
+    void linkThroughEscapingLinkIsRejected() throws IOException {
+        Path outside = Files.createDirectories(temp.resolve("outside"));
+        Path target = Files.createDirectories(temp.resolve("dst"));
+        Path archive = temp.resolve("evil.tar.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+            writeEntry(out, "a/b", '2', "x", null);
+            writeEntry(out, "a", '2', "../outside", null);
+            writeEntry(out, "file.txt", '0', null, "data");
+            out.write(new byte[1024]);
+        }
+
+        ArchiveManager.Result result = new ArchiveManager().unpackTarGz(archive, target, 2);
+
+        assertEquals(1, result.getFailures());
+        assertTrue(Files.isSymbolicLink(target.resolve("a")));
+        assertEquals(0, outside.toFile().list().length);
+        assertEquals("data", Files.readString(target.resolve("file.txt")));
+    }
+
+    /**
+     * Повторяющийся в архиве файл распаковывается с содержимым последней записи.
+     */
+    @Test
+    void repeatedFileKeepsLastEntry() throws IOException {
+        Path target = Files.createDirectories(temp.resolve("dst"));
+        Path archive = temp.resolve("twice.tar.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+            writeEntry(out, "f.txt", '0', null, "first version, the longer one");
+            writeEntry(out, "f.txt", '0', null, "second");
+            out.write(new byte[1024]);
+        }
+
+        ArchiveManager.Result result = new ArchiveManager().unpackTarGz(archive, target, 4);
+
+        assertEquals(0, result.getFailures());
+        assertEquals("second", Files.readString(target.resolve("f.txt")));
+    }
+
+    /**
+     * Записывает запись tar (заголовок ustar и содержимое, выровненное по блокам).
+     *
+     * @param out     поток архива
+     * @param name    имя записи
+     * @param type    тип записи
+     * @param link    цель ссылки или null
+     * @param content содержимое файла или null
+     * @throws IOException если запись не удалась
+     */
+    private static void writeEntry(OutputStream out, String name, char type, String link, String content)
+            throws IOException {
+        byte[] data = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+        byte[] header = new byte[512];
+        put(header, 0, name);
+        put(header, 100, "0000777");
+        put(header, 108, "0000000");
+        put(header, 116, "0000000");
+        put(header, 124, String.format("%011o", data.length));
+        put(header, 136, String.format("%011o", 0));
+        header[156] = (byte) type;
+        if (link != null) {
+            put(header, 157, link);
+        }
+        put(header, 257, "ustar");
+        put(header, 263, "00");
+        long sum = 8 * ' ';
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        put(header, 148, String.format("%06o", sum));
+        header[155] = ' ';
+        out.write(header);
+        ByteArrayOutputStream padded = new ByteArrayOutputStream();
+        padded.write(data);
+        padded.write(new byte[(512 - data.length % 512) % 512]);
+        out.write(padded.toByteArray());
+    }
+
+    /**
+     * Записывает строку в поле заголовка.
+     *
+     * @param header заголовок
+     * @param offset начало поля
+     * @param value  значение
+     */
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}
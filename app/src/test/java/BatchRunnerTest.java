@@ -0,0 +1,39 @@
+// BatchRunnerTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты пакетного режима ({@code --script}).
+ */
+class BatchRunnerTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Команда, зависящая по путям от команды перед барьером, пропускается при ошибке этой команды,
+     * как и внутри одного сегмента.
+     */
+    @Test
+    void failureBeforeBarrierSkipsDependents() {
+        List<String> executed = new CopyOnWriteArrayList<>();
+        BatchRunner runner = new BatchRunner((command, directory) -> {
+            executed.add(command);
+            return !command.startsWith("copy");
+        }, 4);
+
+        int exitCode = runner.run(List.of("copy a dst", "bwlimit off", "rm dst/a", "ls other"), temp.toString());
+
+        assertEquals(BatchRunner.EXIT_FAILED, exitCode);
+        assertEquals(List.of("copy a dst", "bwlimit off", "ls other"), executed);
+    }
+}
@@ -0,0 +1,65 @@
+// DirectoryCacheTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты кэша содержимого директорий.
+ */
+class DirectoryCacheTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Попадания в кэш отдают один и тот же снимок, пока содержимое директории не изменилось.
+     */
+    @Test
+    void hitsShareSnapshotUntilChange() throws IOException {
+        Files.createFile(temp.resolve("a"));
+        try (DirectoryCache cache = new DirectoryCache()) {
+            List<DirectoryCache.CachedEntry> first = cache.getEntries(temp);
+            assertSame(first, cache.getEntries(temp));
+
+            Files.createFile(temp.resolve("b"));
+            List<DirectoryCache.CachedEntry> changed = cache.getEntries(temp);
+            assertNotSame(first, changed);
+            assertEquals(2, changed.size());
+        }
+    }
+
+    /**
+     * Записи, добавленные по событиям наблюдения, учитываются в лимите и вытесняют давние директории.
+     */
+    @Test
+    void eventsRespectEntryLimit() throws IOException, InterruptedException {
+        Path old = Files.createDirectories(temp.resolve("old"));
+        Path growing = Files.createDirectories(temp.resolve("growing"));
+        Files.createFile(old.resolve("1"));
+        Files.createFile(old.resolve("2"));
+        Files.createFile(growing.resolve("1"));
+        try (DirectoryCache cache = new DirectoryCache(3)) {
+            cache.getEntries(old);
+            cache.getEntries(growing);
+
+            Files.createFile(growing.resolve("2"));
+            Files.createFile(growing.resolve("3"));
+            Thread.sleep(500); // Даём службе наблюдения доставить события
+            assertEquals(3, cache.getEntries(growing).size());
+
+            cache.getEntries(old);
+            assertEquals(3, cache.getMisses());
+        }
+    }
+}
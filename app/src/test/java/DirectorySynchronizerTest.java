@@ -0,0 +1,175 @@
+// DirectorySynchronizerTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты синхронизации с удалением ({@code sync --delete}).
+ */
+class DirectorySynchronizerTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Источник внутри назначения отклоняется, и ни один файл источника не удаляется.
+     */
+    @Test
+    void sourceInsideTargetIsRefused() throws IOException {
+        Path target = Files.createDirectories(temp.resolve("dst"));
+        Path source = Files.createDirectories(target.resolve("src/deep"));
+        Files.writeString(target.resolve("src/a.txt"), "a");
+        Files.writeString(source.resolve("b.txt"), "b");
+
+        DirectorySynchronizer synchronizer = new DirectorySynchronizer();
+        assertThrows(IOException.class, () -> synchronizer.synchronize(target.resolve("src"), target, true, 2));
+        assertThrows(IOException.class, () -> synchronizer.synchronize(target, target.resolve("src"), true, 2));
+
+        assertTrue(Files.exists(target.resolve("src/a.txt")));
+        assertTrue(Files.exists(source.resolve("b.txt")));
+    }
+
+    /**
+     * Удалённый из источника файл удаляется из назначения, остальные сохраняются.
+     */
+    @Test
+    void deleteRemovesOnlyStaleFiles() throws IOException {
+        Path source = Files.createDirectories(temp.resolve("src/sub"));
+        Path target = temp.resolve("dst");
+        Files.writeString(source.resolve("keep.txt"), "keep");
+        Files.writeString(source.resolve("gone.txt"), "gone");
+
+        DirectorySynchronizer synchronizer = new DirectorySynchronizer();
+        synchronizer.synchronize(temp.resolve("src"), target, true, 2);
+        Files.delete(source.resolve("gone.txt"));
+        DirectorySynchronizer.Result result = synchronizer.synchronize(temp.resolve("src"), target, true, 2);
+
+        assertEquals(0, result.getFailures());
+        assertTrue(Files.exists(target.resolve("sub/keep.txt")));
+        assertTrue(Files.notExists(target.resolve("sub/gone.txt")));
+    }
+
+    /**
+     * Копия в назначении для недоступной директории источника не удаляется, ошибка учитывается,
+     * а синхронизация остальных файлов продолжается.
+     */
+    @Test
+    void unreadableSourceDirectoryKeepsTargetCopy() throws IOException {
+        Path source = temp.resolve("src");
+        Path locked = Files.createDirectories(source.resolve("locked"));
+        Path target = temp.resolve("dst");
+        Files.writeString(locked.resolve("f.txt"), "data");
+        Files.writeString(source.resolve("other.txt"), "v1");
+
+        DirectorySynchronizer synchronizer = new DirectorySynchronizer();
+        synchronizer.synchronize(source, target, true, 2);
+        Files.writeString(source.resolve("other.txt"), "v2 changed");
+        Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("---------"));
+        try {
+            // Под root права доступа не действуют, и директорию не сделать недоступной
+            assumeFalse(Files.isReadable(locked), "директория остаётся доступной (запуск под root)");
+            DirectorySynchronizer.Result result = synchronizer.synchronize(source, target, true, 2);
+
+            assertEquals(1, result.getFailures());
+            assertTrue(Files.exists(target.resolve("locked/f.txt")));
+            assertEquals("v2 changed", Files.readString(target.resolve("other.txt")));
+        } finally {
+            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+        }
+
+        // После восстановления доступа копия по-прежнему считается актуальной
+        DirectorySynchronizer.Result result = synchronizer.synchronize(source, target, true, 2);
+        assertEquals(0, result.getFailures());
+        assertTrue(Files.exists(target.resolve("locked/f.txt")));
+    }
+
+    /**
+     * Файл источника, ставший директорией, заменяет в назначении прежнюю копию файла.
+     */
+    @Test
+    void fileReplacedByDirectory() throws IOException {
+        Path source = Files.createDirectories(temp.resolve("src"));
+        Path target = temp.resolve("dst");
+        Files.writeString(source.resolve("entry"), "file");
+
+        DirectorySynchronizer synchronizer = new DirectorySynchronizer();
+        synchronizer.synchronize(source, target, false, 2);
+        Files.delete(source.resolve("entry"));
+        Files.createDirectories(source.resolve("entry"));
+        Files.writeString(source.resolve("entry/inner.txt"), "inner");
+        DirectorySynchronizer.Result result = synchronizer.synchronize(source, target, false, 2);
+
+        assertEquals(0, result.getFailures());
+        assertEquals("inner", Files.readString(target.resolve("entry/inner.txt")));
+        assertEquals(0, synchronizer.synchronize(source, target, false, 2).getFailures());
+    }
+
+    /**
+     * Директория источника, ставшая файлом, заменяет в назначении непустую копию директории
+     * даже без {@code --delete}.
+     */
+    @Test
+    void directoryReplacedByFile() throws IOException {
+        Path source = Files.createDirectories(temp.resolve("src/entry/deep"));
+        Path target = temp.resolve("dst");
+        Files.writeString(source.resolve("inner.txt"), "inner");
+
+        DirectorySynchronizer synchronizer = new DirectorySynchronizer();
+        synchronizer.synchronize(temp.resolve("src"), target, false, 2);
+        Files.delete(source.resolve("inner.txt"));
+        Files.delete(source);
+        Files.delete(temp.resolve("src/entry"));
+        Files.writeString(temp.resolve("src/entry"), "file");
+        DirectorySynchronizer.Result result = synchronizer.synchronize(temp.resolve("src"), target, false, 2);
+
+        assertEquals(0, result.getFailures());
+        assertEquals("file", Files.readString(target.resolve("entry")));
+        DirectorySynchronizer.Result repeat = synchronizer.synchronize(temp.resolve("src"), target, true, 2);
+        assertEquals(0, repeat.getFailures());
+        assertEquals(0, repeat.deleted);
+    }
+
+    /**
+     * Повреждённый манифест (огромное количество записей, неверный префикс, обрезанные данные)
+     * не прерывает синхронизацию: состояние назначения читается заново.
+     */
+    @Test
+    void corruptManifestFallsBackToScan() throws IOException {
+        Path source = Files.createDirectories(temp.resolve("src"));
+        Path target = temp.resolve("dst");
+        Files.writeString(source.resolve("a.txt"), "a");
+        Files.writeString(source.resolve("b.txt"), "b");
+        DirectorySynchronizer synchronizer = new DirectorySynchronizer();
+        synchronizer.synchronize(source, target, true, 2);
+        Path manifest = target.resolve(DirectorySynchronizer.MANIFEST_NAME);
+        byte[] valid = Files.readAllBytes(manifest);
+
+        byte[] hugeCount = valid.clone();
+        ByteBuffer.wrap(hugeCount).putInt(4, Integer.MAX_VALUE);
+        byte[] badPrefix = valid.clone();
+        badPrefix[8] = 100; // Префикс первой записи длиннее пустого предыдущего пути
+        byte[] truncated = Arrays.copyOf(valid, valid.length - 3);
+
+        for (byte[] corrupt : List.of(hugeCount, badPrefix, truncated)) {
+            Files.write(manifest, corrupt);
+            DirectorySynchronizer.Result result = synchronizer.synchronize(source, target, true, 2);
+            assertEquals(0, result.getFailures());
+            assertEquals("b", Files.readString(target.resolve("b.txt")));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+// DiskUsageCalculatorTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты подсчёта занимаемого места.
+ */
+class DiskUsageCalculatorTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Жёсткие ссылки на один файл (по паре устройство и inode) учитываются один раз,
+     * в том числе из разных директорий.
+     */
+    @Test
+    void hardLinksAreCountedOnce() throws IOException {
+        Path first = Files.createDirectories(temp.resolve("first"));
+        Path second = Files.createDirectories(temp.resolve("second"));
+        Path original = Files.write(first.resolve("data.bin"), new byte[1000]);
+        Files.createLink(first.resolve("link.bin"), original);
+        Files.createLink(second.resolve("link.bin"), original);
+        Files.write(second.resolve("other.bin"), new byte[10]);
+
+        DiskUsageCalculator.Usage usage = new DiskUsageCalculator().calculate(temp, -1);
+
+        assertEquals(1010, usage.getBytes());
+        assertEquals(2, usage.getFiles());
+        assertEquals(3, usage.getDirectories());
+    }
+
+    /**
+     * Повторный обход не помнит ссылки, учтённые в предыдущем.
+     */
+    @Test
+    void seenLinksAreNotSharedBetweenWalks() throws IOException {
+        Path original = Files.write(temp.resolve("data.bin"), new byte[100]);
+        Files.createLink(temp.resolve("link.bin"), original);
+
+        DiskUsageCalculator calculator = new DiskUsageCalculator();
+        assertEquals(100, calculator.calculate(temp, -1).getBytes());
+        assertEquals(100, calculator.calculate(temp, -1).getBytes());
+    }
+}
@@ -0,0 +1,51 @@
+// FileIndexTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты индекса имён файлов.
+ */
+class FileIndexTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Повторное построение после поиска перезаписывает индекс, берёт неизменившиеся директории
+     * из прежнего файла FMI1 и подхватывает изменения в остальных.
+     */
+    @Test
+    void rebuildAfterFindRoundTrips() throws IOException {
+        Files.createDirectories(temp.resolve("a"));
+        Path changed = Files.createDirectories(temp.resolve("b"));
+        Files.createFile(temp.resolve("a/first.txt"));
+        Files.createFile(changed.resolve("second.txt"));
+        Path indexFile = temp.resolve(FileIndex.INDEX_NAME);
+
+        FileIndex index = new FileIndex();
+        assertTrue(index.handleIndexCommand("index build", temp.toString()));
+        assertEquals(List.of("a/first.txt"), index.find(indexFile, "first", 10));
+
+        Files.createFile(changed.resolve("third.txt"));
+        Files.delete(changed.resolve("second.txt"));
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 10_000L));
+        assertTrue(index.handleIndexCommand("index build", temp.toString()));
+
+        assertEquals(List.of("a/first.txt"), index.find(indexFile, "first", 10));
+        assertEquals(List.of("a/first.txt", "b/third.txt"), index.find(indexFile, "*.txt", 10));
+        assertEquals(List.of(), index.find(indexFile, "second", 10));
+        assertEquals(List.of("a", "a/first.txt", "b", "b/third.txt"), index.find(indexFile, "*", 10));
+    }
+}
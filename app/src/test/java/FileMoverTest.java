@@ -0,0 +1,85 @@
+// FileMoverTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты продолжения прерванного перемещения ({@code mv}) по журналу.
+ */
+class FileMoverTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Прерванное на копировании перемещение докопирует недостающее и обрезанное, переименует копию
+     * и только затем удалит источник.
+     */
+    @Test
+    void resumeAfterPartialCopy() throws IOException {
+        Path source = Files.createDirectories(temp.resolve("src/sub"));
+        Files.writeString(source.resolve("done.txt"), "already copied");
+        Files.writeString(source.resolve("cut.txt"), "copied only partially");
+        Files.writeString(temp.resolve("src/missing.txt"), "not copied yet");
+        Path target = Files.createDirectories(temp.resolve("dst")).resolve("tree");
+
+        // Состояние после сбоя: часть файлов во временном пути, журнал на этапе COPY
+        Path part = Files.createDirectories(FileMover.partPath(target).resolve("sub"));
+        Files.copy(source.resolve("done.txt"), part.resolve("done.txt"));
+        Files.setLastModifiedTime(part.resolve("done.txt"), Files.getLastModifiedTime(source.resolve("done.txt")));
+        Files.writeString(part.resolve("cut.txt"), "copied");
+        writeJournal(target, temp.resolve("src"), "COPY");
+
+        assertTrue(new FileMover().handleMvCommand("mv -r src dst/tree", temp.toString()));
+
+        assertEquals("already copied", Files.readString(target.resolve("sub/done.txt")));
+        assertEquals("copied only partially", Files.readString(target.resolve("sub/cut.txt")));
+        assertEquals("not copied yet", Files.readString(target.resolve("missing.txt")));
+        assertTrue(Files.notExists(temp.resolve("src")));
+        assertTrue(Files.notExists(FileMover.partPath(target)));
+        assertTrue(Files.notExists(FileMover.journalPath(target)));
+    }
+
+    /**
+     * Прерванное на удалении перемещение дочищает источник, не трогая копию.
+     */
+    @Test
+    void resumeDuringDeleteKeepsCopy() throws IOException {
+        Path source = Files.createDirectories(temp.resolve("src"));
+        Files.writeString(source.resolve("left.txt"), "left");
+        Path target = Files.createDirectories(temp.resolve("dst/tree"));
+        Files.writeString(target.resolve("left.txt"), "left");
+        Files.writeString(target.resolve("deleted.txt"), "deleted");
+        writeJournal(target, source, "DELETE");
+
+        assertTrue(new FileMover().handleMvCommand("mv -r src dst/tree", temp.toString()));
+
+        assertTrue(Files.notExists(source));
+        assertEquals("left", Files.readString(target.resolve("left.txt")));
+        assertEquals("deleted", Files.readString(target.resolve("deleted.txt")));
+        assertTrue(Files.notExists(FileMover.journalPath(target)));
+    }
+
+    /**
+     * Записывает журнал перемещения в формате {@link FileMover}.
+     *
+     * @param target назначение
+     * @param source источник
+     * @param phase  этап
+     * @throws IOException если журнал не удалось записать
+     */
+    private static void writeJournal(Path target, Path source, String phase) throws IOException {
+        Files.writeString(FileMover.journalPath(target),
+                "source=" + source.toAbsolutePath().normalize() + "\nphase=" + phase + "\n", StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,68 @@
+// OutputCaptureTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты ограничения объёма перехваченного вывода.
+ */
+class OutputCaptureTest {
+
+    /**
+     * Устанавливает перенаправляющие потоки вывода.
+     */
+    @BeforeAll
+    static void install() {
+        OutputCapture.install();
+    }
+
+    /**
+     * Вывод больше лимита хранится только началом и концом, середина заменяется отметкой.
+     */
+    @Test
+    void largeOutputStaysBounded() {
+        int limit = 4096;
+        OutputCapture capture = new OutputCapture(limit);
+        capture.run(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                System.out.println("line " + i);
+            }
+            return true;
+        });
+
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        capture.writeTo(new PrintStream(printed, true, StandardCharsets.UTF_8), new PrintStream(new ByteArrayOutputStream()));
+        String text = printed.toString(StandardCharsets.UTF_8);
+
+        assertTrue(printed.size() <= 2 * limit + 100, "выведено " + printed.size() + " байт");
+        assertTrue(text.startsWith("line 0\n"));
+        assertTrue(text.endsWith("line 99999\n"));
+        assertTrue(text.contains("байт вывода"));
+    }
+
+    /**
+     * Вывод в пределах лимита переносится без изменений, в том числе на границе начала и конца.
+     */
+    @Test
+    void smallOutputIsKeptWhole() {
+        OutputCapture capture = new OutputCapture(16);
+        capture.run(() -> {
+            System.out.print("0123456789abcdefXYZ");
+            System.err.print("error");
+            return true;
+        });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        capture.writeTo(new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+        assertEquals("0123456789abcdefXYZ", out.toString(StandardCharsets.UTF_8));
+        assertEquals("error", err.toString(StandardCharsets.UTF_8));
+    }
+}
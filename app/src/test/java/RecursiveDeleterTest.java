@@ -0,0 +1,121 @@
+// RecursiveDeleterTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты рекурсивного удаления ({@code rm -r}).
+ */
+class RecursiveDeleterTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Дерево удаляется целиком, удалённые файлы и директории учитываются отдельно.
+     */
+    @Test
+    void deletesWholeTree() throws IOException {
+        Path root = createTree(temp.resolve("tree"), 3);
+
+        RecursiveDeleter.Result result = new RecursiveDeleter().delete(root, 0);
+
+        assertEquals(0, result.getFailures());
+        assertEquals(6, result.files.get());
+        assertEquals(3, result.directories.get());
+        assertTrue(Files.notExists(root));
+    }
+
+    /**
+     * Файлы, которые не удалось удалить, учитываются как ошибки, их директории и предки сохраняются,
+     * а соседние поддеревья удаляются полностью.
+     */
+    @Test
+    void partialFailureKeepsOnlyAncestors() throws IOException {
+        Path root = temp.resolve("tree");
+        Path locked = createTree(root.resolve("locked"), 1);
+        Path other = createTree(root.resolve("other"), 2);
+        Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("r-x------"));
+        try {
+            // Под root права доступа не действуют, и файлы в директории всё равно удаляются
+            assumeFalse(Files.isWritable(locked), "директория остаётся доступной для записи (запуск под root)");
+            RecursiveDeleter.Result result = new RecursiveDeleter().delete(root, 0);
+
+            assertEquals(2, result.getFailures());
+            assertEquals(4, result.files.get());
+            assertEquals(2, result.directories.get());
+            assertTrue(Files.exists(locked.resolve("file0.txt")));
+            assertTrue(Files.notExists(other));
+        } finally {
+            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    /**
+     * С {@code --dry-run} дерево только подсчитывается и не удаляется.
+     */
+    @Test
+    void dryRunDeletesNothing() throws IOException {
+        Path root = createTree(temp.resolve("tree"), 2);
+
+        assertTrue(new DirectoryManager().handleRmCommand("rm -r --dry-run tree", temp.toString(), null));
+        assertTrue(Files.exists(root.resolve("file1.txt")));
+    }
+
+    /**
+     * Выше порога без возможности подтверждения удаление отклоняется, отказ в подтверждении отменяет его,
+     * а согласие или {@code -f} — разрешают.
+     */
+    @Test
+    void confirmationThresholdGuardsLargeTrees() throws IOException {
+        Path root = createTree(temp.resolve("tree"), 3);
+        DirectoryManager manager = new DirectoryManager();
+
+        assertFalse(manager.handleRmCommand("rm -r --confirm-above 5 tree", temp.toString(), null));
+        assertFalse(manager.handleRmCommand("rm -r --confirm-above 5 tree", temp.toString(), new Scanner("n\n")));
+        assertTrue(Files.exists(root));
+
+        assertTrue(manager.handleRmCommand("rm -r --confirm-above 6 tree", temp.toString(), null));
+        assertTrue(Files.notExists(root));
+
+        createTree(root, 3);
+        assertTrue(manager.handleRmCommand("rm -r --confirm-above 5 tree", temp.toString(), new Scanner("да\n")));
+        assertTrue(Files.notExists(root));
+
+        createTree(root, 3);
+        assertTrue(manager.handleRmCommand("rm -rf --confirm-above 0 tree", temp.toString(), null));
+        assertTrue(Files.notExists(root));
+    }
+
+    /**
+     * Создаёт цепочку вложенных директорий, в каждой — по два файла.
+     *
+     * @param root  корень цепочки
+     * @param depth количество директорий
+     * @return корень цепочки
+     * @throws IOException если дерево не удалось создать
+     */
+    private static Path createTree(Path root, int depth) throws IOException {
+        Path directory = root;
+        for (int level = 0; level < depth; level++) {
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve("file0.txt"), "0");
+            Files.writeString(directory.resolve("file1.txt"), "1");
+            directory = directory.resolve("sub");
+        }
+        return root;
+    }
+}
@@ -0,0 +1,120 @@
+// TreeDifferTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты сравнения деревьев и его кэша.
+ */
+class TreeDifferTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Правка файла на месте, не меняющая время изменения директории, обнаруживается и при наличии кэша.
+     */
+    @Test
+    void inPlaceEditUnderUnchangedDirectoryIsReported() throws IOException {
+        Path first = Files.createDirectories(temp.resolve("a/sub"));
+        Path second = Files.createDirectories(temp.resolve("b/sub"));
+        Files.writeString(first.resolve("file.txt"), "original");
+        Files.writeString(second.resolve("file.txt"), "original");
+        FileTime stamp = Files.getLastModifiedTime(first.resolve("file.txt"));
+        Files.setLastModifiedTime(second.resolve("file.txt"), stamp);
+
+        TreeDiffer differ = new TreeDiffer();
+        assertEquals(List.of(), differ.diff(temp.resolve("a"), temp.resolve("b"), 2, false).differences);
+
+        FileTime directoryTime = Files.getLastModifiedTime(second);
+        Files.writeString(second.resolve("file.txt"), "modified"); // Тот же размер
+        Files.setLastModifiedTime(second.resolve("file.txt"), FileTime.fromMillis(stamp.toMillis() + 5_000L));
+        Files.setLastModifiedTime(second, directoryTime);
+
+        TreeDiffer.Result result = differ.diff(temp.resolve("a"), temp.resolve("b"), 2, false);
+        assertEquals(List.of("~ sub/file.txt"), result.differences);
+    }
+
+    /**
+     * Повторное сравнение берёт хеши содержимого и хеши неизменившихся директорий из кэша.
+     */
+    @Test
+    void repeatRunReusesCachedHashes() throws IOException {
+        Path first = Files.createDirectories(temp.resolve("a/sub"));
+        Path second = Files.createDirectories(temp.resolve("b/sub"));
+        Files.writeString(first.resolve("same.txt"), "content");
+        Files.writeString(second.resolve("same.txt"), "content");
+        Files.setLastModifiedTime(second.resolve("same.txt"),
+                FileTime.fromMillis(Files.getLastModifiedTime(first.resolve("same.txt")).toMillis() + 5_000L));
+
+        TreeDiffer differ = new TreeDiffer();
+        TreeDiffer.Result cold = differ.diff(temp.resolve("a"), temp.resolve("b"), 2, false);
+        assertEquals(List.of(), cold.differences);
+        assertEquals(2, cold.hashedFiles.get());
+        assertTrue(Files.isRegularFile(temp.resolve("a").resolve(TreeDiffer.CACHE_NAME)));
+
+        TreeDiffer.Result warm = differ.diff(temp.resolve("a"), temp.resolve("b"), 2, false);
+        assertEquals(List.of(), warm.differences);
+        assertEquals(0, warm.hashedFiles.get());
+        assertEquals(4, warm.cachedDirectories.get());
+
+        TreeDiffer.Result full = differ.diff(temp.resolve("a"), temp.resolve("b"), 2, true);
+        assertEquals(2, full.hashedFiles.get());
+    }
+
+    /**
+     * Кэш FMD2 заканчивается смещением корня и сигнатурой, сохраняет имена, типы, размеры
+     * и хеши содержимого, а повреждённый кэш отбрасывается и записывается заново.
+     */
+    @Test
+    void cacheEncodingRoundTrips() throws IOException {
+        Path first = Files.createDirectories(temp.resolve("a/dir one"));
+        Path second = Files.createDirectories(temp.resolve("b/dir one"));
+        for (Path directory : List.of(first, second)) {
+            Files.writeString(directory.resolve("file two.txt"), "данные");
+            Files.write(directory.resolve("empty.bin"), new byte[0]);
+            Files.createSymbolicLink(directory.resolve("link"), Path.of("empty.bin"));
+        }
+        Files.setLastModifiedTime(second.resolve("empty.bin"), Files.getLastModifiedTime(first.resolve("empty.bin")));
+        Files.setLastModifiedTime(second.resolve("file two.txt"),
+                FileTime.fromMillis(Files.getLastModifiedTime(first.resolve("file two.txt")).toMillis() + 5_000L));
+
+        TreeDiffer differ = new TreeDiffer();
+        assertEquals(2, differ.diff(temp.resolve("a"), temp.resolve("b"), 2, false).hashedFiles.get());
+
+        Path cache = temp.resolve("a").resolve(TreeDiffer.CACHE_NAME);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(cache));
+        int trailer = bytes.capacity() - 12;
+        assertEquals(0x464D4432, bytes.getInt(trailer + Long.BYTES)); // "FMD2"
+        long rootOffset = bytes.getLong(trailer);
+        assertTrue(rootOffset >= 0 && rootOffset < trailer);
+
+        TreeDiffer.Result cached = differ.diff(temp.resolve("a"), temp.resolve("b"), 2, false);
+        assertEquals(List.of(), cached.differences);
+        assertEquals(0, cached.hashedFiles.get());
+        assertEquals(4, cached.cachedDirectories.get());
+
+        // Отличие в файле из кэша находится по сохранённым атрибутам
+        Files.writeString(second.resolve("empty.bin"), "x");
+        assertEquals(List.of("~ dir one/empty.bin"), differ.diff(temp.resolve("a"), temp.resolve("b"), 2, false).differences);
+
+        Files.write(cache, Arrays.copyOf(bytes.array(), trailer));
+        TreeDiffer.Result rebuilt = differ.diff(temp.resolve("a"), temp.resolve("b"), 2, false);
+        assertEquals(List.of("~ dir one/empty.bin"), rebuilt.differences);
+        assertEquals(1, rebuilt.hashedFiles.get());
+        assertEquals(0x464D4432, ByteBuffer.wrap(Files.readAllBytes(cache)).getInt((int) Files.size(cache) - Integer.BYTES));
+    }
+}
@@ -0,0 +1,96 @@
+// TreePrinterTest.java
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Регрессионные тесты вывода дерева директорий.
+ */
+class TreePrinterTest {
+
+    /**
+     * Временная директория теста.
+     */
+    @TempDir
+    Path temp;
+
+    /**
+     * Устанавливает перенаправляющие потоки вывода.
+     */
+    @BeforeAll
+    static void install() {
+        OutputCapture.install();
+    }
+
+    /**
+     * Директория больше порога сортировки в памяти выводится целиком и по возрастанию имени,
+     * поддиректория раскрывается на своём месте, а временные файлы частей удаляются.
+     */
+    @Test
+    void largeDirectoryIsPrintedSorted() throws IOException {
+        Path large = Files.createDirectories(temp.resolve("large"));
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            names.add(String.format("f%05d", i));
+        }
+        Collections.shuffle(names, new Random(1));
+        for (String name : names) {
+            Files.createFile(large.resolve(name));
+        }
+        Files.createDirectories(large.resolve("f05000x"));
+        Files.createFile(large.resolve("f05000x/inner"));
+        int spilledBefore = countRunFiles();
+
+        OutputCapture capture = new OutputCapture(OutputCapture.DEFAULT_LIMIT);
+        capture.run(() -> new TreePrinter().handleTreeCommand("tree large", temp.toString()));
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        capture.writeTo(new PrintStream(printed, true, StandardCharsets.UTF_8), new PrintStream(new ByteArrayOutputStream()));
+        List<String> lines = printed.toString(StandardCharsets.UTF_8).lines().toList();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            expected.add(String.format("f%05d", i));
+            if (i == 5000) {
+                expected.add("f05000x/");
+                expected.add("inner");
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size() - 1)) {
+            actual.add(line.substring(line.lastIndexOf("── ") + 3));
+        }
+        assertEquals(expected, actual);
+        assertTrue(lines.get(lines.size() - 2).startsWith("└── f09999"));
+        assertEquals(spilledBefore, countRunFiles());
+    }
+
+    /**
+     * @return количество временных файлов отсортированных частей
+     * @throws IOException если временную директорию не удалось прочитать
+     */
+    private static int countRunFiles() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(System.getProperty("java.io.tmpdir")), "fm-tree*.runs")) {
+            for (Path ignored : stream) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,46 @@
+// BenchmarkRunner.java
+package filemanager.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.openjdk.jmh.Main;
+
+/**
+ * Точка входа набора бенчмарков.
+ * <p>
+ * Передаёт аргументы JMH, по умолчанию добавляя запись результатов в JSON ({@code jmh-result.json})
+ * и профилировщик {@code gc}, чтобы вместе с пропускной способностью сохранялась скорость выделения
+ * памяти ({@code gc.alloc.rate.norm}). Явно заданные {@code -rf}, {@code -rff} и {@code -prof}
+ * имеют приоритет.
+ * </p>
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Конструктор закрыт: класс содержит только точку входа.
+     */
+    private BenchmarkRunner() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Запускает JMH.
+     *
+     * @param args аргументы JMH (например, регулярное выражение для выбора бенчмарков, {@code -p entries=1000})
+     * @throws Exception если запуск завершился ошибкой
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.addAll(List.of("-rf", "json"));
+        }
+        if (!arguments.contains("-rff")) {
+            arguments.addAll(List.of("-rff", "jmh-result.json"));
+        }
+        if (!arguments.contains("-prof")) {
+            arguments.addAll(List.of("-prof", "gc"));
+        }
+        Main.main(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,142 @@
+// DirectoryListingBenchmark.java
+package filemanager.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Бенчмарк вывода содержимого директории ({@code DirectoryDisplay.displayDirectoryContents}).
+ * <p>
+ * Синтетические директории из 1 тыс., 100 тыс. и 1 млн пустых файлов создаются один раз во временной
+ * директории ({@code java.io.tmpdir/filemanager-bench/listing-N}) и переиспользуются между запусками.
+ * Измеряется вывод всей директории и первой страницы из 50 записей, с кэшем метаданных и без него.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirectoryListingBenchmark {
+
+    /**
+     * Количество записей в директории.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int entries;
+
+    /**
+     * Использовать ли кэш метаданных директорий.
+     */
+    @Param({"true", "false"})
+    public boolean cached;
+
+    /**
+     * Синтетическая директория.
+     */
+    private String directory;
+
+    /**
+     * Экземпляр DirectoryDisplay.
+     */
+    private Object display;
+
+    /**
+     * Экземпляр DirectoryCache или null.
+     */
+    private Object cache;
+
+    /**
+     * Исходный поток стандартного вывода.
+     */
+    private PrintStream originalOut;
+
+    /**
+     * Создаёт (при необходимости) директорию и экземпляр DirectoryDisplay.
+     *
+     * @throws Throwable если директорию не удалось создать
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        directory = populate(entries).toString();
+        cache = cached ? (Object) Targets.NEW_CACHE.invokeExact() : null;
+        display = (Object) Targets.NEW_DISPLAY.invokeExact(cache);
+        originalOut = Targets.silenceStandardOutput();
+    }
+
+    /**
+     * Восстанавливает стандартный вывод и закрывает кэш.
+     *
+     * @throws Throwable если кэш не удалось закрыть
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        System.setOut(originalOut);
+        if (cache != null) {
+            Targets.CLOSE_CACHE.invokeExact(cache);
+        }
+    }
+
+    /**
+     * Вывод всех записей директории.
+     *
+     * @return признак успеха (потребляется JMH)
+     * @throws Throwable если вызов завершился ошибкой
+     */
+    @Benchmark
+    public boolean listAll() throws Throwable {
+        return (boolean) Targets.DISPLAY_DIRECTORY_CONTENTS.invokeExact(display, directory, 1, 0);
+    }
+
+    /**
+     * Вывод первой страницы из 50 записей.
+     *
+     * @return признак успеха (потребляется JMH)
+     * @throws Throwable если вызов завершился ошибкой
+     */
+    @Benchmark
+    public boolean listFirstPage() throws Throwable {
+        return (boolean) Targets.DISPLAY_DIRECTORY_CONTENTS.invokeExact(display, directory, 1, 50);
+    }
+
+    /**
+     * Создаёт директорию с заданным количеством пустых файлов, если она ещё не создана.
+     *
+     * @param count количество файлов
+     * @return путь к директории
+     * @throws IOException если файлы не удалось создать
+     */
+    static Path populate(int count) throws IOException {
+        Path root = Path.of(System.getProperty("java.io.tmpdir"), "filemanager-bench", "listing-" + count);
+        Path marker = root.resolveSibling("listing-" + count + ".complete");
+        if (Files.exists(marker)) {
+            return root;
+        }
+        Files.createDirectories(root);
+        for (int i = 0; i < count; i++) {
+            Path file = root.resolve(String.format("file-%07d.txt", i));
+            if (!Files.exists(file)) {
+                Files.createFile(file);
+            }
+        }
+        Files.createFile(marker);
+        return root;
+    }
+}
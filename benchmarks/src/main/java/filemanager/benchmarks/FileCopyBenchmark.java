@@ -0,0 +1,129 @@
+// FileCopyBenchmark.java
+package filemanager.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Бенчмарк копирования файла ({@code FileCopier.copyFile}) для разных размеров файла.
+ * <p>
+ * Файлы от 64 МБ копируются через {@code LargeFileCopier} (при 256 МБ — параллельно по диапазонам),
+ * меньшие — через {@code Files.copy}. Каждый вызов удаляет созданную копию, поэтому в измерение
+ * входит и удаление одного файла.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileCopyBenchmark {
+
+    /**
+     * Размер копируемого файла в байтах.
+     */
+    @Param({"4096", "1048576", "67108864", "268435456"})
+    public long size;
+
+    /**
+     * Рабочая директория бенчмарка.
+     */
+    private Path workDirectory;
+
+    /**
+     * Исходный файл.
+     */
+    private Path source;
+
+    /**
+     * Директория назначения.
+     */
+    private Path target;
+
+    /**
+     * Экземпляр FileCopier.
+     */
+    private Object fileCopier;
+
+    /**
+     * Экземпляр LargeFileCopier с параметрами по умолчанию и без индикатора прогресса.
+     */
+    private Object largeFileCopier;
+
+    /**
+     * Исходный поток стандартного вывода.
+     */
+    private PrintStream originalOut;
+
+    /**
+     * Создаёт исходный файл со случайным содержимым и директорию назначения.
+     *
+     * @throws Throwable если файлы не удалось создать
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        workDirectory = Files.createTempDirectory("filemanager-copy-bench");
+        source = workDirectory.resolve("source.bin");
+        target = Files.createDirectory(workDirectory.resolve("target"));
+        byte[] block = new byte[1 << 20];
+        new Random(42).nextBytes(block);
+        try (OutputStream out = Files.newOutputStream(source)) {
+            for (long written = 0; written < size; written += block.length) {
+                out.write(block, 0, (int) Math.min(block.length, size - written));
+            }
+        }
+        fileCopier = (Object) Targets.NEW_FILE_COPIER.invokeExact();
+        largeFileCopier = (Object) Targets.NEW_LARGE_FILE_COPIER.invokeExact(64L * 1024 * 1024,
+                Runtime.getRuntime().availableProcessors(), false, false);
+        originalOut = Targets.silenceStandardOutput();
+    }
+
+    /**
+     * Удаляет рабочую директорию.
+     *
+     * @throws IOException если файлы не удалось удалить
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(originalOut);
+        try (Stream<Path> paths = Files.walk(workDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Копирует файл в директорию назначения и удаляет копию.
+     *
+     * @return путь к копии (потребляется JMH)
+     * @throws Throwable если копирование завершилось ошибкой
+     */
+    @Benchmark
+    public Path copyFile() throws Throwable {
+        Path copy = (Path) Targets.COPY_FILE.invokeExact(fileCopier, source, target, largeFileCopier);
+        Files.delete(copy);
+        return copy;
+    }
+}
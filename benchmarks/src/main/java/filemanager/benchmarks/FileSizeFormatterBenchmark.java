@@ -0,0 +1,43 @@
+// FileSizeFormatterBenchmark.java
+package filemanager.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Бенчмарк форматирования размера файла ({@code FileSizeFormatter.formatFileSize}) в каждом диапазоне единиц.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileSizeFormatterBenchmark {
+
+    /**
+     * Форматируемый размер: байты, килобайты, мегабайты, гигабайты.
+     */
+    @Param({"512", "4096", "83886080", "5368709120"})
+    public long size;
+
+    /**
+     * Форматирует размер.
+     *
+     * @return отформатированная строка (потребляется JMH)
+     * @throws Throwable если вызов завершился ошибкой
+     */
+    @Benchmark
+    public String formatFileSize() throws Throwable {
+        return (String) Targets.FORMAT_FILE_SIZE.invokeExact(size);
+    }
+}
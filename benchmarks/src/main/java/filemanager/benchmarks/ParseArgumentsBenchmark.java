@@ -0,0 +1,48 @@
+// ParseArgumentsBenchmark.java
+package filemanager.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Бенчмарк разбора строки команды на аргументы ({@code FileCopier.parseArguments}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseArgumentsBenchmark {
+
+    /**
+     * Разбираемая команда: простая, с кавычками и с экранированием.
+     */
+    @Param({
+        "copy a.txt b",
+        "copy -r --jobs 8 \"my documents/report 2024.pdf\" \"backup dir/archive\"",
+        "grep -r -i --max-count 100 \"say \\\"hello\\\"\" \"src/main java\""
+    })
+    public String command;
+
+    /**
+     * Разбирает команду.
+     *
+     * @return список аргументов (потребляется JMH)
+     * @throws Throwable если вызов завершился ошибкой
+     */
+    @Benchmark
+    public List<?> parseArguments() throws Throwable {
+        return (List<?>) Targets.PARSE_ARGUMENTS.invokeExact(command);
+    }
+}
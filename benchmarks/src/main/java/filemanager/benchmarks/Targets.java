@@ -0,0 +1,142 @@
+// Targets.java
+package filemanager.benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Дескрипторы методов файлового менеджера, измеряемых бенчмарками.
+ * <p>
+ * Классы приложения находятся в пакете по умолчанию, и к ним нельзя обратиться по имени из именованного
+ * пакета, а JMH не поддерживает бенчмарки в пакете по умолчанию. Поэтому методы вызываются через
+ * {@link MethodHandle}, сохранённые в статических константах: JIT встраивает такие вызовы так же,
+ * как прямые, и накладные расходы не попадают в измерения.
+ * </p>
+ */
+final class Targets {
+
+    /**
+     * {@code new DirectoryDisplay(DirectoryCache)}: (Object) → Object.
+     */
+    static final MethodHandle NEW_DISPLAY;
+
+    /**
+     * {@code new DirectoryCache()}: () → Object.
+     */
+    static final MethodHandle NEW_CACHE;
+
+    /**
+     * {@code DirectoryDisplay.displayDirectoryContents(String, int, int)}: (Object, String, int, int) → boolean.
+     */
+    static final MethodHandle DISPLAY_DIRECTORY_CONTENTS;
+
+    /**
+     * {@code DirectoryCache.close()}: (Object) → void.
+     */
+    static final MethodHandle CLOSE_CACHE;
+
+    /**
+     * {@code new FileCopier()}: () → Object.
+     */
+    static final MethodHandle NEW_FILE_COPIER;
+
+    /**
+     * {@code new LargeFileCopier(long, int, boolean, boolean)}: (long, int, boolean, boolean) → Object.
+     */
+    static final MethodHandle NEW_LARGE_FILE_COPIER;
+
+    /**
+     * {@code FileCopier.copyFile(Path, Path, LargeFileCopier)}: (Object, Path, Path, Object) → Path.
+     */
+    static final MethodHandle COPY_FILE;
+
+    /**
+     * {@code FileCopier.parseArguments(String)}: (String) → List.
+     */
+    static final MethodHandle PARSE_ARGUMENTS;
+
+    /**
+     * {@code FileSizeFormatter.formatFileSize(long)}: (long) → String.
+     */
+    static final MethodHandle FORMAT_FILE_SIZE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> display = Class.forName("DirectoryDisplay");
+            Class<?> cache = Class.forName("DirectoryCache");
+            Class<?> fileCopier = Class.forName("FileCopier");
+            Class<?> largeFileCopier = Class.forName("LargeFileCopier");
+            Class<?> formatter = Class.forName("FileSizeFormatter");
+            // Закрытые и пакетные методы доступны, так как приложение и бенчмарки находятся в безымянном модуле
+            MethodHandles.Lookup copierLookup = MethodHandles.privateLookupIn(fileCopier, lookup);
+
+            NEW_DISPLAY = generic(lookup.findConstructor(display, MethodType.methodType(void.class, cache)));
+            NEW_CACHE = generic(lookup.findConstructor(cache, MethodType.methodType(void.class)));
+            DISPLAY_DIRECTORY_CONTENTS = generic(lookup.findVirtual(display, "displayDirectoryContents",
+                    MethodType.methodType(boolean.class, String.class, int.class, int.class)));
+            CLOSE_CACHE = generic(lookup.findVirtual(cache, "close", MethodType.methodType(void.class)));
+            NEW_FILE_COPIER = generic(lookup.findConstructor(fileCopier, MethodType.methodType(void.class)));
+            NEW_LARGE_FILE_COPIER = generic(lookup.findConstructor(largeFileCopier,
+                    MethodType.methodType(void.class, long.class, int.class, boolean.class, boolean.class)));
+            COPY_FILE = generic(copierLookup.findVirtual(fileCopier, "copyFile",
+                    MethodType.methodType(Path.class, Path.class, Path.class, largeFileCopier)));
+            PARSE_ARGUMENTS = copierLookup.findStatic(fileCopier, "parseArguments",
+                    MethodType.methodType(List.class, String.class));
+            FORMAT_FILE_SIZE = lookup.findStatic(formatter, "formatFileSize", MethodType.methodType(String.class, long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Конструктор закрыт: класс содержит только константы.
+     */
+    private Targets() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Заменяет в типе дескриптора классы приложения на {@link Object}, чтобы его можно было вызвать
+     * через {@code invokeExact} без ссылок на эти классы.
+     *
+     * @param handle исходный дескриптор
+     * @return дескриптор с обобщёнными типами
+     */
+    private static MethodHandle generic(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationClass(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isApplicationClass(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    /**
+     * @param type проверяемый тип
+     * @return true для классов приложения (из пакета по умолчанию)
+     */
+    private static boolean isApplicationClass(Class<?> type) {
+        return !type.isPrimitive() && type.getPackageName().isEmpty();
+    }
+
+    /**
+     * Подменяет стандартный вывод пустым потоком, чтобы измерять формирование вывода, а не терминал.
+     *
+     * @return исходный поток стандартного вывода для восстановления
+     */
+    static PrintStream silenceStandardOutput() {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), false));
+        return original;
+    }
+}
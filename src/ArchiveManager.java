@@ -0,0 +1,1402 @@
+// ArchiveManager.java
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Класс для упаковки директорий в архивы и распаковки архивов (команды 'pack' и 'unpack').
+ * <p>
+ * Поддерживаются форматы tar.gz (.tar.gz, .tgz) и zip. При упаковке файлы читаются потоково, а сжатие
+ * выполняет {@link ParallelDeflater}: данные режутся на блоки, которые сжимаются параллельно и
+ * записываются по порядку, поэтому ни один файл не буферизуется целиком. При распаковке tar.gz
+ * распаковывается одним потоком (формат gzip последователен), а запись содержимого файлов выполняется
+ * параллельно; записи zip независимы и распаковываются параллельно целиком.
+ * </p>
+ * <p>
+ * Символические ссылки не разыменовываются: в tar они сохраняются как ссылки, в zip пропускаются.
+ * При распаковке записи, выходящие за пределы целевой директории, отклоняются, а ссылки создаются
+ * после всех файлов, чтобы через них нельзя было записать файл вне директории.
+ * </p>
+ */
+public class ArchiveManager {
+
+    /**
+     * Уровень сжатия по умолчанию.
+     */
+    private static final int DEFAULT_LEVEL = 6;
+
+    /**
+     * Размер блока tar.
+     */
+    private static final int TAR_BLOCK = 512;
+
+    /**
+     * Размер порции при чтении файлов и записи распакованных данных.
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Предельное значение 32-битных полей zip (без расширения ZIP64).
+     */
+    private static final long ZIP_LIMIT = 0xFFFFFFFFL;
+
+    /**
+     * Формат команды упаковки.
+     */
+    private static final String PACK_USAGE = "pack [--jobs N] [--level 0-9] <директория> <архив.tar.gz|.tgz|.zip>";
+
+    /**
+     * Формат команды распаковки.
+     */
+    private static final String UNPACK_USAGE = "unpack [--jobs N] <архив.tar.gz|.tgz|.zip> <директория>";
+
+    /**
+     * Конструктор класса ArchiveManager.
+     * Создаёт новый экземпляр для работы с архивами.
+     */
+    public ArchiveManager() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Формат архива.
+     */
+    enum Format {
+        /** tar, сжатый gzip. */
+        TAR_GZ,
+        /** zip. */
+        ZIP;
+
+        /**
+         * Определяет формат по имени файла архива.
+         *
+         * @param archive путь к архиву
+         * @return формат
+         * @throws IllegalArgumentException если расширение не поддерживается
+         */
+        static Format of(Path archive) {
+            String name = archive.getFileName() == null ? "" : archive.getFileName().toString().toLowerCase();
+            if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                return TAR_GZ;
+            } else if (name.endsWith(".zip")) {
+                return ZIP;
+            }
+            throw new IllegalArgumentException("Неизвестный формат архива: " + archive.getFileName()
+                    + ". Поддерживаются .tar.gz, .tgz и .zip.");
+        }
+    }
+
+    /**
+     * Итоги упаковки или распаковки.
+     */
+    public static final class Result {
+
+        /**
+         * Количество обработанных файлов.
+         */
+        final AtomicLong files = new AtomicLong();
+
+        /**
+         * Количество обработанных директорий.
+         */
+        final AtomicLong directories = new AtomicLong();
+
+        /**
+         * Объём несжатых данных.
+         */
+        final AtomicLong bytes = new AtomicLong();
+
+        /**
+         * Количество записей, которые не удалось обработать.
+         */
+        final AtomicLong failures = new AtomicLong();
+
+        /**
+         * Размер архива.
+         */
+        long archiveSize;
+
+        /**
+         * Время работы в наносекундах.
+         */
+        long elapsedNanos;
+
+        /**
+         * @return количество записей, которые не удалось обработать
+         */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * Возвращает строку с итогами.
+         *
+         * @param action описание действия ("Упаковано", "Распаковано")
+         * @return строка с итогами
+         */
+        public String summary(String action) {
+            double seconds = Math.max(elapsedNanos, 1L) / 1_000_000_000.0;
+            return String.format("%s файлов: %d (%s), директорий: %d; архив %s (%.1f%%) за %.2f с — %.2f МБ/с",
+                    action, files.get(), FileSizeFormatter.formatFileSize(bytes.get()), directories.get(),
+                    FileSizeFormatter.formatFileSize(archiveSize),
+                    bytes.get() == 0 ? 100.0 : archiveSize * 100.0 / bytes.get(), seconds,
+                    bytes.get() / seconds / (1024.0 * 1024.0));
+        }
+    }
+
+    /**
+     * Ошибка чтения файла после того, как его заголовок уже записан в архив: продолжить архив нельзя.
+     */
+    private static final class ArchiveCorruptedException extends IOException {
+
+        /**
+         * Версия формата сериализации.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @param cause исходная ошибка
+         */
+        ArchiveCorruptedException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Запись упаковываемого дерева.
+     *
+     * @param path       путь к файлу
+     * @param name       имя в архиве (относительный путь с '/')
+     * @param attributes атрибуты записи
+     */
+    private record SourceEntry(Path path, String name, BasicFileAttributes attributes) {
+    }
+
+    /**
+     * Обрабатывает команду упаковки.
+     * Формат: {@code pack [--jobs N] [--level 0-9] <директория> <архив>}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'pack'
+     * @param currentDirectory текущая директория, относительно которой разрешаются пути
+     * @return true, если архив создан без ошибок
+     */
+    public boolean handlePackCommand(String command, String currentDirectory) {
+        List<String> positional = new ArrayList<>();
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+        int level = DEFAULT_LEVEL;
+        List<String> arguments = FileCopier.parseArguments(command);
+        try {
+            for (int i = 1; i < arguments.size(); i++) {
+                String argument = arguments.get(i);
+                if ("--jobs".equals(argument) && i + 1 < arguments.size()) {
+                    jobs = parseInt(arguments.get(++i), "--jobs", 1, 1024);
+                } else if ("--level".equals(argument) && i + 1 < arguments.size()) {
+                    level = parseInt(arguments.get(++i), "--level", 0, 9);
+                } else if (argument.startsWith("--")) {
+                    positional.clear();
+                    break;
+                } else {
+                    positional.add(argument);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+        if (positional.size() != 2) {
+            System.out.println("Неверный формат команды. Используйте: " + PACK_USAGE);
+            return false;
+        }
+
+        Path source = Paths.get(currentDirectory).resolve(positional.get(0)).normalize();
+        Path archive = Paths.get(currentDirectory).resolve(positional.get(1)).normalize();
+        try {
+            Format format = Format.of(archive);
+            if (!Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS)) {
+                System.out.println("Ошибка: директория не найдена: " + source);
+                return false;
+            }
+            if (Files.exists(archive, LinkOption.NOFOLLOW_LINKS)) {
+                System.out.println("Ошибка: архив уже существует: " + archive);
+                return false;
+            }
+            Result result = pack(source, archive, format, jobs, level);
+            System.out.println(result.summary("Упаковано"));
+            if (result.getFailures() > 0) {
+                System.err.println("Не удалось упаковать записей: " + result.getFailures());
+                return false;
+            }
+            System.out.println("Архив создан: " + archive.toAbsolutePath());
+            return true;
+        } catch (CancellationException e) {
+            throw e; // Отмена фонового задания обрабатывается планировщиком
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ошибка при упаковке: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Обрабатывает команду распаковки.
+     * Формат: {@code unpack [--jobs N] <архив> <директория>}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'unpack'
+     * @param currentDirectory текущая директория, относительно которой разрешаются пути
+     * @return true, если архив распакован без ошибок
+     */
+    public boolean handleUnpackCommand(String command, String currentDirectory) {
+        List<String> positional = new ArrayList<>();
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+        List<String> arguments = FileCopier.parseArguments(command);
+        try {
+            for (int i = 1; i < arguments.size(); i++) {
+                String argument = arguments.get(i);
+                if ("--jobs".equals(argument) && i + 1 < arguments.size()) {
+                    jobs = parseInt(arguments.get(++i), "--jobs", 1, 1024);
+                } else if (argument.startsWith("--")) {
+                    positional.clear();
+                    break;
+                } else {
+                    positional.add(argument);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+        if (positional.size() != 2) {
+            System.out.println("Неверный формат команды. Используйте: " + UNPACK_USAGE);
+            return false;
+        }
+
+        Path archive = Paths.get(currentDirectory).resolve(positional.get(0)).normalize();
+        Path target = Paths.get(currentDirectory).resolve(positional.get(1)).normalize();
+        try {
+            Format format = Format.of(archive);
+            if (!Files.isRegularFile(archive)) {
+                System.out.println("Ошибка: архив не найден: " + archive);
+                return false;
+            }
+            Files.createDirectories(target);
+            Result result = format == Format.ZIP ? unpackZip(archive, target, jobs) : unpackTarGz(archive, target, jobs);
+            System.out.println(result.summary("Распаковано"));
+            if (result.getFailures() > 0) {
+                System.err.println("Не удалось распаковать записей: " + result.getFailures());
+                return false;
+            }
+            System.out.println("Архив распакован в: " + target.toAbsolutePath());
+            return true;
+        } catch (CancellationException e) {
+            throw e; // Отмена фонового задания обрабатывается планировщиком
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ошибка при распаковке: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Упаковывает директорию в архив. Архив сначала пишется во временный файл рядом с целевым
+     * и переименовывается после успешного завершения.
+     *
+     * @param source  упаковываемая директория
+     * @param archive путь к архиву
+     * @param format  формат архива
+     * @param jobs    количество потоков сжатия
+     * @param level   уровень сжатия
+     * @return итоги упаковки
+     * @throws IOException если архив не удалось записать
+     */
+    public Result pack(Path source, Path archive, Format format, int jobs, int level) throws IOException {
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        Path partial = archive.resolveSibling(archive.getFileName() + ".part");
+        List<SourceEntry> entries = collect(source, result, archive, partial);
+        long totalBytes = 0;
+        for (SourceEntry entry : entries) {
+            if (entry.attributes().isRegularFile()) {
+                totalBytes += entry.attributes().size();
+            }
+        }
+
+        boolean complete = false;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16);
+             ParallelDeflater deflater = new ParallelDeflater(out, jobs, level);
+             ProgressReporter progress = new ProgressReporter("pack", totalBytes, true, true)) {
+            if (format == Format.ZIP) {
+                writeZip(entries, deflater, result, progress);
+            } else {
+                writeTarGz(entries, deflater, result, progress);
+            }
+            deflater.flush();
+            result.archiveSize = deflater.position();
+            complete = true;
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(partial);
+            }
+        }
+        Files.move(partial, archive, StandardCopyOption.ATOMIC_MOVE);
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Обходит упаковываемое дерево, не переходя по символическим ссылкам.
+     *
+     * Недоступные файлы и директории не попадают в архив и учитываются как ошибки.
+     *
+     * @param source  корень дерева
+     * @param result  итоги упаковки (для учёта недоступных путей)
+     * @param exclude пути, которые не нужно упаковывать (сам архив, если он внутри дерева)
+     * @return записи дерева в порядке обхода
+     * @throws IOException если дерево не удалось обойти
+     */
+    private List<SourceEntry> collect(Path source, Result result, Path... exclude) throws IOException {
+        List<SourceEntry> entries = new ArrayList<>();
+        Set<Path> excluded = Set.of(exclude);
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                JobScheduler.checkCancelled();
+                if (!dir.equals(source)) {
+                    entries.add(new SourceEntry(dir, archiveName(source, dir) + "/", attrs));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!excluded.contains(file)) {
+                    entries.add(new SourceEntry(file, archiveName(source, file), attrs));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                result.failures.incrementAndGet();
+                System.err.println("Не удалось прочитать " + file + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                if (e != null) {
+                    // Чтение директории оборвалось: часть её записей в архив не попала
+                    result.failures.incrementAndGet();
+                    System.err.println("Не удалось прочитать " + dir + ": " + e.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Возвращает имя записи в архиве: путь относительно корня с разделителем '/'.
+     *
+     * @param root корень дерева
+     * @param path путь к записи
+     * @return имя записи
+     */
+    private static String archiveName(Path root, Path path) {
+        StringBuilder name = new StringBuilder();
+        for (Path part : root.relativize(path)) {
+            if (!name.isEmpty()) {
+                name.append('/');
+            }
+            name.append(part);
+        }
+        return name.toString();
+    }
+
+    /**
+     * Записывает записи дерева в формате tar.gz: один поток deflate, сжимаемый параллельными блоками,
+     * между заголовком и окончанием gzip.
+     *
+     * @param entries  записи дерева
+     * @param deflater параллельный компрессор
+     * @param result   итоги упаковки
+     * @param progress индикатор прогресса
+     * @throws IOException если архив не удалось записать
+     */
+    private void writeTarGz(List<SourceEntry> entries, ParallelDeflater deflater, Result result, ProgressReporter progress)
+            throws IOException {
+        // Заголовок gzip: метод deflate, без флагов и времени, ОС — Unix
+        deflater.writeRaw(new byte[] {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 3});
+        ParallelDeflater.StreamInfo stream = deflater.beginStream();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        for (SourceEntry entry : entries) {
+            JobScheduler.checkCancelled();
+            BasicFileAttributes attributes = entry.attributes();
+            try {
+                if (attributes.isDirectory()) {
+                    writeTarHeader(deflater, entry.name(), '5', 0, entry, null);
+                    result.directories.incrementAndGet();
+                } else if (attributes.isSymbolicLink()) {
+                    writeTarHeader(deflater, entry.name(), '2', 0, entry, Files.readSymbolicLink(entry.path()).toString());
+                    result.files.incrementAndGet();
+                } else if (attributes.isRegularFile()) {
+                    // Файл открывается до записи заголовка: ошибку открытия можно пропустить без порчи архива
+                    try (InputStream in = Files.newInputStream(entry.path())) {
+                        writeTarFile(deflater, entry, in, buffer, result, progress);
+                    }
+                    result.files.incrementAndGet();
+                } else {
+                    System.err.println("Пропущен специальный файл: " + entry.path());
+                }
+            } catch (ArchiveCorruptedException e) {
+                throw e.getCause(); // Заголовок с размером уже записан: архив нельзя продолжить корректно
+            } catch (IOException e) {
+                result.failures.incrementAndGet();
+                System.err.println("Ошибка при упаковке " + entry.path() + ": " + e.getMessage());
+            }
+        }
+        // Окончание архива tar — два нулевых блока
+        deflater.write(new byte[2 * TAR_BLOCK], 0, 2 * TAR_BLOCK);
+        deflater.endStream();
+        deflater.writeLazy(() -> {
+            ByteBuffer trailer = ByteBuffer.allocate(8).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            trailer.putInt((int) stream.getCrc()).putInt((int) stream.getSize());
+            return trailer.array();
+        });
+    }
+
+    /**
+     * Записывает в поток tar заголовок и содержимое обычного файла.
+     *
+     * @param deflater параллельный компрессор
+     * @param entry    запись дерева
+     * @param in       открытое содержимое файла
+     * @param buffer   буфер чтения
+     * @param result   итоги упаковки
+     * @param progress индикатор прогресса
+     * @throws IOException если заголовок не удалось записать
+     * @throws ArchiveCorruptedException если файл изменился или перестал читаться после записи заголовка
+     */
+    private void writeTarFile(ParallelDeflater deflater, SourceEntry entry, InputStream in, byte[] buffer,
+                              Result result, ProgressReporter progress) throws IOException {
+        long size = entry.attributes().size();
+        writeTarHeader(deflater, entry.name(), '0', size, entry, null);
+        long remaining = size;
+        while (remaining > 0) {
+            JobScheduler.checkCancelled();
+            int read;
+            try {
+                read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            } catch (IOException e) {
+                throw new ArchiveCorruptedException(e);
+            }
+            if (read < 0) {
+                throw new ArchiveCorruptedException(new IOException("Файл уменьшился во время упаковки: " + entry.path()));
+            }
+            deflater.write(buffer, 0, read);
+            remaining -= read;
+            result.bytes.addAndGet(read);
+            Metrics.recordRead(read);
+            progress.add(read);
+        }
+        int padding = (int) ((TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+        deflater.write(new byte[padding], 0, padding);
+    }
+
+    /**
+     * Записывает заголовок записи tar (ustar; длинные имена — записями GNU '././@LongLink').
+     *
+     * @param deflater параллельный компрессор
+     * @param name     имя записи
+     * @param type     тип записи ('0' — файл, '5' — директория, '2' — символическая ссылка)
+     * @param size     размер содержимого
+     * @param entry    запись дерева (для прав и времени изменения)
+     * @param linkName цель символической ссылки или null
+     * @throws IOException если заголовок не удалось записать
+     */
+    private void writeTarHeader(ParallelDeflater deflater, String name, char type, long size, SourceEntry entry,
+                                String linkName) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 100) {
+            writeLongLink(deflater, 'L', nameBytes);
+        }
+        byte[] linkBytes = linkName == null ? new byte[0] : linkName.getBytes(StandardCharsets.UTF_8);
+        if (linkBytes.length > 100) {
+            writeLongLink(deflater, 'K', linkBytes);
+        }
+        byte[] header = new byte[TAR_BLOCK];
+        putBytes(header, 0, 100, nameBytes);
+        putOctal(header, 100, 8, permissions(entry));
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putSize(header, 124, size);
+        putOctal(header, 136, 12, Math.max(0, entry.attributes().lastModifiedTime().toMillis() / 1000));
+        header[156] = (byte) type;
+        putBytes(header, 157, 100, linkBytes);
+        writeHeaderTail(header);
+        deflater.write(header, 0, TAR_BLOCK);
+    }
+
+    /**
+     * Записывает запись GNU с длинным именем или длинной целью ссылки.
+     *
+     * @param deflater параллельный компрессор
+     * @param type     'L' — длинное имя, 'K' — длинная цель ссылки
+     * @param value    значение в UTF-8
+     * @throws IOException если запись не удалось записать
+     */
+    private void writeLongLink(ParallelDeflater deflater, char type, byte[] value) throws IOException {
+        byte[] header = new byte[TAR_BLOCK];
+        putBytes(header, 0, 100, "././@LongLink".getBytes(StandardCharsets.US_ASCII));
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putSize(header, 124, value.length + 1L);
+        putOctal(header, 136, 12, 0);
+        header[156] = (byte) type;
+        writeHeaderTail(header);
+        deflater.write(header, 0, TAR_BLOCK);
+        int blocks = (value.length + 1 + TAR_BLOCK - 1) / TAR_BLOCK;
+        byte[] data = new byte[blocks * TAR_BLOCK];
+        System.arraycopy(value, 0, data, 0, value.length);
+        deflater.write(data, 0, data.length);
+    }
+
+    /**
+     * Заполняет признак формата ustar и контрольную сумму заголовка.
+     *
+     * @param header заголовок tar
+     */
+    private static void writeHeaderTail(byte[] header) {
+        putBytes(header, 257, 6, "ustar".getBytes(StandardCharsets.US_ASCII));
+        header[263] = '0';
+        header[264] = '0';
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        putOctal(header, 148, 7, checksum);
+    }
+
+    /**
+     * Возвращает права доступа записи в виде числа (0644/0755, если права POSIX недоступны).
+     *
+     * @param entry запись дерева
+     * @return права доступа
+     */
+    private static long permissions(SourceEntry entry) {
+        try {
+            Set<PosixFilePermission> permissions = Files.readAttributes(entry.path(), PosixFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS).permissions();
+            long mode = 0;
+            for (PosixFilePermission permission : permissions) {
+                mode |= 1L << (8 - permission.ordinal());
+            }
+            return mode;
+        } catch (IOException | UnsupportedOperationException e) {
+            return entry.attributes().isDirectory() ? 0755 : 0644;
+        }
+    }
+
+    /**
+     * Копирует байты в поле заголовка, обрезая их по длине поля.
+     *
+     * @param header заголовок
+     * @param offset начало поля
+     * @param length длина поля
+     * @param value  байты значения
+     */
+    private static void putBytes(byte[] header, int offset, int length, byte[] value) {
+        System.arraycopy(value, 0, header, offset, Math.min(length, value.length));
+    }
+
+    /**
+     * Записывает число восьмеричными цифрами с завершающим нулевым байтом.
+     *
+     * @param header заголовок
+     * @param offset начало поля
+     * @param length длина поля (включая нулевой байт)
+     * @param value  значение
+     */
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int position = offset + length - 1;
+        header[position] = 0;
+        for (int i = digits.length() - 1; i >= 0 && position > offset; i--) {
+            header[--position] = (byte) digits.charAt(i);
+        }
+        while (position > offset) {
+            header[--position] = '0';
+        }
+    }
+
+    /**
+     * Записывает размер: восьмеричными цифрами или, если он не помещается (8 ГБ и больше), в двоичном
+     * виде с установленным старшим битом (расширение GNU).
+     *
+     * @param header заголовок
+     * @param offset начало поля
+     * @param size   размер
+     */
+    private static void putSize(byte[] header, int offset, long size) {
+        if (size < 077777777777L) {
+            putOctal(header, offset, 12, size);
+            return;
+        }
+        for (int i = 11; i >= 4; i--) {
+            header[offset + i] = (byte) size;
+            size >>>= 8;
+        }
+        header[offset] = (byte) 0x80;
+    }
+
+    /**
+     * Записывает записи дерева в формате zip. Каждый файл — отдельный поток deflate, поэтому мелкие файлы
+     * сжимаются параллельно друг с другом, а крупные — параллельными блоками. Размеры и контрольная сумма
+     * записываются в дескрипторе данных после содержимого и в центральном каталоге.
+     *
+     * @param entries  записи дерева
+     * @param deflater параллельный компрессор
+     * @param result   итоги упаковки
+     * @param progress индикатор прогресса
+     * @throws IOException если архив не удалось записать или он превышает ограничения zip без ZIP64
+     */
+    private void writeZip(List<SourceEntry> entries, ParallelDeflater deflater, Result result, ProgressReporter progress)
+            throws IOException {
+        ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+        int count = 0;
+        byte[] buffer = new byte[CHUNK_SIZE];
+        for (SourceEntry entry : entries) {
+            JobScheduler.checkCancelled();
+            BasicFileAttributes attributes = entry.attributes();
+            if (attributes.isSymbolicLink() || !(attributes.isDirectory() || attributes.isRegularFile())) {
+                System.err.println("Пропущена символическая ссылка или специальный файл: " + entry.path());
+                continue;
+            }
+            if (attributes.size() >= ZIP_LIMIT || ++count >= 0xFFFF) {
+                throw new IOException("Архив zip без ZIP64 ограничен 4 ГБ на файл и 65535 записями; используйте .tar.gz");
+            }
+            byte[] name = entry.name().getBytes(StandardCharsets.UTF_8);
+            int dosTime = dosTime(attributes.lastModifiedTime());
+            boolean directory = attributes.isDirectory();
+
+            // Файл открывается до записи заголовка: ошибку открытия можно пропустить без порчи архива
+            InputStream in;
+            try {
+                in = directory ? null : Files.newInputStream(entry.path());
+            } catch (IOException e) {
+                count--;
+                result.failures.incrementAndGet();
+                System.err.println("Ошибка при упаковке " + entry.path() + ": " + e.getMessage());
+                continue;
+            }
+            long[] localHeaderOffset = new long[1];
+            deflater.writeLazy(() -> {
+                localHeaderOffset[0] = deflater.position();
+                return zipLocalHeader(name, dosTime, directory);
+            });
+            ParallelDeflater.StreamInfo stream = null;
+            if (!directory) {
+                stream = deflater.beginStream();
+                try (in) {
+                    int read;
+                    while ((read = in.read(buffer)) > 0) {
+                        JobScheduler.checkCancelled();
+                        deflater.write(buffer, 0, read);
+                        result.bytes.addAndGet(read);
+                        Metrics.recordRead(read);
+                        progress.add(read);
+                    }
+                } finally {
+                    deflater.endStream();
+                }
+                ParallelDeflater.StreamInfo finished = stream;
+                deflater.writeLazy(() -> zipDataDescriptor(finished));
+                result.files.incrementAndGet();
+            } else {
+                result.directories.incrementAndGet();
+            }
+            ParallelDeflater.StreamInfo finished = stream;
+            // Запись центрального каталога формируется, когда известны смещение и сжатый размер
+            deflater.writeLazy(() -> {
+                centralDirectory.writeBytes(zipCentralHeader(name, dosTime, directory, finished, localHeaderOffset[0]));
+                return new byte[0];
+            });
+        }
+
+        int entryCount = count;
+        deflater.writeLazy(() -> {
+            long offset = deflater.position();
+            if (offset >= ZIP_LIMIT) {
+                throw new IllegalStateException("Архив zip без ZIP64 ограничен 4 ГБ; используйте .tar.gz");
+            }
+            ByteBuffer end = ByteBuffer.allocate(22).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            end.putInt(0x06054b50).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) entryCount).putShort((short) entryCount)
+                    .putInt(centralDirectory.size()).putInt((int) offset).putShort((short) 0);
+            ByteArrayOutputStream tail = new ByteArrayOutputStream(centralDirectory.size() + 22);
+            tail.writeBytes(centralDirectory.toByteArray());
+            tail.writeBytes(end.array());
+            return tail.toByteArray();
+        });
+    }
+
+    /**
+     * Формирует локальный заголовок записи zip (размеры и CRC — в дескрипторе данных).
+     *
+     * @param name      имя записи в UTF-8
+     * @param dosTime   время изменения в формате MS-DOS
+     * @param directory является ли запись директорией
+     * @return заголовок
+     */
+    private static byte[] zipLocalHeader(byte[] name, int dosTime, boolean directory) {
+        ByteBuffer header = ByteBuffer.allocate(30 + name.length).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x04034b50).putShort((short) 20)
+                .putShort((short) (directory ? 0x0800 : 0x0808)) // UTF-8 имена; дескриптор данных для файлов
+                .putShort((short) (directory ? 0 : 8)).putInt(dosTime)
+                .putInt(0).putInt(0).putInt(0)
+                .putShort((short) name.length).putShort((short) 0).put(name);
+        return header.array();
+    }
+
+    /**
+     * Формирует дескриптор данных записи zip.
+     *
+     * @param stream сведения о сжатом содержимом
+     * @return дескриптор
+     */
+    private static byte[] zipDataDescriptor(ParallelDeflater.StreamInfo stream) {
+        if (stream.getCompressedSize() >= ZIP_LIMIT) {
+            throw new IllegalStateException("Архив zip без ZIP64 ограничен 4 ГБ на файл; используйте .tar.gz");
+        }
+        ByteBuffer descriptor = ByteBuffer.allocate(16).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        descriptor.putInt(0x08074b50).putInt((int) stream.getCrc())
+                .putInt((int) stream.getCompressedSize()).putInt((int) stream.getSize());
+        return descriptor.array();
+    }
+
+    /**
+     * Формирует запись центрального каталога zip.
+     *
+     * @param name      имя записи в UTF-8
+     * @param dosTime   время изменения в формате MS-DOS
+     * @param directory является ли запись директорией
+     * @param stream    сведения о сжатом содержимом (null для директорий)
+     * @param offset    смещение локального заголовка
+     * @return запись центрального каталога
+     */
+    private static byte[] zipCentralHeader(byte[] name, int dosTime, boolean directory,
+                                           ParallelDeflater.StreamInfo stream, long offset) {
+        if (offset >= ZIP_LIMIT) {
+            throw new IllegalStateException("Архив zip без ZIP64 ограничен 4 ГБ; используйте .tar.gz");
+        }
+        ByteBuffer header = ByteBuffer.allocate(46 + name.length).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x02014b50).putShort((short) (3 << 8 | 20)).putShort((short) 20)
+                .putShort((short) (directory ? 0x0800 : 0x0808)).putShort((short) (directory ? 0 : 8)).putInt(dosTime)
+                .putInt(stream == null ? 0 : (int) stream.getCrc())
+                .putInt(stream == null ? 0 : (int) stream.getCompressedSize())
+                .putInt(stream == null ? 0 : (int) stream.getSize())
+                .putShort((short) name.length).putShort((short) 0).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0)
+                .putInt((directory ? 040755 : 0100644) << 16 | (directory ? 0x10 : 0))
+                .putInt((int) offset).put(name);
+        return header.array();
+    }
+
+    /**
+     * Переводит время изменения в формат MS-DOS (локальное время, точность 2 с).
+     *
+     * @param time время изменения
+     * @return время в формате MS-DOS
+     */
+    private static int dosTime(FileTime time) {
+        LocalDateTime local = LocalDateTime.ofInstant(time.toInstant(), ZoneId.systemDefault());
+        if (local.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (local.getYear() - 1980) << 25 | local.getMonthValue() << 21 | local.getDayOfMonth() << 16
+                | local.getHour() << 11 | local.getMinute() << 5 | local.getSecond() >> 1;
+    }
+
+    /**
+     * Распаковывает архив zip: записи распаковываются параллельно, каждая своим потоком.
+     *
+     * @param archive путь к архиву
+     * @param target  целевая директория
+     * @param jobs    количество потоков
+     * @return итоги распаковки
+     * @throws IOException если архив не удалось прочитать
+     */
+    public Result unpackZip(Path archive, Path target, int jobs) throws IOException {
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        result.archiveSize = Files.size(archive);
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try (ZipFile zip = new ZipFile(archive.toFile(), StandardCharsets.UTF_8);
+             ProgressReporter progress = new ProgressReporter("unpack",
+                     zip.stream().mapToLong(entry -> Math.max(0, entry.getSize())).sum(), true, true)) {
+            List<Future<?>> tasks = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                Path path = resolveEntry(target, entry.getName(), result);
+                if (path == null) {
+                    continue;
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                    result.directories.incrementAndGet();
+                    continue;
+                }
+                tasks.add(pool.submit(() -> {
+                    JobScheduler.checkCancelled();
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        Files.createDirectories(path.getParent());
+                        long size = Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+                        IoThrottle.acquire(size);
+                        Files.setLastModifiedTime(path, entry.getLastModifiedTime());
+                        Metrics.recordWrite(size);
+                        result.bytes.addAndGet(size);
+                        result.files.incrementAndGet();
+                        progress.add(size);
+                    } catch (IOException e) {
+                        result.failures.incrementAndGet();
+                        System.err.println("Ошибка при распаковке " + entry.getName() + ": " + e.getMessage());
+                    }
+                }));
+            }
+            awaitAll(tasks);
+        } finally {
+            pool.shutdownNow();
+        }
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Распаковывает архив tar.gz. Архив читается и распаковывается одним потоком, а порции содержимого
+     * файлов записываются параллельно; объём данных в очереди на запись ограничен.
+     *
+     * @param archive путь к архиву
+     * @param target  целевая директория
+     * @param jobs    количество потоков записи
+     * @return итоги распаковки
+     * @throws IOException если архив не удалось прочитать или он повреждён
+     */
+    public Result unpackTarGz(Path archive, Path target, int jobs) throws IOException {
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        result.archiveSize = Files.size(archive);
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        Semaphore inFlight = new Semaphore(2 * jobs);
+        Map<Path, CompletableFuture<Void>> files = new HashMap<>();
+        Map<Path, FileTime> directoryTimes = new HashMap<>();
+        Map<Path, String> links = new TreeMap<>();
+        try (InputStream in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(archive), 1 << 16), 1 << 16);
+             ProgressReporter progress = new ProgressReporter("unpack", 0, true, true)) {
+            byte[] header = new byte[TAR_BLOCK];
+            String longName = null;
+            String longLink = null;
+            while (true) {
+                JobScheduler.checkCancelled();
+                if (!readFully(in, header)) {
+                    break;
+                }
+                if (isZeroBlock(header)) {
+                    break; // Окончание архива
+                }
+                if (!verifyChecksum(header)) {
+                    throw new IOException("Повреждённый заголовок tar");
+                }
+                char type = (char) header[156];
+                long size = parseSize(header);
+                String name = longName != null ? longName : headerName(header);
+                String linkName = longLink != null ? longLink : cString(header, 157, 100);
+                if (type == 'L' || type == 'K' || type == 'x') {
+                    byte[] data = readContent(in, size);
+                    if (type == 'L') {
+                        longName = cString(data, 0, data.length);
+                    } else if (type == 'K') {
+                        longLink = cString(data, 0, data.length);
+                    } else {
+                        Map<String, String> pax = parsePax(data);
+                        longName = pax.getOrDefault("path", longName);
+                        longLink = pax.getOrDefault("linkpath", longLink);
+                    }
+                    continue;
+                }
+                longName = null;
+                longLink = null;
+
+                Path path = resolveEntry(target, name, result);
+                FileTime modified = FileTime.fromMillis(parseOctal(header, 136, 12) * 1000);
+                if (path == null) {
+                    skip(in, size);
+                } else if (type == '5') {
+                    Files.createDirectories(path);
+                    directoryTimes.put(path, modified);
+                    result.directories.incrementAndGet();
+                    skip(in, size);
+                } else if (type == '2') {
+                    links.put(path, linkName);
+                    skip(in, size);
+                } else if (type == '0' || type == 0) {
+                    CompletableFuture<Void> earlier = files.get(path);
+                    if (earlier != null) {
+                        // Файл повторяется в архиве: новая запись пишется после окончания записи предыдущей
+                        earlier.join();
+                    }
+                    files.put(path, extractFile(in, path, size, modified, pool, inFlight, result, progress));
+                    skip(in, (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+                    continue;
+                } else {
+                    System.err.println("Пропущена запись неподдерживаемого типа '" + type + "': " + name);
+                    skip(in, size);
+                }
+                skip(in, (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+            }
+            awaitAll(files.values());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Ссылки создаются последними, чтобы через них нельзя было записать файл вне целевой директории,
+        // в порядке имён и только в директориях, которые и после разрешения ссылок лежат внутри целевой
+        Path targetReal = target.toRealPath();
+        for (Map.Entry<Path, String> link : links.entrySet()) {
+            try {
+                Path parent = confinedParent(link.getKey(), targetReal);
+                if (parent == null) {
+                    result.failures.incrementAndGet();
+                    System.err.println("Отклонена ссылка за пределами целевой директории: " + link.getKey());
+                    continue;
+                }
+                Path path = parent.resolve(link.getKey().getFileName());
+                Files.deleteIfExists(path);
+                Files.createSymbolicLink(path, Paths.get(link.getValue()));
+                result.files.incrementAndGet();
+            } catch (IOException | UnsupportedOperationException e) {
+                result.failures.incrementAndGet();
+                System.err.println("Не удалось создать ссылку " + link.getKey() + ": " + e.getMessage());
+            }
+        }
+        for (Map.Entry<Path, FileTime> directory : directoryTimes.entrySet()) {
+            try {
+                Files.setLastModifiedTime(directory.getKey(), directory.getValue());
+            } catch (IOException e) {
+                // Время изменения директории не критично
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Читает содержимое файла из потока tar порциями и отправляет их на параллельную запись.
+     *
+     * @param in       поток tar
+     * @param path     путь к создаваемому файлу
+     * @param size     размер содержимого
+     * @param modified время изменения
+     * @param pool     пул потоков записи
+     * @param inFlight ограничение количества порций в очереди на запись
+     * @param result   итоги распаковки
+     * @param progress индикатор прогресса
+     * @return завершается, когда файл записан и закрыт
+     * @throws IOException если архив оборван или файл не удалось создать
+     */
+    private CompletableFuture<Void> extractFile(InputStream in, Path path, long size, FileTime modified,
+                                                ExecutorService pool, Semaphore inFlight, Result result,
+                                                ProgressReporter progress) throws IOException {
+        Files.createDirectories(path.getParent());
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        try {
+            long position = 0;
+            do {
+                int length = (int) Math.min(CHUNK_SIZE, size - position);
+                byte[] chunk = new byte[length];
+                if (!readFully(in, chunk)) {
+                    throw new EOFException("Архив оборван: " + path.getFileName());
+                }
+                inFlight.acquireUninterruptibly();
+                long chunkPosition = position;
+                chunks.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        IoThrottle.acquire(length);
+                        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                        long at = chunkPosition;
+                        while (buffer.hasRemaining()) {
+                            at += channel.write(buffer, at);
+                        }
+                        Metrics.recordWrite(length);
+                        progress.add(length);
+                    } catch (IOException e) {
+                        throw new java.io.UncheckedIOException(e);
+                    } finally {
+                        inFlight.release();
+                    }
+                }, pool));
+                position += length;
+            } while (position < size);
+        } catch (IOException | RuntimeException e) {
+            CompletableFuture.allOf(chunks.toArray(CompletableFuture<?>[]::new)).exceptionally(error -> null).join();
+            channel.close();
+            throw e;
+        }
+
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture<?>[]::new)).handle((ignored, error) -> {
+            try {
+                channel.close();
+                if (error == null) {
+                    Files.setLastModifiedTime(path, modified);
+                    result.files.incrementAndGet();
+                    result.bytes.addAndGet(size);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            if (error != null) {
+                result.failures.incrementAndGet();
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Ошибка при записи " + path + ": " + cause.getMessage());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Создаёт родительскую директорию ссылки, если её нет, и возвращает её реальный путь. Ссылки,
+     * созданные раньше, могут вести за пределы целевой директории, поэтому существующая часть пути
+     * разрешается до создания недостающих директорий.
+     *
+     * @param link       путь к создаваемой ссылке
+     * @param targetReal реальный путь целевой директории
+     * @return реальный путь родительской директории или null, если она вне целевой директории
+     * @throws IOException если директорию не удалось создать или разрешить
+     */
+    private static Path confinedParent(Path link, Path targetReal) throws IOException {
+        Path existing = link.getParent();
+        while (!Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+            existing = existing.getParent();
+        }
+        Path real = existing.toRealPath();
+        if (!real.startsWith(targetReal)) {
+            return null;
+        }
+        Path parent = Files.createDirectories(real.resolve(existing.relativize(link.getParent()))).toRealPath();
+        return parent.startsWith(targetReal) ? parent : null;
+    }
+
+    /**
+     * Разрешает имя записи архива относительно целевой директории, отклоняя абсолютные пути
+     * и пути, выходящие за её пределы.
+     *
+     * @param target целевая директория
+     * @param name   имя записи
+     * @param result итоги распаковки (для учёта отклонённых записей)
+     * @return путь к записи или null, если запись отклонена
+     */
+    private static Path resolveEntry(Path target, String name, Result result) {
+        String relative = name.replace('\\', '/');
+        while (relative.endsWith("/")) {
+            relative = relative.substring(0, relative.length() - 1);
+        }
+        Path path = relative.isEmpty() ? null : target.resolve(relative).normalize();
+        if (path == null || relative.startsWith("/") || !path.startsWith(target) || path.equals(target)) {
+            if (!relative.isEmpty() && !".".equals(relative)) {
+                result.failures.incrementAndGet();
+                System.err.println("Отклонена запись за пределами целевой директории: " + name);
+            }
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * Дожидается завершения задач, пробрасывая отмену задания.
+     *
+     * @param tasks задачи
+     * @throws IOException если ожидание прервано
+     */
+    private static void awaitAll(Collection<? extends Future<?>> tasks) throws IOException {
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Распаковка прервана", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException cancellation) {
+                    throw cancellation;
+                }
+                throw new IOException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Читает массив целиком.
+     *
+     * @param in     входной поток
+     * @param buffer заполняемый массив
+     * @return false, если поток закончился до первого байта
+     * @throws IOException если поток закончился посередине массива
+     */
+    private static boolean readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = in.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                if (total == 0) {
+                    return false;
+                }
+                throw new EOFException("Архив оборван");
+            }
+            total += read;
+        }
+        return true;
+    }
+
+    /**
+     * Читает содержимое служебной записи tar (длинное имя, заголовок pax) вместе с выравниванием.
+     *
+     * @param in   поток tar
+     * @param size размер содержимого
+     * @return содержимое
+     * @throws IOException если архив оборван или запись слишком велика
+     */
+    private static byte[] readContent(InputStream in, long size) throws IOException {
+        if (size > CHUNK_SIZE) {
+            throw new IOException("Слишком большая служебная запись tar: " + size + " байт");
+        }
+        byte[] data = new byte[(int) size];
+        if (size > 0 && !readFully(in, data)) {
+            throw new EOFException("Архив оборван");
+        }
+        skip(in, (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK);
+        return data;
+    }
+
+    /**
+     * Пропускает заданное количество байт.
+     *
+     * @param in    входной поток
+     * @param count количество байт
+     * @throws IOException если поток закончился раньше
+     */
+    private static void skip(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Архив оборван");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * @param block блок tar
+     * @return true, если блок состоит из нулей
+     */
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет контрольную сумму заголовка tar.
+     *
+     * @param header заголовок
+     * @return true, если сумма совпадает
+     */
+    private static boolean verifyChecksum(byte[] header) {
+        long expected = parseOctal(header, 148, 8);
+        long actual = 0;
+        for (int i = 0; i < TAR_BLOCK; i++) {
+            actual += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+        }
+        return expected == actual;
+    }
+
+    /**
+     * Возвращает имя записи из заголовка ustar (с учётом префикса).
+     *
+     * @param header заголовок
+     * @return имя записи
+     */
+    private static String headerName(byte[] header) {
+        String name = cString(header, 0, 100);
+        boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't';
+        String prefix = ustar ? cString(header, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    /**
+     * Читает строку UTF-8 до первого нулевого байта.
+     *
+     * @param bytes  массив
+     * @param offset начало поля
+     * @param length длина поля
+     * @return строка
+     */
+    private static String cString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Разбирает восьмеричное поле заголовка.
+     *
+     * @param header заголовок
+     * @param offset начало поля
+     * @param length длина поля
+     * @return значение
+     */
+    private static long parseOctal(byte[] header, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b >= '0' && b <= '7') {
+                value = value * 8 + (b - '0');
+            } else if (b == 0 || (b == ' ' && value > 0)) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Разбирает поле размера: восьмеричное или двоичное (расширение GNU).
+     *
+     * @param header заголовок
+     * @return размер
+     */
+    private static long parseSize(byte[] header) {
+        if ((header[124] & 0x80) == 0) {
+            return parseOctal(header, 124, 12);
+        }
+        long size = 0;
+        for (int i = 4; i < 12; i++) {
+            size = size << 8 | (header[124 + i] & 0xff);
+        }
+        return size;
+    }
+
+    /**
+     * Разбирает расширенный заголовок pax (записи вида "длина ключ=значение\n").
+     *
+     * @param data содержимое заголовка
+     * @return значения по ключам
+     */
+    private static Map<String, String> parsePax(byte[] data) {
+        Map<String, String> values = new HashMap<>();
+        int position = 0;
+        while (position < data.length) {
+            int space = position;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                break;
+            }
+            if (length <= 0 || position + length > data.length) {
+                break;
+            }
+            String record = new String(data, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                values.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            position += length;
+        }
+        return values;
+    }
+
+    /**
+     * Разбирает целое значение параметра команды в заданных пределах.
+     *
+     * @param value  строковое значение
+     * @param option имя параметра для сообщения об ошибке
+     * @param min    минимальное значение
+     * @param max    максимальное значение
+     * @return разобранное значение
+     * @throws IllegalArgumentException если значение некорректно
+     */
+    private static int parseInt(String value, String option, int min, int max) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= min && result <= max) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // Обрабатывается ниже
+        }
+        throw new IllegalArgumentException("Значение " + option + " должно быть целым числом от " + min + " до " + max + ": " + value);
+    }
+}
@@ -0,0 +1,450 @@
+// BatchRunner.java
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiPredicate;
+
+/**
+ * Класс для неинтерактивного выполнения сценария команд (ключ {@code --script}).
+ * <p>
+ * Сценарий разбирается целиком до начала выполнения. Для каждой команды определяются пути,
+ * которые она читает и изменяет; команда ждёт только те предшествующие команды, пути которых
+ * совпадают с её путями или вложены в них и хотя бы одна из двух команд пишет. Независимые команды
+ * выполняются параллельно, а их вывод печатается целиком и в порядке сценария. Команды, пути которых
+ * определить нельзя, выполняются как барьер: после всех предыдущих и до всех последующих.
+ * </p>
+ */
+public class BatchRunner {
+
+    /**
+     * Код завершения: все команды выполнены успешно.
+     */
+    public static final int EXIT_OK = 0;
+
+    /**
+     * Код завершения: часть команд завершилась с ошибкой или была пропущена.
+     */
+    public static final int EXIT_FAILED = 1;
+
+    /**
+     * Код завершения: сценарий не удалось прочитать или неверные аргументы запуска.
+     */
+    public static final int EXIT_SCRIPT_ERROR = 2;
+
+    /**
+     * Ключи команд, за которыми следует значение (значение не является путём).
+     */
+    private static final Set<String> VALUE_OPTIONS = Set.of(
+            "--jobs", "--threads", "--threshold", "--depth", "--page", "--limit", "--max-count",
+            "--sort", "--top", "--filter", "--level");
+
+    /**
+     * Исполнитель одной команды: принимает команду и текущую директорию, возвращает признак успеха.
+     */
+    private final BiPredicate<String, String> executor;
+
+    /**
+     * Максимальное количество одновременно выполняемых команд.
+     */
+    private final int jobs;
+
+    /**
+     * Создаёт исполнитель сценариев.
+     *
+     * @param executor исполнитель одной команды
+     * @param jobs     максимальное количество одновременно выполняемых команд
+     */
+    public BatchRunner(BiPredicate<String, String> executor, int jobs) {
+        this.executor = executor;
+        this.jobs = jobs;
+    }
+
+    /**
+     * Читает строки сценария из файла или, если указан "-", из стандартного ввода.
+     *
+     * @param source путь к файлу сценария или "-"
+     * @return строки сценария
+     * @throws IOException если сценарий не удалось прочитать
+     */
+    public static List<String> readScript(String source) throws IOException {
+        try (BufferedReader reader = "-".equals(source)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Выполняет сценарий и выводит итоги.
+     *
+     * @param lines            строки сценария
+     * @param startDirectory   директория, в которой начинается выполнение
+     * @return {@link #EXIT_OK}, если все команды выполнены успешно, иначе {@link #EXIT_FAILED}
+     */
+    public int run(List<String> lines, String startDirectory) {
+        long startNanos = System.nanoTime();
+        List<Operation> operations = plan(lines, Paths.get(startDirectory).toAbsolutePath().normalize());
+
+        OutputCapture.install();
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        long failed = 0;
+        long skipped = 0;
+        try {
+            for (Operation operation : operations) {
+                List<CompletableFuture<Boolean>> predecessors = new ArrayList<>();
+                for (Operation dependency : operation.dependencies) {
+                    predecessors.add(dependency.result);
+                }
+                for (Operation predecessor : operation.ordering) {
+                    predecessors.add(predecessor.result);
+                }
+                operation.result = CompletableFuture.allOf(predecessors.toArray(new CompletableFuture<?>[0]))
+                        .thenApplyAsync(ignored -> execute(operation), pool);
+            }
+
+            // Вывод команд печатается в порядке сценария по мере их завершения
+            for (Operation operation : operations) {
+                boolean success = operation.result.join();
+                operation.output.writeTo(out, err);
+                if (operation.skipped) {
+                    skipped++;
+                    err.println("Строка " + operation.line + ": пропущена из-за ошибки в команде, от которой она зависит: " + operation.command);
+                } else if (!success) {
+                    failed++;
+                    err.println("Строка " + operation.line + ": ошибка выполнения: " + operation.command);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        out.println("Сценарий: команд " + operations.size() + ", успешно " + (operations.size() - failed - skipped)
+                + ", с ошибкой " + failed + ", пропущено " + skipped
+                + " (" + (System.nanoTime() - startNanos) / 1_000_000L + " мс).");
+        return failed + skipped == 0 ? EXIT_OK : EXIT_FAILED;
+    }
+
+    /**
+     * Разбирает сценарий: определяет для каждой команды директорию, пути и зависимости.
+     * Пустые строки и строки, начинающиеся с '#', пропускаются; команда 'exit' завершает сценарий.
+     *
+     * @param lines     строки сценария
+     * @param directory начальная директория
+     * @return команды в порядке сценария
+     */
+    private List<Operation> plan(List<String> lines, Path directory) {
+        List<Operation> operations = new ArrayList<>();
+        Operation lastChange = null;
+        // Индекс последнего барьера: более ранние команды уже упорядочены через него, но зависимости
+        // по путям ищутся и среди них, чтобы ошибка такой команды пропускала зависящие от неё
+        int segmentStart = 0;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String command = lines.get(i).trim();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            if ("exit".equalsIgnoreCase(command)) {
+                break;
+            }
+
+            Operation operation = new Operation(i + 1, command, directory);
+            if (command.startsWith("ch ")) {
+                // Переход разрешается при разборе, чтобы пути следующих команд были известны заранее
+                operation.changeTo = directory.resolve(command.substring(3).trim()).normalize();
+                operation.reads.add(operation.changeTo);
+            } else {
+                describePaths(operation);
+            }
+
+            if (lastChange != null) {
+                operation.dependencies.add(lastChange);
+            }
+            for (int j = 0; j < operations.size(); j++) {
+                Operation previous = operations.get(j);
+                if (conflicts(operation, previous)) {
+                    operation.dependencies.add(previous);
+                } else if (j >= segmentStart && (operation.barrier || previous.barrier)) {
+                    operation.ordering.add(previous);
+                }
+            }
+
+            if (operation.barrier) {
+                segmentStart = operations.size();
+            }
+            if (operation.changeTo != null) {
+                lastChange = operation;
+                directory = operation.changeTo;
+            }
+            operations.add(operation);
+        }
+        return operations;
+    }
+
+    /**
+     * Определяет пути, которые читает и изменяет команда. Неизвестные команды помечаются как барьер.
+     *
+     * @param operation команда сценария
+     */
+    private static void describePaths(Operation operation) {
+        List<String> arguments = FileCopier.parseArguments(operation.command);
+        List<String> positional = new ArrayList<>();
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if (VALUE_OPTIONS.contains(argument)) {
+                i++;
+            } else if (!argument.startsWith("-") || argument.length() == 1) {
+                positional.add(argument);
+            }
+        }
+        Path directory = operation.directory;
+
+        switch (arguments.get(0)) {
+            case "ls", "du", "dups", "tree" -> operation.reads.add(positional.isEmpty() ? directory : resolve(directory, positional.get(0)));
+            case "grep" -> {
+                if (positional.size() == 2) {
+                    operation.reads.add(resolve(directory, positional.get(1)));
+                }
+            }
+            case "copy" -> {
+                if (positional.size() == 2) {
+                    Path source = resolve(directory, positional.get(0));
+                    operation.reads.add(source);
+                    Path target = resolve(directory, positional.get(1));
+                    operation.writes.add(source.getFileName() == null ? target : target.resolve(source.getFileName()));
+                }
+            }
+            case "mv" -> {
+                if (positional.size() == 2) {
+                    // Перемещение изменяет и источник, и назначение
+                    operation.writes.add(resolve(directory, positional.get(0)));
+                    operation.writes.add(resolve(directory, positional.get(1)));
+                }
+            }
+            case "sync", "pack", "unpack" -> {
+                if (positional.size() == 2) {
+                    operation.reads.add(resolve(directory, positional.get(0)));
+                    operation.writes.add(resolve(directory, positional.get(1)));
+                }
+            }
+            case "checksum" -> {
+                if (positional.size() >= 2) {
+                    Path path = resolve(directory, positional.get(1));
+                    if ("write".equals(positional.get(0))) {
+                        operation.reads.add(path);
+                        operation.writes.add(positional.size() > 2 ? resolve(directory, positional.get(2))
+                                : path.resolveSibling(path.getFileName() + ChecksumManifest.EXTENSION));
+                    } else {
+                        // Проверка читает файлы из директории манифеста
+                        operation.reads.add(path.getParent() == null ? path : path.getParent());
+                    }
+                }
+            }
+            case "mkdir" -> {
+                String[] parts = operation.command.split("\\s+", 2);
+                if (parts.length == 2) {
+                    operation.writes.add(resolve(directory, parts[1].trim()));
+                }
+            }
+            case "rm" -> {
+                try {
+                    operation.writes.add(resolve(directory, DirectoryManager.parseRmOptions(operation.command).target()));
+                } catch (IllegalArgumentException e) {
+                    // Команда с неверным форматом завершится ошибкой, не обращаясь к файловой системе
+                }
+            }
+            case "diff" -> {
+                // Сравнение читает оба дерева и обновляет кэш в их корнях
+                for (String path : positional) {
+                    Path root = resolve(directory, path);
+                    operation.reads.add(root);
+                    operation.writes.add(root.resolve(TreeDiffer.CACHE_NAME));
+                }
+            }
+            case "index" -> {
+                if (!positional.isEmpty() && "build".equals(positional.get(0))) {
+                    Path root = positional.size() > 1 ? resolve(directory, positional.get(1)) : directory;
+                    operation.reads.add(root);
+                    operation.writes.add(root.resolve(FileIndex.INDEX_NAME));
+                }
+            }
+            case "find" -> {
+                // Поиск использует индекс ближайшей родительской директории
+                for (Path parent = directory; parent != null; parent = parent.getParent()) {
+                    operation.reads.add(parent.resolve(FileIndex.INDEX_NAME));
+                }
+            }
+            case "help", "cache" -> {
+                // Не обращаются к файловой системе
+            }
+            default -> operation.barrier = true;
+        }
+    }
+
+    /**
+     * Разрешает путь относительно директории команды.
+     *
+     * @param directory директория команды
+     * @param path      путь из аргументов команды
+     * @return абсолютный нормализованный путь
+     */
+    private static Path resolve(Path directory, String path) {
+        return directory.resolve(path).normalize();
+    }
+
+    /**
+     * Проверяет, должны ли две команды выполняться в порядке сценария.
+     *
+     * @param first  первая команда
+     * @param second вторая команда
+     * @return true, если одна из команд изменяет путь, пересекающийся с путями другой
+     */
+    private static boolean conflicts(Operation first, Operation second) {
+        return overlaps(first.writes, second.writes) || overlaps(first.writes, second.reads) || overlaps(first.reads, second.writes);
+    }
+
+    /**
+     * Проверяет, есть ли среди двух наборов путей совпадающие или вложенные друг в друга.
+     *
+     * @param first  первый набор путей
+     * @param second второй набор путей
+     * @return true, если наборы пересекаются
+     */
+    private static boolean overlaps(List<Path> first, List<Path> second) {
+        for (Path a : first) {
+            for (Path b : second) {
+                if (a.startsWith(b) || b.startsWith(a)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Выполняет команду сценария в потоке пула, перехватывая её вывод.
+     *
+     * @param operation команда сценария (все предшествующие ей команды уже завершены)
+     * @return true, если команда выполнена успешно
+     */
+    private boolean execute(Operation operation) {
+        for (Operation dependency : operation.dependencies) {
+            if (!dependency.result.join()) {
+                operation.skipped = true;
+                return false;
+            }
+        }
+
+        return operation.output.run(() -> {
+            try {
+                if (operation.changeTo != null) {
+                    if (!Files.isDirectory(operation.changeTo)) {
+                        System.out.println("Директория не существует или не является папкой: " + operation.changeTo);
+                        return false;
+                    }
+                    return true;
+                }
+                return executor.test(operation.command, operation.directory.toString());
+            } catch (Exception e) {
+                System.err.println("Ошибка выполнения команды: " + e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Команда сценария.
+     */
+    private static final class Operation {
+
+        /**
+         * Номер строки в сценарии.
+         */
+        final int line;
+
+        /**
+         * Текст команды.
+         */
+        final String command;
+
+        /**
+         * Текущая директория на момент команды.
+         */
+        final Path directory;
+
+        /**
+         * Пути, которые команда читает.
+         */
+        final List<Path> reads = new ArrayList<>(2);
+
+        /**
+         * Пути, которые команда изменяет.
+         */
+        final List<Path> writes = new ArrayList<>(1);
+
+        /**
+         * Предшествующие команды, с путями которых пересекаются пути этой команды;
+         * если одна из них завершилась с ошибкой, команда пропускается.
+         */
+        final List<Operation> dependencies = new ArrayList<>();
+
+        /**
+         * Предшествующие команды, которые должны завершиться раньше только из-за барьера.
+         */
+        final List<Operation> ordering = new ArrayList<>();
+
+        /**
+         * Перехваченный вывод команды.
+         */
+        final OutputCapture output = new OutputCapture();
+
+        /**
+         * Новая текущая директория для команды 'ch', иначе null.
+         */
+        Path changeTo;
+
+        /**
+         * Выполняется ли команда после всех предыдущих и до всех последующих.
+         */
+        boolean barrier;
+
+        /**
+         * Пропущена ли команда из-за ошибки в зависимости.
+         */
+        volatile boolean skipped;
+
+        /**
+         * Результат выполнения.
+         */
+        CompletableFuture<Boolean> result;
+
+        /**
+         * @param line      номер строки в сценарии
+         * @param command   текст команды
+         * @param directory текущая директория на момент команды
+         */
+        Operation(int line, String command, Path directory) {
+            this.line = line;
+            this.command = command;
+            this.directory = directory;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+// ChecksumManifest.java
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс для записи и проверки манифестов контрольных сумм SHA-256 (команда 'checksum').
+ * <p>
+ * Манифест хранится рядом с деревом (файл {@code <путь>.sha256}) в формате утилиты {@code sha256sum}:
+ * строка «хеш, два пробела, путь», пути записаны относительно директории манифеста. Поэтому манифест
+ * можно проверить и командой {@code sha256sum -c} из этой директории. Файлы хешируются параллельно
+ * (крупные — первыми), а строки манифеста упорядочены по пути, так что манифест одного и того же
+ * дерева не зависит от количества потоков.
+ * </p>
+ */
+public class ChecksumManifest {
+
+    /**
+     * Расширение файла манифеста.
+     */
+    static final String EXTENSION = ".sha256";
+
+    /**
+     * Формат команды.
+     */
+    private static final String USAGE = "checksum write [--jobs N] <путь> [манифест] | checksum check [--jobs N] <манифест|путь>";
+
+    /**
+     * Конструктор класса ChecksumManifest.
+     * Создаёт новый экземпляр для работы с манифестами контрольных сумм.
+     */
+    public ChecksumManifest() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Итоги записи или проверки манифеста.
+     */
+    public static final class Result {
+
+        /**
+         * Количество обработанных файлов.
+         */
+        final AtomicLong files = new AtomicLong();
+
+        /**
+         * Объём прочитанных данных.
+         */
+        final AtomicLong bytes = new AtomicLong();
+
+        /**
+         * Количество файлов, хеш которых не совпал с манифестом.
+         */
+        final AtomicLong mismatched = new AtomicLong();
+
+        /**
+         * Количество файлов из манифеста, которых нет на диске, или файлов, которые не удалось прочитать.
+         */
+        final AtomicLong failures = new AtomicLong();
+
+        /**
+         * Время работы в наносекундах.
+         */
+        long elapsedNanos;
+
+        /**
+         * @return true, если все файлы прочитаны и совпали с манифестом
+         */
+        public boolean isClean() {
+            return mismatched.get() == 0 && failures.get() == 0;
+        }
+
+        /**
+         * Возвращает строку с итогами.
+         *
+         * @param action описание действия ("Записано", "Проверено")
+         * @return строка с итогами
+         */
+        public String summary(String action) {
+            double seconds = Math.max(elapsedNanos, 1L) / 1_000_000_000.0;
+            return String.format("%s файлов: %d (%s), не совпало: %d, ошибок: %d за %.2f с — %.2f МБ/с",
+                    action, files.get(), FileSizeFormatter.formatFileSize(bytes.get()), mismatched.get(),
+                    failures.get(), seconds, bytes.get() / seconds / (1024.0 * 1024.0));
+        }
+    }
+
+    /**
+     * Строка манифеста: хешируемый файл и его имя в манифесте.
+     *
+     * @param path     путь к файлу
+     * @param name     путь относительно директории манифеста (с '/')
+     * @param size     размер файла (-1, если неизвестен)
+     * @param expected ожидаемый хеш или null при записи манифеста
+     */
+    private record Entry(Path path, String name, long size, String expected) {
+    }
+
+    /**
+     * Обрабатывает команду 'checksum'.
+     * Форматы: {@code checksum write [--jobs N] <путь> [манифест]},
+     * {@code checksum check [--jobs N] <манифест|путь>}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'checksum'
+     * @param currentDirectory текущая директория, относительно которой разрешаются пути
+     * @return true, если манифест записан или все файлы совпали с ним
+     */
+    public boolean handleChecksumCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        List<String> positional = new ArrayList<>();
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ("--jobs".equals(argument) && i + 1 < arguments.size()) {
+                try {
+                    jobs = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs <= 0) {
+                    System.out.println("Значение --jobs должно быть положительным целым числом.");
+                    return false;
+                }
+            } else {
+                positional.add(argument);
+            }
+        }
+
+        boolean write = !positional.isEmpty() && "write".equals(positional.get(0));
+        boolean check = !positional.isEmpty() && "check".equals(positional.get(0));
+        if (!(write && (positional.size() == 2 || positional.size() == 3)) && !(check && positional.size() == 2)) {
+            System.out.println("Неверный формат команды. Используйте: " + USAGE);
+            return false;
+        }
+
+        Path directory = Paths.get(currentDirectory);
+        Path path = directory.resolve(positional.get(1)).toAbsolutePath().normalize();
+        try {
+            if (write) {
+                Path manifest = positional.size() == 3
+                        ? directory.resolve(positional.get(2)).toAbsolutePath().normalize()
+                        : defaultManifest(path);
+                Result result = write(path, manifest, jobs);
+                System.out.println(result.summary("Записано"));
+                if (!result.isClean()) {
+                    System.err.println("Не удалось прочитать файлов: " + result.failures.get() + "; манифест не записан.");
+                    return false;
+                }
+                System.out.println("Манифест записан: " + manifest);
+                return true;
+            }
+
+            Path manifest = path.getFileName() != null && path.getFileName().toString().endsWith(EXTENSION)
+                    ? path : defaultManifest(path);
+            Result result = check(manifest, jobs);
+            System.out.println(result.summary("Проверено"));
+            if (result.isClean()) {
+                System.out.println("Все файлы совпадают с манифестом " + manifest.getFileName() + ".");
+            }
+            return result.isClean();
+        } catch (CancellationException e) {
+            throw e; // Отмена фонового задания обрабатывается планировщиком
+        } catch (NoSuchFileException e) {
+            System.err.println("Файл не найден: " + e.getMessage());
+            return false;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Ошибка при работе с манифестом: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Возвращает путь к манифесту по умолчанию: {@code <путь>.sha256} рядом с деревом.
+     *
+     * @param path файл или директория
+     * @return путь к манифесту
+     * @throws IllegalArgumentException если у пути нет родительской директории (корень диска)
+     */
+    private static Path defaultManifest(Path path) {
+        if (path.getParent() == null || path.getFileName() == null) {
+            throw new IllegalArgumentException("Для корня диска укажите путь к манифесту явно.");
+        }
+        return path.resolveSibling(path.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Хеширует файл или все файлы дерева и записывает манифест. Манифест сначала пишется
+     * во временный файл и заменяет прежний только после успешного хеширования всех файлов.
+     *
+     * @param root     файл или корень дерева
+     * @param manifest путь к манифесту
+     * @param jobs     количество потоков хеширования
+     * @return итоги записи
+     * @throws IOException если дерево не удалось обойти или манифест не удалось записать
+     */
+    public Result write(Path root, Path manifest, int jobs) throws IOException {
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        Path base = manifest.getParent();
+        List<Entry> entries = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                JobScheduler.checkCancelled();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !file.equals(manifest)) {
+                    entries.add(new Entry(file, manifestName(base, file), attrs.size(), null));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Не удалось прочитать: " + file + ": " + e.getMessage());
+                result.failures.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        String[] hashes = hashAll(entries, jobs, result);
+        if (result.failures.get() == 0) {
+            // Строки упорядочены по пути: манифест не зависит от порядка завершения потоков
+            Integer[] order = new Integer[entries.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(i -> entries.get(i).name()));
+            Path partial = manifest.resolveSibling(manifest.getFileName() + ".part");
+            try (BufferedWriter writer = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+                for (int i : order) {
+                    writer.write(hashes[i]);
+                    writer.write("  ");
+                    writer.write(entries.get(i).name());
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(partial);
+                throw e;
+            }
+            Files.move(partial, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Проверяет файлы по манифесту: пути разрешаются относительно директории манифеста.
+     *
+     * @param manifest путь к манифесту
+     * @param jobs     количество потоков хеширования
+     * @return итоги проверки
+     * @throws IOException если манифест не удалось прочитать или он повреждён
+     */
+    public Result check(Path manifest, int jobs) throws IOException {
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        Path base = manifest.getParent();
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                // Формат sha256sum: "хеш  путь" (текстовый режим) или "хеш *путь" (двоичный)
+                if (line.length() < 67 || line.charAt(64) != ' ' || (line.charAt(65) != ' ' && line.charAt(65) != '*')) {
+                    throw new IOException("Неверная строка " + number + " манифеста " + manifest.getFileName());
+                }
+                String name = line.substring(66);
+                entries.add(new Entry(base.resolve(name).normalize(), name, -1, line.substring(0, 64).toLowerCase()));
+            }
+        }
+
+        String[] hashes = hashAll(entries, jobs, result);
+        for (int i = 0; i < entries.size(); i++) {
+            if (hashes[i] != null && !hashes[i].equals(entries.get(i).expected())) {
+                result.mismatched.incrementAndGet();
+                System.out.println("Не совпадает: " + entries.get(i).name());
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Возвращает имя файла в манифесте: путь относительно директории манифеста с разделителем '/'.
+     *
+     * @param base директория манифеста
+     * @param file файл
+     * @return имя в манифесте
+     */
+    private static String manifestName(Path base, Path file) {
+        StringBuilder name = new StringBuilder();
+        for (Path part : base.relativize(file)) {
+            if (!name.isEmpty()) {
+                name.append('/');
+            }
+            name.append(part);
+        }
+        return name.toString();
+    }
+
+    /**
+     * Хеширует файлы параллельно, начиная с самых крупных.
+     *
+     * @param entries файлы
+     * @param jobs    количество потоков
+     * @param result  итоги (учитываются прочитанные байты и ошибки)
+     * @return хеши в порядке {@code entries}; null для файлов, которые не удалось прочитать
+     * @throws IOException если ожидание прервано
+     */
+    private String[] hashAll(List<Entry> entries, int jobs, Result result) throws IOException {
+        String[] hashes = new String[entries.size()];
+        long[] sizes = new long[entries.size()];
+        long totalBytes = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            Entry entry = entries.get(i);
+            sizes[i] = entry.size() >= 0 ? entry.size() : sizeOrZero(entry.path());
+            totalBytes += sizes[i];
+        }
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> sizes[i]).reversed());
+
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try (ProgressReporter progress = new ProgressReporter("checksum", totalBytes, true, true)) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int index : order) {
+                tasks.add(pool.submit(() -> {
+                    JobScheduler.checkCancelled();
+                    Entry entry = entries.get(index);
+                    try {
+                        long size = Files.size(entry.path());
+                        IoThrottle.acquire(size);
+                        hashes[index] = DuplicateFinder.fullHash(entry.path(), size);
+                        Metrics.recordRead(size);
+                        result.files.incrementAndGet();
+                        result.bytes.addAndGet(size);
+                        progress.add(size);
+                    } catch (NoSuchFileException e) {
+                        result.failures.incrementAndGet();
+                        System.err.println("Файл отсутствует: " + entry.name());
+                    } catch (IOException e) {
+                        result.failures.incrementAndGet();
+                        System.err.println("Не удалось прочитать " + entry.name() + ": " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Хеширование прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new IOException("Ошибка в потоке хеширования: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return hashes;
+    }
+
+    /**
+     * Возвращает размер файла или 0, если его не удалось определить (ошибка будет учтена при хешировании).
+     *
+     * @param file файл
+     * @return размер файла
+     */
+    private static long sizeOrZero(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
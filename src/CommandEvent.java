@@ -0,0 +1,38 @@
+// CommandEvent.java
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR о выполнении команды файлового менеджера.
+ * <p>
+ * Записывается, только если запущена запись JFR с включённым событием {@code filemanager.Command}.
+ * </p>
+ */
+@Name("filemanager.Command")
+@Label("Команда")
+@Category("FileManager")
+@Description("Выполнение команды в диалоге, сценарии или фоновом задании")
+public class CommandEvent extends jdk.jfr.Event {
+
+    /**
+     * Текст команды.
+     */
+    @Label("Команда")
+    String command;
+
+    /**
+     * Успешно ли выполнена команда.
+     */
+    @Label("Успешно")
+    boolean success;
+
+    /**
+     * Конструктор класса CommandEvent.
+     * Создаёт событие без заполненных полей.
+     */
+    public CommandEvent() {
+        // Конструктор по умолчанию
+    }
+}
@@ -0,0 +1,544 @@
+// ContentSearcher.java
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Класс для поиска строки в содержимом файлов (команда 'grep').
+ * <p>
+ * Файлы распределяются по пулу потоков. Литеральные образцы ищутся алгоритмом Бойера — Мура — Хорспула
+ * прямо в отображённом в память файле; регулярные выражения используются, только если образец
+ * содержит их специальные символы. Двоичные файлы (с нулевым байтом в начале) пропускаются.
+ * Результаты выводятся в порядке обхода файлов независимо от того, какой поток закончил раньше,
+ * а после {@code --max-count} совпадений поиск прекращается.
+ * </p>
+ */
+public class ContentSearcher {
+
+    /**
+     * Размер начала файла, проверяемого на наличие нулевого байта.
+     */
+    private static final int BINARY_PROBE_SIZE = 8 * 1024;
+
+    /**
+     * Размер окна отображения файла в память.
+     */
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+
+    /**
+     * Максимальная длина выводимой строки с совпадением.
+     */
+    private static final int MAX_LINE_LENGTH = 500;
+
+    /**
+     * Специальные символы регулярных выражений.
+     */
+    private static final String REGEX_METACHARACTERS = ".^$|?*+()[]{}\\";
+
+    /**
+     * Отметка конца очереди файлов.
+     */
+    private static final Path END_OF_FILES = Paths.get("");
+
+    /**
+     * Конструктор класса ContentSearcher.
+     * Создаёт новый экземпляр для поиска в содержимом файлов.
+     */
+    public ContentSearcher() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Параметры одного поиска.
+     *
+     * @param literal    байты литерального образца (null — используется регулярное выражение)
+     * @param regex      регулярное выражение (null — используется литерал)
+     * @param ignoreCase без учёта регистра (для литерала — только латиница)
+     * @param maxCount   максимальное количество совпадений
+     * @param base       директория, относительно которой выводятся пути
+     */
+    private record Query(byte[] literal, Pattern regex, boolean ignoreCase, int maxCount, Path base) {
+    }
+
+    /**
+     * Обрабатывает команду поиска в содержимом.
+     * Формат: {@code grep [-r] [-i] [--max-count N] [--jobs N] <образец> <путь>}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'grep'
+     * @param currentDirectory текущая директория, относительно которой разрешается путь
+     * @return true, если команда выполнена успешно
+     */
+    public boolean handleGrepCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        List<String> positional = new ArrayList<>();
+        boolean recursive = false;
+        boolean ignoreCase = false;
+        int maxCount = Integer.MAX_VALUE;
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ("-r".equals(argument)) {
+                recursive = true;
+            } else if ("-i".equals(argument)) {
+                ignoreCase = true;
+            } else if (("--max-count".equals(argument) || "--jobs".equals(argument)) && i + 1 < arguments.size()) {
+                int value;
+                try {
+                    value = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    value = 0;
+                }
+                if (value <= 0) {
+                    System.out.println("Значение " + argument + " должно быть положительным целым числом.");
+                    return false;
+                }
+                if ("--jobs".equals(argument)) {
+                    jobs = value;
+                } else {
+                    maxCount = value;
+                }
+            } else {
+                positional.add(argument);
+            }
+        }
+
+        if (positional.size() != 2 || positional.get(0).isEmpty()) {
+            System.out.println("Неверный формат команды. Используйте: grep [-r] [-i] [--max-count N] [--jobs N] <образец> <путь>");
+            return false;
+        }
+
+        Path base = Paths.get(currentDirectory).toAbsolutePath().normalize();
+        Path target = base.resolve(positional.get(1)).normalize();
+        if (!Files.exists(target)) {
+            System.out.println("Файл или директория не существует: " + target);
+            return false;
+        }
+
+        Query query;
+        try {
+            query = compile(positional.get(0), ignoreCase, maxCount, base);
+        } catch (PatternSyntaxException e) {
+            System.out.println("Некорректное регулярное выражение: " + e.getDescription());
+            return false;
+        }
+
+        try {
+            long startNanos = System.nanoTime();
+            long found = search(target, recursive, query, jobs);
+            System.out.println("Совпадений: " + found + " (" + (System.nanoTime() - startNanos) / 1_000_000L + " мс).");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ошибка при поиске: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Подготавливает образец: литерал, если в нём нет специальных символов, иначе регулярное выражение.
+     *
+     * @param pattern    образец
+     * @param ignoreCase без учёта регистра
+     * @param maxCount   максимальное количество совпадений
+     * @param base       директория, относительно которой выводятся пути
+     * @return параметры поиска
+     */
+    private Query compile(String pattern, boolean ignoreCase, int maxCount, Path base) {
+        boolean literal = true;
+        for (int i = 0; i < pattern.length() && literal; i++) {
+            literal = REGEX_METACHARACTERS.indexOf(pattern.charAt(i)) < 0;
+        }
+        // Регистронезависимый литерал поддерживается только для ASCII
+        if (literal && ignoreCase && !pattern.chars().allMatch(c -> c < 0x80)) {
+            literal = false;
+            pattern = Pattern.quote(pattern);
+        }
+        if (literal) {
+            byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+            if (ignoreCase) {
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = fold(bytes[i]);
+                }
+            }
+            return new Query(bytes, null, ignoreCase, maxCount, base);
+        }
+        int flags = ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+        return new Query(null, Pattern.compile(pattern, flags), ignoreCase, maxCount, base);
+    }
+
+    /**
+     * Ищет образец в файле или дереве и выводит совпадения в порядке обхода.
+     *
+     * @param target    файл или директория
+     * @param recursive обходить ли поддиректории
+     * @param query     параметры поиска
+     * @param jobs      количество потоков
+     * @return количество выведенных совпадений
+     * @throws IOException если поиск был прерван
+     */
+    private long search(Path target, boolean recursive, Query query, int jobs) throws IOException {
+        BlockingQueue<Path> files = new ArrayBlockingQueue<>(4096);
+        Thread walker = new Thread(() -> enumerate(target, recursive, files), "grep-walker");
+        walker.setDaemon(true);
+        walker.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, jobs));
+        Deque<Future<List<String>>> window = new ArrayDeque<>();
+        int windowSize = Math.max(1, jobs) * 4;
+        long printed = 0;
+        boolean exhausted = false;
+        try {
+            while (printed < query.maxCount()) {
+                while (!exhausted && window.size() < windowSize) {
+                    Path file = files.take();
+                    if (file == END_OF_FILES) {
+                        exhausted = true;
+                    } else {
+                        window.addLast(pool.submit(() -> searchFile(file, query)));
+                    }
+                }
+                if (window.isEmpty()) {
+                    break;
+                }
+                // Ждём самый ранний по порядку файл, даже если более поздние уже готовы
+                for (String line : window.pollFirst().get()) {
+                    if (printed >= query.maxCount()) {
+                        break;
+                    }
+                    System.out.println(line);
+                    printed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Поиск прерван", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            // Остановка после --max-count: оставшиеся задачи и обход больше не нужны
+            for (Future<List<String>> pending : window) {
+                pending.cancel(true);
+            }
+            pool.shutdownNow();
+            walker.interrupt();
+        }
+        return printed;
+    }
+
+    /**
+     * Перечисляет файлы для поиска и помещает их в очередь, завершая её отметкой {@link #END_OF_FILES}.
+     *
+     * @param target    файл или директория
+     * @param recursive обходить ли поддиректории
+     * @param files     очередь файлов
+     */
+    private void enumerate(Path target, boolean recursive, BlockingQueue<Path> files) {
+        try {
+            if (Files.isRegularFile(target)) {
+                files.put(target);
+            } else {
+                Files.walkFileTree(target, EnumSet.noneOf(FileVisitOption.class),
+                        recursive ? Integer.MAX_VALUE : 1, new SimpleFileVisitor<>() {
+                            @Override
+                            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                                if (!attrs.isRegularFile()) {
+                                    return FileVisitResult.CONTINUE;
+                                }
+                                try {
+                                    files.put(file);
+                                    return FileVisitResult.CONTINUE;
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                    return FileVisitResult.TERMINATE;
+                                }
+                            }
+
+                            @Override
+                            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                                return FileVisitResult.CONTINUE;
+                            }
+                        });
+            }
+            files.put(END_OF_FILES);
+        } catch (InterruptedException e) {
+            // Поиск завершён досрочно
+        } catch (IOException e) {
+            System.err.println("Ошибка при обходе " + target + ": " + e.getMessage());
+            files.offer(END_OF_FILES);
+        }
+    }
+
+    /**
+     * Ищет образец в одном файле.
+     *
+     * @param file  файл
+     * @param query параметры поиска
+     * @return строки вывода "путь:номер_строки:строка" (не больше {@code maxCount})
+     */
+    private List<String> searchFile(Path file, Query query) {
+        List<String> lines = new ArrayList<>();
+        String name = file.startsWith(query.base()) ? query.base().relativize(file).toString() : file.toString();
+        try {
+            if (query.literal() != null) {
+                searchLiteral(file, name, query, lines);
+            } else {
+                searchRegex(file, name, query, lines);
+            }
+        } catch (IOException e) {
+            // Прерывание означает досрочную остановку поиска, а не ошибку чтения
+            if (!Thread.currentThread().isInterrupted()) {
+                System.err.println("Ошибка при чтении файла " + name + ": " + e.getMessage());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Ищет литерал в файле, отображённом в память окнами по {@value #MAP_WINDOW} байт.
+     * Окно заканчивается на границе строки, поэтому строка с совпадением всегда видна целиком
+     * и выводится один раз; только строка длиннее окна может попасть в несколько окон.
+     *
+     * @param file  файл
+     * @param name  имя файла для вывода
+     * @param query параметры поиска
+     * @param lines накапливаемые строки вывода
+     * @throws IOException если файл не удалось прочитать
+     */
+    private void searchLiteral(Path file, String name, Query query, List<String> lines) throws IOException {
+        byte[] pattern = query.literal();
+        int[] shift = shiftTable(pattern);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long lineNumber = 1;
+            long reportedLine = 0;
+            long windowStart = 0;
+            while (windowStart < size && lines.size() < query.maxCount()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                long windowEnd = Math.min(size, windowStart + MAP_WINDOW);
+                // Окна перекрываются на длину образца, чтобы не пропустить совпадение в строке длиннее окна
+                long mappedEnd = Math.min(size, windowEnd + pattern.length - 1);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, mappedEnd - windowStart);
+                if (windowStart == 0 && isBinary(buffer)) {
+                    return;
+                }
+
+                int searchLimit = (int) (windowEnd - windowStart);
+                if (windowEnd < size) {
+                    // Незаконченная строка в конце окна целиком переносится в следующее окно
+                    int lastNewline = searchLimit - 1;
+                    while (lastNewline >= 0 && buffer.get(lastNewline) != '\n') {
+                        lastNewline--;
+                    }
+                    if (lastNewline >= 0) {
+                        searchLimit = lastNewline + 1;
+                    }
+                }
+                Metrics.recordRead(searchLimit);
+
+                int counted = 0;
+                int position = 0;
+                while (position < searchLimit && lines.size() < query.maxCount()) {
+                    int match = indexOf(buffer, position, buffer.limit(), pattern, shift, query.ignoreCase());
+                    if (match < 0 || match >= searchLimit) {
+                        break;
+                    }
+                    int lineStart = match;
+                    while (lineStart > 0 && buffer.get(lineStart - 1) != '\n') {
+                        lineStart--;
+                    }
+                    int lineEnd = match;
+                    while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n') {
+                        lineEnd++;
+                    }
+                    lineNumber += countNewlines(buffer, counted, lineStart);
+                    counted = lineStart;
+                    if (lineNumber != reportedLine) {
+                        lines.add(name + ":" + lineNumber + ":" + lineText(buffer, lineStart, lineEnd));
+                        reportedLine = lineNumber;
+                    }
+                    position = lineEnd + 1;
+                }
+                lineNumber += countNewlines(buffer, counted, searchLimit);
+                windowStart += searchLimit;
+            }
+        }
+    }
+
+    /**
+     * Ищет регулярное выражение построчно (декодируя файл как UTF-8).
+     *
+     * @param file  файл
+     * @param name  имя файла для вывода
+     * @param query параметры поиска
+     * @param lines накапливаемые строки вывода
+     * @throws IOException если файл не удалось прочитать
+     */
+    private void searchRegex(Path file, String name, Query query, List<String> lines) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long probeSize = Math.min(channel.size(), BINARY_PROBE_SIZE);
+            if (probeSize > 0 && isBinary(channel.map(FileChannel.MapMode.READ_ONLY, 0, probeSize))) {
+                return;
+            }
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file),
+                StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)), 1 << 16)) {
+            Matcher matcher = query.regex().matcher("");
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null && lines.size() < query.maxCount()) {
+                lineNumber++;
+                Metrics.recordRead(line.length() + 1L);
+                if (matcher.reset(line).find()) {
+                    lines.add(name + ":" + lineNumber + ":" + truncate(line));
+                }
+                if ((lineNumber & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверяет, есть ли нулевой байт в начале файла.
+     *
+     * @param buffer содержимое (начало) файла
+     * @return true, если файл похож на двоичный
+     */
+    private static boolean isBinary(MappedByteBuffer buffer) {
+        int limit = Math.min(buffer.limit(), BINARY_PROBE_SIZE);
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Строит таблицу сдвигов Бойера — Мура — Хорспула.
+     *
+     * @param pattern образец (уже приведённый к нижнему регистру, если поиск регистронезависимый)
+     * @return сдвиг для каждого значения байта
+     */
+    private static int[] shiftTable(byte[] pattern) {
+        int[] shift = new int[256];
+        Arrays.fill(shift, pattern.length);
+        for (int i = 0; i < pattern.length - 1; i++) {
+            shift[pattern[i] & 0xFF] = pattern.length - 1 - i;
+        }
+        return shift;
+    }
+
+    /**
+     * Ищет образец в буфере алгоритмом Бойера — Мура — Хорспула.
+     *
+     * @param buffer     буфер
+     * @param from       начальная позиция
+     * @param limit      конец области поиска
+     * @param pattern    образец
+     * @param shift      таблица сдвигов
+     * @param ignoreCase без учёта регистра латиницы
+     * @return позиция совпадения или -1
+     */
+    private static int indexOf(MappedByteBuffer buffer, int from, int limit, byte[] pattern, int[] shift, boolean ignoreCase) {
+        int last = pattern.length - 1;
+        int position = from;
+        while (position + last < limit) {
+            int j = last;
+            while (j >= 0 && (ignoreCase ? fold(buffer.get(position + j)) : buffer.get(position + j)) == pattern[j]) {
+                j--;
+            }
+            if (j < 0) {
+                return position;
+            }
+            byte next = buffer.get(position + last);
+            position += shift[(ignoreCase ? fold(next) : next) & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Приводит байт латинской буквы к нижнему регистру.
+     *
+     * @param b байт
+     * @return байт в нижнем регистре
+     */
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * Считает переводы строк в диапазоне буфера.
+     *
+     * @param buffer буфер
+     * @param from   начало диапазона
+     * @param to     конец диапазона (не включается)
+     * @return количество переводов строк
+     */
+    private static long countNewlines(MappedByteBuffer buffer, int from, int to) {
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Декодирует строку с совпадением из буфера.
+     *
+     * @param buffer буфер
+     * @param start  начало строки
+     * @param end    конец строки (без перевода строки)
+     * @return текст строки
+     */
+    private static String lineText(MappedByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] bytes = new byte[Math.min(end - start, MAX_LINE_LENGTH * 4)];
+        buffer.get(start, bytes);
+        return truncate(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Обрезает слишком длинную строку вывода.
+     *
+     * @param line строка
+     * @return строка не длиннее {@value #MAX_LINE_LENGTH} символов
+     */
+    private static String truncate(String line) {
+        return line.length() <= MAX_LINE_LENGTH ? line : line.substring(0, MAX_LINE_LENGTH) + "…";
+    }
+}
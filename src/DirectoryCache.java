@@ -0,0 +1,566 @@
+// DirectoryCache.java
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кэш метаданных содержимого директорий.
+ * <p>
+ * Для каждой закэшированной директории хранятся атрибуты её непосредственных потомков.
+ * Изменения отслеживаются через {@link WatchService}: по событиям перечитываются только изменившиеся
+ * записи, а при переполнении очереди событий директория загружается заново. Дополнительно при каждом
+ * обращении проверяется время изменения самой директории, чтобы не показать устаревший список,
+ * если событие ещё не доставлено. Размер кэша ограничен суммарным количеством записей,
+ * вытесняются давно не использованные директории.
+ * </p>
+ */
+public class DirectoryCache implements AutoCloseable {
+
+    /**
+     * Максимальное суммарное количество записей в кэше по умолчанию.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 500_000;
+
+    /**
+     * Сколько не поместившихся в кэш директорий запоминается.
+     */
+    private static final int MAX_OVERSIZED = 64;
+
+    /**
+     * Атрибуты одной записи директории.
+     *
+     * @param name      имя записи
+     * @param directory является ли запись директорией
+     * @param size      размер в байтах
+     * @param modified  время изменения в миллисекундах
+     */
+    public record CachedEntry(String name, boolean directory, long size, long modified) {
+    }
+
+    /**
+     * Закэшированное содержимое одной директории.
+     */
+    private static final class Listing {
+
+        /**
+         * Путь к директории.
+         */
+        final Path directory;
+
+        /**
+         * Ключ регистрации в службе наблюдения (null, если наблюдение недоступно).
+         */
+        final WatchKey watchKey;
+
+        /**
+         * Записи директории в порядке чтения.
+         */
+        final LinkedHashMap<String, CachedEntry> children = new LinkedHashMap<>();
+
+        /**
+         * Неизменяемый снимок записей, который отдаётся при попаданиях в кэш; null, если записи
+         * изменились и снимок нужно построить заново.
+         */
+        List<CachedEntry> snapshot;
+
+        /**
+         * Время изменения директории на момент последней синхронизации.
+         */
+        long directoryModified;
+
+        /**
+         * @param directory путь к директории
+         * @param watchKey  ключ регистрации в службе наблюдения
+         */
+        Listing(Path directory, WatchKey watchKey) {
+            this.directory = directory;
+            this.watchKey = watchKey;
+        }
+
+        /**
+         * Возвращает снимок записей, строя его только после изменения списка.
+         *
+         * @return неизменяемый список записей
+         */
+        List<CachedEntry> snapshot() {
+            if (snapshot == null) {
+                snapshot = List.copyOf(children.values());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Максимальное суммарное количество записей.
+     */
+    private final int maxEntries;
+
+    /**
+     * Служба наблюдения за изменениями (null, если недоступна).
+     */
+    private final WatchService watchService;
+
+    /**
+     * Закэшированные директории в порядке использования (от давно использованных к недавним).
+     */
+    private final LinkedHashMap<Path, Listing> listings = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Директории по ключам наблюдения.
+     */
+    private final Map<WatchKey, Listing> listingsByKey = new HashMap<>();
+
+    /**
+     * Директории, не поместившиеся в кэш, и их время изменения на момент проверки:
+     * пока директория не изменилась, повторно читать её в кэш бессмысленно.
+     */
+    private final Map<Path, Long> oversized = new HashMap<>();
+
+    /**
+     * Текущее суммарное количество записей.
+     */
+    private long totalEntries;
+
+    /**
+     * Количество обращений, обслуженных из кэша.
+     */
+    private long hits;
+
+    /**
+     * Количество обращений, потребовавших полной загрузки директории.
+     */
+    private long misses;
+
+    /**
+     * Количество записей, перечитанных по событиям.
+     */
+    private long entryRefreshes;
+
+    /**
+     * Количество полных перезагрузок закэшированных директорий.
+     */
+    private long reloads;
+
+    /**
+     * Количество вытесненных директорий.
+     */
+    private long evictions;
+
+    /**
+     * Количество обращений к файловой системе, выполненных кэшем.
+     */
+    private long fileSystemCalls;
+
+    /**
+     * Создаёт кэш с ограничением по количеству записей по умолчанию.
+     */
+    public DirectoryCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Создаёт кэш с указанным ограничением.
+     *
+     * @param maxEntries максимальное суммарное количество записей
+     */
+    public DirectoryCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            service = null; // Работаем без наблюдения: актуальность проверяется по времени изменения директории
+        }
+        this.watchService = service;
+    }
+
+    /**
+     * Возвращает записи директории, используя кэш, если он актуален.
+     *
+     * @param directory путь к директории
+     * @return снимок записей директории или null, если директория слишком велика для кэша
+     * @throws IOException если директорию не удалось прочитать
+     */
+    public synchronized List<CachedEntry> getEntries(Path directory) throws IOException {
+        Path key = directory.toAbsolutePath().normalize();
+        processEvents();
+
+        Listing listing = listings.get(key);
+        if (listing != null) {
+            fileSystemCalls++;
+            long modified = Files.getLastModifiedTime(key).toMillis();
+            if (modified != listing.directoryModified) {
+                // Событие о добавлении или удалении ещё не доставлено — перечитываем директорию
+                reload(listing);
+                listing.directoryModified = modified;
+                if (!listings.containsKey(key)) {
+                    return null; // Директория выросла и больше не помещается в кэш
+                }
+            } else {
+                hits++;
+            }
+            return listing.snapshot();
+        }
+
+        misses++;
+        Long oversizedModified = oversized.get(key);
+        if (oversizedModified != null) {
+            fileSystemCalls++;
+            if (Files.getLastModifiedTime(key).toMillis() == oversizedModified) {
+                return null;
+            }
+            oversized.remove(key);
+        }
+        listing = load(key);
+        if (listing == null) {
+            return null;
+        }
+        return listing.snapshot();
+    }
+
+    /**
+     * Удаляет все записи из кэша.
+     */
+    public synchronized void clear() {
+        for (Listing listing : listings.values()) {
+            if (listing.watchKey != null) {
+                listing.watchKey.cancel();
+            }
+        }
+        listings.clear();
+        listingsByKey.clear();
+        oversized.clear();
+        totalEntries = 0;
+    }
+
+    /**
+     * Возвращает строку со статистикой кэша.
+     *
+     * @return строка со статистикой
+     */
+    public synchronized String describe() {
+        long lookups = hits + misses;
+        return String.format("Кэш директорий: %d папок, %d записей (лимит %d); попаданий %d, промахов %d (%.1f%%); "
+                        + "перечитано записей по событиям %d, перезагрузок %d, вытеснений %d%s",
+                listings.size(), totalEntries, maxEntries, hits, misses,
+                lookups == 0 ? 0.0 : hits * 100.0 / lookups, entryRefreshes, reloads, evictions,
+                watchService == null ? " (наблюдение недоступно)" : "");
+    }
+
+    /**
+     * @return количество обращений, обслуженных из кэша
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return количество обращений, потребовавших загрузки директории
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return количество обращений к файловой системе, выполненных кэшем
+     */
+    public synchronized long getFileSystemCalls() {
+        return fileSystemCalls;
+    }
+
+    /**
+     * Обрабатывает команду управления кэшем.
+     * Формат: {@code cache [clear]}.
+     *
+     * @param command полная строка команды, начинающаяся с 'cache'
+     * @return true, если команда выполнена успешно
+     */
+    public boolean handleCacheCommand(String command) {
+        String[] parts = command.trim().split("\\s+");
+        if (parts.length == 1) {
+            System.out.println(describe());
+        } else if (parts.length == 2 && "clear".equals(parts[1])) {
+            clear();
+            System.out.println("Кэш директорий очищен.");
+        } else {
+            System.out.println("Неверный формат команды. Используйте: cache [clear]");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Закрывает службу наблюдения.
+     */
+    @Override
+    public synchronized void close() {
+        clear();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.err.println("Ошибка при закрытии службы наблюдения: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Загружает директорию в кэш.
+     *
+     * @param directory нормализованный абсолютный путь к директории
+     * @return загруженная директория или null, если она превышает лимит кэша
+     * @throws IOException если директорию не удалось прочитать
+     */
+    private Listing load(Path directory) throws IOException {
+        WatchKey watchKey = null;
+        if (watchService != null) {
+            try {
+                fileSystemCalls++;
+                watchKey = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException | UnsupportedOperationException | ClosedWatchServiceException e) {
+                watchKey = null;
+            }
+        }
+
+        Listing listing = new Listing(directory, watchKey);
+        fileSystemCalls++;
+        listing.directoryModified = Files.getLastModifiedTime(directory).toMillis();
+        boolean fits;
+        try {
+            fits = readAll(listing);
+        } catch (IOException e) {
+            if (watchKey != null) {
+                watchKey.cancel();
+            }
+            throw e;
+        }
+
+        if (!fits) {
+            if (watchKey != null) {
+                watchKey.cancel();
+            }
+            rememberOversized(listing);
+            return null;
+        }
+
+        listings.put(directory, listing);
+        if (watchKey != null) {
+            listingsByKey.put(watchKey, listing);
+        }
+        totalEntries += listing.children.size();
+        evictIfNeeded();
+        return listing;
+    }
+
+    /**
+     * Полностью перечитывает закэшированную директорию.
+     *
+     * @param listing закэшированная директория
+     * @throws IOException если директорию не удалось прочитать
+     */
+    private void reload(Listing listing) throws IOException {
+        reloads++;
+        totalEntries -= listing.children.size();
+        listing.children.clear();
+        listing.snapshot = null;
+        boolean fits;
+        try {
+            fits = readAll(listing);
+        } finally {
+            totalEntries += listing.children.size();
+        }
+        if (!fits) {
+            remove(listing);
+            rememberOversized(listing);
+            return;
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Запоминает директорию, не поместившуюся в кэш, чтобы не читать её повторно, пока она не изменится.
+     *
+     * @param listing директория, не поместившаяся в кэш
+     */
+    private void rememberOversized(Listing listing) {
+        if (oversized.size() >= MAX_OVERSIZED) {
+            oversized.clear();
+        }
+        oversized.put(listing.directory, listing.directoryModified);
+    }
+
+    /**
+     * Читает все записи директории, запрашивая атрибуты каждой записи один раз.
+     * Сначала читаются только имена: если записей больше лимита кэша, атрибуты не запрашиваются вовсе.
+     *
+     * @param listing закэшированная директория (список записей должен быть пуст)
+     * @return false, если директория не помещается в кэш (список записей остаётся пустым)
+     * @throws IOException если директорию не удалось прочитать
+     */
+    private boolean readAll(Listing listing) throws IOException {
+        List<Path> files = new ArrayList<>();
+        fileSystemCalls++;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(listing.directory)) {
+            for (Path file : entries) {
+                files.add(file);
+                if (files.size() > maxEntries) {
+                    return false; // Директория не поместится в кэш: остальные записи и атрибуты не читаем
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            fileSystemCalls++;
+            try {
+                listing.children.put(name, readEntry(file, name));
+            } catch (IOException e) {
+                System.err.println("Ошибка при получении информации о файле " + name + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Читает атрибуты одной записи.
+     *
+     * @param file путь к записи
+     * @param name имя записи
+     * @return атрибуты записи
+     * @throws IOException если атрибуты не удалось прочитать
+     */
+    private static CachedEntry readEntry(Path file, String name) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new CachedEntry(name, attributes.isDirectory(), attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * Применяет накопившиеся события службы наблюдения к закэшированным директориям.
+     */
+    private void processEvents() {
+        if (watchService == null) {
+            return;
+        }
+        WatchKey key;
+        try {
+            while ((key = watchService.poll()) != null) {
+                Listing listing = listingsByKey.get(key);
+                if (listing == null) {
+                    key.cancel();
+                    continue;
+                }
+                applyEvents(listing, key.pollEvents());
+                if (!key.reset()) {
+                    // Директория удалена или недоступна
+                    remove(listing);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Кэш закрывается
+        }
+    }
+
+    /**
+     * Применяет события к одной директории: перечитывает или удаляет только затронутые записи.
+     *
+     * @param listing закэшированная директория
+     * @param events  события
+     */
+    private void applyEvents(Listing listing, List<WatchEvent<?>> events) {
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                try {
+                    reload(listing);
+                    fileSystemCalls++;
+                    listing.directoryModified = Files.getLastModifiedTime(listing.directory).toMillis();
+                } catch (IOException e) {
+                    remove(listing);
+                }
+                return;
+            }
+
+            String name = event.context().toString();
+            listing.snapshot = null;
+            CachedEntry previous = listing.children.remove(name);
+            if (previous != null) {
+                totalEntries--;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                continue;
+            }
+            fileSystemCalls++;
+            try {
+                listing.children.put(name, readEntry(listing.directory.resolve(name), name));
+                totalEntries++;
+                entryRefreshes++;
+            } catch (NoSuchFileException e) {
+                // Запись уже удалена; событие об удалении придёт следом
+            } catch (IOException e) {
+                System.err.println("Ошибка при получении информации о файле " + name + ": " + e.getMessage());
+            }
+        }
+        fileSystemCalls++;
+        try {
+            listing.directoryModified = Files.getLastModifiedTime(listing.directory).toMillis();
+        } catch (IOException e) {
+            remove(listing);
+        }
+        evictIfNeeded(); // Созданные записи могли вывести кэш за лимит
+    }
+
+    /**
+     * Вытесняет давно не использованные директории, пока количество записей превышает лимит.
+     */
+    private void evictIfNeeded() {
+        Iterator<Listing> iterator = listings.values().iterator();
+        while (totalEntries > maxEntries && iterator.hasNext()) {
+            Listing eldest = iterator.next();
+            iterator.remove();
+            forget(eldest);
+            evictions++;
+        }
+    }
+
+    /**
+     * Удаляет директорию из кэша.
+     *
+     * @param listing закэшированная директория
+     */
+    private void remove(Listing listing) {
+        if (listings.remove(listing.directory) != null) {
+            forget(listing);
+        }
+    }
+
+    /**
+     * Освобождает ресурсы директории, уже исключённой из таблицы по пути.
+     *
+     * @param listing закэшированная директория
+     */
+    private void forget(Listing listing) {
+        totalEntries -= listing.children.size();
+        if (listing.watchKey != null) {
+            listing.watchKey.cancel();
+            listingsByKey.remove(listing.watchKey);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+// DirectoryCopier.java
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс для рекурсивного многопоточного копирования директорий (команда 'copy -r').
+ * <p>
+ * Сначала обходит исходное дерево и создаёт всю структуру директорий в месте назначения,
+ * затем распределяет копирование файлов по ограниченному пулу потоков. Крупные файлы
+ * планируются первыми, а мелкие объединяются в пакеты, чтобы «хвост» из больших файлов
+ * не определял общее время копирования.
+ * </p>
+ */
+public class DirectoryCopier {
+
+    /**
+     * Количество потоков копирования по умолчанию.
+     */
+    public static final int DEFAULT_JOBS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Файлы не меньше этого размера копируются отдельной задачей.
+     */
+    private static final long LARGE_FILE_SIZE = 4L * 1024 * 1024;
+
+    /**
+     * Максимальный суммарный размер пакета мелких файлов.
+     */
+    private static final long BATCH_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * Максимальное количество файлов в пакете.
+     */
+    private static final int BATCH_FILES = 256;
+
+    /**
+     * Конструктор класса DirectoryCopier.
+     * Создаёт новый экземпляр для копирования директорий.
+     */
+    public DirectoryCopier() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Итоги копирования дерева.
+     */
+    public static final class Result {
+
+        /**
+         * Количество скопированных файлов.
+         */
+        final AtomicLong files = new AtomicLong();
+
+        /**
+         * Количество скопированных байт.
+         */
+        final AtomicLong bytes = new AtomicLong();
+
+        /**
+         * Количество файлов, которые не удалось скопировать.
+         */
+        final AtomicLong failures = new AtomicLong();
+
+        /**
+         * Количество файлов, проверенных по контрольным суммам.
+         */
+        final AtomicLong verified = new AtomicLong();
+
+        /**
+         * Количество созданных директорий.
+         */
+        long directories;
+
+        /**
+         * Время копирования в наносекундах.
+         */
+        long elapsedNanos;
+
+        /**
+         * @return количество файлов, которые не удалось скопировать
+         */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * Возвращает строку с итогами и скоростью копирования (файлов/с и МБ/с).
+         *
+         * @return строка с итогами
+         */
+        public String summary() {
+            double seconds = Math.max(elapsedNanos, 1L) / 1_000_000_000.0;
+            return String.format("Скопировано файлов: %d (%s), директорий: %d за %.2f с — %.0f файлов/с, %.2f МБ/с",
+                    files.get(), FileSizeFormatter.formatFileSize(bytes.get()), directories, seconds,
+                    files.get() / seconds, bytes.get() / seconds / (1024.0 * 1024.0))
+                    + (verified.get() > 0 ? "; проверено по CRC32C: " + verified.get() : "");
+        }
+    }
+
+    /**
+     * Копируемый файл: путь относительно корня источника и размер.
+     *
+     * @param relative путь относительно корня источника
+     * @param size     размер файла в байтах
+     */
+    private record FileEntry(Path relative, long size) {
+    }
+
+    /**
+     * Рекурсивно копирует директорию {@code source} в {@code target}.
+     * Существующие файлы в месте назначения перезаписываются.
+     *
+     * @param source исходная директория
+     * @param target директория назначения (будет создана, если не существует)
+     * @param jobs   количество потоков копирования
+     * @return итоги копирования
+     * @throws IOException если не удалось обойти источник или создать структуру директорий
+     */
+    public Result copyTree(Path source, Path target, int jobs) throws IOException {
+        return copyTree(source, target, jobs, null);
+    }
+
+    /**
+     * Рекурсивно копирует директорию {@code source} в {@code target}, при необходимости проверяя
+     * каждую копию по контрольным суммам.
+     *
+     * @param source   исходная директория
+     * @param target   директория назначения (будет создана, если не существует)
+     * @param jobs     количество потоков копирования
+     * @param verifier механизм копирования с проверкой или null, чтобы копировать без проверки
+     * @return итоги копирования
+     * @throws IOException если не удалось обойти источник или создать структуру директорий
+     */
+    public Result copyTree(Path source, Path target, int jobs, LargeFileCopier verifier) throws IOException {
+        if (target.toAbsolutePath().normalize().startsWith(source.toAbsolutePath().normalize())) {
+            throw new IOException("Нельзя скопировать директорию внутрь самой себя: " + target);
+        }
+
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        List<FileEntry> files = new ArrayList<>();
+
+        // Обходим источник один раз: директории создаём сразу, файлы запоминаем
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                JobScheduler.checkCancelled();
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                result.directories++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(new FileEntry(source.relativize(file), attrs.size()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Не удалось прочитать: " + file + ": " + e.getMessage());
+                result.failures.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Крупные файлы — первыми, чтобы они не оказались в конце очереди
+        files.sort(Comparator.comparingLong(FileEntry::size).reversed());
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, jobs));
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            List<FileEntry> batch = new ArrayList<>();
+            long batchBytes = 0;
+            for (FileEntry file : files) {
+                if (file.size() >= LARGE_FILE_SIZE) {
+                    tasks.add(pool.submit(() -> copyBatch(List.of(file), source, target, result, verifier)));
+                    continue;
+                }
+                batch.add(file);
+                batchBytes += file.size();
+                if (batch.size() >= BATCH_FILES || batchBytes >= BATCH_BYTES) {
+                    List<FileEntry> full = batch;
+                    tasks.add(pool.submit(() -> copyBatch(full, source, target, result, verifier)));
+                    batch = new ArrayList<>();
+                    batchBytes = 0;
+                }
+            }
+            if (!batch.isEmpty()) {
+                List<FileEntry> last = batch;
+                tasks.add(pool.submit(() -> copyBatch(last, source, target, result, verifier)));
+            }
+
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Копирование прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new IOException("Ошибка в потоке копирования: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Копирует пакет файлов в одном рабочем потоке.
+     *
+     * @param batch    файлы пакета
+     * @param source   корень источника
+     * @param target   корень назначения
+     * @param result   итоги копирования
+     * @param verifier механизм копирования с проверкой или null
+     */
+    private void copyBatch(List<FileEntry> batch, Path source, Path target, Result result, LargeFileCopier verifier) {
+        for (FileEntry file : batch) {
+            JobScheduler.checkCancelled();
+            String relative = file.relative().toString();
+            try {
+                Path sourceFile = source.resolve(relative);
+                if (verifier != null && Files.isRegularFile(sourceFile, LinkOption.NOFOLLOW_LINKS)) {
+                    // Ограничение скорости и учёт байт выполняются поблочно внутри копирования с проверкой
+                    long copyStart = System.nanoTime();
+                    verifier.copy(sourceFile, target.resolve(relative));
+                    Metrics.COPY_FILE.record(System.nanoTime() - copyStart);
+                    result.verified.incrementAndGet();
+                } else {
+                    IoThrottle.acquire(file.size());
+                    long copyStart = System.nanoTime();
+                    Files.copy(sourceFile, target.resolve(relative),
+                            StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+                    Metrics.recordCopy(Metrics.COPY_FILE, file.size(), System.nanoTime() - copyStart);
+                }
+                result.files.incrementAndGet();
+                result.bytes.addAndGet(file.size());
+            } catch (IOException e) {
+                result.failures.incrementAndGet();
+                System.err.println("Ошибка при копировании файла " + relative + ": " + e.getMessage());
+            }
+        }
+    }
+}
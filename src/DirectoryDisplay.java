@@ -1,22 +1,130 @@
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Класс для отображения содержимого директории.
  * <p>
  * Предоставляет методы для вывода списка файлов и папок с указанием их типа (расширения) и размера.
+ * Записи читаются потоково через {@link DirectoryStream}, атрибуты каждой записи запрашиваются
+ * один раз, а строки выводятся через общий буферизованный поток. Поддерживается постраничный вывод.
+ * Если задан {@link DirectoryCache}, записи берутся из кэша, а потоковое чтение используется только
+ * для директорий, не помещающихся в кэш. Записи можно отфильтровать по шаблону имени и упорядочить
+ * по размеру, времени изменения, имени или расширению; запрос «N первых» выполняется ограниченной кучей.
  * </p>
  */
 public class DirectoryDisplay {
 
+    /**
+     * Размер буфера вывода (в символах).
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Количество записей на странице, если указан только номер страницы.
+     */
+    private static final int DEFAULT_PAGE_LIMIT = 50;
+
+    /**
+     * Формат команды вывода содержимого директории.
+     */
+    private static final String LS_USAGE =
+            "ls [путь] [--page N] [--limit M] [--sort size|mtime|name|ext] [--top N] [--filter ШАБЛОН]";
+
+    /**
+     * Кэш метаданных директорий (null — читать директорию при каждом выводе).
+     */
+    private final DirectoryCache cache;
+
     /**
      * Конструктор класса DirectoryDisplay.
-     * Создаёт новый экземпляр для отображения содержимого директорий.
+     * Создаёт новый экземпляр для отображения содержимого директорий без кэширования.
      */
     public DirectoryDisplay() {
-        // Конструктор по умолчанию
+        this(null);
+    }
+
+    /**
+     * Создаёт экземпляр, использующий кэш метаданных директорий.
+     *
+     * @param cache кэш метаданных директорий (может быть null)
+     */
+    public DirectoryDisplay(DirectoryCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Обрабатывает команду вывода содержимого директории.
+     * Формат: {@code ls [путь] [--page N] [--limit M] [--sort size|mtime|name|ext] [--top N] [--filter ШАБЛОН]}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'ls'
+     * @param currentDirectory текущая директория, относительно которой разрешается путь
+     * @return true, если содержимое директории выведено
+     */
+    public boolean handleLsCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        String target = null;
+        int page = 1;
+        int limit = 0;
+        SortOrder sort = null;
+        int top = 0;
+        String filter = null;
+
+        try {
+            for (int i = 1; i < arguments.size(); i++) {
+                String argument = arguments.get(i);
+                if ("--page".equals(argument) && i + 1 < arguments.size()) {
+                    page = parsePositiveInt(arguments.get(++i), "--page");
+                    if (limit == 0) {
+                        limit = DEFAULT_PAGE_LIMIT;
+                    }
+                } else if ("--limit".equals(argument) && i + 1 < arguments.size()) {
+                    limit = parsePositiveInt(arguments.get(++i), "--limit");
+                } else if ("--sort".equals(argument) && i + 1 < arguments.size()) {
+                    sort = SortOrder.parse(arguments.get(++i));
+                } else if ("--top".equals(argument) && i + 1 < arguments.size()) {
+                    top = parsePositiveInt(arguments.get(++i), "--top");
+                } else if ("--filter".equals(argument) && i + 1 < arguments.size()) {
+                    filter = arguments.get(++i);
+                } else if (target == null && !argument.startsWith("--")) {
+                    target = argument;
+                } else {
+                    System.out.println("Неверный формат команды. Используйте: " + LS_USAGE);
+                    return false;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+        if (top > 0 && sort == null) {
+            sort = SortOrder.SIZE; // "ls --top 20" — самые крупные записи
+        }
+
+        Path path = target == null
+                ? Paths.get(currentDirectory)
+                : Paths.get(currentDirectory).resolve(target);
+        return displayDirectoryContents(path.normalize().toString(), page, limit, sort, top, filter);
     }
 
     /**
@@ -25,58 +133,609 @@ public class DirectoryDisplay {
      * @param directoryPath путь к директории, содержимое которой нужно отобразить
      */
     public void displayDirectoryContents(String directoryPath) {
+        displayDirectoryContents(directoryPath, 1, 0);
+    }
+
+    /**
+     * Отображает одну страницу содержимого директории в порядке чтения.
+     *
+     * @param directoryPath путь к директории, содержимое которой нужно отобразить
+     * @param page          номер страницы, начиная с 1
+     * @param limit         количество записей на странице; 0 — вывести все записи
+     * @return true, если директория прочитана
+     */
+    public boolean displayDirectoryContents(String directoryPath, int page, int limit) {
+        return displayDirectoryContents(directoryPath, page, limit, null, 0, null);
+    }
+
+    /**
+     * Отображает одну страницу содержимого директории, при необходимости отобранного и упорядоченного.
+     * <p>
+     * Без сортировки и фильтра записи вне запрошенной страницы только подсчитываются: их атрибуты не читаются
+     * и строки для них не форматируются. С {@code top} в памяти хранится не больше {@code top} записей
+     * (ограниченная куча), даже если директория не помещается в кэш. Длительность вывода и количество обращений
+     * к файловой системе учитываются в {@link Metrics} и событии JFR {@link ListingEvent}.
+     * </p>
+     *
+     * @param directoryPath путь к директории, содержимое которой нужно отобразить
+     * @param page          номер страницы, начиная с 1
+     * @param limit         количество записей на странице; 0 — вывести все записи
+     * @param sort          порядок записей; null — порядок чтения директории
+     * @param top           сколько первых записей в порядке {@code sort} отобрать; 0 — все
+     * @param filter        шаблон имени ('*', '?', '[...]'); null — без фильтра
+     * @return true, если директория прочитана
+     */
+    public boolean displayDirectoryContents(String directoryPath, int page, int limit, SortOrder sort, int top, String filter) {
+        ListingEvent event = new ListingEvent();
+        event.begin();
+        long startNanos = System.nanoTime();
+        long fileSystemCalls = 1; // Проверка существования директории
         Path path = Paths.get(directoryPath).normalize();
 
-        if (!Files.exists(path) || !Files.isDirectory(path)) {
+        if (!Files.isDirectory(path)) {
             System.out.println("Директория не существует или недоступна: " + directoryPath);
-            return;
+            return false;
         }
 
-        System.out.println("\n=== Содержимое директории: " + path.toAbsolutePath() + " ===");
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), OUTPUT_BUFFER_SIZE), false);
+        Row row = new Row();
+
+        out.println();
+        out.println("=== Содержимое директории: " + path.toAbsolutePath() + " ===");
         // Изменили заголовок колонки с "Тип" на "Расширение"
-        System.out.printf("%-30s %-15s %-20s%n", "Имя файла/папки", "Расширение/тип", "Размер");
-        System.out.println("----------------------------------------------------------------");
-        try {
-            Files.list(path).forEach(file -> {
-                try {
-                    String name = file.getFileName().toString();
-                    String typeOrExtension;
-                    if (Files.isDirectory(file)) {
-                        typeOrExtension = "Папка"; // Для директорий оставляем "Папка"
-                    } else {
-                        // Получаем расширение файла
-                        typeOrExtension = getFileExtension(name);
-                    }
-                    String size = FileSizeFormatter.formatFileSize(Files.size(file));
-                    System.out.printf("%-30s %-15s %-20s%n", name, typeOrExtension, size);
-                } catch (IOException e) {
-                    System.err.println("Ошибка при получении информации о файле " + file.getFileName() + ": " + e.getMessage());
+        printRow(out, row, "Имя файла/папки", "Расширение/тип", "Размер");
+        out.println("----------------------------------------------------------------");
+
+        long first = limit > 0 ? (long) (page - 1) * limit : 0L;
+        long last = limit > 0 ? first + limit : Long.MAX_VALUE;
+        long index;
+
+        List<DirectoryCache.CachedEntry> cached = null;
+        if (cache != null) {
+            long callsBefore = cache.getFileSystemCalls();
+            try {
+                cached = cache.getEntries(path);
+                fileSystemCalls += cache.getFileSystemCalls() - callsBefore;
+            } catch (IOException e) {
+                out.flush();
+                System.err.println("Ошибка при чтении директории: " + e.getMessage());
+                return false;
+            }
+        }
+
+        if (sort != null || filter != null) {
+            Selection selection = new Selection(sort, top, filter);
+            if (cached != null) {
+                for (DirectoryCache.CachedEntry entry : cached) {
+                    selection.offer(entry);
                 }
-            });
-        } catch (IOException e) {
+            } else {
+                fileSystemCalls += selection.scan(path);
+            }
+            List<DirectoryCache.CachedEntry> selected = selection.result();
+            index = selected.size();
+            for (long i = first; i < Math.min(index, last); i++) {
+                DirectoryCache.CachedEntry entry = selected.get((int) i);
+                if (entry.size() < 0) {
+                    // Атрибуты не понадобились для отбора — читаем их только для выводимых записей
+                    fileSystemCalls++;
+                    printEntry(out, row, path.resolve(entry.name()));
+                } else {
+                    printRow(out, row, entry.name(), entry.directory(), entry.size());
+                }
+            }
+            if (top > 0 || filter != null) {
+                out.println("Отобрано записей: " + index + " из " + selection.scanned + ".");
+            }
+        } else if (cached != null) {
+            index = cached.size();
+            for (long i = first; i < Math.min(index, last); i++) {
+                DirectoryCache.CachedEntry entry = cached.get((int) i);
+                printRow(out, row, entry.name(), entry.directory(), entry.size());
+            }
+        } else {
+            index = streamEntries(out, row, path, first, last);
+            // Чтение директории и по одному запросу атрибутов на выведенную запись
+            fileSystemCalls += 1 + Math.max(0L, Math.min(index, last) - first);
+        }
+
+        if (limit > 0) {
+            long shownTo = Math.min(index, last);
+            if (first >= index) {
+                out.println("Страница " + page + " пуста: всего записей " + index + ".");
+            } else {
+                out.println("Страница " + page + ": записи " + (first + 1) + "–" + shownTo + " из " + index + ".");
+            }
+        }
+        out.flush();
+
+        Metrics.recordListing(System.nanoTime() - startNanos, fileSystemCalls);
+        event.end();
+        if (event.shouldCommit()) {
+            event.directory = path.toString();
+            event.entries = index;
+            event.fileSystemCalls = fileSystemCalls;
+            event.commit();
+        }
+        return true;
+    }
+
+    /**
+     * Потоково читает директорию и выводит записи с номерами из диапазона [first, last).
+     *
+     * @param out   буферизованный поток вывода
+     * @param row   переиспользуемый буфер строки
+     * @param path  путь к директории
+     * @param first номер первой выводимой записи
+     * @param last  номер записи, следующей за последней выводимой
+     * @return общее количество прочитанных записей
+     */
+    private long streamEntries(PrintWriter out, Row row, Path path, long first, long last) {
+        long index = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+            for (Path file : entries) {
+                if (index >= first && index < last) {
+                    printEntry(out, row, file);
+                }
+                index++;
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            out.flush();
             System.err.println("Ошибка при чтении директории: " + e.getMessage());
         }
+        return index;
+    }
+
+    /**
+     * Выводит строку для одной записи директории, читая её атрибуты одним запросом.
+     *
+     * @param out  буферизованный поток вывода
+     * @param row  переиспользуемый буфер строки
+     * @param file путь к записи
+     */
+    private void printEntry(PrintWriter out, Row row, Path file) {
+        String name = file.getFileName().toString();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            out.flush();
+            System.err.println("Ошибка при получении информации о файле " + name + ": " + e.getMessage());
+            return;
+        }
+        printRow(out, row, name, attributes.isDirectory(), attributes.size());
+    }
+
+    /**
+     * Выводит строку таблицы с колонками фиксированной ширины (аналог формата "%-30s %-15s %-20s").
+     *
+     * @param out    поток вывода
+     * @param row    переиспользуемый буфер строки
+     * @param name   имя файла или папки
+     * @param type   расширение или тип
+     * @param size   отформатированный размер
+     */
+    private void printRow(PrintWriter out, Row row, String name, String type, String size) {
+        StringBuilder text = row.text;
+        text.setLength(0);
+        appendPadded(text, name, 30).append(' ');
+        appendPadded(text, type, 15).append(' ');
+        appendPadded(text, size, 20);
+        row.println(out);
+    }
+
+    /**
+     * Выводит строку таблицы для записи директории, не создавая промежуточных строк:
+     * расширение и размер дописываются прямо в буфер строки.
+     *
+     * @param out       поток вывода
+     * @param row       переиспользуемый буфер строки
+     * @param name      имя файла или папки
+     * @param directory является ли запись директорией
+     * @param size      размер в байтах
+     */
+    private void printRow(PrintWriter out, Row row, String name, boolean directory, long size) {
+        StringBuilder text = row.text;
+        text.setLength(0);
+        appendPadded(text, name, 30).append(' ');
+        int typeStart = text.length();
+        if (directory) {
+            text.append("Папка"); // Для директорий оставляем "Папка"
+        } else {
+            // Расширение файла дописывается без выделения подстроки
+            text.append(name, extensionStart(name), name.length());
+        }
+        pad(text, typeStart, 15).append(' ');
+        int sizeStart = text.length();
+        FileSizeFormatter.appendFileSize(text, size);
+        pad(text, sizeStart, 20);
+        row.println(out);
+    }
+
+    /**
+     * Добавляет значение в буфер, дополняя его пробелами справа до указанной ширины.
+     *
+     * @param row   буфер строки
+     * @param value добавляемое значение
+     * @param width минимальная ширина колонки
+     * @return тот же буфер для цепочки вызовов
+     */
+    private static StringBuilder appendPadded(StringBuilder row, String value, int width) {
+        row.append(value);
+        return pad(row, row.length() - value.length(), width);
     }
 
     /**
-     * Извлекает расширение файла из его имени.
+     * Дополняет колонку, начинающуюся с позиции {@code start}, пробелами до указанной ширины.
+     *
+     * @param row   буфер строки
+     * @param start позиция начала колонки
+     * @param width минимальная ширина колонки
+     * @return тот же буфер для цепочки вызовов
+     */
+    private static StringBuilder pad(StringBuilder row, int start, int width) {
+        for (int i = row.length() - start; i < width; i++) {
+            row.append(' ');
+        }
+        return row;
+    }
+
+    /**
+     * Разбирает положительное целое значение параметра команды.
+     *
+     * @param value  строковое значение
+     * @param option имя параметра для сообщения об ошибке
+     * @return разобранное значение
+     * @throws IllegalArgumentException если значение не является положительным целым числом
+     */
+    private static int parsePositiveInt(String value, String option) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // Обрабатывается ниже
+        }
+        throw new IllegalArgumentException("Значение " + option + " должно быть положительным целым числом: " + value);
+    }
+
+    /**
+     * Находит начало расширения файла в его имени.
      * Если файл не имеет расширения или является скрытым без точки (например, ".bashrc"),
-     * возвращает пустую строку.
+     * расширение считается пустым.
      *
      * @param fileName имя файла (например, "document.pdf", "image.jpg", "README")
-     * @return строка с расширением (например, ".pdf", ".jpg") или пустая строка
+     * @return индекс точки, с которой начинается расширение, или длина имени, если расширения нет
      */
-    private String getFileExtension(String fileName) {
+    private static int extensionStart(String fileName) {
         // Находим последнюю точку в имени файла
         int lastDotIndex = fileName.lastIndexOf('.');
 
         // Если точка есть и не является первым символом (например, .hiddenfile)
         if (lastDotIndex > 0) {
-            // Возвращаем подстроку начиная с точки
-            return fileName.substring(lastDotIndex);
+            return lastDotIndex;
+        }
+
+        // Если точка не найдена или находится в начале, расширение пустое
+        return fileName.length();
+    }
+
+    /**
+     * Порядок вывода записей директории ({@code ls --sort}).
+     */
+    public enum SortOrder {
+        /** По размеру, от больших к меньшим. */
+        SIZE("size", Comparator.comparingLong(DirectoryCache.CachedEntry::size).reversed()),
+        /** По времени изменения, от новых к старым. */
+        MTIME("mtime", Comparator.comparingLong(DirectoryCache.CachedEntry::modified).reversed()),
+        /** По имени. */
+        NAME("name", Comparator.comparing(DirectoryCache.CachedEntry::name)),
+        /** По расширению, затем по имени. */
+        EXT("ext", ((Comparator<DirectoryCache.CachedEntry>) (a, b) -> compareExtensions(a.name(), b.name()))
+                .thenComparing(DirectoryCache.CachedEntry::name));
+
+        /**
+         * Имя порядка в команде.
+         */
+        private final String option;
+
+        /**
+         * Сравнение записей: меньшая запись выводится раньше.
+         */
+        private final Comparator<DirectoryCache.CachedEntry> comparator;
+
+        /**
+         * @param option     имя порядка в команде
+         * @param comparator сравнение записей
+         */
+        SortOrder(String option, Comparator<DirectoryCache.CachedEntry> comparator) {
+            this.option = option;
+            this.comparator = comparator;
+        }
+
+        /**
+         * @return нужны ли для сравнения атрибуты записей (размер, время изменения), а не только имена
+         */
+        boolean needsAttributes() {
+            return this == SIZE || this == MTIME;
         }
 
-        // Если точка не найдена или находится в начале, возвращаем пустую строку
-        return "";
+        /**
+         * Разбирает имя порядка.
+         *
+         * @param value имя порядка (size, mtime, name, ext)
+         * @return порядок
+         * @throws IllegalArgumentException если имя неизвестно
+         */
+        static SortOrder parse(String value) {
+            for (SortOrder order : values()) {
+                if (order.option.equalsIgnoreCase(value)) {
+                    return order;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный порядок сортировки: " + value + ". Используйте size, mtime, name или ext.");
+        }
+
+        /**
+         * Сравнивает расширения двух имён без выделения подстрок.
+         *
+         * @param a первое имя
+         * @param b второе имя
+         * @return результат сравнения расширений
+         */
+        private static int compareExtensions(String a, String b) {
+            int i = extensionStart(a);
+            int j = extensionStart(b);
+            while (i < a.length() && j < b.length()) {
+                int difference = a.charAt(i++) - b.charAt(j++);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return (a.length() - i) - (b.length() - j);
+        }
+    }
+
+    /**
+     * Отбор записей для вывода: фильтр по шаблону имени и сортировка, а при заданном {@code top} —
+     * ограниченная куча, в которой хранятся только лучшие {@code top} записей.
+     */
+    private static final class Selection {
+
+        /**
+         * Количество записей в пакете параллельного чтения атрибутов.
+         */
+        private static final int STAT_BATCH = 1024;
+
+        /**
+         * Порядок записей (null — порядок чтения).
+         */
+        private final SortOrder sort;
+
+        /**
+         * Количество отбираемых записей; 0 — все.
+         */
+        private final int top;
+
+        /**
+         * Сопоставитель шаблона имени (null — без фильтра).
+         */
+        private final Matcher filter;
+
+        /**
+         * Куча, в вершине которой — худшая из отобранных записей (только при {@code top > 0}).
+         */
+        private final PriorityQueue<DirectoryCache.CachedEntry> heap;
+
+        /**
+         * Отобранные записи (без {@code top}).
+         */
+        private final List<DirectoryCache.CachedEntry> all;
+
+        /**
+         * Количество просмотренных записей.
+         */
+        long scanned;
+
+        /**
+         * @param sort   порядок записей (null — порядок чтения)
+         * @param top    количество отбираемых записей; 0 — все
+         * @param filter шаблон имени (null — без фильтра)
+         */
+        Selection(SortOrder sort, int top, String filter) {
+            this.sort = sort;
+            this.top = sort != null ? top : 0;
+            this.filter = filter == null ? null : Pattern.compile(FileIndex.globToRegex(filter)).matcher("");
+            this.heap = this.top > 0 ? new PriorityQueue<>(this.top + 1, sort.comparator.reversed()) : null;
+            this.all = this.top > 0 ? null : new ArrayList<>();
+        }
+
+        /**
+         * Предлагает запись для отбора.
+         *
+         * @param entry запись директории
+         */
+        void offer(DirectoryCache.CachedEntry entry) {
+            scanned++;
+            if (filter == null || filter.reset(entry.name()).matches()) {
+                accept(entry);
+            }
+        }
+
+        /**
+         * Добавляет прошедшую фильтр запись в отобранные (или в кучу, вытесняя худшую).
+         *
+         * @param entry запись директории
+         */
+        private void accept(DirectoryCache.CachedEntry entry) {
+            if (heap == null) {
+                all.add(entry);
+            } else if (heap.size() < top) {
+                heap.add(entry);
+            } else if (sort.comparator.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        /**
+         * Потоково читает директорию и предлагает её записи для отбора. Атрибуты записей читаются,
+         * только если они нужны для сортировки; иначе размер записи остаётся неизвестным (-1).
+         * <p>
+         * Атрибуты запрашиваются пакетами по {@value #STAT_BATCH} записей, на многопроцессорных машинах — параллельно; каждый пакет
+         * отбирает свои лучшие записи отдельной кучей, а результаты сливаются в общую. Одновременно
+         * в работе не больше двух пакетов на поток, поэтому память не растёт с размером директории.
+         * </p>
+         *
+         * @param path путь к директории
+         * @return количество обращений к файловой системе
+         */
+        long scan(Path path) {
+            boolean needsAttributes = sort != null && sort.needsAttributes();
+            long calls = 1;
+            int threads = Runtime.getRuntime().availableProcessors();
+            ExecutorService pool = needsAttributes && threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+            Deque<Future<List<DirectoryCache.CachedEntry>>> pending = new ArrayDeque<>();
+            List<Path> batch = new ArrayList<>(STAT_BATCH);
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                for (Path file : entries) {
+                    scanned++;
+                    if (filter != null && !filter.reset(file.getFileName().toString()).matches()) {
+                        continue; // Атрибуты отфильтрованных записей не читаются
+                    }
+                    if (!needsAttributes) {
+                        accept(new DirectoryCache.CachedEntry(file.getFileName().toString(), false, -1, 0));
+                        continue;
+                    }
+                    batch.add(file);
+                    if (batch.size() == STAT_BATCH) {
+                        JobScheduler.checkCancelled();
+                        calls += submit(batch, pool, pending);
+                        batch = new ArrayList<>(STAT_BATCH);
+                        while (pending.size() > 2 * threads) {
+                            merge(pending.poll());
+                        }
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    calls += submit(batch, pool, pending);
+                }
+                while (!pending.isEmpty()) {
+                    merge(pending.poll());
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                System.err.println("Ошибка при чтении директории: " + e.getMessage());
+            } finally {
+                if (pool != null) {
+                    pool.shutdownNow();
+                }
+            }
+            return calls;
+        }
+
+        /**
+         * Отправляет пакет на чтение атрибутов в пул или, если пула нет (один процессор), обрабатывает его сразу.
+         *
+         * @param batch   записи пакета
+         * @param pool    пул потоков или null
+         * @param pending очередь ожидающих пакетов
+         * @return количество обращений к файловой системе
+         */
+        private int submit(List<Path> batch, ExecutorService pool, Deque<Future<List<DirectoryCache.CachedEntry>>> pending) {
+            if (pool == null) {
+                for (DirectoryCache.CachedEntry entry : readBatch(batch)) {
+                    accept(entry);
+                }
+            } else {
+                pending.add(pool.submit(() -> readBatch(batch)));
+            }
+            return batch.size();
+        }
+
+        /**
+         * Читает атрибуты пакета записей и отбирает из них лучшие.
+         *
+         * @param files записи пакета
+         * @return отобранные записи пакета
+         */
+        private List<DirectoryCache.CachedEntry> readBatch(List<Path> files) {
+            Selection local = new Selection(sort, top, null);
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    local.accept(new DirectoryCache.CachedEntry(name, attributes.isDirectory(), attributes.size(),
+                            attributes.lastModifiedTime().toMillis()));
+                } catch (IOException e) {
+                    System.err.println("Ошибка при получении информации о файле " + name + ": " + e.getMessage());
+                }
+            }
+            return local.heap != null ? new ArrayList<>(local.heap) : local.all;
+        }
+
+        /**
+         * Дожидается пакета и сливает его записи в отобранные.
+         *
+         * @param batch результат пакета
+         */
+        private void merge(Future<List<DirectoryCache.CachedEntry>> batch) {
+            try {
+                for (DirectoryCache.CachedEntry entry : batch.get()) {
+                    accept(entry);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Чтение директории прервано");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        /**
+         * @return отобранные записи в порядке вывода
+         */
+        List<DirectoryCache.CachedEntry> result() {
+            List<DirectoryCache.CachedEntry> result = heap != null ? new ArrayList<>(heap) : all;
+            if (sort != null) {
+                result.sort(sort.comparator);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Переиспользуемый буфер строки таблицы: строка собирается в {@link StringBuilder} и выводится
+     * через массив символов, без создания объекта {@link String} на каждую строку.
+     */
+    private static final class Row {
+
+        /**
+         * Текст строки.
+         */
+        final StringBuilder text = new StringBuilder(80);
+
+        /**
+         * Массив символов для вывода.
+         */
+        private char[] chars = new char[80];
+
+        /**
+         * Выводит строку и перевод строки.
+         *
+         * @param out поток вывода
+         */
+        void println(PrintWriter out) {
+            int length = text.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            text.getChars(0, length, chars, 0);
+            out.write(chars, 0, length);
+            out.println();
+        }
     }
-}
\ No newline at end of file
+}
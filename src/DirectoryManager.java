@@ -1,33 +1,48 @@
 // DirectoryManager.java
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Scanner;
 
 /**
  * Класс для выполнения операций управления директориями: создание, удаление.
  */
 public class DirectoryManager {
 
+    /**
+     * Если удаляемое дерево содержит больше файлов, 'rm -r' запрашивает подтверждение.
+     */
+    public static final long DEFAULT_CONFIRM_THRESHOLD = 1000;
+
+    /**
+     * Подсказка по формату команды удаления.
+     */
+    private static final String RM_USAGE =
+            "Неверный формат команды. Используйте: rm [-r] [-f] [--dry-run] [--confirm-above N] <имя_файла_или_директории>";
+
     /**
      * Обрабатывает команду создания директории.
      *
      * @param command           полная строка команды, начинающаяся с 'mkdir'
      * @param currentDirectory текущая директория, в которой создается новая
+     * @return true, если команда выполнена успешно
      */
-    public void handleMkdirCommand(String command, String currentDirectory) {
+    public boolean handleMkdirCommand(String command, String currentDirectory) {
         String[] parts = command.split("\\s+", 2); // Разбиваем на "mkdir" и "имя_директории"
         if (parts.length < 2) {
             System.out.println("Неверный формат команды. Используйте: mkdir <имя_директории>");
-            return;
+            return false;
         }
 
         String dirName = parts[1].trim(); // Обрезаем лишние пробелы
         if (dirName.isEmpty()) {
             System.out.println("Имя директории не может быть пустым.");
-            return;
+            return false;
         }
 
         Path newDirPath = Paths.get(currentDirectory).resolve(dirName).normalize();
@@ -35,52 +50,127 @@ public class DirectoryManager {
         try {
             Files.createDirectories(newDirPath); // createDirectories создаст все промежуточные директории, если нужно
             System.out.println("Директория создана: " + newDirPath.toAbsolutePath());
+            return true;
         } catch (FileAlreadyExistsException e) {
             System.err.println("Ошибка: директория уже существует: " + newDirPath);
         } catch (IOException e) {
             System.err.println("Ошибка при создании директории: " + e.getMessage());
         }
+        return false;
     }
 
     /**
-     * Обрабатывает команду удаления файла или пустой директории.
+     * Параметры команды удаления.
      *
-     * @param command           полная строка команды, начинающаяся с 'rm'
-     * @param currentDirectory текущая директория, в которой происходит удаление
+     * @param recursive        удалять ли директории вместе с содержимым (-r)
+     * @param force            не запрашивать подтверждение (-f)
+     * @param dryRun           только подсчитать, что будет удалено (--dry-run)
+     * @param confirmThreshold количество файлов, свыше которого запрашивается подтверждение
+     * @param target           удаляемый путь
      */
-    public void handleRmCommand(String command, String currentDirectory) {
-        String[] parts = command.split("\\s+", 2); // Разбиваем на "rm" и "имя_файла_или_директории"
-        if (parts.length < 2) {
-            System.out.println("Неверный формат команды. Используйте: rm <имя_файла_или_директории>");
-            return;
+    record RmOptions(boolean recursive, boolean force, boolean dryRun, long confirmThreshold, String target) {
+    }
+
+    /**
+     * Разбирает команду удаления. Ключи указываются перед путём; остаток строки считается путём,
+     * поэтому имена с пробелами можно не заключать в кавычки.
+     *
+     * @param command полная строка команды, начинающаяся с 'rm'
+     * @return параметры команды
+     * @throws IllegalArgumentException если команда имеет неверный формат
+     */
+    static RmOptions parseRmOptions(String command) {
+        boolean recursive = false;
+        boolean force = false;
+        boolean dryRun = false;
+        long confirmThreshold = DEFAULT_CONFIRM_THRESHOLD;
+
+        String rest = command.trim().substring(2).trim(); // Отбрасываем "rm"
+        while (rest.startsWith("-")) {
+            String[] parts = rest.split("\\s+", 2);
+            rest = parts.length > 1 ? parts[1].trim() : "";
+            switch (parts[0]) {
+                case "-r", "-R" -> recursive = true;
+                case "-f" -> force = true;
+                case "-rf", "-fr" -> {
+                    recursive = true;
+                    force = true;
+                }
+                case "--dry-run" -> dryRun = true;
+                case "--confirm-above" -> {
+                    String[] value = rest.split("\\s+", 2);
+                    try {
+                        confirmThreshold = Long.parseLong(value[0]);
+                    } catch (NumberFormatException e) {
+                        confirmThreshold = -1;
+                    }
+                    if (confirmThreshold < 0) {
+                        throw new IllegalArgumentException("Значение --confirm-above должно быть неотрицательным целым числом.");
+                    }
+                    rest = value.length > 1 ? value[1].trim() : "";
+                }
+                default -> throw new IllegalArgumentException("Неизвестный ключ: " + parts[0]);
+            }
         }
 
-        String targetName = parts[1].trim(); // Обрезаем лишние пробелы
-        if (targetName.isEmpty()) {
-            System.out.println("Имя цели для удаления не может быть пустым.");
-            return;
+        if (rest.length() >= 2 && rest.startsWith("\"") && rest.endsWith("\"")) {
+            rest = rest.substring(1, rest.length() - 1);
         }
+        if (rest.isEmpty()) {
+            throw new IllegalArgumentException(RM_USAGE);
+        }
+        return new RmOptions(recursive, force, dryRun, confirmThreshold, rest);
+    }
 
-        Path targetPath = Paths.get(currentDirectory).resolve(targetName).normalize();
+    /**
+     * Обрабатывает команду удаления.
+     * Формат: {@code rm [-r] [-f] [--dry-run] [--confirm-above N] <путь>}.
+     * Без {@code -r} удаляются только файлы и пустые директории.
+     *
+     * @param command          полная строка команды, начинающаяся с 'rm'
+     * @param currentDirectory текущая директория, в которой происходит удаление
+     * @param scanner          источник ответа на запрос подтверждения; null — подтверждение невозможно
+     * @return true, если команда выполнена успешно
+     */
+    public boolean handleRmCommand(String command, String currentDirectory, Scanner scanner) {
+        RmOptions options;
+        try {
+            options = parseRmOptions(command);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+
+        Path targetPath = Paths.get(currentDirectory).resolve(options.target()).normalize();
 
         try {
             // Проверяем, существует ли файл/директория
-            if (!Files.exists(targetPath)) {
+            if (!Files.exists(targetPath, LinkOption.NOFOLLOW_LINKS)) {
                 System.out.println("Файл или директория не существует: " + targetPath);
-                return;
+                return false;
+            }
+
+            if (options.recursive() || options.dryRun()) {
+                return removeTree(targetPath, currentDirectory, options, scanner);
             }
 
             // Проверяем, является ли директория пустой перед удалением
-            if (Files.isDirectory(targetPath)) {
-                if (Files.list(targetPath).findFirst().isPresent()) {
-                    System.out.println("Ошибка: директория не пуста: " + targetPath);
-                    System.out.println("Команда 'rm' может удалять только файлы и пустые директории.");
-                    return;
+            if (Files.isDirectory(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(targetPath)) {
+                    if (entries.iterator().hasNext()) {
+                        System.out.println("Ошибка: директория не пуста: " + targetPath);
+                        System.out.println("Для удаления директории вместе с содержимым используйте 'rm -r'.");
+                        return false;
+                    }
                 }
             }
 
+            IoThrottle.acquire(IoThrottle.DELETE_COST);
+            long deleteStart = System.nanoTime();
             Files.delete(targetPath); // Удаляет файл или пустую директорию
+            Metrics.DELETE.record(System.nanoTime() - deleteStart);
             System.out.println("Удалено: " + targetPath.toAbsolutePath());
+            return true;
 
         } catch (NoSuchFileException e) {
             // Хотя мы проверили exists(), теоретически возможна ситуация между проверкой и удалением
@@ -88,5 +178,60 @@ public class DirectoryManager {
         } catch (IOException e) {
             System.err.println("Ошибка при удалении: " + e.getMessage());
         }
+        return false;
+    }
+
+    /**
+     * Рекурсивно удаляет дерево (или только подсчитывает его при {@code --dry-run}).
+     * Если файлов больше порога, запрашивает подтверждение.
+     *
+     * @param targetPath       удаляемый путь
+     * @param currentDirectory текущая директория
+     * @param options          параметры команды
+     * @param scanner          источник ответа на запрос подтверждения; null — подтверждение невозможно
+     * @return true, если удаление (или подсчёт) выполнено полностью
+     */
+    private boolean removeTree(Path targetPath, String currentDirectory, RmOptions options, Scanner scanner) {
+        if (Paths.get(currentDirectory).toAbsolutePath().normalize().startsWith(targetPath.toAbsolutePath())) {
+            System.out.println("Нельзя удалить текущую директорию или одну из её родительских: " + targetPath);
+            return false;
+        }
+
+        long expectedFiles = 0;
+        if (options.dryRun() || !options.force()) {
+            DiskUsageCalculator.Usage usage = Files.isDirectory(targetPath, LinkOption.NOFOLLOW_LINKS)
+                    ? new DiskUsageCalculator().calculate(targetPath, -1)
+                    : null;
+            expectedFiles = usage == null ? 1 : usage.getFiles();
+            String description = usage == null
+                    ? "1 файл"
+                    : usage.getFiles() + " файлов (" + FileSizeFormatter.formatFileSize(usage.getBytes()) + ") и "
+                            + usage.getDirectories() + " директорий";
+
+            if (options.dryRun()) {
+                System.out.println("Будет удалено: " + description + " в " + targetPath.toAbsolutePath());
+                return true;
+            }
+            if (expectedFiles > options.confirmThreshold()) {
+                if (scanner == null) {
+                    System.out.println("Удаление " + description + " требует подтверждения; используйте 'rm -r -f'.");
+                    return false;
+                }
+                System.out.print("Удалить " + description + " в " + targetPath.toAbsolutePath() + "? (y/n): ");
+                String answer = IoThrottle.awaitInput(scanner::nextLine).trim().toLowerCase();
+                if (!"y".equals(answer) && !"yes".equals(answer) && !"д".equals(answer) && !"да".equals(answer)) {
+                    System.out.println("Удаление отменено.");
+                    return false;
+                }
+            }
+        }
+
+        RecursiveDeleter.Result result = new RecursiveDeleter().delete(targetPath, expectedFiles);
+        System.out.println(result.summary());
+        if (result.getFailures() > 0) {
+            System.err.println("Не удалось удалить записей: " + result.getFailures());
+            return false;
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,705 @@
+// DirectorySynchronizer.java
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс для инкрементальной синхронизации директорий (команда 'sync').
+ * <p>
+ * Копирует из источника только новые и изменившиеся (по размеру и времени изменения) файлы.
+ * Состояние назначения хранится в компактном двоичном манифесте {@value #MANIFEST_NAME}
+ * в корне назначения, поэтому при повторных запусках дерево назначения не обходится.
+ * </p>
+ */
+public class DirectorySynchronizer {
+
+    /**
+     * Имя файла манифеста в корне директории назначения.
+     */
+    public static final String MANIFEST_NAME = ".fmsync";
+
+    /**
+     * Сигнатура и версия формата манифеста ("FMS1").
+     */
+    private static final int MANIFEST_MAGIC = 0x464D5331;
+
+    /**
+     * Минимальный размер записи манифеста в байтах: префикс, длина остатка пути, размер и время.
+     */
+    private static final int MIN_ENTRY_SIZE = 5;
+
+    /**
+     * Конструктор класса DirectorySynchronizer.
+     * Создаёт новый экземпляр для синхронизации директорий.
+     */
+    public DirectorySynchronizer() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Запись манифеста: размер и время изменения файла, либо отметка директории.
+     *
+     * @param size      размер файла в байтах (для директорий не используется)
+     * @param modified  время изменения в миллисекундах
+     * @param directory является ли запись директорией
+     */
+    private record Entry(long size, long modified, boolean directory) {
+    }
+
+    /**
+     * Итоги синхронизации.
+     */
+    public static final class Result {
+
+        /**
+         * Количество скопированных файлов.
+         */
+        final AtomicLong copied = new AtomicLong();
+
+        /**
+         * Количество скопированных байт.
+         */
+        final AtomicLong bytes = new AtomicLong();
+
+        /**
+         * Количество файлов без изменений.
+         */
+        long unchanged;
+
+        /**
+         * Количество удалённых файлов и директорий.
+         */
+        long deleted;
+
+        /**
+         * Количество ошибок.
+         */
+        final AtomicLong failures = new AtomicLong();
+
+        /**
+         * Время синхронизации в наносекундах.
+         */
+        long elapsedNanos;
+
+        /**
+         * @return количество ошибок
+         */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * Возвращает строку с итогами синхронизации.
+         *
+         * @return строка с итогами
+         */
+        public String summary() {
+            return String.format("Синхронизация: скопировано %d (%s), без изменений %d, удалено %d за %.2f с",
+                    copied.get(), FileSizeFormatter.formatFileSize(bytes.get()), unchanged, deleted,
+                    elapsedNanos / 1_000_000_000.0);
+        }
+    }
+
+    /**
+     * Обрабатывает команду синхронизации.
+     * Формат: {@code sync [--delete] [--jobs N] <источник> <назначение>}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'sync'
+     * @param currentDirectory текущая директория, относительно которой разрешаются пути
+     * @return true, если команда выполнена успешно
+     */
+    public boolean handleSyncCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        List<String> positional = new ArrayList<>();
+        boolean delete = false;
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ("--delete".equals(argument)) {
+                delete = true;
+            } else if ("--jobs".equals(argument) && i + 1 < arguments.size()) {
+                try {
+                    jobs = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs <= 0) {
+                    System.out.println("Значение --jobs должно быть положительным целым числом.");
+                    return false;
+                }
+            } else {
+                positional.add(argument);
+            }
+        }
+
+        if (positional.size() != 2) {
+            System.out.println("Неверный формат команды. Используйте: sync [--delete] [--jobs N] <источник> <назначение>");
+            return false;
+        }
+
+        Path source = Paths.get(currentDirectory).resolve(positional.get(0)).normalize();
+        Path target = Paths.get(currentDirectory).resolve(positional.get(1)).normalize();
+
+        try {
+            Result result = synchronize(source, target, delete, jobs);
+            System.out.println(result.summary());
+            if (result.getFailures() > 0) {
+                System.err.println("Ошибок при синхронизации: " + result.getFailures());
+            }
+            return result.getFailures() == 0;
+        } catch (IOException e) {
+            System.err.println("Ошибка при синхронизации: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Синхронизирует содержимое директории {@code source} в директорию {@code target}.
+     *
+     * @param source исходная директория
+     * @param target директория назначения (будет создана, если не существует)
+     * @param delete удалять ли из назначения файлы, отсутствующие в источнике
+     * @param jobs   количество потоков копирования
+     * @return итоги синхронизации
+     * @throws IOException если источник недоступен или манифест не удалось записать
+     */
+    public Result synchronize(Path source, Path target, boolean delete, int jobs) throws IOException {
+        if (!Files.isDirectory(source)) {
+            throw new IOException("Исходная директория не существует: " + source);
+        }
+        Path sourceRoot = source.toAbsolutePath().normalize();
+        Path targetRoot = target.toAbsolutePath().normalize();
+        Path sourceReal = source.toRealPath();
+        Path targetReal = Files.exists(target) ? target.toRealPath() : targetRoot;
+        if (targetRoot.startsWith(sourceRoot) || targetReal.startsWith(sourceReal)) {
+            throw new IOException("Назначение не может находиться внутри источника: " + target);
+        }
+        if (sourceRoot.startsWith(targetRoot) || sourceReal.startsWith(targetReal)) {
+            // Иначе первый запуск учтёт источник как часть назначения, и --delete удалит его
+            throw new IOException("Источник не может находиться внутри назначения: " + source);
+        }
+
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        Files.createDirectories(target);
+
+        Path manifestPath = target.resolve(MANIFEST_NAME);
+        Map<String, Entry> previous = loadPrevious(manifestPath, target);
+        Map<String, Entry> current = new ConcurrentHashMap<>(Math.max(16, previous.size() * 4 / 3));
+        List<String> toCopy = new ArrayList<>();
+        Map<String, Entry> sourceEntries = new HashMap<>();
+        Set<String> unreadable = new HashSet<>();
+
+        // Обходим источник: директории создаём сразу, изменившиеся файлы ставим в очередь
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.equals(source)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String relative = relativeName(source, dir);
+                Entry known = previous.remove(relative);
+                if (known == null || !known.directory()) {
+                    Path copy = target.resolve(relative);
+                    try {
+                        // Файл источника стал директорией: прежняя копия файла мешает её созданию
+                        if (Files.exists(copy, LinkOption.NOFOLLOW_LINKS) && !Files.isDirectory(copy, LinkOption.NOFOLLOW_LINKS)) {
+                            Files.delete(copy);
+                            result.deleted++;
+                        }
+                        Files.createDirectories(copy);
+                    } catch (IOException e) {
+                        System.err.println("Не удалось создать директорию " + copy + ": " + e.getMessage());
+                        result.failures.incrementAndGet();
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+                current.put(relative, new Entry(0L, 0L, true));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String relative = relativeName(source, file);
+                if (relative.equals(MANIFEST_NAME)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Entry actual = new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), false);
+                Entry known = previous.remove(relative);
+                if (actual.equals(known)) {
+                    current.put(relative, actual);
+                    result.unchanged++;
+                } else {
+                    if (known == null || known.directory()) {
+                        Path copy = target.resolve(relative);
+                        if (Files.isDirectory(copy, LinkOption.NOFOLLOW_LINKS)) {
+                            // Директория источника стала файлом: удаляем её копию вместе с содержимым
+                            try {
+                                deleteTree(copy, result);
+                            } catch (IOException e) {
+                                System.err.println("Не удалось удалить директорию " + copy + ": " + e.getMessage());
+                                result.failures.incrementAndGet();
+                                return FileVisitResult.CONTINUE;
+                            }
+                            String prefix = relative + "/";
+                            previous.keySet().removeIf(path -> path.startsWith(prefix));
+                        }
+                    }
+                    toCopy.add(relative);
+                    sourceEntries.put(relative, actual);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Не удалось прочитать: " + file + ": " + e.getMessage());
+                result.failures.incrementAndGet();
+                unreadable.add(relativeName(source, file));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                if (e != null) {
+                    // Директорию не удалось дочитать — оставшееся содержимое назначения не трогаем
+                    System.err.println("Не удалось прочитать директорию: " + dir + ": " + e.getMessage());
+                    result.failures.incrementAndGet();
+                    unreadable.add(relativeName(source, dir));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Недоступные в источнике пути и их поддеревья сохраняются в назначении и в манифесте
+        if (!unreadable.isEmpty()) {
+            previous.entrySet().removeIf(entry -> {
+                if (isUnder(entry.getKey(), unreadable)) {
+                    current.put(entry.getKey(), entry.getValue());
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        copyChanged(source, target, toCopy, sourceEntries, current, result, jobs);
+
+        // В previous остались записи, которых больше нет в источнике
+        if (delete) {
+            deleteStale(target, sourceRoot, sourceReal, previous, result);
+        }
+
+        writeManifest(manifestPath, current);
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Копирует новые и изменившиеся файлы в пуле потоков.
+     *
+     * @param source        корень источника
+     * @param target        корень назначения
+     * @param toCopy        относительные пути файлов для копирования
+     * @param sourceEntries атрибуты копируемых файлов в источнике
+     * @param current       новый манифест (пополняется успешно скопированными файлами)
+     * @param result        итоги синхронизации
+     * @param jobs          количество потоков
+     * @throws IOException если копирование было прервано
+     */
+    private void copyChanged(Path source, Path target, List<String> toCopy, Map<String, Entry> sourceEntries,
+                             Map<String, Entry> current, Result result, int jobs) throws IOException {
+        if (toCopy.isEmpty()) {
+            return;
+        }
+        LargeFileCopier largeFileCopier = new LargeFileCopier(LargeFileCopier.DEFAULT_THRESHOLD, 1, true, false);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, jobs));
+        try {
+            List<Future<?>> tasks = new ArrayList<>(toCopy.size());
+            for (String relative : toCopy) {
+                Entry entry = sourceEntries.get(relative);
+                tasks.add(pool.submit(() -> {
+                    try {
+                        Path from = source.resolve(relative);
+                        Path to = target.resolve(relative);
+                        if (largeFileCopier.accepts(entry.size())) {
+                            largeFileCopier.copy(from, to);
+                            Files.setLastModifiedTime(to, Files.getLastModifiedTime(from));
+                        } else {
+                            IoThrottle.acquire(entry.size());
+                            long copyStart = System.nanoTime();
+                            Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                            Metrics.recordCopy(Metrics.COPY_FILE, entry.size(), System.nanoTime() - copyStart);
+                        }
+                        current.put(relative, entry);
+                        result.copied.incrementAndGet();
+                        result.bytes.addAndGet(entry.size());
+                    } catch (IOException e) {
+                        result.failures.incrementAndGet();
+                        System.err.println("Ошибка при копировании файла " + relative + ": " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Синхронизация прервана", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка в потоке копирования: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Проверяет, совпадает ли относительный путь с одним из путей набора или лежит внутри него.
+     *
+     * @param relative относительный путь с разделителем '/'
+     * @param roots    относительные пути ("" — весь корень)
+     * @return true, если путь входит в одно из поддеревьев
+     */
+    private static boolean isUnder(String relative, Set<String> roots) {
+        if (roots.contains("")) {
+            return true;
+        }
+        for (String path = relative; ; path = path.substring(0, path.lastIndexOf('/'))) {
+            if (roots.contains(path)) {
+                return true;
+            }
+            if (path.lastIndexOf('/') < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Удаляет из назначения файлы и директории, которых больше нет в источнике.
+     * Сначала удаляются файлы, затем директории — от самых глубоких к корню.
+     * Пути, ведущие внутрь источника (например, через символические ссылки), не удаляются никогда.
+     *
+     * @param target     корень назначения
+     * @param sourceRoot абсолютный путь источника
+     * @param sourceReal реальный путь источника
+     * @param stale      записи, отсутствующие в источнике
+     * @param result     итоги синхронизации
+     */
+    private void deleteStale(Path target, Path sourceRoot, Path sourceReal, Map<String, Entry> stale, Result result) {
+        List<String> directories = new ArrayList<>();
+        Path targetRoot = target.toAbsolutePath().normalize();
+        for (Map.Entry<String, Entry> entry : stale.entrySet()) {
+            Path path = targetRoot.resolve(entry.getKey()).normalize();
+            if (path.startsWith(sourceRoot) || path.startsWith(sourceReal) || insideSource(path, sourceReal)) {
+                continue;
+            }
+            if (entry.getValue().directory()) {
+                directories.add(entry.getKey());
+                continue;
+            }
+            deleteQuietly(target.resolve(entry.getKey()), result);
+        }
+        directories.sort(Comparator.comparingInt(String::length).reversed());
+        for (String directory : directories) {
+            deleteQuietly(target.resolve(directory), result);
+        }
+    }
+
+    /**
+     * Проверяет, ведёт ли путь назначения внутрь источника после разрешения символических ссылок.
+     *
+     * @param path       путь в назначении
+     * @param sourceReal реальный путь источника
+     * @return true, если реальный путь родительской директории лежит внутри источника
+     */
+    private static boolean insideSource(Path path, Path sourceReal) {
+        try {
+            Path parent = path.getParent();
+            return parent != null && parent.toRealPath().resolve(path.getFileName()).startsWith(sourceReal);
+        } catch (IOException e) {
+            return false; // Родителя уже нет — удалять нечего
+        }
+    }
+
+    /**
+     * Удаляет файл или пустую директорию, сообщая об ошибке без прерывания синхронизации.
+     *
+     * @param path   удаляемый путь
+     * @param result итоги синхронизации
+     */
+    private void deleteQuietly(Path path, Result result) {
+        try {
+            IoThrottle.acquire(IoThrottle.DELETE_COST);
+            long deleteStart = System.nanoTime();
+            Files.delete(path);
+            Metrics.DELETE.record(System.nanoTime() - deleteStart);
+            result.deleted++;
+        } catch (NoSuchFileException e) {
+            // Уже удалено вне файлового менеджера
+        } catch (IOException e) {
+            result.failures.incrementAndGet();
+            System.err.println("Ошибка при удалении " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Удаляет директорию назначения вместе с содержимым (символические ссылки не разыменовываются).
+     *
+     * @param directory удаляемая директория
+     * @param result    итоги синхронизации
+     * @throws IOException если что-то из содержимого не удалось удалить
+     */
+    private static void deleteTree(Path directory, Result result) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                result.deleted++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                result.deleted++;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Строит исходное состояние по дереву назначения (используется, если манифеста ещё нет).
+     *
+     * @param target корень назначения
+     * @return записи для файлов и директорий назначения
+     * @throws IOException если дерево не удалось обойти
+     */
+    private Map<String, Entry> scanTarget(Path target) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        Files.walkFileTree(target, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(target)) {
+                    entries.put(relativeName(target, dir), new Entry(0L, 0L, true));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                entries.put(relativeName(target, file), new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), false));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        entries.remove(MANIFEST_NAME);
+        return entries;
+    }
+
+    /**
+     * Возвращает путь относительно корня с разделителем '/'.
+     *
+     * @param root корень
+     * @param path путь внутри корня
+     * @return относительный путь
+     */
+    private static String relativeName(Path root, Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * Возвращает прежнее состояние назначения: из манифеста, а если его нет или он повреждён —
+     * по самому дереву назначения.
+     *
+     * @param manifestPath путь к манифесту
+     * @param target       корень назначения
+     * @return записи для файлов и директорий назначения
+     * @throws IOException если дерево назначения не удалось обойти
+     */
+    private Map<String, Entry> loadPrevious(Path manifestPath, Path target) throws IOException {
+        if (Files.exists(manifestPath)) {
+            try {
+                return readManifest(manifestPath);
+            } catch (IOException e) {
+                System.err.println("Манифест повреждён, состояние назначения будет прочитано заново: " + e.getMessage());
+            }
+        }
+        return scanTarget(target);
+    }
+
+    /**
+     * Читает манифест.
+     * <p>
+     * Формат: сигнатура, количество записей, затем для каждой записи (в порядке сортировки путей)
+     * длина общего префикса с предыдущим путём, остаток пути, флаг директории и размер,
+     * а также разность времени изменения с предыдущей записью.
+     * </p>
+     *
+     * @param manifestPath путь к манифесту
+     * @return записи манифеста
+     * @throws IOException если манифест повреждён или не может быть прочитан
+     */
+    private Map<String, Entry> readManifest(Path manifestPath) throws IOException {
+        long fileSize = Files.size(manifestPath);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestPath), 1 << 16))) {
+            if (in.readInt() != MANIFEST_MAGIC) {
+                throw new IOException("Неизвестный формат манифеста: " + manifestPath);
+            }
+            int count = in.readInt();
+            // Каждая запись занимает не меньше MIN_ENTRY_SIZE байт, поэтому большее количество — признак повреждения
+            if (count < 0 || count > (fileSize - 8) / MIN_ENTRY_SIZE) {
+                throw new IOException("Некорректное количество записей в манифесте: " + count);
+            }
+            Map<String, Entry> entries = new HashMap<>(Math.max(16, (int) (count * 4L / 3)));
+            String previousPath = "";
+            long previousModified = 0L;
+            for (int i = 0; i < count; i++) {
+                long prefix = readVarLong(in);
+                if (prefix > previousPath.length()) {
+                    throw new IOException("Некорректная длина префикса в манифесте: " + prefix);
+                }
+                String path = previousPath.substring(0, (int) prefix) + in.readUTF();
+                long sizeAndFlag = readVarLong(in);
+                long modified = previousModified + zigZagDecode(readVarLong(in));
+                entries.put(path, new Entry(sizeAndFlag >>> 1, modified, (sizeAndFlag & 1L) != 0));
+                previousPath = path;
+                previousModified = modified;
+            }
+            return entries;
+        } catch (EOFException e) {
+            throw new IOException("Манифест обрезан: " + manifestPath, e);
+        }
+    }
+
+    /**
+     * Атомарно записывает манифест (через временный файл).
+     *
+     * @param manifestPath путь к манифесту
+     * @param entries      записи манифеста
+     * @throws IOException если манифест не удалось записать
+     */
+    private void writeManifest(Path manifestPath, Map<String, Entry> entries) throws IOException {
+        List<String> paths = new ArrayList<>(entries.keySet());
+        paths.sort(null);
+
+        Path temporary = manifestPath.resolveSibling(MANIFEST_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(paths.size());
+            String previousPath = "";
+            long previousModified = 0L;
+            for (String path : paths) {
+                Entry entry = entries.get(path);
+                int prefix = commonPrefixLength(previousPath, path);
+                writeVarLong(out, prefix);
+                out.writeUTF(path.substring(prefix));
+                writeVarLong(out, (entry.size() << 1) | (entry.directory() ? 1L : 0L));
+                writeVarLong(out, zigZagEncode(entry.modified() - previousModified));
+                previousPath = path;
+                previousModified = entry.modified();
+            }
+        }
+        Files.move(temporary, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Возвращает длину общего префикса двух строк.
+     *
+     * @param first  первая строка
+     * @param second вторая строка
+     * @return длина общего префикса
+     */
+    private static int commonPrefixLength(String first, String second) {
+        int limit = Math.min(first.length(), second.length());
+        int index = 0;
+        while (index < limit && first.charAt(index) == second.charAt(index)) {
+            index++;
+        }
+        // Не разрезаем суррогатную пару
+        if (index > 0 && Character.isHighSurrogate(first.charAt(index - 1))) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * Записывает неотрицательное число в формате переменной длины (по 7 бит в байте).
+     *
+     * @param out   поток вывода
+     * @param value записываемое значение
+     * @throws IOException если произошла ошибка записи
+     */
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Читает число, записанное методом {@link #writeVarLong(DataOutputStream, long)}.
+     *
+     * @param in поток ввода
+     * @return прочитанное значение
+     * @throws IOException если произошла ошибка чтения
+     */
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Некорректное число переменной длины");
+    }
+
+    /**
+     * Преобразует число со знаком так, чтобы малые по модулю значения кодировались коротко.
+     *
+     * @param value число со знаком
+     * @return закодированное значение
+     */
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Обратное преобразование к {@link #zigZagEncode(long)}.
+     *
+     * @param value закодированное значение
+     * @return число со знаком
+     */
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
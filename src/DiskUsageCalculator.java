@@ -0,0 +1,337 @@
+// DiskUsageCalculator.java
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс для подсчёта занимаемого директорией места (команда 'du').
+ * <p>
+ * Дерево обходится параллельно в {@link ForkJoinPool}: каждая поддиректория обрабатывается
+ * отдельной задачей, а итоги поддеревьев выводятся по мере их завершения. На каждую директорию
+ * приходится один небольшой объект-итог; для файлов объекты не создаются. Файлы с несколькими
+ * жёсткими ссылками учитываются один раз.
+ * </p>
+ */
+public class DiskUsageCalculator {
+
+    /**
+     * Глубина вывода промежуточных итогов по умолчанию.
+     */
+    private static final int DEFAULT_REPORT_DEPTH = 1;
+
+    /**
+     * Маска типа файла в поле mode ("unix:mode").
+     */
+    private static final int S_IFMT = 0170000;
+
+    /**
+     * Значение типа "директория" в поле mode.
+     */
+    private static final int S_IFDIR = 0040000;
+
+    /**
+     * Поддерживает ли файловая система представление атрибутов "unix" (нужно для учёта жёстких ссылок).
+     */
+    private static final boolean UNIX_VIEW_SUPPORTED =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    /**
+     * Конструктор класса DiskUsageCalculator.
+     * Создаёт новый экземпляр для подсчёта занимаемого места.
+     */
+    public DiskUsageCalculator() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Итоги по поддереву: суммарный размер, количество файлов и директорий.
+     */
+    public static final class Usage {
+
+        /**
+         * Суммарный размер файлов в байтах.
+         */
+        long bytes;
+
+        /**
+         * Количество файлов (без учёта повторных жёстких ссылок).
+         */
+        long files;
+
+        /**
+         * Количество директорий, включая корень поддерева.
+         */
+        long directories;
+
+        /**
+         * Добавляет к итогам значения поддерева.
+         *
+         * @param other итоги поддерева
+         */
+        void add(Usage other) {
+            bytes += other.bytes;
+            files += other.files;
+            directories += other.directories;
+        }
+
+        /**
+         * @return суммарный размер файлов в байтах
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return количество файлов
+         */
+        public long getFiles() {
+            return files;
+        }
+
+        /**
+         * @return количество директорий
+         */
+        public long getDirectories() {
+            return directories;
+        }
+    }
+
+    /**
+     * Обрабатывает команду подсчёта занимаемого места.
+     * Формат: {@code du <путь> [--depth N]}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'du'
+     * @param currentDirectory текущая директория, относительно которой разрешается путь
+     * @return true, если команда выполнена успешно
+     */
+    public boolean handleDuCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        String target = null;
+        int depth = DEFAULT_REPORT_DEPTH;
+
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ("--depth".equals(argument) && i + 1 < arguments.size()) {
+                try {
+                    depth = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    depth = -1;
+                }
+                if (depth < 0) {
+                    System.out.println("Значение --depth должно быть неотрицательным целым числом.");
+                    return false;
+                }
+            } else if (target == null && !argument.startsWith("--")) {
+                target = argument;
+            } else {
+                System.out.println("Неверный формат команды. Используйте: du <путь> [--depth N]");
+                return false;
+            }
+        }
+
+        Path root = (target == null ? Paths.get(currentDirectory) : Paths.get(currentDirectory).resolve(target)).normalize();
+        if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+            System.out.println("Директория не существует или недоступна: " + root);
+            return false;
+        }
+
+        long startNanos = System.nanoTime();
+        Usage usage = calculate(root, depth);
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+        System.out.println("Итого: " + FileSizeFormatter.formatFileSize(usage.bytes) + " в " + usage.files
+                + " файлах и " + usage.directories + " папках (" + elapsedMillis + " мс).");
+        return true;
+    }
+
+    /**
+     * Подсчитывает занимаемое поддеревом место.
+     *
+     * @param root        корень поддерева
+     * @param reportDepth максимальная глубина, до которой выводятся итоги поддеревьев; -1 — ничего не выводить
+     * @return итоги по всему поддереву
+     */
+    public Usage calculate(Path root, int reportDepth) {
+        Walk walk = new Walk(root, reportDepth);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        try {
+            Usage usage = pool.invoke(new DirectoryTask(walk, root, 0));
+            if (walk.errors.get() > 0) {
+                System.err.println("Не удалось прочитать записей: " + walk.errors.get());
+            }
+            return usage;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Общее состояние одного обхода.
+     */
+    private static final class Walk {
+
+        /**
+         * Корень обхода (для вывода относительных путей).
+         */
+        final Path root;
+
+        /**
+         * Максимальная глубина вывода промежуточных итогов.
+         */
+        final int reportDepth;
+
+        /**
+         * Идентификаторы уже учтённых файлов с несколькими жёсткими ссылками.
+         */
+        final Set<Object> seenLinks = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Количество записей, которые не удалось прочитать.
+         */
+        final AtomicLong errors = new AtomicLong();
+
+        /**
+         * @param root        корень обхода
+         * @param reportDepth максимальная глубина вывода
+         */
+        Walk(Path root, int reportDepth) {
+            this.root = root;
+            this.reportDepth = reportDepth;
+        }
+    }
+
+    /**
+     * Задача подсчёта одной директории: файлы учитываются на месте, поддиректории — в дочерних задачах.
+     */
+    @SuppressWarnings("serial") // Задача живёт только в пуле и не сериализуется
+    private static final class DirectoryTask extends RecursiveTask<Usage> {
+
+        /**
+         * Состояние обхода.
+         */
+        private final Walk walk;
+
+        /**
+         * Обрабатываемая директория.
+         */
+        private final Path directory;
+
+        /**
+         * Глубина директории относительно корня.
+         */
+        private final int depth;
+
+        /**
+         * @param walk      состояние обхода
+         * @param directory обрабатываемая директория
+         * @param depth     глубина директории относительно корня
+         */
+        DirectoryTask(Walk walk, Path directory, int depth) {
+            this.walk = walk;
+            this.directory = directory;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Usage compute() {
+            JobScheduler.checkCancelled();
+            Usage usage = new Usage();
+            usage.directories = 1;
+            List<DirectoryTask> subtasks = new ArrayList<>();
+
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    try {
+                        if (UNIX_VIEW_SUPPORTED) {
+                            accountUnixEntry(entry, usage, subtasks);
+                        } else {
+                            accountBasicEntry(entry, usage, subtasks);
+                        }
+                    } catch (IOException e) {
+                        walk.errors.incrementAndGet();
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                walk.errors.incrementAndGet();
+                System.err.println("Ошибка при чтении директории " + directory + ": " + e.getMessage());
+            }
+
+            for (DirectoryTask subtask : subtasks) {
+                subtask.fork();
+            }
+            for (DirectoryTask subtask : subtasks) {
+                usage.add(subtask.join());
+            }
+
+            if (depth <= walk.reportDepth) {
+                Path relative = walk.root.relativize(directory);
+                String name = relative.toString().isEmpty() ? "." : relative.toString();
+                System.out.println(FileSizeFormatter.formatFileSize(usage.bytes) + "\t" + usage.files + "\t" + name);
+            }
+            return usage;
+        }
+
+        /**
+         * Учитывает запись, читая атрибуты "unix" одним запросом (включая число жёстких ссылок).
+         *
+         * @param entry    запись директории
+         * @param usage    итоги текущей директории
+         * @param subtasks список задач для поддиректорий
+         * @throws IOException если атрибуты не удалось прочитать
+         */
+        private void accountUnixEntry(Path entry, Usage usage, List<DirectoryTask> subtasks) throws IOException {
+            Map<String, Object> attributes = Files.readAttributes(entry, "unix:mode,size,nlink,dev,ino", LinkOption.NOFOLLOW_LINKS);
+            int mode = (Integer) attributes.get("mode");
+            if ((mode & S_IFMT) == S_IFDIR) {
+                subtasks.add(new DirectoryTask(walk, entry, depth + 1));
+                return;
+            }
+            if ((Integer) attributes.get("nlink") > 1
+                    && !walk.seenLinks.add(new FileId((Long) attributes.get("dev"), (Long) attributes.get("ino")))) {
+                return; // Эта жёсткая ссылка уже учтена
+            }
+            usage.files++;
+            usage.bytes += (Long) attributes.get("size");
+        }
+
+        /**
+         * Учитывает запись по базовым атрибутам (на файловых системах без представления "unix").
+         *
+         * @param entry    запись директории
+         * @param usage    итоги текущей директории
+         * @param subtasks список задач для поддиректорий
+         * @throws IOException если атрибуты не удалось прочитать
+         */
+        private void accountBasicEntry(Path entry, Usage usage, List<DirectoryTask> subtasks) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isDirectory()) {
+                subtasks.add(new DirectoryTask(walk, entry, depth + 1));
+                return;
+            }
+            usage.files++;
+            usage.bytes += attributes.size();
+        }
+    }
+
+    /**
+     * Идентификатор файла в пределах системы: устройство и номер inode.
+     *
+     * @param device номер устройства
+     * @param inode  номер inode
+     */
+    private record FileId(long device, long inode) {
+    }
+}
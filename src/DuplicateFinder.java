@@ -0,0 +1,429 @@
+// DuplicateFinder.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * Класс для поиска файлов-дубликатов (команда 'dups').
+ * <p>
+ * Поиск выполняется по стадиям, каждая из которых отсеивает кандидатов для следующей:
+ * </p>
+ * <ol>
+ *     <li>группировка по размеру (первый проход считает размеры в примитивной хеш-таблице без хранения путей,
+ *     второй запоминает только файлы с неуникальным размером);</li>
+ *     <li>хеш первых и последних 4 КБ для файлов одинакового размера;</li>
+ *     <li>полный хеш SHA-256 последовательным чтением файла — только для совпавших на второй стадии.</li>
+ * </ol>
+ * <p>
+ * Группы одного размера обрабатываются параллельно. Жёсткие ссылки на один файл дубликатами не считаются.
+ * </p>
+ */
+public class DuplicateFinder {
+
+    /**
+     * Размер проверяемых начала и конца файла на второй стадии.
+     */
+    private static final int EDGE_SIZE = 4 * 1024;
+
+    /**
+     * Размер буфера чтения при полном хешировании.
+     */
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Буфер чтения потока при полном хешировании (переиспользуется между файлами). Канал читает
+     * в буфер вне кучи без промежуточного копирования.
+     */
+    private static final ThreadLocal<ByteBuffer> HASH_BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(HASH_BUFFER_SIZE));
+
+    /**
+     * Конструктор класса DuplicateFinder.
+     * Создаёт новый экземпляр для поиска дубликатов.
+     */
+    public DuplicateFinder() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Группа одинаковых файлов.
+     *
+     * @param size  размер каждого файла
+     * @param paths пути к файлам группы (относительно корня поиска)
+     */
+    record DuplicateGroup(long size, List<Path> paths) {
+    }
+
+    /**
+     * Обрабатывает команду поиска дубликатов.
+     * Формат: {@code dups <путь> [--jobs N]}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'dups'
+     * @param currentDirectory текущая директория, относительно которой разрешается путь
+     * @return true, если команда выполнена успешно
+     */
+    public boolean handleDupsCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        String target = null;
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ("--jobs".equals(argument) && i + 1 < arguments.size()) {
+                try {
+                    jobs = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs <= 0) {
+                    System.out.println("Значение --jobs должно быть положительным целым числом.");
+                    return false;
+                }
+            } else if (target == null && !argument.startsWith("--")) {
+                target = argument;
+            } else {
+                System.out.println("Неверный формат команды. Используйте: dups <путь> [--jobs N]");
+                return false;
+            }
+        }
+
+        Path root = (target == null ? Paths.get(currentDirectory) : Paths.get(currentDirectory).resolve(target)).normalize();
+        if (!Files.isDirectory(root)) {
+            System.out.println("Директория не существует или недоступна: " + root);
+            return false;
+        }
+
+        try {
+            long startNanos = System.nanoTime();
+            List<DuplicateGroup> groups = findDuplicates(root, jobs);
+            long reclaimable = 0;
+            long extraCopies = 0;
+            for (DuplicateGroup group : groups) {
+                System.out.println("\nДубликаты (" + FileSizeFormatter.formatFileSize(group.size()) + ", копий: " + group.paths().size() + "):");
+                for (Path path : group.paths()) {
+                    System.out.println("  " + path);
+                }
+                reclaimable += group.size() * (group.paths().size() - 1);
+                extraCopies += group.paths().size() - 1;
+            }
+            System.out.println("\nГрупп дубликатов: " + groups.size() + ", лишних копий: " + extraCopies
+                    + ", можно освободить: " + FileSizeFormatter.formatFileSize(reclaimable)
+                    + " (" + (System.nanoTime() - startNanos) / 1_000_000L + " мс).");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ошибка при поиске дубликатов: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Находит группы одинаковых файлов в поддереве.
+     *
+     * @param root корень поиска
+     * @param jobs количество потоков хеширования
+     * @return группы дубликатов, упорядоченные по убыванию размера
+     * @throws IOException если дерево не удалось обойти
+     */
+    List<DuplicateGroup> findDuplicates(Path root, int jobs) throws IOException {
+        // Стадия 1а: считаем количество файлов каждого размера, не запоминая пути
+        SizeCounter counter = new SizeCounter();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && attrs.size() > 0) {
+                    counter.increment(attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Стадия 1б: запоминаем только файлы с неуникальным размером (без повторных жёстких ссылок)
+        Map<Long, List<Path>> candidates = new HashMap<>();
+        Set<Object> seenFileKeys = new HashSet<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && attrs.size() > 0 && counter.get(attrs.size()) > 1) {
+                    Object fileKey = attrs.fileKey();
+                    if (fileKey == null || seenFileKeys.add(fileKey)) {
+                        candidates.computeIfAbsent(attrs.size(), size -> new ArrayList<>(2)).add(root.relativize(file));
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        seenFileKeys.clear();
+
+        // Стадии 2 и 3: каждая группа одного размера обрабатывается отдельной задачей
+        List<DuplicateGroup> groups = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, jobs));
+        try {
+            List<Future<List<DuplicateGroup>>> tasks = new ArrayList<>();
+            for (Map.Entry<Long, List<Path>> entry : candidates.entrySet()) {
+                if (entry.getValue().size() > 1) {
+                    long size = entry.getKey();
+                    List<Path> paths = entry.getValue();
+                    tasks.add(pool.submit(() -> resolveSizeGroup(root, size, paths)));
+                }
+            }
+            candidates.clear();
+            for (Future<List<DuplicateGroup>> task : tasks) {
+                groups.addAll(task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Поиск дубликатов прерван", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        groups.sort(Comparator.comparingLong(DuplicateGroup::size).reversed()
+                .thenComparing(group -> group.paths().get(0).toString()));
+        return groups;
+    }
+
+    /**
+     * Разбивает группу файлов одного размера на группы одинакового содержимого.
+     *
+     * @param root  корень поиска
+     * @param size  размер файлов группы
+     * @param paths относительные пути файлов группы
+     * @return найденные группы дубликатов
+     */
+    private List<DuplicateGroup> resolveSizeGroup(Path root, long size, List<Path> paths) {
+        List<List<Path>> stage = List.of(paths);
+
+        // Стадия 2: для файлов больше двух краёв сравниваем начало и конец
+        if (size > 2L * EDGE_SIZE) {
+            Map<Long, List<Path>> byEdges = new HashMap<>();
+            for (Path path : paths) {
+                try {
+                    byEdges.computeIfAbsent(edgeHash(root.resolve(path), size), key -> new ArrayList<>(2)).add(path);
+                } catch (IOException e) {
+                    System.err.println("Ошибка при чтении файла " + path + ": " + e.getMessage());
+                }
+            }
+            stage = new ArrayList<>(byEdges.values());
+        }
+
+        // Стадия 3: полный хеш только для оставшихся совпадений
+        List<DuplicateGroup> result = new ArrayList<>();
+        for (List<Path> group : stage) {
+            if (group.size() < 2) {
+                continue;
+            }
+            Map<String, List<Path>> byContent = new HashMap<>();
+            for (Path path : group) {
+                try {
+                    byContent.computeIfAbsent(fullHash(root.resolve(path), size), key -> new ArrayList<>(2)).add(path);
+                } catch (IOException e) {
+                    System.err.println("Ошибка при чтении файла " + path + ": " + e.getMessage());
+                }
+            }
+            for (List<Path> duplicates : byContent.values()) {
+                if (duplicates.size() > 1) {
+                    duplicates.sort(null);
+                    result.add(new DuplicateGroup(size, duplicates));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Вычисляет контрольную сумму первых и последних {@value #EDGE_SIZE} байт файла.
+     *
+     * @param file файл
+     * @param size размер файла
+     * @return 64-битное значение: CRC32C начала в старших битах и CRC32C конца в младших
+     * @throws IOException если файл не удалось прочитать
+     */
+    private long edgeHash(Path file, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(EDGE_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32C head = new CRC32C();
+            readFully(channel, buffer, 0L);
+            head.update(buffer.flip());
+
+            CRC32C tail = new CRC32C();
+            readFully(channel, buffer.clear(), size - EDGE_SIZE);
+            tail.update(buffer.flip());
+            return (head.getValue() << 32) | tail.getValue();
+        }
+    }
+
+    /**
+     * Заполняет буфер данными файла начиная с указанной позиции.
+     *
+     * @param channel  канал файла
+     * @param buffer   заполняемый буфер
+     * @param position позиция в файле
+     * @throws IOException если файл короче ожидаемого или не может быть прочитан
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Файл изменился во время чтения");
+            }
+        }
+    }
+
+    /**
+     * Вычисляет SHA-256 всего файла, читая его порциями по {@value #HASH_BUFFER_SIZE} байт в буфер потока.
+     *
+     * @param file файл
+     * @param size размер файла
+     * @return шестнадцатеричная строка хеша
+     * @throws IOException если файл не удалось прочитать
+     */
+    static String fullHash(Path file, long size) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Алгоритм SHA-256 недоступен", e);
+        }
+        ByteBuffer buffer = HASH_BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (long position = 0; position < size; position += buffer.limit()) {
+                buffer.clear().limit((int) Math.min(HASH_BUFFER_SIZE, size - position));
+                readFully(channel, buffer, position);
+                digest.update(buffer.flip());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Хеш-таблица с открытой адресацией «размер → количество» на примитивных массивах.
+     * Не создаёт объектов на каждую запись, поэтому подходит для миллионов файлов.
+     */
+    private static final class SizeCounter {
+
+        /**
+         * Ключ, обозначающий пустую ячейку (размер 0 в таблицу не попадает).
+         */
+        private static final long EMPTY = 0L;
+
+        /**
+         * Ключи (размеры файлов).
+         */
+        private long[] keys = new long[1024];
+
+        /**
+         * Количество файлов для каждого ключа.
+         */
+        private int[] counts = new int[1024];
+
+        /**
+         * Количество занятых ячеек.
+         */
+        private int size;
+
+        /**
+         * Увеличивает счётчик для размера.
+         *
+         * @param key размер файла (больше нуля)
+         */
+        void increment(long key) {
+            if (size * 2 >= keys.length) {
+                grow();
+            }
+            int slot = find(keys, key);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot]++;
+        }
+
+        /**
+         * Возвращает количество файлов указанного размера.
+         *
+         * @param key размер файла
+         * @return количество файлов
+         */
+        int get(long key) {
+            int slot = find(keys, key);
+            return keys[slot] == EMPTY ? 0 : counts[slot];
+        }
+
+        /**
+         * Находит ячейку с ключом или первую пустую ячейку на пути поиска.
+         *
+         * @param table таблица ключей
+         * @param key   искомый ключ
+         * @return индекс ячейки
+         */
+        private static int find(long[] table, long key) {
+            int mask = table.length - 1;
+            int slot = (int) (mix(key) & mask);
+            while (table[slot] != EMPTY && table[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Удваивает таблицу и переносит записи.
+         */
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = find(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        /**
+         * Перемешивает биты ключа для равномерного распределения по ячейкам.
+         *
+         * @param key ключ
+         * @return перемешанное значение
+         */
+        private static long mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 32);
+        }
+    }
+}
@@ -6,12 +6,14 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CancellationException;
 
 /**
  * Класс для выполнения операций копирования файлов.
  * <p>
  * Отвечает за обработку команды 'copy', проверку исходного файла,
  * создание целевой директории и непосредственное копирование файла.
+ * Рекурсивное копирование директорий ({@code copy -r}) выполняет {@link DirectoryCopier}.
  * </p>
  */
 public class FileCopier {
@@ -30,19 +32,70 @@ public class FileCopier {
      * @param command          полная строка команды, начинающаяся с 'copy'
      * @param currentDirectory текущая директория, из которой копируется файл
      * @param scanner          объект Scanner для потенциального запроса подтверждения (пока не используется напрямую)
+     * @return true, если команда выполнена успешно
      */
-    public void handleCopyCommand(String command, String currentDirectory, Scanner scanner) {
+    public boolean handleCopyCommand(String command, String currentDirectory, Scanner scanner) {
         // Разбор аргументов команды с учётом кавычек
         List<String> arguments = parseArguments(command);
-        if (arguments.size() < 3) { // "copy" + source + target
-            System.out.println("Неверный формат команды. Используйте: copy <имя_файла> <целевая_директория> или copy \"<имя файла>\" \"<целевая директория>\"");
-            return;
+        List<String> positional = new ArrayList<>();
+        boolean recursive = false;
+        boolean sparse = true;
+        boolean verify = false;
+        boolean direct = false;
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+        int threads = DirectoryCopier.DEFAULT_JOBS;
+        long threshold = LargeFileCopier.DEFAULT_THRESHOLD;
+
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ("-r".equals(argument)) {
+                recursive = true;
+            } else if ("--sparse".equals(argument)) {
+                sparse = true; // Режим по умолчанию; ключ сохранён для совместимости
+            } else if ("--no-sparse".equals(argument)) {
+                sparse = false;
+            } else if ("--verify".equals(argument)) {
+                verify = true;
+            } else if ("--direct".equals(argument)) {
+                verify = true; // Чтение в обход кэша имеет смысл только при проверке
+                direct = true;
+            } else if (("--jobs".equals(argument) || "--threads".equals(argument)) && i + 1 < arguments.size()) {
+                int value;
+                try {
+                    value = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    value = 0;
+                }
+                if (value <= 0) {
+                    System.out.println("Значение " + argument + " должно быть положительным целым числом.");
+                    return false;
+                }
+                if ("--jobs".equals(argument)) {
+                    jobs = value;
+                } else {
+                    threads = value;
+                }
+            } else if ("--threshold".equals(argument) && i + 1 < arguments.size()) {
+                try {
+                    threshold = FileSizeFormatter.parseFileSize(arguments.get(++i));
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
+                    return false;
+                }
+            } else {
+                positional.add(argument);
+            }
+        }
+
+        if (positional.size() < 2) { // source + target
+            System.out.println("Неверный формат команды. Используйте: copy [-r] [--jobs N] [--threshold SIZE] [--threads N] [--no-sparse] [--verify [--direct]] <имя_файла> <целевая_директория> или copy \"<имя файла>\" \"<целевая директория>\"");
+            return false;
         }
 
         // Первый аргумент после 'copy' - это источник
-        String sourceFileName = arguments.get(1);
+        String sourceFileName = positional.get(0);
         // Второй аргумент - это цель
-        String targetDirectoryPath = arguments.get(2);
+        String targetDirectoryPath = positional.get(1);
 
         Path sourcePath = Paths.get(sourceFileName).normalize();
         Path targetDirectory = Paths.get(currentDirectory).resolve(targetDirectoryPath).normalize();
@@ -53,12 +106,35 @@ public class FileCopier {
                 sourcePath = Paths.get(currentDirectory, sourceFileName).normalize();
             }
 
+            if (recursive && Files.isDirectory(sourcePath)) {
+                ensureTargetDirectoryExists(targetDirectory);
+                Path targetPath = targetDirectory.resolve(sourcePath.getFileName().toString());
+                LargeFileCopier verifier = verify ? new LargeFileCopier(threshold, 1, sparse, false, true, direct) : null;
+                DirectoryCopier.Result result = new DirectoryCopier().copyTree(sourcePath, targetPath, jobs, verifier);
+                System.out.println(result.summary());
+                if (result.getFailures() > 0) {
+                    System.err.println("Не удалось скопировать файлов: " + result.getFailures());
+                } else {
+                    System.out.println("Директория успешно скопирована: " + targetPath.toAbsolutePath());
+                }
+                return result.getFailures() == 0;
+            }
+
             validateSourceFile(sourcePath);
             ensureTargetDirectoryExists(targetDirectory);
-            Path targetPath = copyFile(sourcePath, targetDirectory);
+            Path targetPath = copyFile(sourcePath, targetDirectory,
+                    new LargeFileCopier(threshold, threads, sparse, true, verify, direct));
             System.out.println("Файл успешно скопирован: " + targetPath.toAbsolutePath());
+            if (verify) {
+                System.out.println("Копия проверена: контрольные суммы CRC32C всех блоков совпадают"
+                        + (direct ? " (целевой файл перечитан в обход кэша)." : "."));
+            }
+            return true;
+        } catch (CancellationException e) {
+            throw e; // Отмена фонового задания обрабатывается планировщиком
         } catch (Exception e) {
             System.err.println("Ошибка при копировании файла: " + e.getMessage());
+            return false;
         }
     }
 
@@ -68,7 +144,7 @@ public class FileCopier {
      * @param command Полная строка команды (например, "copy \"my file.txt\" \"target dir\"")
      * @return Список аргументов (например, ["copy", "my file.txt", "target dir"])
      */
-    private List<String> parseArguments(String command) {
+    static List<String> parseArguments(String command) {
         List<String> arguments = new ArrayList<>();
         StringBuilder currentArg = new StringBuilder();
         boolean insideQuotes = false;
@@ -130,7 +206,7 @@ public class FileCopier {
             throw new IOException("Исходный файл не существует: " + sourcePath);
         }
         if (Files.isDirectory(sourcePath)) {
-            throw new IOException("Исходный путь является директорией, а не файлом: " + sourcePath);
+            throw new IOException("Исходный путь является директорией, а не файлом (используйте copy -r): " + sourcePath);
         }
         if (!Files.isReadable(sourcePath)) {
             throw new IOException("Исходный файл недоступен для чтения: " + sourcePath);
@@ -155,13 +231,16 @@ public class FileCopier {
     /**
      * Копирует файл в указанную директорию.
      * Если файл с таким именем уже существует, генерируется новое имя с суффиксом.
+     * Файлы не меньше порога {@code largeFileCopier} (а в режиме проверки — все файлы) копируются
+     * через {@link LargeFileCopier}.
      *
      * @param sourcePath      путь к исходному файлу
      * @param targetDirectory путь к целевой директории
+     * @param largeFileCopier механизм копирования больших файлов
      * @return путь к скопированному файлу
      * @throws IOException если возникла ошибка при копировании
      */
-    private Path copyFile(Path sourcePath, Path targetDirectory) throws IOException {
+    private Path copyFile(Path sourcePath, Path targetDirectory, LargeFileCopier largeFileCopier) throws IOException {
         String fileName = sourcePath.getFileName().toString();
         Path targetPath = targetDirectory.resolve(fileName);
 
@@ -174,7 +253,15 @@ public class FileCopier {
             counter++;
         }
 
-        Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        long size = Files.size(sourcePath);
+        if (largeFileCopier.accepts(size)) {
+            largeFileCopier.copy(sourcePath, targetPath);
+        } else {
+            IoThrottle.acquire(size);
+            long copyStart = System.nanoTime();
+            Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            Metrics.recordCopy(Metrics.COPY_FILE, size, System.nanoTime() - copyStart);
+        }
         return targetPath;
     }
 }
\ No newline at end of file
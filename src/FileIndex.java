@@ -0,0 +1,985 @@
+// FileIndex.java
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Постоянный индекс имён файлов и быстрый поиск по нему (команды 'index build' и 'find').
+ * <p>
+ * Индекс хранится в файле {@value #INDEX_NAME} в корне проиндексированного дерева. Пути отсортированы
+ * и сжаты по общему префиксу блоками по {@value #BLOCK_SIZE} записей, для имён файлов построен
+ * триграммный индекс. При поиске файл индекса читается в память целиком, кандидаты отбираются
+ * пересечением списков триграмм и только затем проверяются по образцу.
+ * </p>
+ * <p>
+ * Повторное построение инкрементально: директории, время изменения которых совпадает с записанным
+ * в индексе, не перечитываются — их состав берётся из старого индекса.
+ * </p>
+ */
+public class FileIndex {
+
+    /**
+     * Имя файла индекса в корне проиндексированного дерева.
+     */
+    public static final String INDEX_NAME = ".fmindex";
+
+    /**
+     * Сигнатура и версия формата индекса ("FMI1").
+     */
+    private static final int MAGIC = 0x464D4931;
+
+    /**
+     * Размер заголовка в байтах.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * Количество записей в блоке сжатия по префиксу.
+     */
+    private static final int BLOCK_SIZE = 32;
+
+    /**
+     * Количество выводимых результатов поиска по умолчанию.
+     */
+    private static final int DEFAULT_FIND_LIMIT = 1000;
+
+    /**
+     * Флаг записи-директории.
+     */
+    private static final int FLAG_DIRECTORY = 1;
+
+    /**
+     * Прочитанный в память индекс последнего поиска (повторно используется, пока файл не изменился).
+     */
+    private LoadedIndex loaded;
+
+    /**
+     * Конструктор класса FileIndex.
+     * Создаёт новый экземпляр для построения индекса и поиска.
+     */
+    public FileIndex() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Запись индекса: путь относительно корня (с разделителем '/'), признак директории и время изменения.
+     *
+     * @param path      относительный путь ("" — корень)
+     * @param directory является ли запись директорией
+     * @param modified  время изменения в миллисекундах
+     */
+    private record IndexEntry(String path, boolean directory, long modified) {
+    }
+
+    /**
+     * Обрабатывает команду построения индекса.
+     * Формат: {@code index build [корень]}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'index'
+     * @param currentDirectory текущая директория, относительно которой разрешается путь
+     * @return true, если команда выполнена успешно
+     */
+    public boolean handleIndexCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        if (arguments.size() < 2 || arguments.size() > 3 || !"build".equals(arguments.get(1))) {
+            System.out.println("Неверный формат команды. Используйте: index build [корень]");
+            return false;
+        }
+
+        Path root = (arguments.size() == 3 ? Paths.get(currentDirectory).resolve(arguments.get(2)) : Paths.get(currentDirectory))
+                .toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            System.out.println("Директория не существует или недоступна: " + root);
+            return false;
+        }
+
+        try {
+            long startNanos = System.nanoTime();
+            BuildStats stats = build(root);
+            System.out.println("Индекс построен: " + root.resolve(INDEX_NAME) + " — записей " + stats.entries
+                    + ", перечитано директорий " + stats.listedDirectories + ", взято из прежнего индекса " + stats.reusedDirectories
+                    + " (" + (System.nanoTime() - startNanos) / 1_000_000L + " мс).");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ошибка при построении индекса: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Обрабатывает команду поиска по индексу.
+     * Формат: {@code find <образец> [--limit N]}. Образец — подстрока или шаблон с '*', '?' и '[...]';
+     * без '/' сравнивается с именем файла, с '/' — с путём относительно корня индекса (или его окончанием).
+     * Используется индекс текущей директории или ближайшей родительской.
+     *
+     * @param command          полная строка команды, начинающаяся с 'find'
+     * @param currentDirectory текущая директория
+     * @return true, если команда выполнена успешно
+     */
+    public boolean handleFindCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        String pattern = null;
+        int limit = DEFAULT_FIND_LIMIT;
+
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ("--limit".equals(argument) && i + 1 < arguments.size()) {
+                try {
+                    limit = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    limit = 0;
+                }
+                if (limit <= 0) {
+                    System.out.println("Значение --limit должно быть положительным целым числом.");
+                    return false;
+                }
+            } else if (pattern == null) {
+                pattern = argument;
+            } else {
+                pattern = null;
+                break;
+            }
+        }
+        if (pattern == null || pattern.isEmpty()) {
+            System.out.println("Неверный формат команды. Используйте: find <образец> [--limit N]");
+            return false;
+        }
+
+        Path indexFile = locateIndex(Paths.get(currentDirectory).toAbsolutePath().normalize());
+        if (indexFile == null) {
+            System.out.println("Индекс не найден. Постройте его командой: index build <корень>");
+            return false;
+        }
+
+        try {
+            long startNanos = System.nanoTime();
+            Path root = indexFile.getParent();
+            List<String> matches = find(indexFile, pattern, limit + 1);
+            for (int i = 0; i < Math.min(limit, matches.size()); i++) {
+                System.out.println(root.resolve(matches.get(i)));
+            }
+            String more = matches.size() > limit ? " (показаны первые " + limit + ")" : "";
+            System.out.println("Найдено: " + Math.min(limit, matches.size()) + more + " за "
+                    + String.format("%.2f", (System.nanoTime() - startNanos) / 1_000_000.0) + " мс.");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ошибка при поиске по индексу: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Ищет файл индекса в директории и её родителях.
+     *
+     * @param directory начальная директория
+     * @return путь к файлу индекса или null, если индекс не найден
+     */
+    private static Path locateIndex(Path directory) {
+        for (Path current = directory; current != null; current = current.getParent()) {
+            Path candidate = current.resolve(INDEX_NAME);
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Построение индекса
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Статистика построения индекса.
+     */
+    private static final class BuildStats {
+
+        /**
+         * Количество записей в индексе.
+         */
+        int entries;
+
+        /**
+         * Количество директорий, прочитанных с диска.
+         */
+        int listedDirectories;
+
+        /**
+         * Количество директорий, состав которых взят из прежнего индекса.
+         */
+        int reusedDirectories;
+    }
+
+    /**
+     * Строит (или инкрементально обновляет) индекс дерева.
+     *
+     * @param root абсолютный нормализованный путь к корню
+     * @return статистика построения
+     * @throws IOException если дерево не удалось обойти или индекс не удалось записать
+     */
+    private BuildStats build(Path root) throws IOException {
+        Path indexFile = root.resolve(INDEX_NAME);
+        Map<String, List<IndexEntry>> previousChildren = new HashMap<>();
+        Map<String, IndexEntry> previousDirectories = new HashMap<>();
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                loadPrevious(indexFile, previousChildren, previousDirectories);
+            } catch (IOException | RuntimeException e) {
+                // Повреждённый или устаревший индекс просто строится заново
+                previousChildren.clear();
+                previousDirectories.clear();
+            }
+        }
+
+        BuildStats stats = new BuildStats();
+        List<IndexEntry> entries = new ArrayList<>();
+        long rootModified = Files.getLastModifiedTime(root).toMillis();
+        entries.add(new IndexEntry("", true, rootModified));
+        collect(root, "", rootModified, previousChildren, previousDirectories, entries, stats);
+        previousChildren.clear();
+        previousDirectories.clear();
+
+        entries.sort((a, b) -> a.path().compareTo(b.path()));
+        stats.entries = entries.size();
+        write(indexFile, entries);
+        return stats;
+    }
+
+    /**
+     * Рекурсивно собирает записи поддерева, повторно используя состав неизменившихся директорий.
+     *
+     * @param root                корень индекса
+     * @param relative            относительный путь директории
+     * @param modified            время изменения директории
+     * @param previousChildren    состав директорий из прежнего индекса
+     * @param previousDirectories директории из прежнего индекса
+     * @param entries             накапливаемые записи
+     * @param stats               статистика построения
+     */
+    private void collect(Path root, String relative, long modified, Map<String, List<IndexEntry>> previousChildren,
+                         Map<String, IndexEntry> previousDirectories, List<IndexEntry> entries, BuildStats stats) {
+        IndexEntry previous = previousDirectories.get(relative);
+        boolean reused = previous != null && previous.modified() == modified;
+        List<IndexEntry> children;
+        if (reused) {
+            children = previousChildren.getOrDefault(relative, List.of());
+            stats.reusedDirectories++;
+        } else {
+            children = listDirectory(root, relative);
+            stats.listedDirectories++;
+        }
+
+        for (IndexEntry child : children) {
+            if (!child.directory()) {
+                entries.add(child);
+                continue;
+            }
+            long childModified = child.modified();
+            if (reused) {
+                // Время изменения поддиректории из прежнего индекса могло устареть — уточняем его
+                try {
+                    childModified = Files.getLastModifiedTime(root.resolve(child.path()), LinkOption.NOFOLLOW_LINKS).toMillis();
+                } catch (IOException e) {
+                    continue; // Директория исчезла после построения прежнего индекса
+                }
+            }
+            entries.add(new IndexEntry(child.path(), true, childModified));
+            collect(root, child.path(), childModified, previousChildren, previousDirectories, entries, stats);
+        }
+    }
+
+    /**
+     * Читает непосредственных потомков директории с диска.
+     *
+     * @param root     корень индекса
+     * @param relative относительный путь директории
+     * @return записи потомков
+     */
+    private List<IndexEntry> listDirectory(Path root, String relative) {
+        List<IndexEntry> children = new ArrayList<>();
+        Path directory = relative.isEmpty() ? root : root.resolve(relative);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                String name = child.getFileName().toString();
+                if (relative.isEmpty() && (name.equals(INDEX_NAME) || name.equals(INDEX_NAME + ".tmp"))) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    String childPath = relative.isEmpty() ? name : relative + "/" + name;
+                    children.add(new IndexEntry(childPath, attributes.isDirectory(), attributes.lastModifiedTime().toMillis()));
+                } catch (IOException e) {
+                    System.err.println("Не удалось прочитать: " + child + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            System.err.println("Ошибка при чтении директории " + directory + ": " + e.getMessage());
+        }
+        return children;
+    }
+
+    /**
+     * Загружает прежний индекс, группируя записи по родительской директории.
+     *
+     * @param indexFile           файл индекса
+     * @param previousChildren    заполняется составом директорий
+     * @param previousDirectories заполняется записями директорий
+     * @throws IOException если индекс не удалось прочитать
+     */
+    private void loadPrevious(Path indexFile, Map<String, List<IndexEntry>> previousChildren,
+                              Map<String, IndexEntry> previousDirectories) throws IOException {
+        LoadedIndex index = LoadedIndex.open(indexFile);
+        PathCursor cursor = index.cursor();
+        for (int id = 0; id < index.entryCount; id++) {
+            cursor.seek(id);
+            String path = cursor.path();
+            IndexEntry entry = new IndexEntry(path, cursor.directory, cursor.modified);
+            if (entry.directory()) {
+                previousDirectories.put(path, entry);
+            }
+            if (!path.isEmpty()) {
+                int slash = path.lastIndexOf('/');
+                String parent = slash < 0 ? "" : path.substring(0, slash);
+                previousChildren.computeIfAbsent(parent, key -> new ArrayList<>()).add(entry);
+            }
+        }
+    }
+
+    /**
+     * Записывает индекс во временный файл и атомарно заменяет им прежний.
+     *
+     * @param indexFile файл индекса
+     * @param entries   записи, отсортированные по пути
+     * @throws IOException если индекс не удалось записать
+     */
+    private void write(Path indexFile, List<IndexEntry> entries) throws IOException {
+        Path temporary = indexFile.resolveSibling(INDEX_NAME + ".tmp");
+        int blockCount = (entries.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] blockOffsets = new int[blockCount];
+        Map<Integer, IntList> postings = new HashMap<>();
+
+        int blockIndexOffset;
+        int trigramTableOffset;
+        int postingsOffset;
+        int[] trigrams;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.write(new byte[HEADER_SIZE]); // Заголовок записывается в конце, когда известны смещения
+
+            byte[] previous = new byte[0];
+            for (int id = 0; id < entries.size(); id++) {
+                IndexEntry entry = entries.get(id);
+                byte[] path = entry.path().getBytes(StandardCharsets.UTF_8);
+                int shared = 0;
+                if (id % BLOCK_SIZE == 0) {
+                    blockOffsets[id / BLOCK_SIZE] = out.size();
+                } else {
+                    int limit = Math.min(previous.length, path.length);
+                    while (shared < limit && previous[shared] == path[shared]) {
+                        shared++;
+                    }
+                }
+                DirectorySynchronizer.writeVarLong(out, shared);
+                DirectorySynchronizer.writeVarLong(out, path.length - shared);
+                out.write(path, shared, path.length - shared);
+                out.writeByte(entry.directory() ? FLAG_DIRECTORY : 0);
+                DirectorySynchronizer.writeVarLong(out, Math.max(0L, entry.modified()));
+                previous = path;
+
+                addTrigrams(postings, nameOf(entry.path()), id);
+            }
+            checkSize(out.size());
+
+            blockIndexOffset = out.size();
+            for (int offset : blockOffsets) {
+                out.writeInt(offset);
+            }
+
+            trigrams = postings.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            trigramTableOffset = out.size();
+            int relativeOffset = 0;
+            byte[][] encoded = new byte[trigrams.length][];
+            for (int i = 0; i < trigrams.length; i++) {
+                encoded[i] = postings.get(trigrams[i]).encodeDeltas();
+                out.writeInt(trigrams[i]);
+                out.writeInt(relativeOffset);
+                out.writeInt(postings.get(trigrams[i]).size);
+                relativeOffset += encoded[i].length;
+            }
+
+            postingsOffset = out.size();
+            for (byte[] list : encoded) {
+                out.write(list);
+            }
+            checkSize(out.size());
+        }
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(entries.size()).putInt(blockCount).putInt(trigrams.length)
+                    .putInt(blockIndexOffset).putInt(trigramTableOffset).putInt(postingsOffset).putInt(0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        loaded = null;
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Проверяет, что индекс помещается в один буфер в памяти, а смещения — в int.
+     * Счётчик {@link DataOutputStream#size()} не переполняется, а останавливается на
+     * {@link Integer#MAX_VALUE}, поэтому это значение и означает слишком большой индекс.
+     *
+     * @param size текущий размер индекса
+     * @throws IOException если индекс превышает 2 ГБ
+     */
+    private static void checkSize(int size) throws IOException {
+        if (size == Integer.MAX_VALUE) {
+            throw new IOException("Индекс превышает 2 ГБ");
+        }
+    }
+
+    /**
+     * Добавляет идентификатор записи в списки всех триграмм имени.
+     *
+     * @param postings списки идентификаторов по триграммам
+     * @param name     имя файла
+     * @param id       идентификатор записи
+     */
+    private static void addTrigrams(Map<Integer, IntList> postings, String name, int id) {
+        byte[] bytes = name.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i + 3 <= bytes.length; i++) {
+            postings.computeIfAbsent(trigram(bytes, i), key -> new IntList()).addUnique(id);
+        }
+    }
+
+    /**
+     * Упаковывает три байта в ключ триграммы.
+     *
+     * @param bytes  байты
+     * @param offset начало триграммы
+     * @return ключ триграммы
+     */
+    private static int trigram(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 16 | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF);
+    }
+
+    /**
+     * Возвращает последний компонент относительного пути.
+     *
+     * @param path относительный путь с разделителем '/'
+     * @return имя файла
+     */
+    private static String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Поиск
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Ищет в индексе записи, соответствующие образцу.
+     *
+     * @param indexFile файл индекса
+     * @param pattern   подстрока или шаблон
+     * @param limit     максимальное количество результатов
+     * @return относительные пути найденных записей в порядке индекса
+     * @throws IOException если индекс не удалось прочитать
+     */
+    List<String> find(Path indexFile, String pattern, int limit) throws IOException {
+        LoadedIndex index = loadedIndex(indexFile);
+        String lowered = pattern.toLowerCase(Locale.ROOT);
+        boolean glob = lowered.indexOf('*') >= 0 || lowered.indexOf('?') >= 0 || lowered.indexOf('[') >= 0;
+        boolean matchPath = lowered.indexOf('/') >= 0;
+        Pattern regex = glob ? Pattern.compile(globToRegex(lowered)) : null;
+
+        // Триграммы строятся по именам, поэтому отбор по ним возможен только при сравнении с именем
+        int[] candidates = matchPath ? null : index.candidates(literalRuns(lowered, glob));
+
+        List<String> matches = new ArrayList<>();
+        PathCursor cursor = index.cursor();
+        int count = candidates == null ? index.entryCount : candidates.length;
+        for (int i = 0; i < count && matches.size() < limit; i++) {
+            int id = candidates == null ? i : candidates[i];
+            if (id == 0) {
+                continue; // Корень индекса
+            }
+            cursor.seek(id);
+            String path = cursor.path();
+            String subject = (matchPath ? path : nameOf(path)).toLowerCase(Locale.ROOT);
+            if (glob ? matchesGlob(regex, subject, matchPath) : subject.contains(lowered)) {
+                matches.add(path);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Проверяет соответствие шаблону. Шаблон пути может совпадать как со всем путём,
+     * так и с любым его окончанием, начинающимся с компонента (например, "docs/*.html" подходит
+     * к "src/docs/index.html").
+     *
+     * @param regex     регулярное выражение шаблона
+     * @param subject   проверяемая строка в нижнем регистре
+     * @param matchPath сравнивается ли шаблон с путём
+     * @return true, если строка подходит под шаблон
+     */
+    private static boolean matchesGlob(Pattern regex, String subject, boolean matchPath) {
+        if (regex.matcher(subject).matches()) {
+            return true;
+        }
+        if (matchPath) {
+            for (int slash = subject.indexOf('/'); slash >= 0; slash = subject.indexOf('/', slash + 1)) {
+                if (regex.matcher(subject).region(slash + 1, subject.length()).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает прочитанный индекс, повторно используя предыдущий, если файл не изменился.
+     *
+     * @param indexFile файл индекса
+     * @return прочитанный индекс
+     * @throws IOException если индекс не удалось прочитать
+     */
+    private LoadedIndex loadedIndex(Path indexFile) throws IOException {
+        long modified = Files.getLastModifiedTime(indexFile).toMillis();
+        LoadedIndex current = loaded;
+        if (current == null || !current.file.equals(indexFile) || current.modified != modified) {
+            current = LoadedIndex.open(indexFile);
+            loaded = current;
+        }
+        return current;
+    }
+
+    /**
+     * Выделяет из образца фрагменты без подстановочных символов.
+     *
+     * @param pattern образец в нижнем регистре
+     * @param glob    является ли образец шаблоном
+     * @return фрагменты-литералы
+     */
+    private static List<String> literalRuns(String pattern, boolean glob) {
+        if (!glob) {
+            return List.of(pattern);
+        }
+        List<String> runs = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[') {
+                if (run.length() > 0) {
+                    runs.add(run.toString());
+                    run.setLength(0);
+                }
+                if (c == '[') {
+                    int close = pattern.indexOf(']', i + 1);
+                    i = close < 0 ? pattern.length() : close;
+                }
+            } else {
+                run.append(c);
+            }
+        }
+        if (run.length() > 0) {
+            runs.add(run.toString());
+        }
+        return runs;
+    }
+
+    /**
+     * Преобразует шаблон ('*', '?', '[...]') в регулярное выражение для всей строки.
+     *
+     * @param glob шаблон
+     * @return регулярное выражение
+     */
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                case '[' -> {
+                    int close = glob.indexOf(']', i + 1);
+                    if (close < 0) {
+                        regex.append("\\[");
+                    } else {
+                        String set = glob.substring(i + 1, close).replace("\\", "\\\\");
+                        if (set.startsWith("!")) {
+                            set = "^" + set.substring(1);
+                        }
+                        regex.append('[').append(set).append(']');
+                        i = close;
+                    }
+                }
+                default -> {
+                    if ("\\.^$|+(){}".indexOf(c) >= 0) {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+                }
+            }
+        }
+        return regex.toString();
+    }
+
+    /**
+     * Индекс, прочитанный в память.
+     * <p>
+     * Файл читается в буфер кучи, а не отображается: пока отображение живо, Windows не позволяет
+     * заменить файл (ERROR_USER_MAPPED_FILE), и повторное построение индекса не смогло бы его перезаписать.
+     * </p>
+     */
+    private static final class LoadedIndex {
+
+        /**
+         * Файл индекса.
+         */
+        final Path file;
+
+        /**
+         * Время изменения файла на момент чтения.
+         */
+        final long modified;
+
+        /**
+         * Содержимое файла.
+         */
+        final ByteBuffer buffer;
+
+        /**
+         * Количество записей.
+         */
+        final int entryCount;
+
+        /**
+         * Количество триграмм.
+         */
+        final int trigramCount;
+
+        /**
+         * Смещение таблицы начал блоков.
+         */
+        final int blockIndexOffset;
+
+        /**
+         * Смещение таблицы триграмм.
+         */
+        final int trigramTableOffset;
+
+        /**
+         * Смещение списков идентификаторов.
+         */
+        final int postingsOffset;
+
+        /**
+         * @param file     файл индекса
+         * @param modified время изменения файла
+         * @param buffer   содержимое файла
+         * @throws IOException если формат файла не распознан
+         */
+        private LoadedIndex(Path file, long modified, ByteBuffer buffer) throws IOException {
+            this.file = file;
+            this.modified = modified;
+            this.buffer = buffer;
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Неизвестный формат индекса: " + file);
+            }
+            this.entryCount = buffer.getInt(4);
+            this.trigramCount = buffer.getInt(12);
+            this.blockIndexOffset = buffer.getInt(16);
+            this.trigramTableOffset = buffer.getInt(20);
+            this.postingsOffset = buffer.getInt(24);
+        }
+
+        /**
+         * Читает файл индекса в память целиком.
+         *
+         * @param file файл индекса
+         * @return прочитанный индекс
+         * @throws IOException если файл не удалось прочитать или его формат не распознан
+         */
+        static LoadedIndex open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                long size = channel.size();
+                if (size >= Integer.MAX_VALUE) {
+                    throw new IOException("Индекс превышает 2 ГБ: " + file);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, buffer.position()) < 0) {
+                        throw new IOException("Индекс обрезан: " + file);
+                    }
+                }
+                return new LoadedIndex(file, modified, buffer.clear());
+            }
+        }
+
+        /**
+         * @return новый курсор для последовательного чтения путей
+         */
+        PathCursor cursor() {
+            return new PathCursor(this);
+        }
+
+        /**
+         * Возвращает идентификаторы записей, имена которых содержат все триграммы фрагментов.
+         *
+         * @param runs фрагменты-литералы образца
+         * @return отсортированные идентификаторы или null, если триграмм нет и нужен полный перебор
+         */
+        int[] candidates(List<String> runs) {
+            int[] result = null;
+            for (String run : runs) {
+                byte[] bytes = run.getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i + 3 <= bytes.length; i++) {
+                    int[] list = postings(trigram(bytes, i));
+                    result = result == null ? list : intersect(result, list);
+                    if (result.length == 0) {
+                        return result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Читает список идентификаторов триграммы (двоичный поиск по таблице триграмм).
+         *
+         * @param key ключ триграммы
+         * @return отсортированные идентификаторы (пустой массив, если триграммы нет)
+         */
+        private int[] postings(int key) {
+            int low = 0;
+            int high = trigramCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int position = trigramTableOffset + middle * 12;
+                int current = buffer.getInt(position);
+                if (current < key) {
+                    low = middle + 1;
+                } else if (current > key) {
+                    high = middle - 1;
+                } else {
+                    int[] ids = new int[buffer.getInt(position + 8)];
+                    int[] cursor = {postingsOffset + buffer.getInt(position + 4)};
+                    int id = 0;
+                    for (int i = 0; i < ids.length; i++) {
+                        id += (int) readVarLong(buffer, cursor);
+                        ids[i] = id;
+                    }
+                    return ids;
+                }
+            }
+            return new int[0];
+        }
+
+        /**
+         * Пересекает два отсортированных массива идентификаторов.
+         *
+         * @param first  первый массив
+         * @param second второй массив
+         * @return пересечение
+         */
+        private static int[] intersect(int[] first, int[] second) {
+            int[] result = new int[Math.min(first.length, second.length)];
+            int size = 0;
+            for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+                if (first[i] < second[j]) {
+                    i++;
+                } else if (first[i] > second[j]) {
+                    j++;
+                } else {
+                    result[size++] = first[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+    }
+
+    /**
+     * Курсор для чтения записей индекса по идентификатору.
+     * Переход вперёд в пределах блока продолжает декодирование с текущего места.
+     */
+    private static final class PathCursor {
+
+        /**
+         * Индекс, по которому перемещается курсор.
+         */
+        private final LoadedIndex index;
+
+        /**
+         * Позиция чтения в буфере (массив из одного элемента для передачи по ссылке).
+         */
+        private final int[] position = new int[1];
+
+        /**
+         * Байты текущего пути.
+         */
+        private byte[] path = new byte[256];
+
+        /**
+         * Длина текущего пути в байтах.
+         */
+        private int length;
+
+        /**
+         * Идентификатор текущей записи (-1 — курсор не установлен).
+         */
+        private int current = -1;
+
+        /**
+         * Является ли текущая запись директорией.
+         */
+        boolean directory;
+
+        /**
+         * Время изменения текущей записи.
+         */
+        long modified;
+
+        /**
+         * @param index индекс, по которому перемещается курсор
+         */
+        PathCursor(LoadedIndex index) {
+            this.index = index;
+        }
+
+        /**
+         * Перемещает курсор к записи.
+         *
+         * @param id идентификатор записи
+         */
+        void seek(int id) {
+            if (current < 0 || id < current || id / BLOCK_SIZE != current / BLOCK_SIZE) {
+                position[0] = index.buffer.getInt(index.blockIndexOffset + (id / BLOCK_SIZE) * 4);
+                current = id - id % BLOCK_SIZE - 1;
+                length = 0;
+            }
+            while (current < id) {
+                readNext();
+            }
+        }
+
+        /**
+         * @return относительный путь текущей записи
+         */
+        String path() {
+            return new String(path, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Декодирует следующую запись блока.
+         */
+        private void readNext() {
+            ByteBuffer buffer = index.buffer;
+            int shared = (int) readVarLong(buffer, position);
+            int suffix = (int) readVarLong(buffer, position);
+            if (shared + suffix > path.length) {
+                path = Arrays.copyOf(path, Math.max(path.length * 2, shared + suffix));
+            }
+            buffer.get(position[0], path, shared, suffix);
+            position[0] += suffix;
+            length = shared + suffix;
+            directory = (buffer.get(position[0]++) & FLAG_DIRECTORY) != 0;
+            modified = readVarLong(buffer, position);
+            current++;
+        }
+    }
+
+    /**
+     * Читает число переменной длины по абсолютной позиции буфера.
+     *
+     * @param buffer   буфер
+     * @param position позиция чтения (сдвигается за прочитанное число)
+     * @return прочитанное значение
+     */
+    private static long readVarLong(ByteBuffer buffer, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = buffer.get(position[0]++);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Растущий массив идентификаторов записей одной триграммы.
+     */
+    private static final class IntList {
+
+        /**
+         * Элементы списка.
+         */
+        int[] values = new int[4];
+
+        /**
+         * Количество элементов.
+         */
+        int size;
+
+        /**
+         * Добавляет идентификатор, если он не совпадает с последним добавленным.
+         *
+         * @param value идентификатор (не меньше последнего добавленного)
+         */
+        void addUnique(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Кодирует список разностями соседних значений в формате переменной длины.
+         *
+         * @return закодированные байты
+         */
+        byte[] encodeDeltas() {
+            byte[] out = new byte[size * 5];
+            int length = 0;
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                int delta = values[i] - previous;
+                previous = values[i];
+                while ((delta & ~0x7F) != 0) {
+                    out[length++] = (byte) ((delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+                out[length++] = (byte) delta;
+            }
+            return Arrays.copyOf(out, length);
+        }
+    }
+}
@@ -1,5 +1,9 @@
 // FileManager.java
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 
 /**
  * Основной класс запуска и управления файловым менеджером.
@@ -9,19 +13,62 @@ import java.util.Scanner;
  */
 public class FileManager {
 
+    private final DirectoryCache directoryCache;
     private final DirectoryDisplay directoryDisplay;
     private final FileCopier fileCopier;
     private final DirectoryManager directoryManager; // Добавляем новый компонент
+    private final DiskUsageCalculator diskUsageCalculator;
+    private final DirectorySynchronizer directorySynchronizer;
+    private final DuplicateFinder duplicateFinder;
+    private final FileIndex fileIndex;
+    private final ContentSearcher contentSearcher;
+    private final ArchiveManager archiveManager;
+    private final ChecksumManifest checksumManifest;
+    private final FileMover fileMover;
+    private final TreeDiffer treeDiffer;
+    private final TreePrinter treePrinter;
+    private final JobScheduler jobScheduler;
     private final Scanner scanner;
+    private Path metricsFile; // Файл для записи статистики при завершении (null — не записывать)
+
+    /**
+     * Имена команд, статистика которых ведётся по отдельности. Остальной ввод учитывается как
+     * {@link Metrics#UNKNOWN_COMMAND}: иначе каждая опечатка добавляла бы в статистику новую строку.
+     */
+    private static final Set<String> COMMAND_NAMES = Set.of("help", "ls", "copy", "mv", "tree", "du", "sync", "diff",
+            "dups", "index", "find", "grep", "pack", "unpack", "checksum", "bwlimit", "cache", "stats", "mkdir", "rm");
 
     /**
      * Конструктор класса FileManager. Инициализирует зависимости.
      */
     public FileManager() {
-        this.directoryDisplay = new DirectoryDisplay();
+        this.directoryCache = new DirectoryCache();
+        this.directoryDisplay = new DirectoryDisplay(directoryCache);
         this.fileCopier = new FileCopier();
         this.directoryManager = new DirectoryManager(); // Инициализируем
+        this.diskUsageCalculator = new DiskUsageCalculator();
+        this.directorySynchronizer = new DirectorySynchronizer();
+        this.duplicateFinder = new DuplicateFinder();
+        this.fileIndex = new FileIndex();
+        this.contentSearcher = new ContentSearcher();
+        this.archiveManager = new ArchiveManager();
+        this.checksumManifest = new ChecksumManifest();
+        this.fileMover = new FileMover();
+        this.treeDiffer = new TreeDiffer();
+        this.treePrinter = new TreePrinter();
+        this.jobScheduler = new JobScheduler();
         this.scanner = new Scanner(System.in);
+        Metrics.registerGauge("cache.hits", directoryCache::getHits);
+        Metrics.registerGauge("cache.misses", directoryCache::getMisses);
+    }
+
+    /**
+     * Задаёт файл, в который при завершении работы записывается статистика в формате JSON.
+     *
+     * @param metricsFile путь к файлу или null, чтобы не записывать статистику
+     */
+    public void setMetricsFile(Path metricsFile) {
+        this.metricsFile = metricsFile;
     }
 
     /**
@@ -33,33 +80,218 @@ public class FileManager {
 
         while (true) {
             try {
-                directoryDisplay.displayDirectoryContents(currentDirectory);
+                IoThrottle.beginInteractive();
+                try {
+                    directoryDisplay.displayDirectoryContents(currentDirectory);
+                } finally {
+                    IoThrottle.endInteractive();
+                }
+                jobScheduler.reportFinished();
                 String command = getCommand();
+                String backgroundCommand = backgroundCommand(command);
 
                 if ("exit".equalsIgnoreCase(command)) {
                     break;
-                } else if ("help".equalsIgnoreCase(command)) { // Обработка команды help
-                    showHelp();
-                } else if (command.startsWith("copy ")) {
-                    fileCopier.handleCopyCommand(command, currentDirectory, scanner);
                 } else if (command.startsWith("ch ")) {
-                    currentDirectory = handleChangeDirectoryCommand(command, currentDirectory);
-                } else if (command.startsWith("mkdir ")) { // Обработка команды mkdir
-                    directoryManager.handleMkdirCommand(command, currentDirectory);
-                } else if (command.startsWith("rm ")) { // Обработка команды rm
-                    directoryManager.handleRmCommand(command, currentDirectory);
+                    IoThrottle.beginInteractive();
+                    long startNanos = System.nanoTime();
+                    String previousDirectory = currentDirectory;
+                    try {
+                        currentDirectory = handleChangeDirectoryCommand(command, currentDirectory);
+                    } finally {
+                        IoThrottle.endInteractive();
+                        Metrics.recordCommand("ch", System.nanoTime() - startNanos, !currentDirectory.equals(previousDirectory));
+                    }
+                } else if (backgroundCommand != null) { // Запуск в фоне
+                    startBackgroundJob(backgroundCommand, currentDirectory);
+                } else if ("jobs".equals(command)) { // Список фоновых заданий
+                    jobScheduler.handleJobsCommand(command);
+                } else if (command.startsWith("wait ")) { // Ожидание фонового задания (не приостанавливает фоновые операции)
+                    jobScheduler.handleWaitCommand(command);
+                } else if (command.startsWith("cancel ")) { // Отмена фонового задания
+                    jobScheduler.handleCancelCommand(command);
                 } else {
-                    System.out.println("Неизвестная команда. Введите 'help' для просмотра доступных команд.");
+                    // Интерактивная команда: фоновые операции уступают ей ввод-вывод
+                    IoThrottle.beginInteractive();
+                    try {
+                        executeCommand(command, currentDirectory, scanner);
+                    } finally {
+                        IoThrottle.endInteractive();
+                    }
                 }
             } catch (Exception e) {
                 System.err.println("Ошибка выполнения команды: " + e.getMessage());
             }
         }
 
+        jobScheduler.close();
         scanner.close();
+        directoryCache.close();
+        writeMetrics();
         System.out.println("Программа завершена.");
     }
 
+    /**
+     * Выделяет команду для запуска в фоне. Признак фонового запуска — отдельный последний аргумент '&amp;'
+     * вне кавычек, поэтому '&amp;' в конце имени файла или в кавычках признаком не считается.
+     *
+     * @param command введённая команда
+     * @return команда без признака фонового запуска или null, если команда не фоновая
+     */
+    static String backgroundCommand(String command) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        if (arguments.isEmpty() || !"&".equals(arguments.get(arguments.size() - 1)) || !command.endsWith("&")) {
+            return null;
+        }
+        String rest = command.substring(0, command.length() - 1);
+        if (!rest.isEmpty() && !Character.isWhitespace(rest.charAt(rest.length() - 1))) {
+            return null; // Последний аргумент — '&' в кавычках
+        }
+        return rest.trim();
+    }
+
+    /**
+     * Запускает команду фоновым заданием. Ответы на запросы подтверждения в фоне недоступны.
+     *
+     * @param command          команда без завершающего '&'
+     * @param currentDirectory текущая директория
+     */
+    private void startBackgroundJob(String command, String currentDirectory) {
+        String name = command.split("\\s+", 2)[0];
+        if (command.isEmpty() || List.of("ch", "exit", "help", "jobs", "wait", "cancel").contains(name)) {
+            System.out.println("Эту команду нельзя выполнить в фоне: " + command);
+            return;
+        }
+        int id = jobScheduler.submit(command, () -> executeCommand(command, currentDirectory, null));
+        System.out.println("[" + id + "] Запущено в фоне: " + command);
+    }
+
+    /**
+     * Выполняет сценарий команд без интерактивного вывода содержимого директорий.
+     *
+     * @param source путь к файлу сценария или "-" для чтения из стандартного ввода
+     * @param jobs   максимальное количество одновременно выполняемых команд
+     * @return код завершения программы (см. {@link BatchRunner})
+     */
+    public int runScript(String source, int jobs) {
+        try {
+            List<String> lines;
+            try {
+                lines = BatchRunner.readScript(source);
+            } catch (IOException e) {
+                System.err.println("Не удалось прочитать сценарий: " + e.getMessage());
+                return BatchRunner.EXIT_SCRIPT_ERROR;
+            }
+            BatchRunner runner = new BatchRunner((command, directory) -> executeCommand(command, directory, null), jobs);
+            return runner.run(lines, System.getProperty("user.dir"));
+        } finally {
+            jobScheduler.close();
+            scanner.close();
+            directoryCache.close();
+            writeMetrics();
+        }
+    }
+
+    /**
+     * Записывает статистику в файл, заданный {@link #setMetricsFile(Path)}, если он задан.
+     */
+    private void writeMetrics() {
+        if (metricsFile == null) {
+            return;
+        }
+        try {
+            Metrics.writeJson(metricsFile);
+        } catch (IOException e) {
+            System.err.println("Ошибка при записи статистики: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Выполняет одну команду, не меняющую текущую директорию, и учитывает её длительность в {@link Metrics}
+     * и событии JFR {@link CommandEvent}.
+     *
+     * @param command          введённая команда
+     * @param currentDirectory текущая директория
+     * @param input            источник ответов на запросы подтверждения; null в пакетном режиме
+     * @return true, если команда выполнена успешно
+     */
+    private boolean executeCommand(String command, String currentDirectory, Scanner input) {
+        CommandEvent event = new CommandEvent();
+        event.begin();
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        try {
+            success = dispatchCommand(command, currentDirectory, input);
+            return success;
+        } finally {
+            int nameEnd = command.indexOf(' ');
+            String name = nameEnd < 0 ? command : command.substring(0, nameEnd);
+            Metrics.recordCommand(COMMAND_NAMES.contains(name) ? name : Metrics.UNKNOWN_COMMAND,
+                    System.nanoTime() - startNanos, success);
+            event.end();
+            if (event.shouldCommit()) {
+                event.command = command;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Передаёт команду соответствующему обработчику.
+     *
+     * @param command          введённая команда
+     * @param currentDirectory текущая директория
+     * @param input            источник ответов на запросы подтверждения; null в пакетном режиме
+     * @return true, если команда выполнена успешно
+     */
+    private boolean dispatchCommand(String command, String currentDirectory, Scanner input) {
+        if ("help".equalsIgnoreCase(command)) { // Обработка команды help
+            showHelp();
+            return true;
+        } else if ("ls".equals(command) || command.startsWith("ls ")) { // Постраничный вывод
+            return directoryDisplay.handleLsCommand(command, currentDirectory);
+        } else if (command.startsWith("copy ")) {
+            return fileCopier.handleCopyCommand(command, currentDirectory, input);
+        } else if (command.startsWith("mv ")) { // Перемещение
+            return fileMover.handleMvCommand(command, currentDirectory);
+        } else if ("tree".equals(command) || command.startsWith("tree ")) { // Дерево директорий
+            return treePrinter.handleTreeCommand(command, currentDirectory);
+        } else if ("du".equals(command) || command.startsWith("du ")) { // Подсчёт занимаемого места
+            return diskUsageCalculator.handleDuCommand(command, currentDirectory);
+        } else if (command.startsWith("sync ")) { // Инкрементальная синхронизация
+            return directorySynchronizer.handleSyncCommand(command, currentDirectory);
+        } else if (command.startsWith("diff ")) { // Сравнение деревьев
+            return treeDiffer.handleDiffCommand(command, currentDirectory);
+        } else if ("dups".equals(command) || command.startsWith("dups ")) { // Поиск дубликатов
+            return duplicateFinder.handleDupsCommand(command, currentDirectory);
+        } else if (command.startsWith("index ")) { // Построение индекса имён
+            return fileIndex.handleIndexCommand(command, currentDirectory);
+        } else if (command.startsWith("find ")) { // Поиск по индексу имён
+            return fileIndex.handleFindCommand(command, currentDirectory);
+        } else if (command.startsWith("grep ")) { // Поиск в содержимом файлов
+            return contentSearcher.handleGrepCommand(command, currentDirectory);
+        } else if (command.startsWith("pack ")) { // Упаковка директории в архив
+            return archiveManager.handlePackCommand(command, currentDirectory);
+        } else if (command.startsWith("unpack ")) { // Распаковка архива
+            return archiveManager.handleUnpackCommand(command, currentDirectory);
+        } else if (command.startsWith("checksum ")) { // Манифест контрольных сумм
+            return checksumManifest.handleChecksumCommand(command, currentDirectory);
+        } else if ("bwlimit".equals(command) || command.startsWith("bwlimit ")) { // Ограничение ввода-вывода
+            return IoThrottle.handleBwlimitCommand(command);
+        } else if ("cache".equals(command) || command.startsWith("cache ")) { // Статистика кэша директорий
+            return directoryCache.handleCacheCommand(command);
+        } else if ("stats".equals(command) || command.startsWith("stats ")) { // Задержки команд и объём ввода-вывода
+            return Metrics.handleStatsCommand(command, currentDirectory);
+        } else if (command.startsWith("mkdir ")) { // Обработка команды mkdir
+            return directoryManager.handleMkdirCommand(command, currentDirectory);
+        } else if (command.startsWith("rm ")) { // Обработка команды rm
+            return directoryManager.handleRmCommand(command, currentDirectory, input);
+        }
+        System.out.println("Неизвестная команда. Введите 'help' для просмотра доступных команд.");
+        return false;
+    }
+
     /**
      * Выводит справку по доступным командам.
      */
@@ -67,9 +299,69 @@ public class FileManager {
         System.out.println("\n--- Доступные команды ---");
         System.out.println("help              - Показать это сообщение.");
         System.out.println("copy <src> <dst>  - Скопировать файл из <src> в <dst>.");
+        System.out.println("copy [--threshold SIZE] [--threads N] [--no-sparse] <src> <dst>");
+        System.out.println("                  - Файлы от SIZE (по умолчанию 64M) копировать параллельно по диапазонам");
+        System.out.println("                    в N потоков, с прогрессом. Блоки из нулей не записываются, и «дыры»");
+        System.out.println("                    остаются дырами; --no-sparse копирует напрямую через transferTo.");
+        System.out.println("copy -r [--jobs N] <src> <dst>");
+        System.out.println("                  - Рекурсивно скопировать директорию <src> в <dst> в N потоков.");
+        System.out.println("copy [-r] --verify [--direct] <src> <dst>");
+        System.out.println("                  - Скопировать с проверкой: CRC32C считается по ходу копирования, затем");
+        System.out.println("                    перечитывается только копия (с --direct — в обход кэша, O_DIRECT).");
+        System.out.println("mv [-r] [--jobs N] <src> <dst>");
+        System.out.println("                  - Переместить файл (с -r — директорию); на одной файловой системе — мгновенным");
+        System.out.println("                    переименованием, между файловыми системами — копированием и удалением,");
+        System.out.println("                    которое после сбоя продолжается повтором команды.");
+        System.out.println("ls [path] [--page N] [--limit M] [--sort size|mtime|name|ext] [--top N] [--filter PATTERN]");
+        System.out.println("                  - Показать страницу N содержимого директории по M записей; упорядочить");
+        System.out.println("                    по размеру, времени изменения, имени или расширению, оставить N первых");
+        System.out.println("                    (--top без --sort — N самых крупных) и записи, подходящие под шаблон (*, ?).");
+        System.out.println("tree [path] [--depth N] [--jobs N]");
+        System.out.println("                  - Показать дерево директории до уровня N; строки выводятся сразу, а следующие");
+        System.out.println("                    поддиректории заранее читаются в N потоков. Записи всегда идут по имени;");
+        System.out.println("                    директории больше 4096 записей сортируются частями через временный файл.");
+        System.out.println("du [path] [--depth N]");
+        System.out.println("                  - Подсчитать место, занимаемое директорией, с итогами до глубины N.");
+        System.out.println("sync [--delete] [--jobs N] <src> <dst>");
+        System.out.println("                  - Скопировать в <dst> только новые и изменённые файлы из <src>;");
+        System.out.println("                    с --delete удалить из <dst> файлы, которых нет в <src>.");
+        System.out.println("diff [--jobs N] [--full] <dirA> <dirB>");
+        System.out.println("                  - Сравнить деревья: добавленные (+), удалённые (-) и изменённые (~) записи;");
+        System.out.println("                    совпавшие поддеревья пропускаются по хешам из кэша .fmdiff, --full —");
+        System.out.println("                    не использовать кэш и заново хешировать содержимое.");
+        System.out.println("dups [path] [--jobs N]");
+        System.out.println("                  - Найти одинаковые файлы и оценить, сколько места можно освободить.");
+        System.out.println("index build [root]");
+        System.out.println("                  - Построить или обновить индекс имён файлов дерева <root>.");
+        System.out.println("find <pattern> [--limit N]");
+        System.out.println("                  - Найти по индексу файлы, имя которых содержит <pattern> или подходит под шаблон (*, ?).");
+        System.out.println("grep [-r] [-i] [--max-count N] [--jobs N] <pattern> <path>");
+        System.out.println("                  - Найти строки с <pattern> в файле или директории (-r — рекурсивно).");
+        System.out.println("checksum write [--jobs N] <path> [manifest] | checksum check [--jobs N] <manifest|path>");
+        System.out.println("                  - Записать манифест SHA-256 дерева (<path>.sha256, формат sha256sum)");
+        System.out.println("                    или проверить файлы по нему; файлы хешируются в N потоков.");
+        System.out.println("pack [--jobs N] [--level 0-9] <dir> <archive>");
+        System.out.println("                  - Упаковать директорию в архив .tar.gz/.tgz или .zip (формат по расширению),");
+        System.out.println("                    сжимая блоки в N потоков.");
+        System.out.println("unpack [--jobs N] <archive> <dir>");
+        System.out.println("                  - Распаковать архив .tar.gz/.tgz или .zip в директорию <dir>, записывая в N потоков.");
         System.out.println("ch <path>         - Перейти в директорию <path>.");
         System.out.println("mkdir <name>      - Создать директорию <name> в текущей директории.");
         System.out.println("rm <name>         - Удалить файл или пустую директорию <name> из текущей директории.");
+        System.out.println("rm -r [-f] [--dry-run] [--confirm-above N] <name>");
+        System.out.println("                  - Параллельно удалить директорию <name> со всем содержимым; --dry-run только");
+        System.out.println("                    подсчитывает файлы и байты, при более чем N (по умолчанию 1000) файлах без -f");
+        System.out.println("                    запрашивается подтверждение.");
+        System.out.println("<команда> &       - Выполнить команду (например, copy, rm -r, du) в фоне; ход виден в приглашении.");
+        System.out.println("jobs              - Показать фоновые задания и их прогресс.");
+        System.out.println("wait <id>         - Дождаться завершения задания <id> и вывести его результат.");
+        System.out.println("cancel <id>       - Отменить задание <id> (остановится на ближайшей границе блока/файла).");
+        System.out.println("bwlimit [RATE|off]- Ограничить ввод-вывод копирования, синхронизации и удаления (например, 200M/с)");
+        System.out.println("                    или показать выданные байты и время ожидания по классам приоритета.");
+        System.out.println("cache [clear]     - Показать статистику кэша директорий (попадания/промахи) или очистить его.");
+        System.out.println("stats [reset | json <file>]");
+        System.out.println("                  - Показать задержки команд и операций (p50/p99/макс.), объём ввода-вывода,");
+        System.out.println("                    обращения к ФС на вывод директории; обнулить или записать в JSON.");
         System.out.println("exit              - Выйти из файлового менеджера.");
         System.out.println("--------------------------\n");
     }
@@ -81,7 +373,9 @@ public class FileManager {
      * @return введённая пользователем команда, обрезанная от лишних пробелов
      */
     private String getCommand() {
-        System.out.print("\nВведите команду (help, copy, ch, mkdir, rm или exit): "); // Обновляем подсказку
+        System.out.print("\n" + jobScheduler.promptStatus()
+                + "Введите команду (help, ls, tree, du, dups, find, grep, copy, mv, sync, diff, pack, unpack, checksum,"
+                + " ch, mkdir, rm, jobs или exit): "); // Обновляем подсказку
         return scanner.nextLine().trim();
     }
 
@@ -144,16 +438,59 @@ public class FileManager {
 
     /**
      * Точка входа в приложение. Создаёт и запускает экземпляр файлового менеджера.
+     * <p>
+     * С ключом {@code --script <файл|->} команды читаются из файла (или стандартного ввода)
+     * и выполняются без диалога; {@code --jobs N} ограничивает число одновременно выполняемых команд.
+     * С ключом {@code --metrics-json <файл>} при завершении статистика записывается в файл.
+     * </p>
      *
-     * @param args аргументы командной строки (не используются)
+     * @param args аргументы командной строки
      */
     public static void main(String[] args) {
+        String script = null;
+        Path metricsFile = null;
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+        for (int i = 0; i < args.length; i++) {
+            if ("--script".equals(args[i]) && i + 1 < args.length) {
+                script = args[++i];
+            } else if ("--metrics-json".equals(args[i]) && i + 1 < args.length) {
+                metricsFile = Path.of(args[++i]).toAbsolutePath();
+            } else if ("--bwlimit".equals(args[i]) && i + 1 < args.length) {
+                try {
+                    IoThrottle.setLimit(FileSizeFormatter.parseFileSize(args[++i]));
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    System.exit(BatchRunner.EXIT_SCRIPT_ERROR);
+                }
+            } else if ("--jobs".equals(args[i]) && i + 1 < args.length) {
+                try {
+                    jobs = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs <= 0) {
+                    System.err.println("Значение --jobs должно быть положительным целым числом.");
+                    System.exit(BatchRunner.EXIT_SCRIPT_ERROR);
+                }
+            } else {
+                System.err.println("Неизвестный аргумент: " + args[i] + ". Используйте: [--script <файл|->] [--jobs N] [--bwlimit СКОРОСТЬ] [--metrics-json <файл>]");
+                System.exit(BatchRunner.EXIT_SCRIPT_ERROR);
+            }
+        }
+
         try {
             FileManager fileManager = new FileManager();
+            fileManager.setMetricsFile(metricsFile);
+            if (script != null) {
+                System.exit(fileManager.runScript(script, jobs));
+            }
             fileManager.start();
         } catch (Exception e) {
             System.err.println("Критическая ошибка при запуске программы: " + e.getMessage());
             e.printStackTrace();
+            if (script != null) {
+                System.exit(BatchRunner.EXIT_SCRIPT_ERROR);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,495 @@
+// FileMover.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс для перемещения файлов и директорий (команда 'mv').
+ * <p>
+ * В пределах одной файловой системы перемещение — это атомарное переименование ({@code ATOMIC_MOVE}),
+ * которое не зависит от объёма данных. Между файловыми системами данные копируются параллельно
+ * во временный путь {@code <назначение>.fmpart}, который затем переименовывается в назначение,
+ * и только после этого удаляется источник. Ход перемещения записывается в журнал
+ * {@code .<имя>.fmmove} рядом с назначением: если перемещение прервано (сбой, отмена задания),
+ * повторный запуск той же команды продолжает его — уже скопированные файлы (с тем же размером
+ * и временем изменения) не копируются заново. Источник не изменяется, пока копия не собрана целиком
+ * и не сброшена на диск ({@code fsync} файлов и директорий), поэтому сбой питания после начала
+ * удаления источника не оставит неполную копию.
+ * </p>
+ */
+public class FileMover {
+
+    /**
+     * Суффикс временного пути, в который копируются данные при перемещении между файловыми системами.
+     */
+    static final String PART_SUFFIX = ".fmpart";
+
+    /**
+     * Суффикс файла журнала перемещения.
+     */
+    static final String JOURNAL_SUFFIX = ".fmmove";
+
+    /**
+     * Можно ли сбросить на диск запись директории: в POSIX-системах директория открывается как канал,
+     * в Windows — нет (там метаданные NTFS журналируются файловой системой).
+     */
+    private static final boolean DIRECTORY_SYNC_SUPPORTED =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    /**
+     * Формат команды.
+     */
+    private static final String USAGE = "mv [-r] [--jobs N] <источник> <назначение>";
+
+    /**
+     * Этап перемещения между файловыми системами, записываемый в журнал.
+     */
+    enum Phase {
+        /** Данные копируются во временный путь; источник не изменён. */
+        COPY,
+        /** Копия на месте; удаляется источник. */
+        DELETE
+    }
+
+    /**
+     * Конструктор класса FileMover.
+     * Создаёт новый экземпляр для перемещения файлов и директорий.
+     */
+    public FileMover() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Итоги перемещения между файловыми системами.
+     */
+    public static final class Result {
+
+        /**
+         * Количество скопированных файлов.
+         */
+        final AtomicLong copied = new AtomicLong();
+
+        /**
+         * Количество файлов, скопированных до прерывания (при продолжении).
+         */
+        final AtomicLong resumed = new AtomicLong();
+
+        /**
+         * Объём скопированных данных.
+         */
+        final AtomicLong bytes = new AtomicLong();
+
+        /**
+         * Количество записей, которые не удалось скопировать.
+         */
+        final AtomicLong failures = new AtomicLong();
+
+        /**
+         * Время перемещения в наносекундах.
+         */
+        long elapsedNanos;
+
+        /**
+         * Возвращает строку с итогами.
+         *
+         * @return строка с итогами
+         */
+        public String summary() {
+            double seconds = Math.max(elapsedNanos, 1L) / 1_000_000_000.0;
+            return String.format("Перемещено между файловыми системами: скопировано файлов %d (%s), уже было скопировано %d"
+                            + " за %.2f с — %.2f МБ/с",
+                    copied.get(), FileSizeFormatter.formatFileSize(bytes.get()), resumed.get(), seconds,
+                    bytes.get() / seconds / (1024.0 * 1024.0));
+        }
+    }
+
+    /**
+     * Обрабатывает команду перемещения.
+     * Если назначение — существующая директория, источник перемещается в неё под своим именем.
+     *
+     * @param command          полная строка команды, начинающаяся с 'mv'
+     * @param currentDirectory текущая директория, относительно которой разрешаются пути
+     * @return true, если перемещение завершено
+     */
+    public boolean handleMvCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        List<String> positional = new ArrayList<>();
+        boolean recursive = false;
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ("-r".equals(argument)) {
+                recursive = true;
+            } else if ("--jobs".equals(argument) && i + 1 < arguments.size()) {
+                try {
+                    jobs = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs <= 0) {
+                    System.out.println("Значение --jobs должно быть положительным целым числом.");
+                    return false;
+                }
+            } else {
+                positional.add(argument);
+            }
+        }
+        if (positional.size() != 2) {
+            System.out.println("Неверный формат команды. Используйте: " + USAGE);
+            return false;
+        }
+
+        Path directory = Paths.get(currentDirectory);
+        Path source = directory.resolve(positional.get(0)).toAbsolutePath().normalize();
+        Path destination = directory.resolve(positional.get(1)).toAbsolutePath().normalize();
+        // Журнал рядом с назначением означает прерванное перемещение в само назначение: после переименования
+        // копии оно уже директория, но повтор команды должен продолжить перемещение, а не начать новое внутрь неё
+        Path target = Files.isDirectory(destination) && !destination.equals(source) && !Files.exists(journalPath(destination))
+                ? destination.resolve(source.getFileName().toString()) : destination;
+
+        try {
+            Path journal = journalPath(target);
+            if (Files.exists(journal)) {
+                return resume(source, target, journal, jobs);
+            }
+            if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+                System.out.println("Ошибка: источник не найден: " + source);
+                return false;
+            }
+            if (Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS) && !recursive) {
+                System.out.println("Источник является директорией, используйте: mv -r <источник> <назначение>");
+                return false;
+            }
+            if (target.startsWith(source)) {
+                System.out.println("Ошибка: нельзя переместить директорию внутрь самой себя: " + target);
+                return false;
+            }
+            if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                System.out.println("Ошибка: назначение уже существует: " + target);
+                return false;
+            }
+            Files.createDirectories(target.getParent());
+
+            try {
+                // В пределах одной файловой системы — переименование за O(1), независимо от объёма данных
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                System.out.println("Перемещено: " + source + " -> " + target);
+                return true;
+            } catch (AtomicMoveNotSupportedException e) {
+                System.out.println("Источник и назначение на разных файловых системах: копирование с последующим удалением.");
+            }
+            writeJournal(journal, source, Phase.COPY);
+            return moveAcrossFileSystems(source, target, journal, Phase.COPY, jobs);
+        } catch (CancellationException e) {
+            System.out.println("Перемещение прервано; повторите команду, чтобы продолжить его.");
+            throw e; // Отмена фонового задания обрабатывается планировщиком
+        } catch (IOException e) {
+            System.err.println("Ошибка при перемещении: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Продолжает прерванное перемещение по журналу.
+     *
+     * @param source  источник, указанный в команде
+     * @param target  назначение
+     * @param journal путь к журналу
+     * @param jobs    количество потоков копирования
+     * @return true, если перемещение завершено
+     * @throws IOException если журнал повреждён или перемещение не удалось продолжить
+     */
+    private boolean resume(Path source, Path target, Path journal, int jobs) throws IOException {
+        List<String> lines = Files.readAllLines(journal, StandardCharsets.UTF_8);
+        if (lines.size() < 2 || !lines.get(0).startsWith("source=") || !lines.get(1).startsWith("phase=")) {
+            throw new IOException("Журнал перемещения повреждён: " + journal);
+        }
+        Path journaled = Paths.get(lines.get(0).substring("source=".length()));
+        Phase phase;
+        try {
+            phase = Phase.valueOf(lines.get(1).substring("phase=".length()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Журнал перемещения повреждён: " + journal);
+        }
+        if (!journaled.equals(source)) {
+            System.out.println("Ошибка: назначение занято незавершённым перемещением из " + journaled
+                    + "; повторите ту команду или удалите " + journal);
+            return false;
+        }
+        // Сбой между переименованием копии и записью журнала: копия уже на месте
+        if (phase == Phase.COPY && Files.exists(target, LinkOption.NOFOLLOW_LINKS) && !Files.exists(partPath(target))) {
+            phase = Phase.DELETE;
+        }
+        System.out.println("Продолжается прерванное перемещение " + source + " -> " + target
+                + (phase == Phase.COPY ? " (копирование)." : " (удаление источника)."));
+        return moveAcrossFileSystems(source, target, journal, phase, jobs);
+    }
+
+    /**
+     * Перемещает источник между файловыми системами: копирует во временный путь, переименовывает его
+     * в назначение, удаляет источник и журнал. Каждый этап можно повторить после прерывания.
+     *
+     * @param source  источник
+     * @param target  назначение
+     * @param journal путь к журналу
+     * @param phase   этап, с которого начинается (или продолжается) перемещение
+     * @param jobs    количество потоков копирования
+     * @return true, если перемещение завершено
+     * @throws IOException если перемещение не удалось
+     */
+    private boolean moveAcrossFileSystems(Path source, Path target, Path journal, Phase phase, int jobs) throws IOException {
+        if (phase == Phase.COPY) {
+            long startNanos = System.nanoTime();
+            Result result = new Result();
+            Path part = partPath(target);
+            List<Path> directories = copyResumable(source, part, jobs, result);
+            result.elapsedNanos = System.nanoTime() - startNanos;
+            System.out.println(result.summary());
+            if (result.failures.get() > 0) {
+                System.err.println("Не удалось скопировать записей: " + result.failures.get()
+                        + "; источник не изменён, повторите команду, чтобы продолжить.");
+                return false;
+            }
+            // Файлы уже сброшены на диск при копировании; записи директорий — от глубоких к корню
+            for (int i = directories.size() - 1; i >= 0; i--) {
+                forceDirectory(directories.get(i));
+            }
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(target.getParent());
+            writeJournal(journal, source, Phase.DELETE);
+        }
+
+        if (Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+            RecursiveDeleter.Result deleted = new RecursiveDeleter().delete(source, 0);
+            if (deleted.getFailures() > 0) {
+                System.err.println("Копия на месте, но не удалось удалить записей источника: " + deleted.getFailures()
+                        + "; повторите команду, чтобы продолжить.");
+                return false;
+            }
+        }
+        Files.deleteIfExists(journal);
+        System.out.println("Перемещено: " + source + " -> " + target);
+        return true;
+    }
+
+    /**
+     * Копирует файл или дерево, пропуская файлы, уже скопированные до прерывания (совпадают размер
+     * и время изменения). Время изменения выставляется после копирования файла целиком, поэтому
+     * недокопированный файл всегда копируется заново. Символические ссылки копируются как ссылки.
+     *
+     * @param source источник
+     * @param target временный путь назначения
+     * @param jobs   количество потоков копирования
+     * @param result итоги перемещения
+     * @return директории копии в порядке обхода (родительские раньше вложенных)
+     * @throws IOException если источник не удалось обойти
+     */
+    private List<Path> copyResumable(Path source, Path target, int jobs, Result result) throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        List<Path> directories = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                JobScheduler.checkCancelled();
+                directories.add(Files.createDirectories(target.resolve(source.relativize(dir).toString())));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file);
+                sizes.add(attrs.isRegularFile() ? attrs.size() : 0L);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Не удалось прочитать: " + file + ": " + e.getMessage());
+                result.failures.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        long totalBytes = 0;
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            totalBytes += sizes.get(i);
+        }
+        // Крупные файлы — первыми, чтобы они не оказались в конце очереди
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> sizes.get(i)).reversed());
+
+        // Одиночный крупный файл копируется по диапазонам в несколько потоков
+        LargeFileCopier largeFileCopier = new LargeFileCopier(LargeFileCopier.DEFAULT_THRESHOLD,
+                files.size() == 1 ? jobs : 1, true, false);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, jobs));
+        try (ProgressReporter progress = new ProgressReporter("mv", totalBytes, true, true)) {
+            List<Future<?>> tasks = new ArrayList<>(files.size());
+            for (int index : order) {
+                Path from = files.get(index);
+                Path to = source.equals(from) ? target : target.resolve(source.relativize(from).toString());
+                tasks.add(pool.submit(() -> {
+                    JobScheduler.checkCancelled();
+                    try {
+                        copyFile(from, to, largeFileCopier, result);
+                    } catch (IOException e) {
+                        result.failures.incrementAndGet();
+                        System.err.println("Ошибка при копировании " + from + ": " + e.getMessage());
+                    }
+                    progress.add(sizes.get(index));
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Перемещение прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new IOException("Ошибка в потоке копирования: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return directories;
+    }
+
+    /**
+     * Копирует один файл или символическую ссылку, если копия ещё не готова, и сбрасывает копию на диск
+     * (в том числе скопированную до прерывания: она могла остаться только в кэше страниц).
+     *
+     * @param from            исходный файл
+     * @param to              файл во временном пути назначения
+     * @param largeFileCopier механизм копирования больших файлов
+     * @param result          итоги перемещения
+     * @throws IOException если файл не удалось скопировать
+     */
+    private void copyFile(Path from, Path to, LargeFileCopier largeFileCopier, Result result) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(from, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isRegularFile()) {
+            Files.deleteIfExists(to);
+            Files.copy(from, to, LinkOption.NOFOLLOW_LINKS);
+            result.copied.incrementAndGet();
+            return;
+        }
+        try {
+            BasicFileAttributes copied = Files.readAttributes(to, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (copied.isRegularFile() && copied.size() == attributes.size()
+                    && copied.lastModifiedTime().equals(attributes.lastModifiedTime())) {
+                forceFile(to);
+                result.resumed.incrementAndGet();
+                return;
+            }
+        } catch (NoSuchFileException e) {
+            // Файл ещё не копировался
+        }
+
+        long size = attributes.size();
+        if (largeFileCopier.accepts(size)) {
+            largeFileCopier.copy(from, to);
+        } else {
+            IoThrottle.acquire(size);
+            long copyStart = System.nanoTime();
+            Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
+            Metrics.recordCopy(Metrics.COPY_FILE, size, System.nanoTime() - copyStart);
+        }
+        // Время изменения — признак того, что файл скопирован целиком
+        Files.setLastModifiedTime(to, attributes.lastModifiedTime());
+        forceFile(to);
+        result.copied.incrementAndGet();
+        result.bytes.addAndGet(size);
+    }
+
+    /**
+     * Атомарно и надёжно записывает журнал перемещения: во временный файл, который сбрасывается на диск
+     * и переименовывается, после чего на диск сбрасывается и директория журнала.
+     *
+     * @param journal путь к журналу
+     * @param source  источник перемещения
+     * @param phase   текущий этап
+     * @throws IOException если журнал не удалось записать
+     */
+    private static void writeJournal(Path journal, Path source, Phase phase) throws IOException {
+        Path temporary = journal.resolveSibling(journal.getFileName() + ".tmp");
+        byte[] content = ("source=" + source + "\n" + "phase=" + phase.name() + "\n").getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(journal.getParent());
+    }
+
+    /**
+     * Сбрасывает на диск содержимое и метаданные файла.
+     *
+     * @param file файл
+     * @throws IOException если файл не удалось сбросить
+     */
+    private static void forceFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск запись директории (созданные и переименованные в ней записи).
+     *
+     * @param directory директория
+     * @throws IOException если директорию не удалось сбросить
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        if (!DIRECTORY_SYNC_SUPPORTED) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * @param target назначение перемещения
+     * @return путь к журналу перемещения рядом с назначением
+     */
+    static Path journalPath(Path target) {
+        return target.resolveSibling("." + target.getFileName() + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * @param target назначение перемещения
+     * @return временный путь, в который копируются данные
+     */
+    static Path partPath(Path target) {
+        return target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    }
+}
@@ -1,3 +1,6 @@
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
 /**
  * Вспомогательный класс для форматирования размера файла.
  * <p>
@@ -14,6 +17,12 @@ public class FileSizeFormatter {
         // Конструктор по умолчанию
     }
 
+    /**
+     * Десятичный разделитель текущей локали (тот же, что использует {@code String.format}).
+     */
+    private static final char DECIMAL_SEPARATOR =
+            DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getDecimalSeparator();
+
     /**
      * Форматирует размер файла в удобочитаемый вид.
      *
@@ -21,14 +30,79 @@ public class FileSizeFormatter {
      * @return строка с форматированным размером (например, "1024 B", "1.00 KB", "2.50 MB")
      */
     public static String formatFileSize(long sizeInBytes) {
+        return appendFileSize(new StringBuilder(16), sizeInBytes).toString();
+    }
+
+    /**
+     * Дописывает размер файла в удобочитаемом виде в буфер, не создавая промежуточных объектов.
+     * Результат совпадает с {@link #formatFileSize(long)}: два знака после запятой с округлением половины вверх.
+     *
+     * @param target      буфер, в который дописывается размер
+     * @param sizeInBytes размер файла в байтах
+     * @return тот же буфер для цепочки вызовов
+     */
+    public static StringBuilder appendFileSize(StringBuilder target, long sizeInBytes) {
         if (sizeInBytes < 1024L) {
-            return sizeInBytes + " B";
-        } else if (sizeInBytes < 1024L * 1024L) {
-            return String.format("%.2f KB", sizeInBytes / 1024.0);
+            return target.append(sizeInBytes).append(" B");
+        }
+        long unit;
+        String suffix;
+        if (sizeInBytes < 1024L * 1024L) {
+            unit = 1024L;
+            suffix = " KB";
         } else if (sizeInBytes < 1024L * 1024L * 1024L) {
-            return String.format("%.2f MB", sizeInBytes / (1024.0 * 1024.0));
+            unit = 1024L * 1024L;
+            suffix = " MB";
         } else {
-            return String.format("%.2f GB", sizeInBytes / (1024.0 * 1024.0 * 1024.0));
+            unit = 1024L * 1024L * 1024L;
+            suffix = " GB";
+        }
+        // Сотые доли единицы с округлением половины вверх, без переполнения для любых размеров
+        long hundredths = sizeInBytes / unit * 100 + (sizeInBytes % unit * 100 + unit / 2) / unit;
+        long fraction = hundredths % 100;
+        target.append(hundredths / 100).append(DECIMAL_SEPARATOR);
+        if (fraction < 10) {
+            target.append('0');
+        }
+        return target.append(fraction).append(suffix);
+    }
+
+    /**
+     * Разбирает размер с необязательным суффиксом единицы измерения.
+     * Поддерживаются суффиксы B, K/KB, M/MB, G/GB, T/TB (без учёта регистра), например "512", "64K", "200M", "1.5G".
+     *
+     * @param text строка с размером
+     * @return размер в байтах
+     * @throws IllegalArgumentException если строка не является корректным размером
+     */
+    public static long parseFileSize(String text) {
+        String value = text.trim().toUpperCase();
+        if (value.endsWith("B")) {
+            value = value.substring(0, value.length() - 1);
+        }
+
+        long multiplier = 1L;
+        if (!value.isEmpty()) {
+            switch (value.charAt(value.length() - 1)) {
+                case 'K' -> multiplier = 1024L;
+                case 'M' -> multiplier = 1024L * 1024L;
+                case 'G' -> multiplier = 1024L * 1024L * 1024L;
+                case 'T' -> multiplier = 1024L * 1024L * 1024L * 1024L;
+                default -> multiplier = 1L;
+            }
+            if (multiplier > 1L) {
+                value = value.substring(0, value.length() - 1);
+            }
+        }
+
+        try {
+            double number = Double.parseDouble(value);
+            if (number >= 0 && !Double.isInfinite(number)) {
+                return (long) (number * multiplier);
+            }
+        } catch (NumberFormatException e) {
+            // Обрабатывается ниже
         }
+        throw new IllegalArgumentException("Некорректный размер: " + text);
     }
 }
\ No newline at end of file
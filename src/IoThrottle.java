@@ -0,0 +1,263 @@
+// IoThrottle.java
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Общий для всех операций копирования, синхронизации и удаления ограничитель пропускной способности ввода-вывода.
+ * <p>
+ * Ограничение реализовано «ведром токенов»: за секунду в ведро поступает заданное число байт,
+ * а операция перед записью очередной порции забирает из него столько байт, сколько собирается записать,
+ * и при нехватке ждёт. Удаление записи оценивается в {@value #DELETE_COST} байт.
+ * </p>
+ * <p>
+ * Операции делятся на два класса приоритета: интерактивные (команды, выполняемые в диалоге или сценарии)
+ * и фоновые (задания, запущенные с '&amp;'). Пока выполняется интерактивная команда (в том числе 'ls' или 'ch'),
+ * фоновые операции не получают новых порций и уступают диск. Пока команда ждёт ответа пользователя
+ * (например, подтверждения удаления), приоритет снимается — см. {@link #awaitInput(Supplier)}.
+ * Для каждого класса учитываются выданные байты и время ожидания.
+ * </p>
+ */
+public class IoThrottle {
+
+    /**
+     * Условная стоимость удаления одной записи в байтах.
+     */
+    public static final long DELETE_COST = 4096;
+
+    /**
+     * Максимальная длительность одного ожидания: после неё проверяются отмена задания и смена приоритета.
+     */
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Объём ведра в секундах при заданной скорости (допустимый всплеск).
+     */
+    private static final double BURST_SECONDS = 0.1;
+
+    /**
+     * Монитор состояния ограничителя.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * Ограничение в байтах в секунду; 0 — без ограничения.
+     */
+    private static long limit;
+
+    /**
+     * Текущее количество токенов (может быть отрицательным, если выдана порция больше ведра).
+     */
+    private static double tokens;
+
+    /**
+     * Время последнего пополнения ведра в наносекундах.
+     */
+    private static long lastRefillNanos = System.nanoTime();
+
+    /**
+     * Количество выполняющихся интерактивных команд.
+     */
+    private static int activeInteractive;
+
+    /**
+     * Количество интерактивных команд, начатых текущим потоком и ещё не законченных.
+     */
+    private static final ThreadLocal<int[]> HELD_BY_THREAD = ThreadLocal.withInitial(() -> new int[1]);
+
+    /**
+     * Выданные байты по классам приоритета.
+     */
+    private static final AtomicLong[] GRANTED = {new AtomicLong(), new AtomicLong()};
+
+    /**
+     * Суммарное время ожидания по классам приоритета в наносекундах.
+     */
+    private static final AtomicLong[] WAITED = {new AtomicLong(), new AtomicLong()};
+
+    /**
+     * Конструктор класса IoThrottle.
+     * Этот класс содержит только статические методы и не требует экземпляра.
+     */
+    public IoThrottle() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Класс приоритета операции ввода-вывода.
+     */
+    public enum Priority {
+        /** Команды, выполняемые в диалоге или сценарии. */
+        INTERACTIVE("интерактивные"),
+        /** Фоновые задания. */
+        BULK("фоновые");
+
+        /**
+         * Название класса для вывода.
+         */
+        private final String title;
+
+        /**
+         * @param title название класса для вывода
+         */
+        Priority(String title) {
+            this.title = title;
+        }
+    }
+
+    /**
+     * Устанавливает ограничение пропускной способности.
+     *
+     * @param bytesPerSecond байт в секунду; 0 — без ограничения
+     */
+    public static void setLimit(long bytesPerSecond) {
+        synchronized (LOCK) {
+            limit = Math.max(0, bytesPerSecond);
+            tokens = limit * BURST_SECONDS;
+            lastRefillNanos = System.nanoTime();
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * @return ограничение в байтах в секунду; 0 — без ограничения
+     */
+    public static long getLimit() {
+        synchronized (LOCK) {
+            return limit;
+        }
+    }
+
+    /**
+     * Отмечает начало интерактивной команды: фоновые операции приостанавливаются до её окончания.
+     */
+    public static void beginInteractive() {
+        HELD_BY_THREAD.get()[0]++;
+        synchronized (LOCK) {
+            activeInteractive++;
+        }
+    }
+
+    /**
+     * Отмечает окончание интерактивной команды.
+     */
+    public static void endInteractive() {
+        HELD_BY_THREAD.get()[0]--;
+        synchronized (LOCK) {
+            activeInteractive--;
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * Ждёт ввода пользователя, на это время снимая интерактивный приоритет текущего потока:
+     * пока пользователь не ответил, фоновые задания продолжают работу.
+     *
+     * @param input чтение ответа пользователя
+     * @param <T>   тип ответа
+     * @return ответ пользователя
+     */
+    public static <T> T awaitInput(Supplier<T> input) {
+        int[] held = HELD_BY_THREAD.get();
+        int count = held[0];
+        synchronized (LOCK) {
+            activeInteractive -= count;
+            LOCK.notifyAll();
+        }
+        held[0] = 0;
+        try {
+            return input.get();
+        } finally {
+            held[0] = count;
+            synchronized (LOCK) {
+                activeInteractive += count;
+            }
+        }
+    }
+
+    /**
+     * Получает разрешение записать (или прочитать) порцию данных, при необходимости ожидая.
+     * Класс приоритета определяется по текущему потоку: фоновое задание или нет.
+     *
+     * @param bytes размер порции в байтах
+     */
+    public static void acquire(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        Priority priority = JobScheduler.isBackground() ? Priority.BULK : Priority.INTERACTIVE;
+        long waitStart = System.nanoTime();
+        long readyAtNanos;
+        try {
+            synchronized (LOCK) {
+                // Фоновые операции уступают интерактивным
+                while (priority == Priority.BULK && activeInteractive > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(LOCK, MAX_WAIT_NANOS);
+                    JobScheduler.checkCancelled();
+                }
+                long now = System.nanoTime();
+                if (limit > 0) {
+                    tokens = Math.min(limit * BURST_SECONDS, tokens + (now - lastRefillNanos) * limit / 1e9);
+                    lastRefillNanos = now;
+                    tokens -= bytes;
+                }
+                // Порция выдаётся в долг: ждём, пока поступление токенов не покроет задолженность
+                readyAtNanos = limit > 0 && tokens < 0 ? now + (long) (-tokens * 1e9 / limit) : now;
+            }
+            long remaining;
+            while ((remaining = readyAtNanos - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, MAX_WAIT_NANOS));
+                JobScheduler.checkCancelled();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            GRANTED[priority.ordinal()].addAndGet(bytes);
+            WAITED[priority.ordinal()].addAndGet(System.nanoTime() - waitStart);
+        }
+    }
+
+    /**
+     * Возвращает описание ограничения и статистику по классам приоритета.
+     *
+     * @return многострочное описание
+     */
+    public static String describe() {
+        long current = getLimit();
+        StringBuilder text = new StringBuilder("Ограничение ввода-вывода: ")
+                .append(current > 0 ? FileSizeFormatter.formatFileSize(current) + "/с" : "нет");
+        for (Priority priority : Priority.values()) {
+            text.append(System.lineSeparator()).append(String.format("  %-14s выдано %s, ожидание %.2f с", priority.title,
+                    FileSizeFormatter.formatFileSize(GRANTED[priority.ordinal()].get()),
+                    WAITED[priority.ordinal()].get() / 1_000_000_000.0));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Обрабатывает команду ограничения пропускной способности.
+     * Формат: {@code bwlimit [СКОРОСТЬ|off]}; без аргумента выводит статистику.
+     *
+     * @param command полная строка команды, начинающаяся с 'bwlimit'
+     * @return true, если команда выполнена успешно
+     */
+    public static boolean handleBwlimitCommand(String command) {
+        String[] parts = command.trim().split("\\s+");
+        if (parts.length == 1) {
+            System.out.println(describe());
+            return true;
+        }
+        if (parts.length != 2) {
+            System.out.println("Неверный формат команды. Используйте: bwlimit [СКОРОСТЬ|off], например bwlimit 200M");
+            return false;
+        }
+        try {
+            setLimit("off".equalsIgnoreCase(parts[1]) ? 0 : FileSizeFormatter.parseFileSize(parts[1]));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+        System.out.println(describe());
+        return true;
+    }
+}
@@ -0,0 +1,398 @@
+// JobScheduler.java
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Класс для выполнения долгих команд в фоне (команда с '&amp;' в конце, команды 'jobs', 'wait', 'cancel').
+ * <p>
+ * Каждое задание выполняется в отдельном виртуальном потоке, а его вывод перехватывается в буфер
+ * и печатается перед очередным приглашением после завершения (или по команде 'wait'). Отмена
+ * кооперативная: операции вызывают {@link #checkCancelled()} на границах порций работы (блок файла,
+ * файл, директория) и прерываются исключением {@link CancellationException}.
+ * </p>
+ */
+public class JobScheduler implements AutoCloseable {
+
+    /**
+     * Задание, выполняемое текущим потоком (наследуется порождёнными им потоками).
+     */
+    private static final InheritableThreadLocal<Job> CURRENT_JOB = new InheritableThreadLocal<>();
+
+    /**
+     * Исполнитель заданий: по виртуальному потоку на задание.
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Задания по номерам.
+     */
+    private final Map<Integer, Job> jobs = new ConcurrentSkipListMap<>();
+
+    /**
+     * Номер следующего задания.
+     */
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    /**
+     * Конструктор класса JobScheduler.
+     * Создаёт планировщик без заданий.
+     */
+    public JobScheduler() {
+        OutputCapture.install();
+    }
+
+    /**
+     * Состояние задания.
+     */
+    public enum Status {
+        /** Задание выполняется. */
+        RUNNING("выполняется"),
+        /** Задание завершено успешно. */
+        DONE("завершено"),
+        /** Задание завершено с ошибкой. */
+        FAILED("ошибка"),
+        /** Задание отменено. */
+        CANCELLED("отменено");
+
+        /**
+         * Название состояния для вывода.
+         */
+        private final String title;
+
+        /**
+         * @param title название состояния для вывода
+         */
+        Status(String title) {
+            this.title = title;
+        }
+    }
+
+    /**
+     * Запускает команду в фоне.
+     *
+     * @param command текст команды (для вывода)
+     * @param action  выполняемое действие; возвращает признак успеха
+     * @return номер задания
+     */
+    public int submit(String command, BooleanSupplier action) {
+        Job job = new Job(nextId.getAndIncrement(), command);
+        jobs.put(job.id, job);
+        executor.execute(() -> job.run(action));
+        return job.id;
+    }
+
+    /**
+     * Проверяет, не запрошена ли отмена задания, выполняемого текущим потоком.
+     * Вне фоновых заданий ничего не делает.
+     *
+     * @throws CancellationException если задание отменено
+     */
+    public static void checkCancelled() {
+        Job job = CURRENT_JOB.get();
+        if (job != null && job.cancelRequested) {
+            throw new CancellationException("Задание " + job.id + " отменено");
+        }
+    }
+
+    /**
+     * Проверяет, выполняется ли текущий поток в составе фонового задания.
+     *
+     * @return true для потоков фоновых заданий
+     */
+    public static boolean isBackground() {
+        return CURRENT_JOB.get() != null;
+    }
+
+    /**
+     * Связывает индикатор прогресса с заданием текущего потока, чтобы показывать прогресс в приглашении.
+     *
+     * @param progress индикатор прогресса
+     */
+    static void attachProgress(ProgressReporter progress) {
+        Job job = CURRENT_JOB.get();
+        if (job != null) {
+            job.progress = progress;
+        }
+    }
+
+    /**
+     * Возвращает краткое состояние выполняющихся заданий для приглашения, например "[1: copy 45%] ".
+     *
+     * @return строка состояния или пустая строка, если фоновых заданий нет
+     */
+    public String promptStatus() {
+        StringBuilder status = new StringBuilder();
+        for (Job job : jobs.values()) {
+            if (job.status == Status.RUNNING) {
+                status.append(status.isEmpty() ? "[" : ", ").append(job.id).append(": ").append(job.shortProgress());
+            }
+        }
+        return status.isEmpty() ? "" : status.append("] ").toString();
+    }
+
+    /**
+     * Печатает уведомления о заданиях, завершившихся с момента предыдущего вызова, вместе с их выводом,
+     * и удаляет эти задания из списка: их вывод больше не хранится в памяти.
+     */
+    public void reportFinished() {
+        for (Job job : jobs.values()) {
+            if (job.status != Status.RUNNING) {
+                job.report(System.out, System.err);
+                jobs.remove(job.id);
+            }
+        }
+    }
+
+    /**
+     * Обрабатывает команду 'jobs': выводит список заданий.
+     *
+     * @param command полная строка команды
+     * @return true, если команда выполнена успешно
+     */
+    public boolean handleJobsCommand(String command) {
+        if (!"jobs".equals(command.trim())) {
+            System.out.println("Неверный формат команды. Используйте: jobs");
+            return false;
+        }
+        if (jobs.isEmpty()) {
+            System.out.println("Фоновых заданий нет.");
+            return true;
+        }
+        for (Job job : jobs.values()) {
+            System.out.println(String.format("[%d] %-12s %8.1f с  %s", job.id, job.status.title,
+                    job.elapsedNanos() / 1_000_000_000.0, job.command));
+            ProgressReporter progress = job.progress;
+            if (progress != null && job.status == Status.RUNNING) {
+                System.out.println("     " + progress.describe());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Обрабатывает команду 'wait &lt;номер&gt;': дожидается завершения задания и выводит его результат.
+     *
+     * @param command полная строка команды
+     * @return true, если задание завершилось успешно
+     */
+    public boolean handleWaitCommand(String command) {
+        Job job = findJob(command, "wait");
+        if (job == null) {
+            return false;
+        }
+        job.finished.join();
+        if (!job.report(System.out, System.err)) {
+            System.out.println("[" + job.id + "] " + job.status.title + ": " + job.command);
+        }
+        return job.status == Status.DONE;
+    }
+
+    /**
+     * Обрабатывает команду 'cancel &lt;номер&gt;': запрашивает отмену задания.
+     * Задание останавливается на ближайшей границе порции работы.
+     *
+     * @param command полная строка команды
+     * @return true, если отмена запрошена
+     */
+    public boolean handleCancelCommand(String command) {
+        Job job = findJob(command, "cancel");
+        if (job == null) {
+            return false;
+        }
+        if (job.status != Status.RUNNING) {
+            System.out.println("Задание " + job.id + " уже " + job.status.title + ".");
+            return false;
+        }
+        job.cancelRequested = true;
+        System.out.println("Запрошена отмена задания " + job.id + ".");
+        return true;
+    }
+
+    /**
+     * Находит задание по номеру из аргумента команды.
+     *
+     * @param command полная строка команды
+     * @param name    имя команды (для подсказки по формату)
+     * @return задание или null, если номер неверный
+     */
+    private Job findJob(String command, String name) {
+        String[] parts = command.trim().split("\\s+");
+        if (parts.length != 2) {
+            System.out.println("Неверный формат команды. Используйте: " + name + " <номер>");
+            return null;
+        }
+        Job job = null;
+        try {
+            job = jobs.get(Integer.parseInt(parts[1]));
+        } catch (NumberFormatException e) {
+            // Обрабатывается ниже как неизвестное задание
+        }
+        if (job == null) {
+            System.out.println("Задание не найдено: " + parts[1]);
+        }
+        return job;
+    }
+
+    /**
+     * Запрашивает отмену всех заданий и дожидается их остановки.
+     */
+    @Override
+    public void close() {
+        List<Job> running = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            if (job.status == Status.RUNNING) {
+                job.cancelRequested = true;
+                running.add(job);
+            }
+        }
+        if (!running.isEmpty()) {
+            System.out.println("Отмена фоновых заданий: " + running.size() + "...");
+        }
+        for (Job job : running) {
+            job.finished.join();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Фоновое задание.
+     */
+    private static final class Job {
+
+        /**
+         * Номер задания.
+         */
+        final int id;
+
+        /**
+         * Текст команды.
+         */
+        final String command;
+
+        /**
+         * Перехваченный вывод задания.
+         */
+        final OutputCapture output = new OutputCapture();
+
+        /**
+         * Завершается, когда задание закончило работу.
+         */
+        final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        /**
+         * Время запуска в наносекундах.
+         */
+        final long startNanos = System.nanoTime();
+
+        /**
+         * Время завершения в наносекундах (0, пока задание выполняется).
+         */
+        volatile long endNanos;
+
+        /**
+         * Состояние задания.
+         */
+        volatile Status status = Status.RUNNING;
+
+        /**
+         * Запрошена ли отмена.
+         */
+        volatile boolean cancelRequested;
+
+        /**
+         * Последний индикатор прогресса, созданный заданием.
+         */
+        volatile ProgressReporter progress;
+
+        /**
+         * Выведено ли уведомление о завершении.
+         */
+        private boolean reported;
+
+        /**
+         * @param id      номер задания
+         * @param command текст команды
+         */
+        Job(int id, String command) {
+            this.id = id;
+            this.command = command;
+        }
+
+        /**
+         * Выполняет задание в текущем (виртуальном) потоке.
+         *
+         * @param action выполняемое действие
+         */
+        void run(BooleanSupplier action) {
+            CURRENT_JOB.set(this);
+            boolean success = false;
+            try {
+                success = output.run(() -> {
+                    try {
+                        return action.getAsBoolean();
+                    } catch (CancellationException e) {
+                        // Сообщение исключения может быть потеряно при передаче через ForkJoinTask
+                        System.out.println("Задание " + id + " отменено.");
+                        return false;
+                    } catch (RuntimeException e) {
+                        System.err.println("Ошибка выполнения команды: " + e.getMessage());
+                        return false;
+                    }
+                });
+            } finally {
+                CURRENT_JOB.remove();
+                endNanos = System.nanoTime();
+                status = cancelRequested ? Status.CANCELLED : success ? Status.DONE : Status.FAILED;
+                finished.complete(null);
+            }
+        }
+
+        /**
+         * @return время выполнения задания в наносекундах
+         */
+        long elapsedNanos() {
+            long end = endNanos;
+            return (end == 0 ? System.nanoTime() : end) - startNanos;
+        }
+
+        /**
+         * Возвращает краткое описание хода задания: имя команды и процент (или прошедшее время).
+         *
+         * @return краткое описание хода задания
+         */
+        String shortProgress() {
+            String name = command.split("\\s+", 2)[0];
+            ProgressReporter current = progress;
+            if (current != null && current.getTotal() > 0) {
+                return name + " " + Math.min(100L, current.getDone() * 100L / current.getTotal()) + "%";
+            }
+            return name + " " + elapsedNanos() / 1_000_000_000L + " с";
+        }
+
+        /**
+         * Однократно печатает уведомление о завершении и перехваченный вывод задания.
+         *
+         * @param out поток для стандартного вывода
+         * @param err поток для вывода ошибок
+         * @return true, если уведомление напечатано этим вызовом
+         */
+        synchronized boolean report(PrintStream out, PrintStream err) {
+            if (reported) {
+                return false;
+            }
+            reported = true;
+            out.println(String.format("[%d] %s за %.1f с: %s", id, status.title, elapsedNanos() / 1_000_000_000.0, command));
+            output.writeTo(out, err);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+// LargeFileCopier.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * Класс для копирования больших файлов.
+ * <p>
+ * Файлы копируются через {@link FileChannel#transferTo} / {@link FileChannel#transferFrom}, что позволяет
+ * ядру передавать данные без копирования в пространство пользователя. Очень большие файлы делятся
+ * на диапазоны, которые несколько потоков записывают одновременно в заранее расширенный целевой файл.
+ * В режиме сохранения разреженности блоки из нулей не записываются, и «дыры» остаются дырами.
+ * </p>
+ * <p>
+ * В режиме проверки данные идут через буфер в пространстве пользователя: для каждого блока
+ * по {@value #BLOCK_SIZE} байт по пути вычисляется CRC32C (аппаратно ускоренная), поэтому источник
+ * повторно не читается. После копирования перечитывается только целевой файл — при возможности
+ * в обход страничного кэша ({@code O_DIRECT}), чтобы сравнивались данные с диска, а не из памяти.
+ * </p>
+ */
+public class LargeFileCopier {
+
+    /**
+     * Порог размера файла по умолчанию, начиная с которого используется этот механизм.
+     */
+    public static final long DEFAULT_THRESHOLD = 64L * 1024 * 1024;
+
+    /**
+     * Минимальный размер диапазона при параллельном копировании.
+     */
+    private static final long MIN_RANGE_SIZE = 128L * 1024 * 1024;
+
+    /**
+     * Размер порции одной передачи (между порциями обновляется прогресс).
+     */
+    private static final long CHUNK_SIZE = 8L * 1024 * 1024;
+
+    /**
+     * Размер блока при копировании через буфер (с сохранением разреженности или с проверкой);
+     * контрольная сумма вычисляется отдельно для каждого блока.
+     */
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * Выведено ли предупреждение о том, что чтение в обход кэша не поддерживается.
+     */
+    private static final AtomicBoolean DIRECT_WARNED = new AtomicBoolean();
+
+    /**
+     * Параметр открытия файла в обход страничного кэша ({@code O_DIRECT}) или null, если JDK его не поддерживает.
+     */
+    private static final OpenOption DIRECT = directOption();
+
+    /**
+     * Порог размера файла, начиная с которого используется этот механизм.
+     */
+    private final long threshold;
+
+    /**
+     * Максимальное количество потоков для одного файла.
+     */
+    private final int threads;
+
+    /**
+     * Сохранять ли разреженность (не записывать блоки из нулей).
+     */
+    private final boolean preserveSparse;
+
+    /**
+     * Выводить ли живой прогресс.
+     */
+    private final boolean showProgress;
+
+    /**
+     * Проверять ли копию по контрольным суммам.
+     */
+    private final boolean verify;
+
+    /**
+     * Перечитывать ли целевой файл при проверке в обход страничного кэша.
+     */
+    private final boolean direct;
+
+    /**
+     * Создаёт механизм копирования больших файлов.
+     *
+     * @param threshold      порог размера файла, начиная с которого используется этот механизм
+     * @param threads        максимальное количество потоков для одного файла
+     * @param preserveSparse сохранять ли разреженность целевого файла
+     * @param showProgress   выводить ли живой прогресс
+     */
+    public LargeFileCopier(long threshold, int threads, boolean preserveSparse, boolean showProgress) {
+        this(threshold, threads, preserveSparse, showProgress, false, false);
+    }
+
+    /**
+     * Создаёт механизм копирования больших файлов с проверкой копии.
+     *
+     * @param threshold      порог размера файла, начиная с которого используется этот механизм
+     * @param threads        максимальное количество потоков для одного файла
+     * @param preserveSparse сохранять ли разреженность целевого файла
+     * @param showProgress   выводить ли живой прогресс
+     * @param verify         проверять ли копию по контрольным суммам CRC32C
+     * @param direct         перечитывать ли целевой файл при проверке в обход страничного кэша
+     */
+    public LargeFileCopier(long threshold, int threads, boolean preserveSparse, boolean showProgress,
+                           boolean verify, boolean direct) {
+        this.threshold = threshold;
+        this.threads = Math.max(1, threads);
+        this.preserveSparse = preserveSparse;
+        this.showProgress = showProgress;
+        this.verify = verify;
+        this.direct = direct;
+    }
+
+    /**
+     * Проверяет, должен ли файл указанного размера копироваться этим механизмом.
+     * В режиме проверки этим механизмом копируются файлы любого размера.
+     *
+     * @param size размер файла в байтах
+     * @return true, если размер не меньше порога или включена проверка
+     */
+    public boolean accepts(long size) {
+        return verify || size >= threshold;
+    }
+
+    /**
+     * Копирует файл, заменяя целевой файл, если он существует.
+     * При любой ошибке (в том числе при несовпадении копии в режиме проверки) целевой файл удаляется:
+     * заранее расширенный до полной длины, он иначе выглядел бы готовой копией при сравнении по размеру.
+     *
+     * @param source исходный файл
+     * @param target целевой файл
+     * @throws IOException если возникла ошибка при копировании или копия не совпала с источником
+     */
+    public void copy(Path source, Path target) throws IOException {
+        long size;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            size = in.size();
+        }
+
+        // Диапазоны выровнены по блоку, чтобы контрольная сумма каждого блока вычислялась одним потоком
+        int rangeCount = (int) Math.max(1L, Math.min(threads, size / MIN_RANGE_SIZE));
+        long rangeSize = roundUp((size + rangeCount - 1) / rangeCount, BLOCK_SIZE);
+        long[] checksums = verify ? new long[(int) ((size + BLOCK_SIZE - 1) / BLOCK_SIZE)] : null;
+        try (ProgressReporter progress = new ProgressReporter(source.getFileName().toString(), size, true, showProgress)) {
+            preallocate(target, size);
+            forEachRange(size, rangeSize, (from, length) -> copyRange(source, target, from, length, progress, checksums));
+            if (verify) {
+                forEachRange(size, rangeSize, (from, length) -> verifyRange(target, from, length, checksums));
+            }
+        } catch (RuntimeException | IOException e) {
+            // Не оставляем недокопированный или повреждённый файл
+            try {
+                Files.deleteIfExists(target);
+            } catch (IOException deleteError) {
+                e.addSuppressed(deleteError);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ошибка проверки: содержимое копии не совпало с источником.
+     */
+    public static final class VerificationException extends IOException {
+
+        /**
+         * Версия формата сериализации.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @param message описание несовпадения
+         */
+        VerificationException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Действие над диапазоном файла.
+     */
+    @FunctionalInterface
+    private interface RangeAction {
+
+        /**
+         * @param from   начальная позиция диапазона
+         * @param length длина диапазона
+         * @throws IOException если возникла ошибка ввода-вывода
+         */
+        void run(long from, long length) throws IOException;
+    }
+
+    /**
+     * Округляет значение вверх до кратного {@code unit}.
+     *
+     * @param value значение
+     * @param unit  кратность
+     * @return округлённое значение
+     */
+    private static long roundUp(long value, long unit) {
+        return (value + unit - 1) / unit * unit;
+    }
+
+    /**
+     * Создаёт (или усекает) целевой файл и расширяет его до нужной длины без записи данных.
+     *
+     * @param target целевой файл
+     * @param size   итоговый размер файла
+     * @throws IOException если файл не удалось создать
+     */
+    private void preallocate(Path target, long size) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SPARSE)) {
+            if (size > 0) {
+                // Запись последнего байта задаёт длину файла; остальное пространство остаётся незаполненным
+                out.write(ByteBuffer.allocate(1), size - 1);
+            }
+        }
+    }
+
+    /**
+     * Делит файл на диапазоны и обрабатывает их параллельно (единственный диапазон — в текущем потоке).
+     *
+     * @param size      размер файла
+     * @param rangeSize размер диапазона
+     * @param action    действие над диапазоном
+     * @throws IOException если обработка какого-либо диапазона завершилась ошибкой
+     */
+    private void forEachRange(long size, long rangeSize, RangeAction action) throws IOException {
+        if (rangeSize >= size) {
+            action.run(0L, size);
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool((int) ((size + rangeSize - 1) / rangeSize));
+        try {
+            List<Future<Void>> ranges = new ArrayList<>();
+            for (long start = 0; start < size; start += rangeSize) {
+                long from = start;
+                long length = Math.min(rangeSize, size - start);
+                ranges.add(pool.submit(() -> {
+                    action.run(from, length);
+                    return null;
+                }));
+            }
+            for (Future<Void> range : ranges) {
+                range.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Копирование прервано", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CancellationException) {
+                throw (CancellationException) cause;
+            }
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Копирует диапазон байт из источника в ту же позицию целевого файла.
+     *
+     * @param source   исходный файл
+     * @param target   целевой файл
+     * @param from     начальная позиция диапазона
+     * @param length    длина диапазона
+     * @param progress  индикатор прогресса
+     * @param checksums контрольные суммы блоков, заполняемые при копировании, или null без проверки
+     * @throws IOException если возникла ошибка ввода-вывода
+     */
+    private void copyRange(Path source, Path target, long from, long length, ProgressReporter progress,
+                           long[] checksums) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            if (preserveSparse || checksums != null) {
+                copyBuffered(in, out, from, length, progress, checksums);
+                return;
+            }
+
+            long position = from;
+            long end = from + length;
+            while (position < end) {
+                JobScheduler.checkCancelled();
+                long chunk = Math.min(CHUNK_SIZE, end - position);
+                IoThrottle.acquire(chunk);
+                long chunkStart = System.nanoTime();
+                long transferred = in.transferTo(position, chunk, out.position(position));
+                if (transferred <= 0) {
+                    throw new IOException("Источник изменился во время копирования: " + source);
+                }
+                Metrics.recordCopy(Metrics.COPY_CHUNK, transferred, System.nanoTime() - chunkStart);
+                position += transferred;
+                progress.add(transferred);
+            }
+        }
+    }
+
+    /**
+     * Копирует диапазон блоками через буфер. При сохранении разреженности блоки, целиком состоящие
+     * из нулей, пропускаются: целевой файл заранее расширен, поэтому они остаются «дырами».
+     * При проверке для каждого блока вычисляется CRC32C.
+     *
+     * @param in        канал источника
+     * @param out       канал целевого файла
+     * @param from      начальная позиция диапазона (кратна размеру блока)
+     * @param length    длина диапазона
+     * @param progress  индикатор прогресса
+     * @param checksums контрольные суммы блоков или null без проверки
+     * @throws IOException если возникла ошибка ввода-вывода
+     */
+    private void copyBuffered(FileChannel in, FileChannel out, long from, long length, ProgressReporter progress,
+                              long[] checksums) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        CRC32C crc = new CRC32C();
+        long position = from;
+        long end = from + length;
+        while (position < end) {
+            JobScheduler.checkCancelled();
+            buffer.clear().limit((int) Math.min(BLOCK_SIZE, end - position));
+            IoThrottle.acquire(buffer.remaining());
+            long blockStart = System.nanoTime();
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Источник изменился во время копирования");
+                }
+            }
+            buffer.flip();
+            int blockLength = buffer.remaining();
+            if (checksums != null) {
+                crc.reset();
+                crc.update(buffer.duplicate());
+                checksums[(int) (position / BLOCK_SIZE)] = crc.getValue();
+            }
+            if (!preserveSparse || !isZeroBlock(buffer)) {
+                long writePosition = position;
+                while (buffer.hasRemaining()) {
+                    writePosition += out.write(buffer, writePosition);
+                }
+            }
+            Metrics.recordCopy(Metrics.COPY_CHUNK, blockLength, System.nanoTime() - blockStart);
+            position += blockLength;
+            progress.add(blockLength);
+        }
+    }
+
+    /**
+     * Перечитывает диапазон целевого файла и сравнивает контрольные суммы его блоков с вычисленными
+     * при копировании.
+     *
+     * @param target    целевой файл
+     * @param from      начальная позиция диапазона (кратна размеру блока)
+     * @param length    длина диапазона
+     * @param checksums контрольные суммы блоков источника
+     * @throws VerificationException если какой-либо блок не совпал
+     * @throws IOException           если файл не удалось прочитать
+     */
+    private void verifyRange(Path target, long from, long length, long[] checksums) throws IOException {
+        FileChannel channel = null;
+        int alignment = 1;
+        if (direct) {
+            try {
+                if (DIRECT == null) {
+                    throw new UnsupportedOperationException("JDK не поддерживает O_DIRECT");
+                }
+                alignment = (int) Math.max(512L, Files.getFileStore(target).getBlockSize());
+                channel = FileChannel.open(target, Set.of(StandardOpenOption.READ, DIRECT));
+            } catch (IOException | UnsupportedOperationException e) {
+                if (DIRECT_WARNED.compareAndSet(false, true)) {
+                    System.out.println("Чтение в обход кэша недоступно (" + e.getMessage() + "), копия проверяется через кэш.");
+                }
+                alignment = 1;
+            }
+        }
+        if (channel == null) {
+            channel = FileChannel.open(target, StandardOpenOption.READ);
+        }
+        try (FileChannel in = channel) {
+            // Для O_DIRECT адрес буфера, позиция и длина чтения должны быть кратны размеру блока устройства
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE + alignment).alignedSlice(alignment);
+            CRC32C crc = new CRC32C();
+            long position = from;
+            long end = from + length;
+            while (position < end) {
+                JobScheduler.checkCancelled();
+                int blockLength = (int) Math.min(BLOCK_SIZE, end - position);
+                buffer.clear().limit((int) Math.min(BLOCK_SIZE, roundUp(blockLength, alignment)));
+                IoThrottle.acquire(blockLength);
+                while (buffer.position() < blockLength) {
+                    if (in.read(buffer, position + buffer.position()) < 0) {
+                        throw new VerificationException("Копия короче источника: " + target);
+                    }
+                }
+                buffer.flip().limit(blockLength);
+                crc.reset();
+                crc.update(buffer);
+                Metrics.recordRead(blockLength);
+                if (crc.getValue() != checksums[(int) (position / BLOCK_SIZE)]) {
+                    throw new VerificationException(String.format("Копия не совпадает с источником: %s, блок по смещению %d (CRC32C %08x вместо %08x)",
+                            target, position, crc.getValue(), checksums[(int) (position / BLOCK_SIZE)]));
+                }
+                position += blockLength;
+            }
+        }
+    }
+
+    /**
+     * Находит параметр {@code ExtendedOpenOption.DIRECT}. Он не входит в стандартный API,
+     * поэтому ищется по имени, а при его отсутствии проверка выполняется через кэш.
+     *
+     * @return параметр открытия или null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static OpenOption directOption() {
+        try {
+            return (OpenOption) Enum.valueOf((Class) Class.forName("com.sun.nio.file.ExtendedOpenOption"), "DIRECT");
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Проверяет, состоит ли содержимое буфера только из нулевых байт.
+     *
+     * @param buffer буфер (позиция и предел не изменяются)
+     * @return true, если все байты равны нулю
+     */
+    private static boolean isZeroBlock(ByteBuffer buffer) {
+        int index = buffer.position();
+        int limit = buffer.limit();
+        for (; index + Long.BYTES <= limit; index += Long.BYTES) {
+            if (buffer.getLong(index) != 0L) {
+                return false;
+            }
+        }
+        for (; index < limit; index++) {
+            if (buffer.get(index) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
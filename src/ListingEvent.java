@@ -0,0 +1,46 @@
+// ListingEvent.java
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR о выводе содержимого директории.
+ * <p>
+ * Записывается, только если запущена запись JFR с включённым событием {@code filemanager.Listing}
+ * (например, {@code java -XX:StartFlightRecording FileManager}); в остальных случаях его стоимость
+ * сводится к созданию пустого объекта.
+ * </p>
+ */
+@Name("filemanager.Listing")
+@Label("Вывод директории")
+@Category("FileManager")
+@Description("Вывод содержимого директории командой 'ls' или перед приглашением")
+public class ListingEvent extends jdk.jfr.Event {
+
+    /**
+     * Путь к директории.
+     */
+    @Label("Директория")
+    String directory;
+
+    /**
+     * Количество записей в директории.
+     */
+    @Label("Записей")
+    long entries;
+
+    /**
+     * Количество обращений к файловой системе.
+     */
+    @Label("Обращений к ФС")
+    long fileSystemCalls;
+
+    /**
+     * Конструктор класса ListingEvent.
+     * Создаёт событие без заполненных полей.
+     */
+    public ListingEvent() {
+        // Конструктор по умолчанию
+    }
+}
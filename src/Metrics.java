@@ -0,0 +1,481 @@
+// Metrics.java
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Счётчики и гистограммы задержек команд и операций ввода-вывода (команда 'stats').
+ * <p>
+ * Задержки записываются в гистограммы с логарифмическими корзинами (как в HdrHistogram: 8 корзин
+ * на каждую степень двойки, относительная погрешность не более 12.5%). Запись значения — это вычисление
+ * индекса корзины и несколько атомарных инкрементов без выделения памяти, поэтому инструментирование
+ * можно оставлять включённым и на горячем пути вывода директорий.
+ * </p>
+ */
+public class Metrics {
+
+    /**
+     * Вывод содержимого директории (включая автоматический вывод перед приглашением).
+     */
+    public static final LatencyHistogram LISTING = new LatencyHistogram();
+
+    /**
+     * Копирование одной порции большого файла.
+     */
+    public static final LatencyHistogram COPY_CHUNK = new LatencyHistogram();
+
+    /**
+     * Копирование одного небольшого файла целиком.
+     */
+    public static final LatencyHistogram COPY_FILE = new LatencyHistogram();
+
+    /**
+     * Удаление одного файла или директории.
+     */
+    public static final LatencyHistogram DELETE = new LatencyHistogram();
+
+    /**
+     * Прочитано байт (копирование, поиск в содержимом, архивация).
+     */
+    private static final AtomicLong BYTES_READ = new AtomicLong();
+
+    /**
+     * Записано байт (копирование, синхронизация, архивация).
+     */
+    private static final AtomicLong BYTES_WRITTEN = new AtomicLong();
+
+    /**
+     * Обращений к файловой системе при выводе директорий.
+     */
+    private static final AtomicLong LISTING_CALLS = new AtomicLong();
+
+    /**
+     * Имя, под которым учитываются нераспознанные команды.
+     */
+    public static final String UNKNOWN_COMMAND = "unknown";
+
+    /**
+     * Гистограммы задержек команд по именам команд.
+     */
+    private static final Map<String, LatencyHistogram> COMMANDS = new ConcurrentHashMap<>();
+
+    /**
+     * Ошибки команд по именам команд.
+     */
+    private static final Map<String, AtomicLong> COMMAND_FAILURES = new ConcurrentHashMap<>();
+
+    /**
+     * Внешние показатели (например, попадания в кэш директорий), вычисляемые при выводе.
+     */
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор класса Metrics.
+     * Этот класс содержит только статические методы и не требует экземпляра.
+     */
+    public Metrics() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Гистограмма задержек в наносекундах с логарифмическими корзинами.
+     */
+    public static final class LatencyHistogram {
+
+        /**
+         * Количество бит точности внутри степени двойки.
+         */
+        private static final int SUB_BUCKET_BITS = 3;
+
+        /**
+         * Количество корзин на степень двойки.
+         */
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        /**
+         * Счётчики корзин.
+         */
+        private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+
+        /**
+         * Количество записанных значений.
+         */
+        private final AtomicLong count = new AtomicLong();
+
+        /**
+         * Сумма записанных значений.
+         */
+        private final AtomicLong sum = new AtomicLong();
+
+        /**
+         * Максимальное записанное значение.
+         */
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Создаёт пустую гистограмму.
+         */
+        public LatencyHistogram() {
+            // Конструктор по умолчанию
+        }
+
+        /**
+         * Записывает значение. Не выделяет память.
+         *
+         * @param nanos задержка в наносекундах
+         */
+        public void record(long nanos) {
+            long value = Math.max(0L, nanos);
+            counts.incrementAndGet(indexOf(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long previous;
+            while (value > (previous = max.get()) && !max.compareAndSet(previous, value)) {
+                // Повторяем, пока максимум не обновлён
+            }
+        }
+
+        /**
+         * @return количество записанных значений
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return среднее значение в наносекундах
+         */
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0.0 : (double) sum.get() / n;
+        }
+
+        /**
+         * @return максимальное значение в наносекундах
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Возвращает значение перцентиля (верхнюю границу корзины, в которую он попал).
+         *
+         * @param percentile перцентиль от 0 до 100
+         * @return значение в наносекундах
+         */
+        public long getPercentile(double percentile) {
+            long total = count.get();
+            if (total == 0) {
+                return 0;
+            }
+            long target = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int index = 0; index < counts.length(); index++) {
+                seen += counts.get(index);
+                if (seen >= target) {
+                    return Math.min(highestValueOf(index), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        /**
+         * Обнуляет гистограмму.
+         */
+        void reset() {
+            for (int index = 0; index < counts.length(); index++) {
+                counts.set(index, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        /**
+         * Вычисляет индекс корзины: значения меньше 8 хранятся точно, далее — 8 корзин на степень двойки.
+         *
+         * @param value неотрицательное значение
+         * @return индекс корзины
+         */
+        private static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        /**
+         * Возвращает наибольшее значение, попадающее в корзину.
+         *
+         * @param index индекс корзины
+         * @return верхняя граница корзины
+         */
+        private static long highestValueOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+
+        /**
+         * Возвращает строку со сводкой: количество, среднее, перцентили и максимум.
+         *
+         * @return сводка гистограммы
+         */
+        String summary() {
+            return String.format("n=%d, ср. %s, p50 %s, p99 %s, p99.9 %s, макс. %s", getCount(),
+                    formatNanos((long) getMean()), formatNanos(getPercentile(50)), formatNanos(getPercentile(99)),
+                    formatNanos(getPercentile(99.9)), formatNanos(getMax()));
+        }
+
+        /**
+         * Возвращает сводку гистограммы в формате JSON.
+         *
+         * @return объект JSON
+         */
+        String toJson() {
+            return String.format("{\"count\": %d, \"meanNanos\": %.0f, \"p50Nanos\": %d, \"p99Nanos\": %d, \"p999Nanos\": %d, \"maxNanos\": %d}",
+                    getCount(), getMean(), getPercentile(50), getPercentile(99), getPercentile(99.9), getMax());
+        }
+    }
+
+    /**
+     * Записывает длительность и результат команды.
+     *
+     * @param name    имя команды (первое слово)
+     * @param nanos   длительность в наносекундах
+     * @param success успешно ли выполнена команда
+     */
+    public static void recordCommand(String name, long nanos, boolean success) {
+        COMMANDS.computeIfAbsent(name, key -> new LatencyHistogram()).record(nanos);
+        if (!success) {
+            COMMAND_FAILURES.computeIfAbsent(name, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Записывает вывод директории.
+     *
+     * @param nanos           длительность в наносекундах
+     * @param fileSystemCalls количество обращений к файловой системе
+     */
+    public static void recordListing(long nanos, long fileSystemCalls) {
+        LISTING.record(nanos);
+        LISTING_CALLS.addAndGet(fileSystemCalls);
+    }
+
+    /**
+     * Записывает копирование порции данных или файла.
+     *
+     * @param histogram гистограмма операции ({@link #COPY_CHUNK} или {@link #COPY_FILE})
+     * @param bytes     скопировано байт
+     * @param nanos     длительность в наносекундах
+     */
+    public static void recordCopy(LatencyHistogram histogram, long bytes, long nanos) {
+        histogram.record(nanos);
+        BYTES_READ.addAndGet(bytes);
+        BYTES_WRITTEN.addAndGet(bytes);
+    }
+
+    /**
+     * Учитывает прочитанные байты (без записи).
+     *
+     * @param bytes прочитано байт
+     */
+    public static void recordRead(long bytes) {
+        BYTES_READ.addAndGet(bytes);
+    }
+
+    /**
+     * Учитывает записанные байты (без чтения).
+     *
+     * @param bytes записано байт
+     */
+    public static void recordWrite(long bytes) {
+        BYTES_WRITTEN.addAndGet(bytes);
+    }
+
+    /**
+     * Регистрирует внешний показатель, значение которого вычисляется при выводе статистики.
+     *
+     * @param name     имя показателя
+     * @param supplier источник значения
+     */
+    public static void registerGauge(String name, LongSupplier supplier) {
+        GAUGES.put(name, supplier);
+    }
+
+    /**
+     * Обнуляет все счётчики и гистограммы (внешние показатели не затрагиваются).
+     */
+    public static void reset() {
+        LISTING.reset();
+        COPY_CHUNK.reset();
+        COPY_FILE.reset();
+        DELETE.reset();
+        BYTES_READ.set(0);
+        BYTES_WRITTEN.set(0);
+        LISTING_CALLS.set(0);
+        COMMANDS.clear();
+        COMMAND_FAILURES.clear();
+    }
+
+    /**
+     * Возвращает статистику в виде текста.
+     *
+     * @return многострочное описание
+     */
+    public static String describe() {
+        String separator = System.lineSeparator();
+        StringBuilder text = new StringBuilder("--- Статистика ---").append(separator);
+        text.append("Команды:").append(separator);
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(COMMANDS).entrySet()) {
+            AtomicLong failures = COMMAND_FAILURES.get(entry.getKey());
+            text.append(String.format("  %-8s %s, ошибок %d", entry.getKey(), entry.getValue().summary(),
+                    failures == null ? 0 : failures.get())).append(separator);
+        }
+        text.append("Операции:").append(separator);
+        text.append("  вывод директории  ").append(LISTING.summary()).append(separator);
+        text.append("  порция копирования ").append(COPY_CHUNK.summary()).append(separator);
+        text.append("  копирование файла ").append(COPY_FILE.summary()).append(separator);
+        text.append("  удаление          ").append(DELETE.summary()).append(separator);
+        long listings = LISTING.getCount();
+        text.append(String.format("Обращений к ФС на вывод директории: %.1f", listings == 0 ? 0.0 : (double) LISTING_CALLS.get() / listings))
+                .append(separator);
+        text.append("Прочитано: ").append(FileSizeFormatter.formatFileSize(BYTES_READ.get()))
+                .append(", записано: ").append(FileSizeFormatter.formatFileSize(BYTES_WRITTEN.get()));
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(GAUGES).entrySet()) {
+            text.append(separator).append(gauge.getKey()).append(": ").append(gauge.getValue().getAsLong());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Возвращает статистику в формате JSON.
+     *
+     * @return документ JSON
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"commands\": {");
+        String comma = "";
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(COMMANDS).entrySet()) {
+            AtomicLong failures = COMMAND_FAILURES.get(entry.getKey());
+            String histogram = entry.getValue().toJson();
+            json.append(comma).append("\n    \"").append(escapeJson(entry.getKey())).append("\": ")
+                    .append(histogram, 0, histogram.length() - 1)
+                    .append(", \"failures\": ").append(failures == null ? 0 : failures.get()).append('}');
+            comma = ",";
+        }
+        json.append("\n  },\n  \"operations\": {")
+                .append("\n    \"listing\": ").append(LISTING.toJson())
+                .append(",\n    \"copyChunk\": ").append(COPY_CHUNK.toJson())
+                .append(",\n    \"copyFile\": ").append(COPY_FILE.toJson())
+                .append(",\n    \"delete\": ").append(DELETE.toJson())
+                .append("\n  },\n  \"listingFileSystemCalls\": ").append(LISTING_CALLS.get())
+                .append(",\n  \"bytesRead\": ").append(BYTES_READ.get())
+                .append(",\n  \"bytesWritten\": ").append(BYTES_WRITTEN.get())
+                .append(",\n  \"gauges\": {");
+        comma = "";
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(GAUGES).entrySet()) {
+            json.append(comma).append("\n    \"").append(escapeJson(gauge.getKey())).append("\": ").append(gauge.getValue().getAsLong());
+            comma = ",";
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+    /**
+     * Записывает статистику в файл в формате JSON.
+     *
+     * @param file путь к файлу
+     * @throws IOException если файл не удалось записать
+     */
+    public static void writeJson(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+    }
+
+    /**
+     * Обрабатывает команду статистики.
+     * Формат: {@code stats [reset | json <файл>]}.
+     *
+     * @param command          полная строка команды, начинающаяся с 'stats'
+     * @param currentDirectory текущая директория, относительно которой разрешается путь к файлу
+     * @return true, если команда выполнена успешно
+     */
+    public static boolean handleStatsCommand(String command, String currentDirectory) {
+        java.util.List<String> arguments = FileCopier.parseArguments(command);
+        if (arguments.size() == 1) {
+            System.out.println(describe());
+            return true;
+        }
+        if (arguments.size() == 2 && "reset".equals(arguments.get(1))) {
+            reset();
+            System.out.println("Статистика обнулена.");
+            return true;
+        }
+        if (arguments.size() == 3 && "json".equals(arguments.get(1))) {
+            Path file = Path.of(currentDirectory).resolve(arguments.get(2)).normalize();
+            try {
+                writeJson(file);
+                System.out.println("Статистика записана: " + file.toAbsolutePath());
+                return true;
+            } catch (IOException e) {
+                System.err.println("Ошибка при записи статистики: " + e.getMessage());
+                return false;
+            }
+        }
+        System.out.println("Неверный формат команды. Используйте: stats [reset | json <файл>]");
+        return false;
+    }
+
+    /**
+     * Форматирует длительность в наносекундах в удобочитаемый вид (нс, мкс, мс, с).
+     *
+     * @param nanos длительность в наносекундах
+     * @return строка с длительностью
+     */
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000L) {
+            return nanos + " нс";
+        } else if (nanos < 1_000_000L) {
+            return String.format("%.1f мкс", nanos / 1_000.0);
+        } else if (nanos < 1_000_000_000L) {
+            return String.format("%.1f мс", nanos / 1_000_000.0);
+        }
+        return String.format("%.2f с", nanos / 1_000_000_000.0);
+    }
+
+    /**
+     * Экранирует строку для записи в JSON.
+     *
+     * @param text исходная строка
+     * @return экранированная строка
+     */
+    private static String escapeJson(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
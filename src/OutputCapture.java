@@ -0,0 +1,297 @@
+// OutputCapture.java
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.io.PrintStream;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Буфер, в который перехватывается стандартный вывод и вывод ошибок одной операции.
+ * <p>
+ * После {@link #install()} {@code System.out} и {@code System.err} направляют данные в буфер операции,
+ * выполняемой текущим потоком (буфер наследуется потоками, которые она порождает), а вне операций —
+ * в исходные потоки. Используется пакетным режимом и фоновыми заданиями, чтобы вывод параллельных
+ * операций не перемешивался.
+ * </p>
+ * <p>
+ * Объём буфера ограничен: от каждого потока вывода хранятся первые и последние
+ * {@value #DEFAULT_LIMIT} байт, а пропущенная середина заменяется отметкой с числом пропущенных байт.
+ * Поэтому многословное фоновое задание или сценарий не исчерпывают память.
+ * </p>
+ */
+public final class OutputCapture {
+
+    /**
+     * Буфер операции, выполняемой текущим потоком.
+     */
+    private static final InheritableThreadLocal<OutputCapture> CURRENT = new InheritableThreadLocal<>();
+
+    /**
+     * Объём начала и объём конца вывода, которые хранятся для каждого потока по умолчанию.
+     */
+    static final int DEFAULT_LIMIT = 1024 * 1024;
+
+    /**
+     * Установлены ли перенаправляющие потоки вывода.
+     */
+    private static boolean installed;
+
+    /**
+     * Перехваченный стандартный вывод.
+     */
+    private final BoundedBuffer out;
+
+    /**
+     * Перехваченный вывод ошибок.
+     */
+    private final BoundedBuffer err;
+
+    /**
+     * Конструктор класса OutputCapture.
+     * Создаёт пустой буфер вывода с ограничением по умолчанию.
+     */
+    public OutputCapture() {
+        this(DEFAULT_LIMIT);
+    }
+
+    /**
+     * Создаёт пустой буфер вывода.
+     *
+     * @param limit сколько байт начала и сколько байт конца каждого потока хранить
+     */
+    OutputCapture(int limit) {
+        this.out = new BoundedBuffer(limit);
+        this.err = new BoundedBuffer(limit);
+    }
+
+    /**
+     * Заменяет {@code System.out} и {@code System.err} перенаправляющими потоками (повторные вызовы ничего не делают).
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        System.setOut(new PrintStream(new RoutingOutputStream(out, false), true, out.charset()));
+        System.setErr(new PrintStream(new RoutingOutputStream(err, true), true, err.charset()));
+        installed = true;
+    }
+
+    /**
+     * Проверяет, перехватывается ли вывод текущего потока
+     * (в этом случае перерисовывать строки прогресса не нужно).
+     *
+     * @return true, если вывод текущего потока попадает в буфер
+     */
+    public static boolean isCapturing() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Выполняет действие в текущем потоке, перехватывая его вывод в этот буфер.
+     *
+     * @param action выполняемое действие
+     * @return результат действия
+     */
+    public boolean run(BooleanSupplier action) {
+        CURRENT.set(this);
+        try {
+            return action.getAsBoolean();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Переносит перехваченный вывод в заданные потоки и очищает буфер.
+     *
+     * @param realOut поток для стандартного вывода
+     * @param realErr поток для вывода ошибок
+     */
+    public synchronized void writeTo(PrintStream realOut, PrintStream realErr) {
+        out.writeTo(realOut);
+        realOut.flush();
+        err.writeTo(realErr);
+        realErr.flush();
+        out.reset();
+        err.reset();
+    }
+
+    /**
+     * Дописывает байты в буфер.
+     *
+     * @param error  true — в буфер ошибок, false — в буфер стандартного вывода
+     * @param bytes  массив байт
+     * @param offset начало фрагмента
+     * @param length длина фрагмента
+     */
+    private synchronized void append(boolean error, byte[] bytes, int offset, int length) {
+        (error ? err : out).write(bytes, offset, length);
+    }
+
+    /**
+     * Буфер одного потока вывода, хранящий только начало и конец: начало — в растущем массиве,
+     * конец — в кольцевом буфере, который создаётся, только когда начало заполнено; середина лишь подсчитывается.
+     */
+    private static final class BoundedBuffer {
+
+        /**
+         * Объём начала и объём конца.
+         */
+        private final int limit;
+
+        /**
+         * Начало вывода.
+         */
+        private byte[] head = new byte[0];
+
+        /**
+         * Количество байт в начале.
+         */
+        private int headSize;
+
+        /**
+         * Последние байты вывода (кольцевой буфер) или null, пока начало не заполнено.
+         */
+        private byte[] tail;
+
+        /**
+         * Общее количество байт, записанных в кольцевой буфер.
+         */
+        private long tailWritten;
+
+        /**
+         * @param limit объём начала и объём конца
+         */
+        BoundedBuffer(int limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * Дописывает байты.
+         *
+         * @param bytes  массив байт
+         * @param offset начало фрагмента
+         * @param length длина фрагмента
+         */
+        void write(byte[] bytes, int offset, int length) {
+            int toHead = Math.min(length, limit - headSize);
+            if (headSize + toHead > head.length) {
+                head = Arrays.copyOf(head, Math.min(limit, Math.max(headSize + toHead, 2 * head.length)));
+            }
+            System.arraycopy(bytes, offset, head, headSize, toHead);
+            headSize += toHead;
+            offset += toHead;
+            length -= toHead;
+            if (length == 0) {
+                return;
+            }
+            if (tail == null) {
+                tail = new byte[limit];
+            }
+            if (length > tail.length) {
+                // От длинного фрагмента в конце останется только его хвост
+                tailWritten += length - tail.length;
+                offset += length - tail.length;
+                length = tail.length;
+            }
+            while (length > 0) {
+                int position = (int) (tailWritten % tail.length);
+                int chunk = Math.min(length, tail.length - position);
+                System.arraycopy(bytes, offset, tail, position, chunk);
+                tailWritten += chunk;
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        /**
+         * Выводит начало, отметку о пропуске (если середина не сохранилась) и конец.
+         *
+         * @param target поток вывода
+         */
+        void writeTo(PrintStream target) {
+            target.write(head, 0, headSize);
+            if (tail == null) {
+                return;
+            }
+            int kept = (int) Math.min(tailWritten, tail.length);
+            long skipped = tailWritten - kept;
+            int start = (int) (skipped % tail.length);
+            int from = 0;
+            if (skipped > 0) {
+                // Конец выводится с начала строки, чтобы не печатать её обрывок
+                while (from < kept && tail[(start + from) % tail.length] != '\n') {
+                    from++;
+                }
+                from = Math.min(kept, from + 1);
+                byte[] marker = ("\n… пропущено " + (skipped + from) + " байт вывода …\n").getBytes(StandardCharsets.UTF_8);
+                target.write(marker, 0, marker.length);
+            }
+            for (int i = from; i < kept; ) {
+                int position = (start + i) % tail.length;
+                int chunk = Math.min(kept - i, tail.length - position);
+                target.write(tail, position, chunk);
+                i += chunk;
+            }
+        }
+
+        /**
+         * Очищает буфер и освобождает память.
+         */
+        void reset() {
+            head = new byte[0];
+            headSize = 0;
+            tail = null;
+            tailWritten = 0;
+        }
+    }
+
+    /**
+     * Поток вывода, направляющий данные в буфер операции текущего потока или, вне операций, в исходный поток.
+     */
+    private static final class RoutingOutputStream extends OutputStream {
+
+        /**
+         * Исходный поток вывода.
+         */
+        private final PrintStream target;
+
+        /**
+         * Является ли поток выводом ошибок.
+         */
+        private final boolean error;
+
+        /**
+         * @param target исходный поток вывода
+         * @param error  является ли поток выводом ошибок
+         */
+        RoutingOutputStream(PrintStream target, boolean error) {
+            this.target = target;
+            this.error = error;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            OutputCapture capture = CURRENT.get();
+            if (capture != null) {
+                capture.append(error, bytes, offset, length);
+            } else {
+                target.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (CURRENT.get() == null) {
+                target.flush();
+            }
+        }
+    }
+}
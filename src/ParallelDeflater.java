@@ -0,0 +1,395 @@
+// ParallelDeflater.java
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Параллельное сжатие потоков deflate (по образцу pigz) с упорядоченной записью результата.
+ * <p>
+ * Данные каждого потока режутся на блоки по {@value #BLOCK_SIZE} байт, и блоки сжимаются независимо
+ * в пуле потоков. Чтобы степень сжатия почти не страдала, каждый блок использует последние 32 КБ
+ * предыдущего блока как словарь, а завершается синхронизирующим сбросом (SYNC_FLUSH), поэтому сжатые
+ * блоки, записанные подряд, образуют один корректный поток deflate. Записью в выходной поток занимается
+ * вызывающий поток в исходном порядке; одновременно в работе не больше двух блоков на поток пула,
+ * так что расход памяти не зависит от размера данных.
+ * </p>
+ * <p>
+ * Между потоками deflate можно вставлять произвольные байты (заголовки архива), в том числе вычисляемые
+ * в момент записи, когда уже известен размер предшествующих сжатых данных.
+ * </p>
+ */
+public class ParallelDeflater implements AutoCloseable {
+
+    /**
+     * Размер блока несжатых данных.
+     */
+    static final int BLOCK_SIZE = 128 * 1024;
+
+    /**
+     * Размер словаря, передаваемого из предыдущего блока.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /**
+     * Компрессор потока пула (переиспользуется между блоками).
+     */
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<>();
+
+    /**
+     * Выходной поток.
+     */
+    private final OutputStream out;
+
+    /**
+     * Уровень сжатия.
+     */
+    private final int level;
+
+    /**
+     * Количество потоков пула.
+     */
+    private final int threads;
+
+    /**
+     * Пул потоков сжатия.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * Фрагменты, ожидающие записи, в порядке вывода.
+     */
+    private final Deque<Piece> pending = new ArrayDeque<>();
+
+    /**
+     * Буфер текущего блока.
+     */
+    private byte[] block = new byte[BLOCK_SIZE];
+
+    /**
+     * Заполнение текущего блока.
+     */
+    private int blockLength;
+
+    /**
+     * Последний отправленный блок текущего потока (источник словаря) или null.
+     */
+    private byte[] previousBlock;
+
+    /**
+     * Длина последнего отправленного блока.
+     */
+    private int previousLength;
+
+    /**
+     * Текущий поток deflate или null между потоками.
+     */
+    private StreamInfo current;
+
+    /**
+     * Количество байт, записанных в выходной поток.
+     */
+    private long written;
+
+    /**
+     * Создаёт компрессор.
+     *
+     * @param out     выходной поток
+     * @param threads количество потоков сжатия
+     * @param level   уровень сжатия (0–9)
+     */
+    public ParallelDeflater(OutputStream out, int threads, int level) {
+        this.out = out;
+        this.level = level;
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Сведения об одном потоке deflate. Сжатый размер окончательно известен, когда записаны все его блоки.
+     */
+    public static final class StreamInfo {
+
+        /**
+         * Контрольная сумма CRC-32 несжатых данных.
+         */
+        final CRC32 crc = new CRC32();
+
+        /**
+         * Размер несжатых данных.
+         */
+        long size;
+
+        /**
+         * Размер сжатых данных (растёт по мере записи блоков).
+         */
+        long compressedSize;
+
+        /**
+         * Смещение начала сжатых данных в выходном потоке.
+         */
+        long offset = -1;
+
+        /**
+         * @return контрольная сумма CRC-32 несжатых данных
+         */
+        public long getCrc() {
+            return crc.getValue();
+        }
+
+        /**
+         * @return размер несжатых данных
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return размер сжатых данных
+         */
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+    }
+
+    /**
+     * Фрагмент выходного потока: сжатый блок или байты заголовка.
+     *
+     * @param data   данные фрагмента, вычисляемые в пуле (null для вычисляемых при записи)
+     * @param lazy   источник данных, вызываемый при записи (null для сжатых блоков и готовых байт)
+     * @param stream поток deflate, которому принадлежит блок, или null для заголовков
+     */
+    private record Piece(CompletableFuture<byte[]> data, Supplier<byte[]> lazy, StreamInfo stream) {
+    }
+
+    /**
+     * Ставит в очередь байты, записываемые как есть (например, заголовок архива).
+     *
+     * @param bytes байты
+     * @throws IOException если не удалось записать ранее поставленные фрагменты
+     */
+    public void writeRaw(byte[] bytes) throws IOException {
+        enqueue(new Piece(CompletableFuture.completedFuture(bytes), null, null));
+    }
+
+    /**
+     * Ставит в очередь байты, которые будут вычислены в момент записи, когда все предыдущие фрагменты
+     * уже записаны (например, дескриптор данных с итоговым сжатым размером).
+     *
+     * @param bytes источник байт
+     * @throws IOException если не удалось записать ранее поставленные фрагменты
+     */
+    public void writeLazy(Supplier<byte[]> bytes) throws IOException {
+        enqueue(new Piece(null, bytes, null));
+    }
+
+    /**
+     * Начинает новый поток deflate.
+     *
+     * @return сведения о потоке (заполняются по мере записи)
+     */
+    public StreamInfo beginStream() {
+        if (current != null) {
+            throw new IllegalStateException("Предыдущий поток не завершён");
+        }
+        current = new StreamInfo();
+        previousBlock = null;
+        blockLength = 0;
+        return current;
+    }
+
+    /**
+     * Добавляет данные в текущий поток deflate.
+     *
+     * @param bytes  массив байт
+     * @param offset начало фрагмента
+     * @param length длина фрагмента
+     * @throws IOException если не удалось записать готовые блоки
+     */
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        current.crc.update(bytes, offset, length);
+        current.size += length;
+        while (length > 0) {
+            int count = Math.min(length, BLOCK_SIZE - blockLength);
+            System.arraycopy(bytes, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+            if (blockLength == BLOCK_SIZE) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Завершает текущий поток deflate.
+     *
+     * @return сведения о потоке; контрольная сумма и несжатый размер уже окончательны
+     * @throws IOException если не удалось записать готовые блоки
+     */
+    public StreamInfo endStream() throws IOException {
+        submitBlock(true);
+        StreamInfo finished = current;
+        current = null;
+        previousBlock = null;
+        return finished;
+    }
+
+    /**
+     * @return количество байт, уже записанных в выходной поток (для вычисляемых при записи фрагментов)
+     */
+    public long position() {
+        return written;
+    }
+
+    /**
+     * Записывает все поставленные в очередь фрагменты.
+     *
+     * @throws IOException если запись не удалась
+     */
+    public void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            writePiece(pending.poll());
+        }
+        out.flush();
+    }
+
+    /**
+     * Записывает оставшиеся фрагменты и останавливает пул (выходной поток не закрывается).
+     *
+     * @throws IOException если запись не удалась
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Отправляет текущий блок на сжатие.
+     *
+     * @param last является ли блок последним в потоке
+     * @throws IOException если не удалось записать готовые блоки
+     */
+    private void submitBlock(boolean last) throws IOException {
+        // Последний (обычно неполный) блок копируется, чтобы буфер переиспользовался для следующего потока
+        byte[] input = last ? Arrays.copyOf(block, blockLength) : block;
+        int length = blockLength;
+        byte[] dictionary = previousBlock;
+        int dictionaryLength = previousLength;
+        CompletableFuture<byte[]> compressed = CompletableFuture.supplyAsync(
+                () -> compress(input, length, dictionary, dictionaryLength, last), pool);
+        enqueue(new Piece(compressed, null, current));
+        if (!last) {
+            // Отправленный буфер больше не изменяется: он служит словарём для следующего блока
+            previousBlock = input;
+            previousLength = length;
+            block = new byte[BLOCK_SIZE];
+        }
+        blockLength = 0;
+    }
+
+    /**
+     * Ставит фрагмент в очередь, записывая старые фрагменты, если в работе слишком много блоков.
+     *
+     * @param piece фрагмент
+     * @throws IOException если запись не удалась
+     */
+    private void enqueue(Piece piece) throws IOException {
+        pending.add(piece);
+        while (pending.size() > 2 * threads) {
+            writePiece(pending.poll());
+        }
+    }
+
+    /**
+     * Дожидается фрагмента и записывает его в выходной поток.
+     *
+     * @param piece фрагмент
+     * @throws IOException если сжатие или запись не удались
+     */
+    private void writePiece(Piece piece) throws IOException {
+        JobScheduler.checkCancelled();
+        byte[] bytes;
+        if (piece.lazy() != null) {
+            bytes = piece.lazy().get();
+        } else {
+            try {
+                bytes = piece.data().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Сжатие прервано");
+            } catch (ExecutionException e) {
+                throw new IOException("Ошибка сжатия: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        StreamInfo stream = piece.stream();
+        if (stream != null) {
+            if (stream.offset < 0) {
+                stream.offset = written;
+            }
+            stream.compressedSize += bytes.length;
+        }
+        IoThrottle.acquire(bytes.length);
+        out.write(bytes);
+        written += bytes.length;
+    }
+
+    /**
+     * Сжимает один блок в сырой формат deflate.
+     *
+     * @param input            данные блока
+     * @param length           длина данных
+     * @param dictionary       предыдущий блок (словарь) или null
+     * @param dictionaryLength длина предыдущего блока
+     * @param last             является ли блок последним в потоке
+     * @return сжатые данные
+     */
+    private byte[] compress(byte[] input, int length, byte[] dictionary, int dictionaryLength, boolean last) {
+        Deflater deflater = DEFLATERS.get();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            DEFLATERS.set(deflater);
+        }
+        deflater.reset();
+        if (dictionary != null) {
+            int dictionaryStart = Math.max(0, dictionaryLength - DICTIONARY_SIZE);
+            deflater.setDictionary(dictionary, dictionaryStart, dictionaryLength - dictionaryStart);
+        }
+        deflater.setInput(input, 0, length);
+        byte[] output = new byte[length + length / 1000 + 64];
+        int produced = 0;
+        if (last) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (produced == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                produced += deflater.deflate(output, produced, output.length - produced);
+            }
+        } else {
+            // Синхронизирующий сброс выравнивает блок по байту, не завершая поток;
+            // если выходной буфер заполнен целиком, сброс продолжается в расширенный буфер
+            while (true) {
+                produced += deflater.deflate(output, produced, output.length - produced, Deflater.SYNC_FLUSH);
+                if (produced < output.length) {
+                    break;
+                }
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+        }
+        return Arrays.copyOf(output, produced);
+    }
+}
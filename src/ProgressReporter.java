@@ -0,0 +1,166 @@
+// ProgressReporter.java
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс для вывода живого прогресса длительных операций.
+ * <p>
+ * Рабочие потоки увеличивают счётчик через {@link #add(long)}, а фоновый поток периодически
+ * перерисовывает строку прогресса с процентом выполнения, скоростью и оценкой оставшегося времени.
+ * Прогресс может измеряться в байтах или в штуках (например, файлах).
+ * </p>
+ */
+public final class ProgressReporter implements AutoCloseable {
+
+    /**
+     * Интервал обновления строки прогресса в миллисекундах.
+     */
+    private static final long REFRESH_INTERVAL_MILLIS = 500L;
+
+    /**
+     * Подпись операции.
+     */
+    private final String label;
+
+    /**
+     * Общий объём работы (0 — неизвестен).
+     */
+    private final long total;
+
+    /**
+     * Измеряется ли прогресс в байтах (иначе — в штуках).
+     */
+    private final boolean bytes;
+
+    /**
+     * Выполненный объём работы.
+     */
+    private final AtomicLong done = new AtomicLong();
+
+    /**
+     * Время начала операции.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Поток перерисовки (null, если вывод отключён).
+     */
+    private final Thread printer;
+
+    /**
+     * Выводилась ли строка прогресса хотя бы раз.
+     */
+    private volatile boolean printed;
+
+    /**
+     * Создаёт индикатор прогресса.
+     *
+     * @param label   подпись операции
+     * @param total   общий объём работы (0 — неизвестен)
+     * @param bytes   true, если прогресс измеряется в байтах; false — в штуках
+     * @param enabled выводить ли прогресс в консоль (при выполнении сценария прогресс не выводится)
+     */
+    public ProgressReporter(String label, long total, boolean bytes, boolean enabled) {
+        this.label = label;
+        this.total = total;
+        this.bytes = bytes;
+        JobScheduler.attachProgress(this);
+        if (enabled && !OutputCapture.isCapturing()) {
+            this.printer = new Thread(this::printLoop, "progress-" + label);
+            this.printer.setDaemon(true);
+            this.printer.start();
+        } else {
+            this.printer = null;
+        }
+    }
+
+    /**
+     * Увеличивает выполненный объём работы.
+     *
+     * @param amount выполненный объём
+     */
+    public void add(long amount) {
+        done.addAndGet(amount);
+    }
+
+    /**
+     * @return общий объём работы (0 — неизвестен)
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return выполненный объём работы
+     */
+    public long getDone() {
+        return done.get();
+    }
+
+    /**
+     * @return время с начала операции в наносекундах
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Возвращает текущую строку прогресса, например
+     * "copy: 1.20 GB из 4.00 GB (30%), 512.00 MB/с, осталось ~6 с".
+     *
+     * @return строка прогресса
+     */
+    public String describe() {
+        long current = done.get();
+        double seconds = Math.max(getElapsedNanos(), 1L) / 1_000_000_000.0;
+        double rate = current / seconds;
+
+        StringBuilder line = new StringBuilder(label).append(": ");
+        line.append(bytes ? FileSizeFormatter.formatFileSize(current) : Long.toString(current));
+        if (total > 0) {
+            line.append(" из ").append(bytes ? FileSizeFormatter.formatFileSize(total) : Long.toString(total));
+            line.append(" (").append(Math.min(100L, current * 100L / total)).append("%)");
+        }
+        line.append(", ");
+        line.append(bytes ? FileSizeFormatter.formatFileSize((long) rate) + "/с" : String.format("%.0f шт/с", rate));
+        if (total > 0 && rate > 0 && current < total) {
+            line.append(", осталось ~").append((long) Math.ceil((total - current) / rate)).append(" с");
+        }
+        return line.toString();
+    }
+
+    /**
+     * Останавливает перерисовку и, если прогресс выводился, печатает итоговую строку.
+     */
+    @Override
+    public void close() {
+        if (printer == null) {
+            return;
+        }
+        printer.interrupt();
+        try {
+            printer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (printed) {
+            System.out.print("\r" + describe() + System.lineSeparator());
+            System.out.flush();
+        }
+    }
+
+    /**
+     * Цикл фонового потока: перерисовывает строку прогресса до вызова {@link #close()}.
+     */
+    private void printLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(REFRESH_INTERVAL_MILLIS);
+                System.out.print("\r" + describe() + "   ");
+                System.out.flush();
+                printed = true;
+            }
+        } catch (InterruptedException e) {
+            // Завершение по запросу close()
+        }
+    }
+}
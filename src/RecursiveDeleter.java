@@ -0,0 +1,225 @@
+// RecursiveDeleter.java
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс для параллельного рекурсивного удаления дерева (команда 'rm -r').
+ * <p>
+ * Дерево удаляется снизу вверх в {@link ForkJoinPool}: соседние поддиревья обрабатываются
+ * параллельными задачами, файлы удаляются сразу при чтении директории, а сама директория —
+ * как только удалено всё её содержимое. Символические ссылки удаляются, но не разыменовываются.
+ * </p>
+ */
+public class RecursiveDeleter {
+
+    /**
+     * Конструктор класса RecursiveDeleter.
+     * Создаёт новый экземпляр для удаления деревьев.
+     */
+    public RecursiveDeleter() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Итоги удаления дерева.
+     */
+    public static final class Result {
+
+        /**
+         * Количество удалённых файлов (включая символические ссылки).
+         */
+        final AtomicLong files = new AtomicLong();
+
+        /**
+         * Количество удалённых директорий.
+         */
+        final AtomicLong directories = new AtomicLong();
+
+        /**
+         * Количество записей, которые не удалось удалить.
+         */
+        final AtomicLong failures = new AtomicLong();
+
+        /**
+         * Время удаления в наносекундах.
+         */
+        long elapsedNanos;
+
+        /**
+         * @return количество записей, которые не удалось удалить
+         */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * Возвращает строку с итогами удаления.
+         *
+         * @return строка с итогами
+         */
+        public String summary() {
+            double seconds = Math.max(elapsedNanos, 1L) / 1_000_000_000.0;
+            return String.format("Удалено файлов: %d, директорий: %d за %.2f с — %.0f файлов/с",
+                    files.get(), directories.get(), seconds, files.get() / seconds);
+        }
+    }
+
+    /**
+     * Удаляет файл или директорию вместе со всем содержимым.
+     *
+     * @param root          удаляемый путь
+     * @param expectedFiles ожидаемое количество файлов для индикатора прогресса (0 — неизвестно)
+     * @return итоги удаления
+     */
+    public Result delete(Path root, long expectedFiles) {
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        try (ProgressReporter progress = new ProgressReporter("rm", expectedFiles, false, true)) {
+            pool.invoke(new DeleteTask(root, result, progress));
+        } finally {
+            pool.shutdown();
+        }
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Задача удаления поддерева: удаляет файлы директории, ждёт удаления поддиректорий
+     * и затем удаляет саму директорию.
+     */
+    @SuppressWarnings("serial") // Задача не сериализуется: её поля — пути и общие итоги удаления
+    private static final class DeleteTask extends RecursiveTask<Boolean> {
+
+        /**
+         * Удаляемый путь.
+         */
+        private final Path path;
+
+        /**
+         * Общие итоги удаления.
+         */
+        private final Result result;
+
+        /**
+         * Индикатор прогресса.
+         */
+        private final ProgressReporter progress;
+
+        /**
+         * @param path     удаляемый путь
+         * @param result   общие итоги удаления
+         * @param progress индикатор прогресса
+         */
+        DeleteTask(Path path, Result result, ProgressReporter progress) {
+            this.path = path;
+            this.result = result;
+            this.progress = progress;
+        }
+
+        @Override
+        protected Boolean compute() {
+            JobScheduler.checkCancelled();
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (!attributes.isDirectory()) {
+                    return deleteFile(path);
+                }
+            } catch (NoSuchFileException e) {
+                return true;
+            } catch (IOException e) {
+                return fail(path, e);
+            }
+
+            boolean complete = true;
+            List<DeleteTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        complete &= fail(entry, e);
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        subtasks.add(new DeleteTask(entry, result, progress));
+                    } else {
+                        complete &= deleteFile(entry);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                return fail(path, e);
+            }
+
+            for (DeleteTask subtask : subtasks) {
+                subtask.fork();
+            }
+            for (DeleteTask subtask : subtasks) {
+                complete &= subtask.join();
+            }
+            if (!complete) {
+                return false; // Директория не пуста: ошибки в поддереве уже учтены
+            }
+
+            try {
+                IoThrottle.acquire(IoThrottle.DELETE_COST);
+                long deleteStart = System.nanoTime();
+                Files.delete(path);
+                Metrics.DELETE.record(System.nanoTime() - deleteStart);
+                result.directories.incrementAndGet();
+                return true;
+            } catch (NoSuchFileException e) {
+                return true;
+            } catch (IOException e) {
+                return fail(path, e);
+            }
+        }
+
+        /**
+         * Удаляет файл или символическую ссылку.
+         *
+         * @param file удаляемый файл
+         * @return true, если файл удалён (или уже отсутствует)
+         */
+        private boolean deleteFile(Path file) {
+            try {
+                IoThrottle.acquire(IoThrottle.DELETE_COST);
+                long deleteStart = System.nanoTime();
+                Files.delete(file);
+                Metrics.DELETE.record(System.nanoTime() - deleteStart);
+                result.files.incrementAndGet();
+                progress.add(1);
+                return true;
+            } catch (NoSuchFileException e) {
+                return true;
+            } catch (IOException e) {
+                return fail(file, e);
+            }
+        }
+
+        /**
+         * Учитывает и выводит ошибку удаления.
+         *
+         * @param file  путь, который не удалось удалить
+         * @param error причина ошибки
+         * @return всегда false
+         */
+        private boolean fail(Path file, Exception error) {
+            result.failures.incrementAndGet();
+            System.err.println("Не удалось удалить " + file + ": " + error.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,1171 @@
+// TreeDiffer.java
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс для сравнения двух деревьев директорий (команда 'diff').
+ * <p>
+ * Оба дерева обходятся параллельно в {@link ForkJoinPool}. Для каждой директории вычисляется хеш Меркла
+ * по именам, типам, размерам и временам изменения её содержимого (включая хеши поддиректорий), поэтому
+ * поддеревья с равными хешами пропускаются целиком, без сравнения отдельных файлов. Файлы с разным
+ * размером считаются изменёнными, с одинаковыми размером и временем изменения — совпадающими;
+ * содержимое (SHA-256) сравнивается только при одинаковом размере и разном времени изменения.
+ * </p>
+ * <p>
+ * Хеши директорий и содержимого сохраняются в кэше {@value #CACHE_NAME} в корне каждого дерева.
+ * Атрибуты файлов читаются при каждом сравнении, а кэш используется только там, где они совпали
+ * с сохранёнными: для файла переносится хеш содержимого, для директории — хеш Меркла. Кэш отображается
+ * в память, а списки файлов в нём разбираются лишь при обращении.
+ * </p>
+ */
+public class TreeDiffer {
+
+    /**
+     * Имя файла кэша в корне сравниваемого дерева.
+     */
+    public static final String CACHE_NAME = ".fmdiff";
+
+    /**
+     * Сигнатура и версия формата кэша ("FMD2").
+     */
+    private static final int MAGIC = 0x464D4432;
+
+    /**
+     * Размер окончания кэша: смещение корня и сигнатура.
+     */
+    private static final int TRAILER_SIZE = 12;
+
+    /**
+     * Длина хеша директории в байтах (усечённый SHA-256).
+     */
+    private static final int HASH_BYTES = 16;
+
+    /**
+     * Длина хеша содержимого файла в байтах (SHA-256).
+     */
+    private static final int CONTENT_HASH_BYTES = 32;
+
+    /**
+     * Количество записей директории, начиная с которого их атрибуты читаются параллельными частями.
+     */
+    private static final int PARALLEL_STAT_THRESHOLD = 4096;
+
+    /**
+     * Тип записи: обычный файл.
+     */
+    private static final byte TYPE_FILE = 0;
+
+    /**
+     * Тип записи: символическая ссылка.
+     */
+    private static final byte TYPE_LINK = 1;
+
+    /**
+     * Тип записи: специальный файл (канал, устройство и т. п.).
+     */
+    private static final byte TYPE_OTHER = 2;
+
+    /**
+     * Счётчик для уникальных хешей недоступных директорий.
+     */
+    private static final AtomicLong UNREADABLE = new AtomicLong();
+
+    /**
+     * Формат команды.
+     */
+    private static final String USAGE = "diff [--jobs N] [--full] <директория_A> <директория_B>";
+
+    /**
+     * Конструктор класса TreeDiffer.
+     * Создаёт новый экземпляр для сравнения деревьев.
+     */
+    public TreeDiffer() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Итоги сравнения.
+     */
+    public static final class Result {
+
+        /**
+         * Найденные различия: строки вида "+ путь", "- путь", "~ путь", "! путь" (не удалось прочитать).
+         */
+        final List<String> differences = new ArrayList<>();
+
+        /**
+         * Количество добавленных записей (есть только в B).
+         */
+        long added;
+
+        /**
+         * Количество удалённых записей (есть только в A).
+         */
+        long removed;
+
+        /**
+         * Количество изменённых файлов.
+         */
+        long changed;
+
+        /**
+         * Количество совпавших поддеревьев, пропущенных по хешу.
+         */
+        long skippedSubtrees;
+
+        /**
+         * Количество прочитанных директорий.
+         */
+        final AtomicLong listedDirectories = new AtomicLong();
+
+        /**
+         * Количество директорий, хеш которых взят из кэша (состав не изменился).
+         */
+        final AtomicLong cachedDirectories = new AtomicLong();
+
+        /**
+         * Количество директорий, которые не удалось прочитать.
+         */
+        final AtomicLong failures = new AtomicLong();
+
+        /**
+         * Количество файлов, содержимое которых хешировано.
+         */
+        final AtomicLong hashedFiles = new AtomicLong();
+
+        /**
+         * Время сравнения в наносекундах.
+         */
+        long elapsedNanos;
+
+        /**
+         * Возвращает строку с итогами.
+         *
+         * @return строка с итогами
+         */
+        public String summary() {
+            double seconds = Math.max(elapsedNanos, 1L) / 1_000_000_000.0;
+            return String.format("Добавлено: %d, удалено: %d, изменено: %d. Совпавших поддеревьев пропущено: %d;"
+                            + " директорий прочитано: %d, без изменений с прошлого сравнения: %d; файлов хешировано: %d за %.2f с",
+                    added, removed, changed, skippedSubtrees, listedDirectories.get(), cachedDirectories.get(),
+                    hashedFiles.get(), seconds);
+        }
+    }
+
+    /**
+     * Файлы одной директории (все записи, кроме поддиректорий), упорядоченные по имени.
+     */
+    private static final class FileList {
+
+        /**
+         * Пустой список.
+         */
+        static final FileList EMPTY = new FileList(0);
+
+        /**
+         * Имена.
+         */
+        final String[] names;
+
+        /**
+         * Типы ({@link #TYPE_FILE}, {@link #TYPE_LINK}, {@link #TYPE_OTHER}).
+         */
+        final byte[] types;
+
+        /**
+         * Размеры.
+         */
+        final long[] sizes;
+
+        /**
+         * Времена изменения в миллисекундах.
+         */
+        final long[] modified;
+
+        /**
+         * Хеши содержимого (null, если ещё не вычислялись).
+         */
+        final byte[][] contentHashes;
+
+        /**
+         * Добавлены ли хеши содержимого после загрузки из кэша.
+         */
+        volatile boolean changed;
+
+        /**
+         * @param size количество файлов
+         */
+        FileList(int size) {
+            names = new String[size];
+            types = new byte[size];
+            sizes = new long[size];
+            modified = new long[size];
+            contentHashes = new byte[size][];
+        }
+
+        /**
+         * @return количество файлов
+         */
+        int size() {
+            return names.length;
+        }
+
+        /**
+         * Разбирает список из раздела кэша.
+         *
+         * @param buffer раздел кэша (от текущей позиции до предела)
+         * @return список файлов
+         */
+        static FileList parse(ByteBuffer buffer) {
+            FileList files = new FileList((int) readVarLong(buffer));
+            for (int i = 0; i < files.size(); i++) {
+                files.names[i] = readName(buffer);
+                files.types[i] = buffer.get();
+                files.sizes[i] = readVarLong(buffer);
+                files.modified[i] = buffer.getLong();
+                if (buffer.get() != 0) {
+                    files.contentHashes[i] = new byte[CONTENT_HASH_BYTES];
+                    buffer.get(files.contentHashes[i]);
+                }
+            }
+            return files;
+        }
+
+        /**
+         * Записывает список в формате раздела кэша.
+         *
+         * @param out поток вывода
+         * @throws IOException если произошла ошибка записи
+         */
+        void write(DataOutputStream out) throws IOException {
+            DirectorySynchronizer.writeVarLong(out, size());
+            for (int i = 0; i < size(); i++) {
+                writeName(out, names[i]);
+                out.writeByte(types[i]);
+                DirectorySynchronizer.writeVarLong(out, sizes[i]);
+                out.writeLong(modified[i]);
+                out.writeByte(contentHashes[i] == null ? 0 : 1);
+                if (contentHashes[i] != null) {
+                    out.write(contentHashes[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Состояние директории: хеш Меркла, поддиректории и файлы. Файлы директории, взятой из кэша,
+     * разбираются только при обращении.
+     */
+    private static final class Node {
+
+        /**
+         * Хеш Меркла содержимого.
+         */
+        byte[] hash;
+
+        /**
+         * Сообщение об ошибке чтения директории или null.
+         */
+        String error;
+
+        /**
+         * Отличается ли состав директории от кэша (запись кэша нужно обновить).
+         */
+        boolean dirty;
+
+        /**
+         * Имена поддиректорий по возрастанию.
+         */
+        String[] directoryNames = new String[0];
+
+        /**
+         * Поддиректории в порядке {@link #directoryNames}.
+         */
+        Node[] directories = new Node[0];
+
+        /**
+         * Разобранные файлы или null, пока не разобраны.
+         */
+        private FileList files;
+
+        /**
+         * Раздел файлов в кэше или null.
+         */
+        private ByteBuffer cachedFiles;
+
+        /**
+         * @return файлы директории (разбираются из кэша при первом обращении)
+         */
+        FileList files() {
+            if (files == null) {
+                files = cachedFiles == null ? FileList.EMPTY : FileList.parse(cachedFiles.duplicate());
+            }
+            return files;
+        }
+
+        /**
+         * Находит поддиректорию по имени.
+         *
+         * @param name имя поддиректории
+         * @return поддиректория или null
+         */
+        Node directory(String name) {
+            int index = Arrays.binarySearch(directoryNames, name);
+            return index >= 0 ? directories[index] : null;
+        }
+    }
+
+    /**
+     * Пара файлов с одинаковым размером и разным временем изменения, содержимое которых нужно сравнить.
+     *
+     * @param path   относительный путь
+     * @param first  файлы директории в A
+     * @param i      индекс файла в A
+     * @param second файлы директории в B
+     * @param j      индекс файла в B
+     * @param rootA  корень A
+     * @param rootB  корень B
+     */
+    private record Ambiguous(String path, FileList first, int i, FileList second, int j, Path rootA, Path rootB) {
+    }
+
+    /**
+     * Обрабатывает команду сравнения деревьев.
+     *
+     * @param command          полная строка команды, начинающаяся с 'diff'
+     * @param currentDirectory текущая директория, относительно которой разрешаются пути
+     * @return true, если сравнение выполнено полностью (независимо от наличия различий)
+     */
+    public boolean handleDiffCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        List<String> positional = new ArrayList<>();
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+        boolean full = false;
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if ("--full".equals(argument)) {
+                full = true;
+            } else if ("--jobs".equals(argument) && i + 1 < arguments.size()) {
+                try {
+                    jobs = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs <= 0) {
+                    System.out.println("Значение --jobs должно быть положительным целым числом.");
+                    return false;
+                }
+            } else {
+                positional.add(argument);
+            }
+        }
+        if (positional.size() != 2) {
+            System.out.println("Неверный формат команды. Используйте: " + USAGE);
+            return false;
+        }
+
+        Path directory = Paths.get(currentDirectory);
+        Path first = directory.resolve(positional.get(0)).toAbsolutePath().normalize();
+        Path second = directory.resolve(positional.get(1)).toAbsolutePath().normalize();
+        for (Path root : List.of(first, second)) {
+            if (!Files.isDirectory(root)) {
+                System.out.println("Ошибка: директория не найдена: " + root);
+                return false;
+            }
+        }
+
+        try {
+            Result result = diff(first, second, jobs, full);
+            for (String difference : result.differences) {
+                System.out.println(difference);
+            }
+            System.out.println(result.summary());
+            if (result.failures.get() > 0) {
+                System.err.println("Не удалось прочитать директорий: " + result.failures.get());
+                return false;
+            }
+            if (result.differences.isEmpty()) {
+                System.out.println("Деревья совпадают.");
+            }
+            return true;
+        } catch (CancellationException e) {
+            throw e; // Отмена фонового задания обрабатывается планировщиком
+        } catch (IOException e) {
+            System.err.println("Ошибка при сравнении: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Сравнивает два дерева и обновляет их кэши.
+     *
+     * @param first  корень дерева A
+     * @param second корень дерева B
+     * @param jobs   количество потоков
+     * @param full   не использовать кэш (хеши содержимого вычисляются заново)
+     * @return итоги сравнения
+     * @throws IOException если дерево не удалось прочитать
+     */
+    public Result diff(Path first, Path second, int jobs, boolean full) throws IOException {
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        Node cachedFirst = loadCache(first);
+        Node cachedSecond = loadCache(second);
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, jobs));
+        Node nodeFirst;
+        Node nodeSecond;
+        try {
+            ScanTask scanFirst = new ScanTask(first, true, full ? null : cachedFirst, result);
+            ScanTask scanSecond = new ScanTask(second, true, full ? null : cachedSecond, result);
+            nodeFirst = pool.invoke(new RecursiveTask<Node>() {
+                @Override
+                protected Node compute() {
+                    scanSecond.fork();
+                    Node node = scanFirst.compute();
+                    scanSecond.join();
+                    return node;
+                }
+            });
+            nodeSecond = scanSecond.join();
+        } finally {
+            pool.shutdown();
+        }
+        if (nodeFirst == null || nodeSecond == null) {
+            throw new IOException("Не удалось прочитать корень дерева");
+        }
+
+        List<Ambiguous> ambiguous = new ArrayList<>();
+        compare(nodeFirst, nodeSecond, "", first, second, result, ambiguous);
+        hashAmbiguous(ambiguous, jobs, result);
+        result.differences.sort(Comparator.comparing(line -> line.substring(2)));
+
+        writeCache(first, nodeFirst);
+        writeCache(second, nodeSecond);
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Задача чтения поддерева: читает директорию и атрибуты её записей, параллельно обрабатывает
+     * поддиректории и вычисляет хеш Меркла (или берёт его из кэша, если состав поддерева не изменился).
+     */
+    @SuppressWarnings("serial") // Задача выполняется только в пуле и не сериализуется
+    private static final class ScanTask extends RecursiveTask<Node> {
+
+        /**
+         * Путь к директории.
+         */
+        private final Path path;
+
+        /**
+         * Является ли директория корнем дерева (в корне не учитывается файл кэша).
+         */
+        private final boolean root;
+
+        /**
+         * Состояние директории из кэша или null.
+         */
+        private final Node cached;
+
+        /**
+         * Итоги сравнения.
+         */
+        private final Result result;
+
+        /**
+         * @param path   путь к директории
+         * @param root   является ли директория корнем дерева
+         * @param cached состояние директории из кэша или null
+         * @param result итоги сравнения
+         */
+        ScanTask(Path path, boolean root, Node cached, Result result) {
+            this.path = path;
+            this.root = root;
+            this.cached = cached;
+            this.result = result;
+        }
+
+        @Override
+        protected Node compute() {
+            JobScheduler.checkCancelled();
+            Node node = new Node();
+            try {
+                list(node);
+                result.listedDirectories.incrementAndGet();
+            } catch (NoSuchFileException e) {
+                return null; // Директория исчезла во время сравнения
+            } catch (IOException e) {
+                System.err.println("Не удалось прочитать директорию " + path + ": " + e.getMessage());
+                result.failures.incrementAndGet();
+                // Уникальный хеш: поддерево не совпадёт ни с чем и не попадёт в кэш
+                node.error = e instanceof AccessDeniedException ? "нет доступа"
+                        : e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                node.hash = ByteBuffer.allocate(HASH_BYTES).putLong(UNREADABLE.incrementAndGet())
+                        .putLong(System.nanoTime()).array();
+                node.dirty = true;
+                return node;
+            }
+
+            List<ScanTask> subtasks = new ArrayList<>(node.directoryNames.length);
+            for (String name : node.directoryNames) {
+                subtasks.add(new ScanTask(path.resolve(name), false, cached == null ? null : cached.directory(name), result));
+            }
+            invokeAll(subtasks);
+
+            // Хеш берётся из кэша, только если совпали файлы, имена и хеши всех поддиректорий
+            boolean unchanged = node.cachedFiles != null && Arrays.equals(node.directoryNames, cached.directoryNames);
+            List<String> names = new ArrayList<>(subtasks.size());
+            List<Node> directories = new ArrayList<>(subtasks.size());
+            for (int i = 0; i < subtasks.size(); i++) {
+                Node child = subtasks.get(i).join();
+                if (child == null) {
+                    unchanged = false;
+                    continue;
+                }
+                names.add(node.directoryNames[i]);
+                directories.add(child);
+                Node previous = cached == null ? null : cached.directory(node.directoryNames[i]);
+                unchanged &= previous != null && !child.dirty && Arrays.equals(previous.hash, child.hash);
+            }
+            node.directoryNames = names.toArray(new String[0]);
+            node.directories = directories.toArray(new Node[0]);
+            if (unchanged) {
+                node.hash = cached.hash;
+                result.cachedDirectories.incrementAndGet();
+            } else {
+                node.hash = merkleHash(node);
+                node.dirty = true;
+            }
+            return node;
+        }
+
+        /**
+         * Читает состав директории и атрибуты записей. Если файлы совпали с кэшем по именам, типам,
+         * размерам и временам изменения, используется список из кэша; иначе хеши содержимого
+         * переносятся из кэша для каждого совпавшего файла.
+         *
+         * @param node заполняемое состояние директории
+         * @throws IOException если директорию не удалось прочитать
+         */
+        private void list(Node node) throws IOException {
+            List<String> entries = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    String name = child.getFileName().toString();
+                    if (root && (name.equals(CACHE_NAME) || name.equals(CACHE_NAME + ".tmp"))) {
+                        continue;
+                    }
+                    entries.add(name);
+                }
+            } catch (DirectoryIteratorException e) {
+                throw e.getCause();
+            }
+            // Вызванная из задачи пула сортировка делится на части в том же пуле
+            String[] names = entries.toArray(new String[0]);
+            Arrays.parallelSort(names);
+            byte[] kinds = new byte[names.length];
+            long[] sizes = new long[names.length];
+            long[] times = new long[names.length];
+            new StatTask(path, names, kinds, sizes, times, 0, names.length).invoke();
+
+            int directoryCount = 0;
+            for (byte kind : kinds) {
+                if (kind < 0) {
+                    directoryCount++;
+                }
+            }
+            FileList previous = cached == null ? null : cached.files();
+            FileList files = new FileList(names.length - directoryCount - countMissing(kinds));
+            node.directoryNames = new String[directoryCount];
+            int d = 0;
+            int f = 0;
+            int p = 0; // Позиция в списке из кэша: оба списка упорядочены по имени
+            boolean same = previous != null && previous.size() == files.size();
+            for (int i = 0; i < names.length; i++) {
+                if (kinds[i] == Byte.MIN_VALUE) {
+                    continue; // Запись исчезла во время чтения
+                } else if (kinds[i] < 0) {
+                    node.directoryNames[d++] = names[i];
+                    continue;
+                }
+                files.names[f] = names[i];
+                files.types[f] = kinds[i];
+                files.sizes[f] = sizes[i];
+                files.modified[f] = times[i];
+                int index = -1;
+                if (previous != null) {
+                    while (p < previous.size() && previous.names[p].compareTo(names[i]) < 0) {
+                        p++;
+                    }
+                    index = p < previous.size() && previous.names[p].equals(names[i]) ? p : -1;
+                }
+                if (index >= 0 && previous.types[index] == kinds[i] && previous.sizes[index] == sizes[i]
+                        && previous.modified[index] == times[i]) {
+                    files.contentHashes[f] = previous.contentHashes[index];
+                } else {
+                    same = false;
+                }
+                f++;
+            }
+            if (same) {
+                node.files = previous;
+                node.cachedFiles = cached.cachedFiles;
+            } else {
+                node.files = files;
+            }
+        }
+
+        /**
+         * @param kinds типы записей
+         * @return количество записей, исчезнувших во время чтения
+         */
+        private static int countMissing(byte[] kinds) {
+            int missing = 0;
+            for (byte kind : kinds) {
+                if (kind == Byte.MIN_VALUE) {
+                    missing++;
+                }
+            }
+            return missing;
+        }
+    }
+
+    /**
+     * Задача чтения атрибутов записей директории; большие директории делятся на части,
+     * которые читаются параллельно.
+     */
+    @SuppressWarnings("serial")
+    private static final class StatTask extends RecursiveAction {
+
+        /**
+         * Директория.
+         */
+        private final Path directory;
+
+        /**
+         * Имена записей.
+         */
+        private final String[] names;
+
+        /**
+         * Типы записей: -1 — директория, {@link Byte#MIN_VALUE} — запись исчезла, иначе тип файла.
+         */
+        private final byte[] kinds;
+
+        /**
+         * Размеры записей.
+         */
+        private final long[] sizes;
+
+        /**
+         * Времена изменения записей.
+         */
+        private final long[] times;
+
+        /**
+         * Начало части (включительно).
+         */
+        private final int from;
+
+        /**
+         * Конец части (не включительно).
+         */
+        private final int to;
+
+        /**
+         * @param directory директория
+         * @param names     имена записей
+         * @param kinds     заполняемые типы
+         * @param sizes     заполняемые размеры
+         * @param times     заполняемые времена изменения
+         * @param from      начало части
+         * @param to        конец части
+         */
+        StatTask(Path directory, String[] names, byte[] kinds, long[] sizes, long[] times, int from, int to) {
+            this.directory = directory;
+            this.names = names;
+            this.kinds = kinds;
+            this.sizes = sizes;
+            this.times = times;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_STAT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new StatTask(directory, names, kinds, sizes, times, from, middle),
+                        new StatTask(directory, names, kinds, sizes, times, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if ((i & 1023) == 0) {
+                    JobScheduler.checkCancelled();
+                }
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(directory.resolve(names[i]),
+                            BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    kinds[i] = attributes.isDirectory() ? -1 : attributes.isRegularFile() ? TYPE_FILE
+                            : attributes.isSymbolicLink() ? TYPE_LINK : TYPE_OTHER;
+                    sizes[i] = attributes.size();
+                    times[i] = attributes.lastModifiedTime().toMillis();
+                } catch (IOException e) {
+                    kinds[i] = Byte.MIN_VALUE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Вычисляет хеш Меркла директории: имена и хеши поддиректорий, имена, типы, размеры и времена
+     * изменения файлов. Время изменения самой директории не учитывается.
+     *
+     * @param node состояние директории
+     * @return хеш
+     */
+    private static byte[] merkleHash(Node node) {
+        MessageDigest digest = sha256();
+        for (int i = 0; i < node.directoryNames.length; i++) {
+            digest.update((byte) 'D');
+            digest.update(node.directoryNames[i].getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(node.directories[i].hash);
+        }
+        FileList files = node.files();
+        ByteBuffer numbers = ByteBuffer.allocate(2 * Long.BYTES);
+        for (int i = 0; i < files.size(); i++) {
+            digest.update(files.types[i]);
+            digest.update(files.names[i].getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(numbers.clear().putLong(files.sizes[i]).putLong(files.modified[i]).array());
+        }
+        return Arrays.copyOf(digest.digest(), HASH_BYTES);
+    }
+
+    /**
+     * @return новый экземпляр SHA-256
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Сравнивает две директории; поддеревья с равными хешами пропускаются, а недоступные
+     * директории отмечаются строкой "! путь" и не сравниваются.
+     *
+     * @param first     директория в A
+     * @param second    директория в B
+     * @param prefix    относительный путь директории ("" или "путь/")
+     * @param rootA     корень A
+     * @param rootB     корень B
+     * @param result    итоги сравнения
+     * @param ambiguous пополняется файлами, содержимое которых нужно сравнить
+     */
+    private void compare(Node first, Node second, String prefix, Path rootA, Path rootB, Result result,
+                         List<Ambiguous> ambiguous) {
+        if (first.error != null || second.error != null) {
+            result.differences.add("! " + (prefix.isEmpty() ? "./" : prefix) + ": "
+                    + (first.error != null ? first.error : second.error));
+            return;
+        }
+        if (Arrays.equals(first.hash, second.hash)) {
+            result.skippedSubtrees++;
+            return;
+        }
+        JobScheduler.checkCancelled();
+
+        String[] a = first.directoryNames;
+        String[] b = second.directoryNames;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int order = i == a.length ? 1 : j == b.length ? -1 : a[i].compareTo(b[j]);
+            if (order < 0) {
+                removed(result, prefix + a[i++] + "/");
+            } else if (order > 0) {
+                added(result, prefix + b[j++] + "/");
+            } else {
+                compare(first.directories[i], second.directories[j], prefix + a[i] + "/", rootA, rootB, result, ambiguous);
+                i++;
+                j++;
+            }
+        }
+
+        FileList filesA = first.files();
+        FileList filesB = second.files();
+        i = 0;
+        j = 0;
+        while (i < filesA.size() || j < filesB.size()) {
+            int order = i == filesA.size() ? 1 : j == filesB.size() ? -1 : filesA.names[i].compareTo(filesB.names[j]);
+            if (order < 0) {
+                removed(result, prefix + filesA.names[i++]);
+                continue;
+            } else if (order > 0) {
+                added(result, prefix + filesB.names[j++]);
+                continue;
+            }
+            String path = prefix + filesA.names[i];
+            if (filesA.types[i] != filesB.types[j] || filesA.sizes[i] != filesB.sizes[j]) {
+                changed(result, path);
+            } else if (filesA.modified[i] != filesB.modified[j]) {
+                // Одинаковый размер, разное время изменения — решает содержимое
+                if (filesA.types[i] == TYPE_FILE) {
+                    ambiguous.add(new Ambiguous(path, filesA, i, filesB, j, rootA, rootB));
+                } else if (!sameLink(rootA.resolve(path), rootB.resolve(path))) {
+                    changed(result, path);
+                }
+            }
+            i++;
+            j++;
+        }
+    }
+
+    /**
+     * Сравнивает цели символических ссылок (специальные файлы считаются совпадающими при равных атрибутах).
+     *
+     * @param first  запись в A
+     * @param second запись в B
+     * @return true, если записи совпадают
+     */
+    private static boolean sameLink(Path first, Path second) {
+        try {
+            if (!Files.isSymbolicLink(first)) {
+                return true;
+            }
+            return Files.readSymbolicLink(first).equals(Files.readSymbolicLink(second));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param result итоги сравнения
+     * @param path   путь записи, которая есть только в B
+     */
+    private static void added(Result result, String path) {
+        result.added++;
+        result.differences.add("+ " + path);
+    }
+
+    /**
+     * @param result итоги сравнения
+     * @param path   путь записи, которая есть только в A
+     */
+    private static void removed(Result result, String path) {
+        result.removed++;
+        result.differences.add("- " + path);
+    }
+
+    /**
+     * @param result итоги сравнения
+     * @param path   путь изменённого файла
+     */
+    private static void changed(Result result, String path) {
+        result.changed++;
+        result.differences.add("~ " + path);
+    }
+
+    /**
+     * Сравнивает содержимое файлов с одинаковым размером и разным временем изменения.
+     * Хеши вычисляются параллельно (если их ещё нет в кэше) и сохраняются в кэш.
+     *
+     * @param ambiguous пары файлов
+     * @param jobs      количество потоков
+     * @param result    итоги сравнения
+     * @throws IOException если ожидание прервано
+     */
+    private void hashAmbiguous(List<Ambiguous> ambiguous, int jobs, Result result) throws IOException {
+        if (ambiguous.isEmpty()) {
+            return;
+        }
+        long totalBytes = 0;
+        for (Ambiguous pair : ambiguous) {
+            totalBytes += 2 * pair.first().sizes[pair.i()];
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try (ProgressReporter progress = new ProgressReporter("diff", totalBytes, true, true)) {
+            List<Future<Boolean>> tasks = new ArrayList<>(ambiguous.size());
+            for (Ambiguous pair : ambiguous) {
+                tasks.add(pool.submit(() -> {
+                    byte[] hashA = contentHash(pair.rootA().resolve(pair.path()), pair.first(), pair.i(), result, progress);
+                    byte[] hashB = contentHash(pair.rootB().resolve(pair.path()), pair.second(), pair.j(), result, progress);
+                    return hashA != null && Arrays.equals(hashA, hashB);
+                }));
+            }
+            for (int k = 0; k < tasks.size(); k++) {
+                if (!tasks.get(k).get()) {
+                    changed(result, ambiguous.get(k).path());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Сравнение прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new IOException("Ошибка в потоке хеширования: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Возвращает хеш содержимого файла из кэша или вычисляет и запоминает его.
+     *
+     * @param file     файл
+     * @param files    файлы его директории
+     * @param index    индекс файла
+     * @param result   итоги сравнения
+     * @param progress индикатор прогресса
+     * @return хеш или null, если файл не удалось прочитать
+     */
+    private static byte[] contentHash(Path file, FileList files, int index, Result result, ProgressReporter progress) {
+        JobScheduler.checkCancelled();
+        long size = files.sizes[index];
+        byte[] hash = files.contentHashes[index];
+        if (hash == null) {
+            try {
+                IoThrottle.acquire(size);
+                hash = HexFormat.of().parseHex(DuplicateFinder.fullHash(file, size));
+                Metrics.recordRead(size);
+                result.hashedFiles.incrementAndGet();
+            } catch (IOException e) {
+                System.err.println("Не удалось прочитать " + file + ": " + e.getMessage());
+                return null;
+            }
+            files.contentHashes[index] = hash;
+            files.changed = true;
+        }
+        progress.add(size);
+        return hash;
+    }
+
+    /**
+     * Загружает кэш дерева. Отсутствующий или повреждённый кэш игнорируется.
+     *
+     * @param root корень дерева
+     * @return состояние корня из кэша или null
+     */
+    private static Node loadCache(Path root) {
+        Path cacheFile = root.resolve(CACHE_NAME);
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            // Отображение остаётся действительным и после закрытия канала и замены файла
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int trailer = (int) size - TRAILER_SIZE;
+            if (buffer.getInt(trailer + Long.BYTES) != MAGIC) {
+                return null;
+            }
+            return readNode(buffer, (int) buffer.getLong(trailer));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Кэш сравнения повреждён и будет перестроен: " + cacheFile);
+            return null;
+        }
+    }
+
+    /**
+     * Разбирает запись директории кэша вместе с записями поддиректорий (файлы не разбираются).
+     *
+     * @param buffer   отображённый кэш
+     * @param position смещение записи
+     * @return состояние директории
+     */
+    private static Node readNode(ByteBuffer buffer, int position) {
+        ByteBuffer reader = buffer.duplicate().position(position);
+        Node node = new Node();
+        node.hash = new byte[HASH_BYTES];
+        reader.get(node.hash);
+        int count = (int) readVarLong(reader);
+        node.directoryNames = new String[count];
+        node.directories = new Node[count];
+        for (int i = 0; i < count; i++) {
+            node.directoryNames[i] = readName(reader);
+            node.directories[i] = readNode(buffer, (int) readVarLong(reader));
+        }
+        int length = (int) readVarLong(reader);
+        node.cachedFiles = reader.slice(reader.position(), length);
+        return node;
+    }
+
+    /**
+     * Записывает кэш дерева, если его состояние изменилось. Записи директорий пишутся после записей
+     * поддиректорий, а смещение корня — в окончании файла. Недоступный корень не кэшируется.
+     *
+     * @param root корень дерева
+     * @param node состояние корня
+     */
+    private static void writeCache(Path root, Node node) {
+        if (node.error != null || !isDirty(node)) {
+            return;
+        }
+        Path cacheFile = root.resolve(CACHE_NAME);
+        Path temporary = root.resolve(CACHE_NAME + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeLong(writeNode(out, node));
+                out.writeInt(MAGIC);
+            }
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Не удалось записать кэш сравнения " + cacheFile + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // Временный файл будет перезаписан при следующем сравнении
+            }
+        }
+    }
+
+    /**
+     * Проверяет, изменилось ли поддерево по сравнению с кэшем (состав или новые хеши содержимого).
+     *
+     * @param node текущее состояние
+     * @return true, если кэш нужно переписать
+     */
+    private static boolean isDirty(Node node) {
+        if (node.dirty || node.files != null && node.files.changed) {
+            return true;
+        }
+        for (Node directory : node.directories) {
+            if (isDirty(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Записывает запись директории после записей её поддиректорий. Недоступные поддиректории
+     * в кэш не попадают: при следующем сравнении они читаются заново.
+     *
+     * @param out  поток вывода
+     * @param node состояние директории
+     * @return смещение записи директории
+     * @throws IOException если произошла ошибка записи или кэш превысил 2 ГБ
+     */
+    private static long writeNode(DataOutputStream out, Node node) throws IOException {
+        long[] offsets = new long[node.directories.length];
+        int readable = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            if (node.directories[i].error == null) {
+                offsets[i] = writeNode(out, node.directories[i]);
+                readable++;
+            }
+        }
+        if (out.size() == Integer.MAX_VALUE) {
+            throw new IOException("Кэш сравнения превысил 2 ГБ");
+        }
+        long offset = out.size();
+        out.write(node.hash);
+        DirectorySynchronizer.writeVarLong(out, readable);
+        for (int i = 0; i < offsets.length; i++) {
+            if (node.directories[i].error == null) {
+                writeName(out, node.directoryNames[i]);
+                DirectorySynchronizer.writeVarLong(out, offsets[i]);
+            }
+        }
+        if (node.cachedFiles != null && (node.files == null || !node.files.changed)) {
+            // Файлы совпали с кэшем — раздел копируется из прежнего кэша как есть
+            ByteBuffer section = node.cachedFiles.duplicate();
+            DirectorySynchronizer.writeVarLong(out, section.remaining());
+            byte[] chunk = new byte[Math.min(section.remaining(), 1 << 16)];
+            while (section.hasRemaining()) {
+                int length = Math.min(chunk.length, section.remaining());
+                section.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        } else {
+            ByteArrayOutputStream section = new ByteArrayOutputStream();
+            node.files().write(new DataOutputStream(section));
+            DirectorySynchronizer.writeVarLong(out, section.size());
+            section.writeTo(out);
+        }
+        return offset;
+    }
+
+    /**
+     * Записывает имя: длина в формате переменной длины и байты UTF-8.
+     *
+     * @param out  поток вывода
+     * @param name имя
+     * @throws IOException если произошла ошибка записи
+     */
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        DirectorySynchronizer.writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Читает имя, записанное методом {@link #writeName(DataOutputStream, String)}.
+     *
+     * @param buffer буфер (позиция сдвигается)
+     * @return имя
+     */
+    private static String readName(ByteBuffer buffer) {
+        byte[] bytes = new byte[(int) readVarLong(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Читает число переменной длины с текущей позиции буфера.
+     *
+     * @param buffer буфер (позиция сдвигается)
+     * @return прочитанное значение
+     */
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
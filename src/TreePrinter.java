@@ -0,0 +1,927 @@
+// TreePrinter.java
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Класс для вывода дерева директорий (команда 'tree').
+ * <p>
+ * Дерево обходится в глубину с явным стеком (глубина дерева не ограничена размером стека потока),
+ * и каждая строка выводится сразу, как только запись прочитана. Директории раскрываются лениво:
+ * содержимое читается, только когда обход до них доходит, а фоновые потоки заранее читают несколько
+ * следующих поддиректорий текущего уровня, чтобы к моменту спуска их содержимое уже было готово.
+ * </p>
+ * <p>
+ * Записи всегда выводятся по возрастанию имени, а память ограничена: директория целиком держится в памяти,
+ * только если в ней не больше {@value #MAX_BUFFERED_ENTRIES} записей. Более крупные сортируются внешним
+ * слиянием: части по {@value #MAX_BUFFERED_ENTRIES} имён сортируются и записываются во временный файл,
+ * а при выводе сливаются. Количество заранее прочитанных, но ещё не выведенных директорий ограничено
+ * {@value #PREFETCH_LIMIT}. При отмене задания ожидающие чтения отменяются, а потоки останавливаются.
+ * </p>
+ */
+public class TreePrinter {
+
+    /**
+     * Максимальное количество записей директории, которые держатся в памяти и сортируются целиком;
+     * у более крупных директорий это размер отсортированной части.
+     */
+    private static final int MAX_BUFFERED_ENTRIES = 4096;
+
+    /**
+     * Размер буфера чтения одной отсортированной части при слиянии.
+     */
+    private static final int RUN_BUFFER_SIZE = 8192;
+
+    /**
+     * Максимальное количество заранее прочитанных директорий во всём обходе.
+     */
+    private static final int PREFETCH_LIMIT = 64;
+
+    /**
+     * Сколько следующих поддиректорий одной директории читается заранее.
+     */
+    private static final int PREFETCH_WINDOW = 8;
+
+    /**
+     * Интервал проверки отмены при ожидании заранее читаемой директории, мс.
+     */
+    private static final long POLL_MILLIS = 50;
+
+    /**
+     * Тип записи: директория.
+     */
+    private static final byte TYPE_DIRECTORY = 0;
+
+    /**
+     * Тип записи: файл (в том числе специальный).
+     */
+    private static final byte TYPE_FILE = 1;
+
+    /**
+     * Тип записи: символическая ссылка.
+     */
+    private static final byte TYPE_LINK = 2;
+
+    /**
+     * Тип записи: запись исчезла или недоступна.
+     */
+    private static final byte TYPE_MISSING = 3;
+
+    /**
+     * Формат команды.
+     */
+    private static final String USAGE = "tree [путь] [--depth N] [--jobs N]";
+
+    /**
+     * Конструктор класса TreePrinter.
+     * Создаёт новый экземпляр для вывода дерева директорий.
+     */
+    public TreePrinter() {
+        // Конструктор по умолчанию
+    }
+
+    /**
+     * Итоги обхода.
+     */
+    public static final class Result {
+
+        /**
+         * Количество выведенных директорий.
+         */
+        long directories;
+
+        /**
+         * Количество выведенных файлов и ссылок.
+         */
+        long files;
+
+        /**
+         * Количество директорий, прочитанных заранее фоновыми потоками.
+         */
+        long prefetched;
+
+        /**
+         * Время обхода в наносекундах.
+         */
+        long elapsedNanos;
+
+        /**
+         * Возвращает строку с итогами.
+         *
+         * @return строка с итогами
+         */
+        public String summary() {
+            return String.format("%d директорий, %d файлов (заранее прочитано директорий: %d) за %.2f с",
+                    directories, files, prefetched, Math.max(elapsedNanos, 1L) / 1_000_000_000.0);
+        }
+    }
+
+    /**
+     * Отсортированное содержимое директории.
+     */
+    private static final class Listing {
+
+        /**
+         * Записи по возрастанию имени (пути из потока директории не собираются заново из имён,
+         * поэтому имена, не представимые в кодировке файловой системы, не мешают обходу).
+         */
+        final Path[] entries;
+
+        /**
+         * Типы записей.
+         */
+        final byte[] types;
+
+        /**
+         * Цели символических ссылок (null для остальных записей).
+         */
+        final String[] targets;
+
+        /**
+         * Сообщение об ошибке чтения или null.
+         */
+        final String error;
+
+        /**
+         * Отсортированные части директории, не поместившейся в память, или null.
+         */
+        final SortedRuns runs;
+
+        /**
+         * @param entries записи
+         * @param error   сообщение об ошибке или null
+         */
+        Listing(Path[] entries, String error) {
+            this.entries = entries;
+            this.types = new byte[entries.length];
+            this.targets = new String[entries.length];
+            this.error = error;
+            this.runs = null;
+        }
+
+        /**
+         * @param runs отсортированные части директории, не поместившейся в память
+         */
+        Listing(SortedRuns runs) {
+            this.entries = new Path[0];
+            this.types = new byte[0];
+            this.targets = new String[0];
+            this.error = null;
+            this.runs = runs;
+        }
+    }
+
+    /**
+     * Отсортированные части большой директории во временном файле: каждая часть — не больше
+     * {@value #MAX_BUFFERED_ENTRIES} имён по возрастанию (пути записей при выводе собираются из имён заново).
+     * Пока файл существует, он учтён в {@link #spilled}, чтобы его удалили и при прерванном обходе.
+     */
+    private final class SortedRuns {
+
+        /**
+         * Временный файл частей.
+         */
+        final Path file;
+
+        /**
+         * Смещения начала частей в файле.
+         */
+        final List<Long> offsets = new ArrayList<>();
+
+        /**
+         * Количество имён в каждой части.
+         */
+        final List<Integer> counts = new ArrayList<>();
+
+        /**
+         * Поток записи частей или null, когда запись завершена.
+         */
+        private DataOutputStream out;
+
+        /**
+         * Создаёт временный файл частей.
+         *
+         * @throws IOException если файл не удалось создать
+         */
+        SortedRuns() throws IOException {
+            file = Files.createTempFile("fm-tree", ".runs");
+            spilled.add(this);
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        }
+
+        /**
+         * Сортирует часть записей по имени и дописывает её в файл.
+         *
+         * @param chunk записи части
+         * @throws IOException если часть не удалось записать
+         */
+        void spill(List<Path> chunk) throws IOException {
+            String[] names = new String[chunk.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = chunk.get(i).getFileName().toString();
+            }
+            Arrays.sort(names);
+            offsets.add((long) out.size());
+            counts.add(names.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            // Счётчик size() останавливается на Integer.MAX_VALUE, и смещения частей стали бы неверными
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Директория слишком велика для сортировки");
+            }
+        }
+
+        /**
+         * Завершает запись частей.
+         *
+         * @throws IOException если файл не удалось дописать
+         */
+        void finish() throws IOException {
+            out.close();
+            out = null;
+        }
+
+        /**
+         * Удаляет временный файл (повторный вызов ничего не делает).
+         */
+        void delete() {
+            if (!spilled.remove(this)) {
+                return;
+            }
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Не удалось удалить временный файл " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Слияние отсортированных частей: имена выдаются по возрастанию, в памяти — по одному буферу на часть.
+     */
+    private static final class RunMerger implements AutoCloseable {
+
+        /**
+         * Сливаемые части.
+         */
+        private final SortedRuns runs;
+
+        /**
+         * Канал временного файла (части читаются из него по позиции).
+         */
+        private final FileChannel channel;
+
+        /**
+         * Части с ещё не выданными именами, упорядоченные по текущему имени.
+         */
+        private final PriorityQueue<RunCursor> queue = new PriorityQueue<>(Comparator.comparing(cursor -> cursor.current));
+
+        /**
+         * @param runs сливаемые части (после закрытия слияния файл удаляется)
+         * @throws IOException если файл не удалось прочитать
+         */
+        RunMerger(SortedRuns runs) throws IOException {
+            this.runs = runs;
+            this.channel = FileChannel.open(runs.file, StandardOpenOption.READ);
+            try {
+                for (int i = 0; i < runs.offsets.size(); i++) {
+                    RunCursor cursor = new RunCursor(channel, runs.offsets.get(i), runs.counts.get(i));
+                    if (cursor.advance()) {
+                        queue.add(cursor);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return следующее по порядку имя или null, если имена закончились
+         * @throws IOException если файл не удалось прочитать
+         */
+        String next() throws IOException {
+            RunCursor cursor = queue.poll();
+            if (cursor == null) {
+                return null;
+            }
+            String name = cursor.current;
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+            return name;
+        }
+
+        /**
+         * Закрывает файл и удаляет его.
+         */
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Файл только читался
+            }
+            runs.delete();
+        }
+    }
+
+    /**
+     * Курсор одной отсортированной части.
+     */
+    private static final class RunCursor {
+
+        /**
+         * Поток чтения части.
+         */
+        private final DataInputStream in;
+
+        /**
+         * Сколько имён части ещё не прочитано.
+         */
+        private int left;
+
+        /**
+         * Текущее имя.
+         */
+        String current;
+
+        /**
+         * @param channel канал временного файла
+         * @param offset  смещение начала части
+         * @param count   количество имён в части
+         */
+        RunCursor(FileChannel channel, long offset, int count) {
+            this.in = new DataInputStream(new BufferedInputStream(new InputStream() {
+                private long position = offset;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] buffer, int from, int length) throws IOException {
+                    int read = channel.read(ByteBuffer.wrap(buffer, from, length), position);
+                    if (read > 0) {
+                        position += read;
+                    }
+                    return read;
+                }
+            }, RUN_BUFFER_SIZE));
+            this.left = count;
+        }
+
+        /**
+         * Переходит к следующему имени части.
+         *
+         * @return true, если имя прочитано; false, если часть закончилась
+         * @throws IOException если файл не удалось прочитать
+         */
+        boolean advance() throws IOException {
+            if (left == 0) {
+                current = null;
+                return false;
+            }
+            left--;
+            current = in.readUTF();
+            return true;
+        }
+    }
+
+    /**
+     * Запись, выводимая очередной строкой.
+     *
+     * @param path   путь к записи
+     * @param name   имя
+     * @param type   тип
+     * @param target цель символической ссылки или null
+     * @param last   последняя ли это запись директории
+     * @param index  индекс в отсортированном содержимом (-1 для записей, получаемых слиянием частей)
+     */
+    private record Entry(Path path, String name, byte type, String target, boolean last, int index) {
+    }
+
+    /**
+     * Директория на стеке обхода: либо прочитанное в память содержимое с курсором и заранее читаемыми
+     * поддиректориями, либо слияние отсортированных частей большой директории.
+     */
+    private final class Frame implements AutoCloseable {
+
+        /**
+         * Путь к директории.
+         */
+        final Path path;
+
+        /**
+         * Уровень записей директории (записи корня — уровень 1).
+         */
+        final int depth;
+
+        /**
+         * Отступ строк записей директории.
+         */
+        final String indent;
+
+        /**
+         * Содержимое в памяти или null для директорий, выводимых слиянием частей.
+         */
+        private final Listing listing;
+
+        /**
+         * Позиции поддиректорий в {@link #listing}.
+         */
+        private final int[] directories;
+
+        /**
+         * Заранее читаемое содержимое поддиректорий (по порядковому номеру поддиректории).
+         */
+        private final Future<?>[] pending;
+
+        /**
+         * Следующая выводимая запись в {@link #listing}.
+         */
+        private int cursor;
+
+        /**
+         * Сколько поддиректорий уже выведено.
+         */
+        private int consumed;
+
+        /**
+         * Сколько поддиректорий поставлено на предварительное чтение (считая с начала).
+         */
+        private int scheduled;
+
+        /**
+         * Слияние частей большой директории или null.
+         */
+        private RunMerger merger;
+
+        /**
+         * Следующее имя из слияния (null, если имена закончились).
+         */
+        private String lookahead;
+
+        /**
+         * @param path    путь к директории
+         * @param depth   уровень записей директории
+         * @param indent  отступ строк записей
+         * @param listing содержимое (отсортированные части большой директории сливаются по ходу вывода)
+         * @throws IOException если отсортированные части не удалось прочитать
+         */
+        Frame(Path path, int depth, String indent, Listing listing) throws IOException {
+            this.path = path;
+            this.depth = depth;
+            this.indent = indent;
+            if (listing.runs != null) {
+                this.listing = null;
+                this.directories = new int[0];
+                try {
+                    this.merger = new RunMerger(listing.runs);
+                    this.lookahead = merger.next();
+                } catch (IOException e) {
+                    listing.runs.delete();
+                    throw e;
+                }
+            } else {
+                this.listing = listing;
+                int count = 0;
+                for (byte type : listing.types) {
+                    if (type == TYPE_DIRECTORY) {
+                        count++;
+                    }
+                }
+                this.directories = new int[count];
+                count = 0;
+                for (int i = 0; i < listing.types.length; i++) {
+                    if (listing.types[i] == TYPE_DIRECTORY) {
+                        directories[count++] = i;
+                    }
+                }
+            }
+            this.pending = new Future<?>[directories.length];
+        }
+
+        /**
+         * Возвращает следующую запись и ставит на предварительное чтение очередные поддиректории.
+         *
+         * @return запись или null, если записи закончились
+         */
+        Entry next() {
+            if (listing == null) {
+                return nextMerged();
+            }
+            if (depth < maxDepth) {
+                prefetch();
+            }
+            if (cursor == listing.entries.length) {
+                return null;
+            }
+            int i = cursor++;
+            Path child = listing.entries[i];
+            return new Entry(child, child.getFileName().toString(), listing.types[i], listing.targets[i],
+                    cursor == listing.entries.length, i);
+        }
+
+        /**
+         * Возвращает следующую по имени запись из слияния частей (тип определяется здесь же).
+         *
+         * @return запись или null, если записи закончились
+         */
+        private Entry nextMerged() {
+            String name = lookahead;
+            if (name == null) {
+                return null;
+            }
+            try {
+                lookahead = merger.next();
+            } catch (IOException e) {
+                System.err.println("Ошибка при чтении директории " + path + ": " + e.getMessage());
+                lookahead = null;
+            }
+            Path child = path.resolve(name);
+            byte type = typeOf(child);
+            String target = type == TYPE_LINK ? linkTarget(child) : null;
+            return new Entry(child, name, type, target, lookahead == null, -1);
+        }
+
+        /**
+         * Ставит на предварительное чтение следующие поддиректории в пределах окна и общего ограничения.
+         */
+        private void prefetch() {
+            while (scheduled < directories.length && scheduled < consumed + PREFETCH_WINDOW && permits.tryAcquire()) {
+                Path child = listing.entries[directories[scheduled]];
+                pending[scheduled++] = pool.submit(() -> read(child));
+            }
+        }
+
+        /**
+         * Возвращает содержимое поддиректории, дождавшись предварительного чтения или прочитав его сейчас.
+         *
+         * @param entry запись поддиректории
+         * @return содержимое поддиректории
+         * @throws IOException если ожидание прервано или чтение завершилось ошибкой
+         */
+        Listing open(Entry entry) throws IOException {
+            if (entry.index() < 0) {
+                return read(entry.path());
+            }
+            int number = consumed++;
+            Future<?> future = pending[number];
+            if (future == null) {
+                return read(entry.path());
+            }
+            pending[number] = null;
+            try {
+                while (true) {
+                    JobScheduler.checkCancelled();
+                    try {
+                        Listing result = (Listing) future.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        prefetched++;
+                        return result;
+                    } catch (TimeoutException e) {
+                        // Проверяем отмену и продолжаем ждать
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Вывод дерева прерван", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    throw (CancellationException) e.getCause();
+                }
+                throw new IOException("Ошибка в потоке чтения: " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                permits.release();
+            }
+        }
+
+        /**
+         * Отменяет невостребованные предварительные чтения и закрывает слияние частей.
+         */
+        @Override
+        public void close() {
+            for (int i = consumed; i < scheduled; i++) {
+                if (pending[i] != null) {
+                    pending[i].cancel(true);
+                    pending[i] = null;
+                    permits.release();
+                }
+            }
+            if (merger != null) {
+                merger.close();
+                merger = null;
+            }
+        }
+    }
+
+    /**
+     * Максимальный уровень выводимых записей текущего обхода.
+     */
+    private int maxDepth;
+
+    /**
+     * Потоки предварительного чтения текущего обхода.
+     */
+    private ExecutorService pool;
+
+    /**
+     * Разрешения на предварительное чтение текущего обхода.
+     */
+    private Semaphore permits;
+
+    /**
+     * Остановлен ли текущий обход (фоновые чтения прекращаются).
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Количество директорий, прочитанных заранее, в текущем обходе.
+     */
+    private long prefetched;
+
+    /**
+     * Ещё не удалённые временные файлы отсортированных частей.
+     */
+    private final Set<SortedRuns> spilled = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Обрабатывает команду вывода дерева.
+     *
+     * @param command          полная строка команды, начинающаяся с 'tree'
+     * @param currentDirectory текущая директория, относительно которой разрешается путь
+     * @return true, если дерево выведено
+     */
+    public boolean handleTreeCommand(String command, String currentDirectory) {
+        List<String> arguments = FileCopier.parseArguments(command);
+        String target = null;
+        int depth = Integer.MAX_VALUE;
+        int jobs = DirectoryCopier.DEFAULT_JOBS;
+        for (int i = 1; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if (("--depth".equals(argument) || "--jobs".equals(argument)) && i + 1 < arguments.size()) {
+                int value;
+                try {
+                    value = Integer.parseInt(arguments.get(++i));
+                } catch (NumberFormatException e) {
+                    value = 0;
+                }
+                if (value <= 0) {
+                    System.out.println("Значение " + argument + " должно быть положительным целым числом.");
+                    return false;
+                }
+                if ("--depth".equals(argument)) {
+                    depth = value;
+                } else {
+                    jobs = value;
+                }
+            } else if (target == null && !argument.startsWith("--")) {
+                target = argument;
+            } else {
+                System.out.println("Неверный формат команды. Используйте: " + USAGE);
+                return false;
+            }
+        }
+
+        Path root = (target == null ? Paths.get(currentDirectory) : Paths.get(currentDirectory).resolve(target)).normalize();
+        if (!Files.isDirectory(root)) {
+            System.out.println("Директория не существует или недоступна: " + root);
+            return false;
+        }
+        try {
+            System.out.println(print(root, depth, jobs).summary());
+            return true;
+        } catch (CancellationException e) {
+            throw e; // Отмена фонового задания обрабатывается планировщиком
+        } catch (IOException e) {
+            System.err.println("Ошибка при выводе дерева: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Выводит дерево директории.
+     *
+     * @param root     корень
+     * @param maxDepth максимальный уровень выводимых записей (записи корня — уровень 1)
+     * @param jobs     количество потоков предварительного чтения
+     * @return итоги обхода
+     * @throws IOException если ожидание прервано
+     */
+    public synchronized Result print(Path root, int maxDepth, int jobs) throws IOException {
+        long startNanos = System.nanoTime();
+        Result result = new Result();
+        this.maxDepth = maxDepth;
+        this.pool = Executors.newFixedThreadPool(jobs);
+        this.permits = new Semaphore(PREFETCH_LIMIT);
+        this.stopped = false;
+        this.prefetched = 0;
+
+        Deque<Frame> stack = new ArrayDeque<>();
+        try {
+            System.out.println(root);
+            push(stack, root, 1, "", read(root));
+            while (!stack.isEmpty()) {
+                JobScheduler.checkCancelled();
+                Frame frame = stack.peek();
+                Entry entry = frame.next();
+                if (entry == null) {
+                    stack.pop().close();
+                    continue;
+                }
+
+                StringBuilder line = new StringBuilder(frame.indent.length() + entry.name().length() + 8)
+                        .append(frame.indent).append(entry.last() ? "└── " : "├── ").append(entry.name());
+                if (entry.type() == TYPE_DIRECTORY) {
+                    line.append('/');
+                    result.directories++;
+                } else {
+                    if (entry.target() != null) {
+                        line.append(" -> ").append(entry.target());
+                    }
+                    result.files++;
+                }
+                System.out.println(line);
+
+                if (entry.type() == TYPE_DIRECTORY && frame.depth < maxDepth) {
+                    String indent = frame.indent + (entry.last() ? "    " : "│   ");
+                    push(stack, entry.path(), frame.depth + 1, indent, frame.open(entry));
+                }
+            }
+        } finally {
+            // Отменяем ожидающие чтения и прерываем выполняющиеся
+            stopped = true;
+            while (!stack.isEmpty()) {
+                stack.pop().close();
+            }
+            pool.shutdownNow();
+            try {
+                // Фоновое чтение, прерванное посреди записи частей, должно закрыть файл до его удаления
+                pool.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pool = null;
+            for (SortedRuns runs : spilled) {
+                runs.delete();
+            }
+        }
+        result.prefetched = prefetched;
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        return result;
+    }
+
+    /**
+     * Кладёт директорию на стек обхода; ошибки чтения выводятся строкой под директорией.
+     *
+     * @param stack   стек обхода
+     * @param path    путь к директории
+     * @param depth   уровень записей директории
+     * @param indent  отступ строк записей
+     * @param listing содержимое директории
+     */
+    private void push(Deque<Frame> stack, Path path, int depth, String indent, Listing listing) {
+        if (listing.error != null) {
+            System.out.println(indent + "└── [ошибка: " + listing.error + "]");
+            return;
+        }
+        try {
+            stack.push(new Frame(path, depth, indent, listing));
+        } catch (IOException e) {
+            System.out.println(indent + "└── [ошибка: " + e.getMessage() + "]");
+        }
+    }
+
+    /**
+     * Читает и сортирует содержимое директории, определяя типы записей. Если записей больше
+     * {@value #MAX_BUFFERED_ENTRIES}, они сортируются частями во временный файл, а типы определяются
+     * при выводе.
+     *
+     * @param directory директория
+     * @return содержимое директории
+     */
+    private Listing read(Path directory) {
+        checkStopped();
+        List<Path> children = new ArrayList<>();
+        SortedRuns runs = null;
+        boolean complete = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                if (children.size() == MAX_BUFFERED_ENTRIES) {
+                    if (runs == null) {
+                        runs = new SortedRuns();
+                    }
+                    runs.spill(children);
+                    children.clear();
+                    checkStopped();
+                }
+                children.add(child);
+            }
+            if (runs != null) {
+                runs.spill(children);
+                runs.finish();
+                complete = true;
+                return new Listing(runs);
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            String message = e instanceof DirectoryIteratorException ? e.getCause().getMessage() : e.getMessage();
+            return new Listing(new Path[0], message == null ? e.getClass().getSimpleName() : message);
+        } finally {
+            if (runs != null && !complete) {
+                runs.delete();
+            }
+        }
+
+        Path[] sorted = children.toArray(new Path[0]);
+        Arrays.sort(sorted, Comparator.comparing(child -> child.getFileName().toString()));
+        Listing listing = new Listing(sorted, null);
+        for (int i = 0; i < sorted.length; i++) {
+            if ((i & 255) == 0) {
+                checkStopped();
+            }
+            Path child = sorted[i];
+            listing.types[i] = typeOf(child);
+            if (listing.types[i] == TYPE_LINK) {
+                listing.targets[i] = linkTarget(child);
+            }
+        }
+        return listing;
+    }
+
+    /**
+     * Прекращает чтение, если обход остановлен или задание отменено.
+     *
+     * @throws CancellationException если обход остановлен или задание отменено
+     */
+    private void checkStopped() {
+        if (stopped || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Вывод дерева остановлен");
+        }
+        JobScheduler.checkCancelled();
+    }
+
+    /**
+     * Определяет тип записи, не переходя по символическим ссылкам.
+     *
+     * @param path путь к записи
+     * @return тип записи
+     */
+    private static byte typeOf(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return attributes.isDirectory() ? TYPE_DIRECTORY : attributes.isSymbolicLink() ? TYPE_LINK : TYPE_FILE;
+        } catch (IOException e) {
+            return TYPE_MISSING;
+        }
+    }
+
+    /**
+     * Читает цель символической ссылки.
+     *
+     * @param link символическая ссылка
+     * @return цель или "?", если её не удалось прочитать
+     */
+    private static String linkTarget(Path link) {
+        try {
+            return Files.readSymbolicLink(link).toString();
+        } catch (IOException e) {
+            return "?";
+        }
+    }
+}